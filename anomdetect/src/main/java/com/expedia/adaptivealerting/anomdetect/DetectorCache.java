@@ -0,0 +1,304 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.typesafe.config.Config;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Bounded, thread-safe (UUID : Detector) cache used by {@link DetectorManager}.
+ * </p>
+ * <p>
+ * The cache evicts by weight when {@code max-weight} is configured, where the weight is the estimated detector state
+ * size in bytes (see {@link DetectorWeigher}). Otherwise it evicts by detector count using {@code max-size}. Guava
+ * doesn't support both bounds on the same cache, and the weight bound is the one that actually tracks heap usage.
+ * </p>
+ * <p>
+ * If {@code negative-ttl} is configured, detectors that couldn't be loaded (no such detector, or the model service
+ * failed) are remembered for that long, and lookups during that time return {@code null} without calling the loader.
+ * This keeps an unknown detector or a model service outage from turning every record into a model service call.
+ * </p>
+ * <p>
+ * Once bound to a registry with {@link #bindTo(MeterRegistry, Iterable)}, hit, miss, eviction and load-time metrics are
+ * published under the cache names {@value #CACHE_NAME} and {@value #NEGATIVE_CACHE_NAME}. The registry holds the cache
+ * until it's unbound with {@link #unbind()}.
+ * </p>
+ */
+@Slf4j
+public class DetectorCache {
+    static final String CACHE_NAME = "detector-cache";
+    static final String CK_MAX_SIZE = "max-size";
+    static final String CK_MAX_WEIGHT = "max-weight";
+    static final String CK_NEGATIVE_TTL = "negative-ttl";
+    static final String NEGATIVE_CACHE_NAME = "detector-negative-cache";
+    static final long DEFAULT_MAX_SIZE = 100_000L;
+    static final long DEFAULT_MAX_WEIGHT = 0L;
+
+    private final Cache<UUID, Detector> cache;
+
+    // Null if negative caching is disabled
+    private final Cache<UUID, Boolean> absent;
+
+    // Null if not bound to a registry
+    private MeterRegistry meterRegistry;
+    private final List<Meter> meters = new ArrayList<>();
+
+    /**
+     * Creates a detector cache with the default limits.
+     */
+    public DetectorCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_MAX_WEIGHT);
+    }
+
+    /**
+     * Creates a detector cache from the {@code detector-cache} configuration block. Missing keys fall back to the
+     * defaults.
+     *
+     * @param config Detector cache configuration.
+     */
+    public DetectorCache(Config config) {
+        this(
+                config.hasPath(CK_MAX_SIZE) ? config.getLong(CK_MAX_SIZE) : DEFAULT_MAX_SIZE,
+                config.hasPath(CK_MAX_WEIGHT) ? config.getBytes(CK_MAX_WEIGHT) : DEFAULT_MAX_WEIGHT,
+                config.hasPath(CK_NEGATIVE_TTL) ? config.getDuration(CK_NEGATIVE_TTL) : Duration.ZERO);
+    }
+
+    public DetectorCache(long maxSize, long maxWeight) {
+        this(maxSize, maxWeight, Duration.ZERO);
+    }
+
+    /**
+     * Creates a detector cache.
+     *
+     * @param maxSize     Maximum number of detectors. Ignored if maxWeight is positive.
+     * @param maxWeight   Maximum estimated total detector state size in bytes, or 0 to bound by maxSize instead.
+     * @param negativeTtl How long to remember detectors that couldn't be loaded, or 0 to disable negative caching.
+     */
+    public DetectorCache(long maxSize, long maxWeight, Duration negativeTtl) {
+        isTrue(maxSize > 0, "maxSize must be strictly positive");
+        isTrue(maxWeight >= 0, "maxWeight must be non-negative");
+        notNull(negativeTtl, "negativeTtl can't be null");
+        isTrue(!negativeTtl.isNegative(), "negativeTtl must be non-negative");
+
+        val builder = CacheBuilder.newBuilder().recordStats();
+        if (maxWeight > 0) {
+            builder.maximumWeight(maxWeight).weigher(new DetectorWeigher());
+        } else {
+            builder.maximumSize(maxSize);
+        }
+        this.cache = builder.build();
+
+        if (negativeTtl.isZero()) {
+            this.absent = null;
+        } else {
+            this.absent = CacheBuilder.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterWrite(negativeTtl.toNanos(), TimeUnit.NANOSECONDS)
+                    .recordStats()
+                    .build();
+        }
+        log.info("Initialized detector cache: maxSize={}, maxWeight={}, negativeTtl={}",
+                maxSize, maxWeight, negativeTtl);
+    }
+
+    /**
+     * Publishes the cache metrics to the given registry. The tags tell this cache's meters apart from those of other
+     * detector caches bound to the same registry, which would otherwise share, and report, the first cache's meters.
+     *
+     * @param meterRegistry Meter registry.
+     * @param tags          Tags added to the cache meters.
+     */
+    public synchronized void bindTo(MeterRegistry meterRegistry, Iterable<Tag> tags) {
+        notNull(meterRegistry, "meterRegistry can't be null");
+        notNull(tags, "tags can't be null");
+        isTrue(this.meterRegistry == null, "Already bound to a meter registry");
+
+        this.meterRegistry = meterRegistry;
+        GuavaCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME, tags);
+        if (absent != null) {
+            GuavaCacheMetrics.monitor(meterRegistry, absent, NEGATIVE_CACHE_NAME, tags);
+        }
+
+        val tagList = new ArrayList<Tag>();
+        tags.forEach(tagList::add);
+        for (val meter : meterRegistry.getMeters()) {
+            val cacheName = meter.getId().getTag("cache");
+            if ((CACHE_NAME.equals(cacheName) || NEGATIVE_CACHE_NAME.equals(cacheName))
+                    && meter.getId().getTags().containsAll(tagList)) {
+                meters.add(meter);
+            }
+        }
+    }
+
+    /**
+     * Removes the cache metrics from the registry the cache is bound to, so the registry no longer holds the cache.
+     * Does nothing if the cache isn't bound.
+     */
+    public synchronized void unbind() {
+        if (meterRegistry == null) {
+            return;
+        }
+        meters.forEach(meterRegistry::remove);
+        meters.clear();
+        meterRegistry = null;
+    }
+
+    /**
+     * Returns the cached detector, if any.
+     *
+     * @param uuid Detector UUID.
+     * @return Cached detector, or {@code null} if it isn't cached.
+     */
+    public Detector getIfPresent(UUID uuid) {
+        notNull(uuid, "uuid can't be null");
+        return cache.getIfPresent(uuid);
+    }
+
+    /**
+     * Returns the cached detectors for the given UUIDs. UUIDs that aren't cached are absent from the result.
+     *
+     * @param uuids Detector UUIDs.
+     * @return Cached detectors, keyed by UUID.
+     */
+    public Map<UUID, Detector> getAllPresent(Iterable<UUID> uuids) {
+        notNull(uuids, "uuids can't be null");
+        return cache.getAllPresent(uuids);
+    }
+
+    /**
+     * Returns the cached detector, loading and caching it on a miss. Concurrent callers for the same UUID share a
+     * single load.
+     *
+     * @param uuid   Detector UUID.
+     * @param loader Detector loader, which may return {@code null} if there's no such detector.
+     * @return Detector, or {@code null} if the loader didn't find one. Null results are only cached if negative caching
+     * is enabled, as are loader exceptions: until the negative entry expires, lookups return {@code null}.
+     */
+    public Detector get(UUID uuid, Function<UUID, Detector> loader) {
+        notNull(uuid, "uuid can't be null");
+        notNull(loader, "loader can't be null");
+
+        if (isAbsent(uuid)) {
+            return null;
+        }
+        try {
+            return cache.get(uuid, () -> loader.apply(uuid));
+        } catch (CacheLoader.InvalidCacheLoadException e) {
+            // The loader returned null.
+            markAbsent(uuid);
+            return null;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            markAbsent(uuid);
+            val cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new DetectorException("Error loading detector " + uuid, cause);
+        }
+    }
+
+    /**
+     * Indicates whether the detector is negatively cached, i.e. it recently couldn't be loaded.
+     *
+     * @param uuid Detector UUID.
+     * @return Whether lookups currently return {@code null} without loading.
+     */
+    public boolean isAbsent(UUID uuid) {
+        notNull(uuid, "uuid can't be null");
+        return absent != null && absent.getIfPresent(uuid) != null;
+    }
+
+    /**
+     * Negatively caches the detector. Does nothing if negative caching is disabled.
+     *
+     * @param uuid Detector UUID.
+     */
+    public void markAbsent(UUID uuid) {
+        notNull(uuid, "uuid can't be null");
+        if (absent != null) {
+            absent.put(uuid, Boolean.TRUE);
+        }
+    }
+
+    public void put(UUID uuid, Detector detector) {
+        notNull(uuid, "uuid can't be null");
+        notNull(detector, "detector can't be null");
+        cache.put(uuid, detector);
+        clearAbsent(uuid);
+    }
+
+    public void putAll(Map<UUID, Detector> detectors) {
+        notNull(detectors, "detectors can't be null");
+        cache.putAll(detectors);
+        if (absent != null) {
+            absent.invalidateAll(detectors.keySet());
+        }
+    }
+
+    /**
+     * Removes the detector from the cache, including any negative entry, so the next lookup loads it.
+     *
+     * @param uuid Detector UUID.
+     */
+    public void invalidate(UUID uuid) {
+        notNull(uuid, "uuid can't be null");
+        cache.invalidate(uuid);
+        clearAbsent(uuid);
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    private void clearAbsent(UUID uuid) {
+        if (absent != null) {
+            absent.invalidate(uuid);
+        }
+    }
+
+    /**
+     * Returns a live, weakly consistent view of the cached detectors.
+     *
+     * @return Cached detectors, keyed by UUID.
+     */
+    public Map<UUID, Detector> asMap() {
+        return Collections.unmodifiableMap(cache.asMap());
+    }
+}
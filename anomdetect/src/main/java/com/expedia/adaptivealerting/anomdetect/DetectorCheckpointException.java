@@ -0,0 +1,31 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+/**
+ * Thrown when detector state can't be checkpointed or restored, for example because a checkpoint was written by a
+ * different detector type or state version.
+ */
+public class DetectorCheckpointException extends DetectorException {
+
+    public DetectorCheckpointException(String message) {
+        super(message);
+    }
+
+    public DetectorCheckpointException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,538 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil;
+import com.expedia.adaptivealerting.anomdetect.checkpoint.Checkpointable;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.typesafe.config.Config;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Checkpoints detector state to a local snapshot file and restores it when detectors are loaded, so restarting the
+ * {@link DetectorManager} doesn't send every detector back through its warm-up period.
+ * </p>
+ * <p>
+ * Snapshot format (version {@value #FORMAT_VERSION}):
+ * </p>
+ * <pre>
+ * header: int magic, short formatVersion
+ * record: long uuidMostSigBits, long uuidLeastSigBits, int stateLength, byte[stateLength] state
+ * </pre>
+ * <p>
+ * Records are sorted by UUID. Each record's state is the detector's {@link Checkpointable} state, which carries its own
+ * per-component type and version headers. Opening a snapshot only builds an index of UUIDs, offsets and lengths in
+ * primitive arrays. A detector's record is read with a single positional read when the detector is loaded, so
+ * restoring is lazy and costs nothing for detectors that never show up again.
+ * </p>
+ * <p>
+ * A checkpoint writes a complete new snapshot to a temporary file and atomically renames it over the old one, so a
+ * crash never leaves a torn snapshot behind. Records for detectors that aren't currently loaded are carried over from
+ * the previous snapshot. The snapshot isn't memory-mapped: on Java 8 a mapping can't be released deterministically,
+ * and a single mapping is limited to 2GB.
+ * </p>
+ */
+@Slf4j
+public class DetectorCheckpointer implements Closeable {
+    static final int MAGIC = 0x41414443;
+    static final short FORMAT_VERSION = 1;
+    static final String CK_PATH = "path";
+    static final String CK_INTERVAL = "interval";
+    static final Duration DEFAULT_INTERVAL = Duration.ofMinutes(5);
+
+    private static final int FILE_HEADER_BYTES = Integer.BYTES + Short.BYTES;
+    private static final int RECORD_HEADER_BYTES = 2 * Long.BYTES + Integer.BYTES;
+    private static final int IO_BUFFER_BYTES = 1 << 16;
+
+    @Getter
+    private final Path path;
+
+    @Getter
+    private final Duration interval;
+
+    // Guarded by this
+    private Snapshot snapshot;
+
+    // Guarded by this. Non-null while a checkpoint is being written.
+    private Set<UUID> discardedDuringCheckpoint;
+
+    /**
+     * Creates a checkpointer from the {@code detector-checkpoint} configuration block.
+     *
+     * @param config Checkpoint configuration. Requires {@code path}; {@code interval} is optional.
+     */
+    public DetectorCheckpointer(Config config) {
+        this(
+                Paths.get(config.getString(CK_PATH)),
+                config.hasPath(CK_INTERVAL) ? config.getDuration(CK_INTERVAL) : DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Creates a checkpointer, indexing the existing snapshot at the given path if there is one. A snapshot that can't
+     * be read is ignored, and will be replaced by the next checkpoint.
+     *
+     * @param path     Snapshot file.
+     * @param interval Checkpoint interval.
+     */
+    public DetectorCheckpointer(Path path, Duration interval) {
+        notNull(path, "path can't be null");
+        notNull(interval, "interval can't be null");
+        isTrue(!interval.isNegative() && !interval.isZero(), "interval must be strictly positive");
+
+        this.path = path;
+        this.interval = interval;
+        this.snapshot = Snapshot.open(path);
+        log.info("Initialized detector checkpointer: path={}, interval={}, records={}", path, interval, snapshot.size);
+    }
+
+    /**
+     * Restores the checkpointed state, if any, into a freshly built detector.
+     *
+     * @param detector Detector, built from its current params.
+     * @return {@code false} if restoring failed part way, in which case the detector may hold partially restored state
+     * and should be rebuilt. The failed record is discarded, so the rebuilt detector will start fresh.
+     */
+    public boolean restore(Detector detector) {
+        notNull(detector, "detector can't be null");
+
+        val uuid = detector.getUuid();
+        final byte[] state;
+        synchronized (this) {
+            state = snapshot.read(uuid);
+        }
+        if (state == null) {
+            return true;
+        }
+
+        try {
+            CheckpointUtil.readStateBytes(detector, state);
+            return true;
+        } catch (DetectorException e) {
+            log.warn("Discarding checkpointed state for detector {}: {}", uuid, e.getMessage());
+            discard(uuid);
+            return false;
+        }
+    }
+
+    /**
+     * Indicates whether there's checkpointed state for the given detector.
+     *
+     * @param uuid Detector UUID.
+     * @return Whether {@link #restore(Detector)} would restore state into the detector.
+     */
+    public synchronized boolean contains(UUID uuid) {
+        notNull(uuid, "uuid can't be null");
+        val i = snapshot.indexOf(uuid);
+        return i >= 0 && !snapshot.isDiscarded(i);
+    }
+
+    /**
+     * Discards the checkpointed state for the given detector, for example because the detector was updated and needs to
+     * start fresh.
+     *
+     * @param uuid Detector UUID.
+     */
+    public synchronized void discard(UUID uuid) {
+        notNull(uuid, "uuid can't be null");
+        snapshot.discard(uuid);
+        if (discardedDuringCheckpoint != null) {
+            discardedDuringCheckpoint.add(uuid);
+        }
+    }
+
+    /**
+     * Writes a new snapshot containing the state of the given detectors, plus the previous snapshot's records for
+     * detectors that aren't in the map. Callers must not classify with a detector while its state is being written;
+     * this method synchronizes on each detector while writing its state, so callers can use the same lock.
+     *
+     * @param detectors Loaded detectors.
+     * @return Number of records in the new snapshot.
+     * @throws DetectorCheckpointException if the snapshot can't be written. The previous snapshot is kept.
+     */
+    public int checkpoint(Map<UUID, Detector> detectors) {
+        notNull(detectors, "detectors can't be null");
+
+        val startMillis = System.currentTimeMillis();
+        final Snapshot previous;
+        final BitSet previousDiscarded;
+        synchronized (this) {
+            isTrue(discardedDuringCheckpoint == null, "A checkpoint is already in progress");
+            previous = snapshot;
+
+            // Discards from here on are recorded separately and applied to the new snapshot.
+            previousDiscarded = (BitSet) previous.discarded.clone();
+            discardedDuringCheckpoint = new HashSet<>();
+        }
+
+        Snapshot next = null;
+        try {
+            next = write(sortedEntries(detectors), previous, previousDiscarded);
+        } finally {
+            synchronized (this) {
+                if (next != null) {
+                    discardedDuringCheckpoint.forEach(next::discard);
+                    snapshot = next;
+                }
+                discardedDuringCheckpoint = null;
+            }
+        }
+
+        previous.close();
+        log.info("Checkpointed {} detectors to {} in {} ms",
+                next.size, path, System.currentTimeMillis() - startMillis);
+        return next.size;
+    }
+
+    /**
+     * Returns the number of records in the current snapshot, not counting discarded ones.
+     *
+     * @return Number of restorable detectors.
+     */
+    public synchronized int size() {
+        return snapshot.size - snapshot.discarded.cardinality();
+    }
+
+    @Override
+    public synchronized void close() {
+        snapshot.close();
+        snapshot = Snapshot.EMPTY;
+    }
+
+    private static Map.Entry<UUID, Detector>[] sortedEntries(Map<UUID, Detector> detectors) {
+        @SuppressWarnings("unchecked")
+        Map.Entry<UUID, Detector>[] entries = new ArrayList<>(detectors.entrySet()).toArray(new Map.Entry[0]);
+        Arrays.sort(entries, Map.Entry.comparingByKey());
+        return entries;
+    }
+
+    private Snapshot write(Map.Entry<UUID, Detector>[] entries, Snapshot previous, BitSet previousDiscarded) {
+        val tmpPath = path.resolveSibling(path.getFileName() + ".tmp");
+        val index = new Snapshot.Builder(entries.length + previous.size);
+        try {
+            val parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+
+            try (val out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpPath), IO_BUFFER_BYTES))) {
+                out.writeInt(MAGIC);
+                out.writeShort(FORMAT_VERSION);
+
+                val stateBytes = new ByteArrayOutputStream(256);
+                val stateOut = new DataOutputStream(stateBytes);
+                long offset = FILE_HEADER_BYTES;
+                int prev = 0;
+
+                // Merge the loaded detectors with the previous snapshot, keeping the records sorted by UUID.
+                for (val entry : entries) {
+                    val uuid = entry.getKey();
+                    for (; prev < previous.size && previous.compareTo(prev, uuid) < 0; prev++) {
+                        offset = copyRecord(previous, previousDiscarded, prev, out, index, offset);
+                    }
+                    val hasPrevious = prev < previous.size && previous.compareTo(prev, uuid) == 0;
+
+                    stateBytes.reset();
+                    if (!writeState(entry.getValue(), stateOut)) {
+                        // Keep the detector's last good checkpoint rather than losing it along with the new one.
+                        if (hasPrevious) {
+                            offset = copyRecord(previous, previousDiscarded, prev++, out, index, offset);
+                        }
+                        continue;
+                    }
+                    if (hasPrevious) {
+                        prev++;
+                    }
+                    index.add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), offset, stateBytes.size());
+                    out.writeLong(uuid.getMostSignificantBits());
+                    out.writeLong(uuid.getLeastSignificantBits());
+                    out.writeInt(stateBytes.size());
+                    stateBytes.writeTo(out);
+                    offset += RECORD_HEADER_BYTES + stateBytes.size();
+                }
+                for (; prev < previous.size; prev++) {
+                    offset = copyRecord(previous, previousDiscarded, prev, out, index, offset);
+                }
+            }
+
+            Files.move(tmpPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return index.build(FileChannel.open(path, StandardOpenOption.READ));
+        } catch (IOException e) {
+            throw new DetectorCheckpointException("Error writing detector snapshot " + path, e);
+        }
+    }
+
+    private static boolean writeState(Detector detector, DataOutputStream stateOut) {
+        try {
+            synchronized (detector) {
+                detector.writeState(stateOut);
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Keeping previous checkpoint for detector {}, if any: {}", detector.getUuid(), e.getMessage());
+            return false;
+        }
+    }
+
+    private static long copyRecord(
+            Snapshot previous,
+            BitSet previousDiscarded,
+            int i,
+            DataOutputStream out,
+            Snapshot.Builder index,
+            long offset) throws IOException {
+
+        if (previousDiscarded.get(i)) {
+            return offset;
+        }
+        val state = previous.readRecord(i);
+        index.add(previous.msbs[i], previous.lsbs[i], offset, state.length);
+        out.writeLong(previous.msbs[i]);
+        out.writeLong(previous.lsbs[i]);
+        out.writeInt(state.length);
+        out.write(state);
+        return offset + RECORD_HEADER_BYTES + state.length;
+    }
+
+    /**
+     * Index over a snapshot file. The index arrays are immutable once built; only the discarded set changes, under the
+     * checkpointer lock.
+     */
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(null, new long[0], new long[0], new long[0], new int[0], 0);
+
+        final FileChannel channel;
+        final long[] msbs;
+        final long[] lsbs;
+        final long[] offsets;
+        final int[] lengths;
+        final int size;
+        final BitSet discarded = new BitSet();
+
+        Snapshot(FileChannel channel, long[] msbs, long[] lsbs, long[] offsets, int[] lengths, int size) {
+            this.channel = channel;
+            this.msbs = msbs;
+            this.lsbs = lsbs;
+            this.offsets = offsets;
+            this.lengths = lengths;
+            this.size = size;
+        }
+
+        static Snapshot open(Path path) {
+            val index = new Builder(1024);
+            try (val in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), IO_BUFFER_BYTES))) {
+                val magic = in.readInt();
+                val version = in.readShort();
+                if (magic != MAGIC || version != FORMAT_VERSION) {
+                    log.warn("Ignoring detector snapshot {}: unsupported format (magic={}, version={})",
+                            path, magic, version);
+                    return EMPTY;
+                }
+
+                long offset = FILE_HEADER_BYTES;
+                while (true) {
+                    final long msb;
+                    try {
+                        msb = in.readLong();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    val lsb = in.readLong();
+                    val length = in.readInt();
+                    if (length < 0 || !index.add(msb, lsb, offset, length)) {
+                        log.warn("Ignoring corrupt detector snapshot {} at offset {}", path, offset);
+                        return EMPTY;
+                    }
+                    skipFully(in, length);
+                    offset += RECORD_HEADER_BYTES + length;
+                }
+                return index.build(FileChannel.open(path, StandardOpenOption.READ));
+            } catch (NoSuchFileException e) {
+                return EMPTY;
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable detector snapshot {}", path, e);
+                return EMPTY;
+            }
+        }
+
+        /**
+         * Returns the record's state, or {@code null} if there's no such record or it can't be read.
+         */
+        byte[] read(UUID uuid) {
+            val i = indexOf(uuid);
+            if (i < 0 || isDiscarded(i)) {
+                return null;
+            }
+            try {
+                return readRecord(i);
+            } catch (IOException e) {
+                log.warn("Error reading checkpointed state for detector {}", uuid, e);
+                return null;
+            }
+        }
+
+        byte[] readRecord(int i) throws IOException {
+            val stateBuffer = ByteBuffer.allocate(lengths[i]);
+            readFully(stateBuffer, offsets[i] + RECORD_HEADER_BYTES);
+            return stateBuffer.array();
+        }
+
+        void discard(UUID uuid) {
+            val i = indexOf(uuid);
+            if (i >= 0) {
+                discarded.set(i);
+            }
+        }
+
+        boolean isDiscarded(int i) {
+            return discarded.get(i);
+        }
+
+        /**
+         * Compares record i's UUID with the given UUID, consistently with {@link UUID#compareTo(UUID)}.
+         */
+        int compareTo(int i, UUID uuid) {
+            val result = Long.compare(msbs[i], uuid.getMostSignificantBits());
+            return result != 0 ? result : Long.compare(lsbs[i], uuid.getLeastSignificantBits());
+        }
+
+        void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.warn("Error closing detector snapshot", e);
+                }
+            }
+        }
+
+        private int indexOf(UUID uuid) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                val mid = (low + high) >>> 1;
+                val cmp = compareTo(mid, uuid);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        private void readFully(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException("Unexpected end of detector snapshot");
+                }
+            }
+        }
+
+        private static void skipFully(DataInputStream in, int length) throws IOException {
+            int remaining = length;
+            while (remaining > 0) {
+                val skipped = in.skipBytes(remaining);
+                if (skipped <= 0) {
+                    throw new EOFException("Unexpected end of detector snapshot");
+                }
+                remaining -= skipped;
+            }
+        }
+
+        /**
+         * Accumulates a sorted index.
+         */
+        static final class Builder {
+            private long[] msbs;
+            private long[] lsbs;
+            private long[] offsets;
+            private int[] lengths;
+            private int size;
+
+            Builder(int capacity) {
+                val initialCapacity = Math.max(capacity, 16);
+                this.msbs = new long[initialCapacity];
+                this.lsbs = new long[initialCapacity];
+                this.offsets = new long[initialCapacity];
+                this.lengths = new int[initialCapacity];
+            }
+
+            /**
+             * Adds a record.
+             *
+             * @return {@code false} if the record isn't strictly after the previous one
+             */
+            boolean add(long msb, long lsb, long offset, int length) {
+                if (size > 0) {
+                    val cmp = msbs[size - 1] != msb ? Long.compare(msbs[size - 1], msb) : Long.compare(lsbs[size - 1], lsb);
+                    if (cmp >= 0) {
+                        return false;
+                    }
+                }
+                if (size == msbs.length) {
+                    val newCapacity = size + (size >> 1);
+                    msbs = Arrays.copyOf(msbs, newCapacity);
+                    lsbs = Arrays.copyOf(lsbs, newCapacity);
+                    offsets = Arrays.copyOf(offsets, newCapacity);
+                    lengths = Arrays.copyOf(lengths, newCapacity);
+                }
+                msbs[size] = msb;
+                lsbs[size] = lsb;
+                offsets[size] = offset;
+                lengths[size] = length;
+                size++;
+                return true;
+            }
+
+            Snapshot build(FileChannel channel) {
+                return new Snapshot(channel, msbs, lsbs, offsets, lengths, size);
+            }
+        }
+    }
+}
@@ -16,41 +16,106 @@
 package com.expedia.adaptivealerting.anomdetect;
 
 import com.expedia.adaptivealerting.anomdetect.comp.DetectorSource;
+import com.expedia.adaptivealerting.anomdetect.comp.MetricHistorySource;
 import com.expedia.adaptivealerting.anomdetect.detector.Detector;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
 import com.expedia.adaptivealerting.core.data.MappedMetricData;
+import com.expedia.adaptivealerting.core.util.ErrorUtil;
+import com.expedia.metrics.MetricData;
+import com.google.common.collect.MapMaker;
 import com.typesafe.config.Config;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import lombok.Data;
 import lombok.Getter;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
+import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import lombok.var;
 
+import java.io.Closeable;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
 /**
  * Component that manages a given set of anomaly detectors.
  *
- * Detector manager maintains an internal cache of (UUID : Detectors).
- * This cache is kept up-to-date by polling modelservice for changes.
+ * Detector manager maintains an internal, bounded cache of (UUID : Detectors). See {@link DetectorCache}.
+ * This cache is kept up-to-date by polling modelservice for changes. Updated detectors are reloaded in place by
+ * {@link DetectorReloader}, which keeps their learned state unless the update is structural.
+ *
+ * If {@code detector-revalidation-interval} is configured, a detector whose reload fails (e.g. the model service is
+ * down) keeps being served from the cache, marked stale, and is revalidated in the background at that interval, with
+ * jitter so that an outage doesn't end in a synchronized burst of reloads. The number of stale detectors is published
+ * as the {@value #STALE_DETECTORS_METER} gauge.
  *
  * An alternative event-based approach to keep cache updated is to compare last-modified timestamp of a detector.
  * This approach however doesn't provide a way to delete an existing detector .
+ *
+ * Callers that can't block on the model service (e.g. a Kafka Streams thread) can check
+ * {@link #hasCachedDetector(UUID)} and load missing detectors on a dedicated pool with
+ * {@link #loadDetectorAsync(UUID)}. Batches for such callers go through
+ * {@link #classifyCached(List, DetectorStateStore, Set)}, which reports detectors evicted in the meantime instead of
+ * loading them.
+ *
+ * If a {@link DetectorCheckpointer} is configured, the cached detectors' state is checkpointed periodically and on
+ * {@link #close()}, and restored when detectors are loaded, so a restart doesn't put every detector back into warm-up.
+ *
+ * Callers that own the detector state themselves (e.g. in a Kafka Streams state store, so that state moves with
+ * partition ownership) classify through {@link #classify(MappedMetricData, DetectorStateStore)}.
+ *
+ * Classification latency, detector lookup latency and anomaly-level counts are published per detector type through
+ * {@link DetectorMetrics}.
+ *
+ * If {@code classification-shards} is configured, batches (see {@link #classify(List)} and
+ * {@link #classify(List, DetectorStateStore)}) are classified on that many single-threaded worker shards. Records are
+ * routed to shards by detector UUID, so each detector's records are still classified in order, by one thread, while
+ * different detectors can run on different cores. The calling thread waits for the batch and gets the results in input
+ * order. Each batch pays a handoff to the shards, which only pays off with spare cores; measure with
+ * {@code ShardedClassifyBenchmark} on the target hardware before enabling it.
+ *
+ * If {@code detector-warm-start} is configured, detectors built from scratch (no checkpointed or stored state) are fed
+ * their metric's recent history by a {@link DetectorWarmStarter} before they classify live data, so they don't sit in
+ * warm-up for hours or days. Loads that can't tell which metric the detector is for, like
+ * {@link #loadDetectorAsync(UUID)}, aren't warm started.
  */
-@RequiredArgsConstructor
 @Slf4j
-public class DetectorManager {
+public class DetectorManager implements Closeable {
     private static final String CK_DETECTOR_REFRESH_PERIOD = "detector-refresh-period";
+    private static final String CK_DETECTOR_CACHE = "detector-cache";
+    private static final String CK_DETECTOR_CHECKPOINT = "detector-checkpoint";
+    private static final String CK_DETECTOR_LOADER_THREADS = "detector-loader-threads";
+    private static final String CK_DETECTOR_REVALIDATION_INTERVAL = "detector-revalidation-interval";
+    private static final String CK_CLASSIFICATION_SHARDS = "classification-shards";
+    private static final String CK_DETECTOR_WARM_START = "detector-warm-start";
+    static final int DEFAULT_DETECTOR_LOADER_THREADS = 4;
+    static final String STALE_DETECTORS_METER = "detector.stale";
+    static final double REVALIDATION_JITTER = 0.2;
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
 
     @Getter
@@ -59,14 +124,128 @@ public class DetectorManager {
 
     private int detectorRefreshTimePeriod;
 
-    // TODO Consider making this an explicit class so we can mock it and verify interactions
-    //  against it. [WLW]
-    private final Map<UUID, Detector> cachedDetectors = new HashMap<>();
+    private final DetectorCache cachedDetectors;
+
+    // Null if checkpointing is disabled
+    private final DetectorCheckpointer checkpointer;
+
+    private final ExecutorService detectorLoader;
+    private final ConcurrentMap<UUID, CompletableFuture<Boolean>> loadsInFlight = new ConcurrentHashMap<>();
+
+    private final DetectorReloader reloader;
+
+    private final MeterRegistry meterRegistry;
+    private final Gauge staleDetectorsGauge;
+
+    private final DetectorMetrics metrics = new DetectorMetrics();
+
+    // Detectors classify into a per-thread result, so the only allocation per classification is the returned result.
+    private static final ThreadLocal<MutableAnomalyResult> CLASSIFY_RESULT =
+            ThreadLocal.withInitial(MutableAnomalyResult::new);
+
+    // Reloaded detectors that already hold the state they should continue from, so a DetectorStateStore must adopt
+    // them rather than restore its stored state into them. Weak, so evicted detectors don't linger here.
+    private final Set<Detector> reloadedDetectors = Collections.newSetFromMap(new MapMaker().weakKeys().makeMap());
+
+    // Null if stale-while-revalidate is disabled
+    private final Duration revalidationInterval;
+
+    // Cached detectors whose last reload failed
+    private final Set<UUID> staleDetectors = ConcurrentHashMap.newKeySet();
+
+    // Empty if sharded classification is disabled
+    private final ExecutorService[] shards;
+
+    // Null if warm start is disabled
+    private final DetectorWarmStarter warmStarter;
 
     public DetectorManager(DetectorSource detectorSource, Config config) {
+        this(detectorSource, null, config);
+    }
+
+    /**
+     * Creates a detector manager from the given configuration.
+     *
+     * @param detectorSource      Detector source.
+     * @param metricHistorySource Metric history source for warm starts. Required if {@code detector-warm-start} is
+     *                            configured, and ignored otherwise.
+     * @param config              Detector manager configuration.
+     */
+    public DetectorManager(DetectorSource detectorSource, MetricHistorySource metricHistorySource, Config config) {
+        this(detectorSource, new Settings()
+                .setCachedDetectors(buildCache(config))
+                .setDetectorRefreshTimePeriod(config.getInt(CK_DETECTOR_REFRESH_PERIOD))
+                .setCheckpointer(buildCheckpointer(config))
+                .setDetectorLoaderThreads(config.hasPath(CK_DETECTOR_LOADER_THREADS)
+                        ? config.getInt(CK_DETECTOR_LOADER_THREADS)
+                        : DEFAULT_DETECTOR_LOADER_THREADS)
+                .setRevalidationInterval(config.hasPath(CK_DETECTOR_REVALIDATION_INTERVAL)
+                        ? config.getDuration(CK_DETECTOR_REVALIDATION_INTERVAL)
+                        : null)
+                .setClassificationShards(config.hasPath(CK_CLASSIFICATION_SHARDS)
+                        ? config.getInt(CK_CLASSIFICATION_SHARDS)
+                        : 0)
+                .setWarmStarter(buildWarmStarter(metricHistorySource, config)));
+    }
+
+    /**
+     * Creates a detector manager.
+     *
+     * @param detectorSource Detector source.
+     * @param settings       Detector manager settings.
+     */
+    public DetectorManager(DetectorSource detectorSource, Settings settings) {
+        notNull(detectorSource, "detectorSource can't be null");
+        notNull(settings, "settings can't be null");
+        settings.validate();
+
         this.detectorSource = detectorSource;
-        this.detectorRefreshTimePeriod = config.getInt(CK_DETECTOR_REFRESH_PERIOD);
+        this.cachedDetectors = settings.getCachedDetectors();
+        this.meterRegistry = settings.getMeterRegistry();
+        this.reloader = new DetectorReloader(meterRegistry);
+        this.detectorRefreshTimePeriod = settings.getDetectorRefreshTimePeriod();
+        this.checkpointer = settings.getCheckpointer();
+        this.revalidationInterval = settings.getRevalidationInterval();
+        this.warmStarter = settings.getWarmStarter();
+        this.detectorLoader = Executors.newFixedThreadPool(settings.getDetectorLoaderThreads(), runnable -> {
+            val thread = new Thread(runnable, "detector-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.shards = new ExecutorService[settings.getClassificationShards()];
+        for (int i = 0; i < shards.length; i++) {
+            val name = "detector-shard-" + i;
+            shards[i] = Executors.newSingleThreadExecutor(runnable -> {
+                val thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
         this.initScheduler();
+        cachedDetectors.bindTo(meterRegistry, settings.getMeterTags());
+        this.staleDetectorsGauge = Gauge.builder(STALE_DETECTORS_METER, staleDetectors, Set::size)
+                .tags(settings.getMeterTags())
+                .register(meterRegistry);
+    }
+
+    private static DetectorCache buildCache(Config config) {
+        return config.hasPath(CK_DETECTOR_CACHE)
+                ? new DetectorCache(config.getConfig(CK_DETECTOR_CACHE))
+                : new DetectorCache();
+    }
+
+    private static DetectorCheckpointer buildCheckpointer(Config config) {
+        return config.hasPath(CK_DETECTOR_CHECKPOINT)
+                ? new DetectorCheckpointer(config.getConfig(CK_DETECTOR_CHECKPOINT))
+                : null;
+    }
+
+    private static DetectorWarmStarter buildWarmStarter(MetricHistorySource metricHistorySource, Config config) {
+        if (!config.hasPath(CK_DETECTOR_WARM_START)) {
+            return null;
+        }
+        notNull(metricHistorySource, "metricHistorySource can't be null if warm start is configured");
+        return new DetectorWarmStarter(metricHistorySource, config.getConfig(CK_DETECTOR_WARM_START));
     }
 
     private void initScheduler() {
@@ -78,6 +257,17 @@ public class DetectorManager {
                 log.error("Error refreshing detectors", e);
             }
         }, 1, detectorRefreshTimePeriod, TimeUnit.MINUTES);
+
+        if (checkpointer != null) {
+            val intervalMillis = checkpointer.getInterval().toMillis();
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    this.checkpoint();
+                } catch (Exception e) {
+                    log.error("Error checkpointing detectors", e);
+                }
+            }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
@@ -90,43 +280,584 @@ public class DetectorManager {
     public AnomalyResult classify(MappedMetricData mappedMetricData) {
         notNull(mappedMetricData, "mappedMetricData can't be null");
 
-        val detector = detectorFor(mappedMetricData);
+        val detector = detectorFor(mappedMetricData, true);
         if (detector == null) {
             log.warn("No detector for mappedMetricData={}", mappedMetricData);
             return null;
         }
         val metricData = mappedMetricData.getMetricData();
-        return detector.classify(metricData);
+        return classify(detector, metricData);
     }
 
-    private Detector detectorFor(MappedMetricData mappedMetricData) {
+    /**
+     * Classifies the mapped metric data, keeping the detector's state in the given state store rather than only in the
+     * cached detector. The stored state is restored the first time the store sees a loaded detector, and the updated
+     * state is saved after each classification.
+     *
+     * @param mappedMetricData Mapped metric data.
+     * @param stateStore       Detector state store.
+     * @return The anomaly result, or {@code null} if there's no associated detector or its stored state couldn't be
+     * restored. In the latter case the detector is evicted, so the next classification starts from a fresh detector.
+     */
+    public AnomalyResult classify(MappedMetricData mappedMetricData, DetectorStateStore stateStore) {
         notNull(mappedMetricData, "mappedMetricData can't be null");
+        notNull(stateStore, "stateStore can't be null");
 
-        val detectorUuid = mappedMetricData.getDetectorUuid();
-        var detector = cachedDetectors.get(detectorUuid);
+        // A detector with stored state is about to get it back, so there's no point warm starting it.
+        val detector = detectorFor(mappedMetricData, !stateStore.hasState(mappedMetricData.getDetectorUuid()));
+        if (detector == null) {
+            log.warn("No detector for mappedMetricData={}", mappedMetricData);
+            return null;
+        }
+        synchronized (detector) {
+            if (reloadedDetectors.remove(detector)) {
+                stateStore.adopt(detector);
+            } else if (!stateStore.attach(detector)) {
+                cachedDetectors.invalidate(mappedMetricData.getDetectorUuid());
+                return null;
+            }
+            val anomalyResult = classify(detector, mappedMetricData.getMetricData());
+            stateStore.save(detector);
+            return anomalyResult;
+        }
+    }
+
+    /**
+     * Classifies a batch of mapped metric data. Detectors missing from the cache are loaded with a single
+     * {@link DetectorSource#findDetectors(java.util.Collection)} call rather than one call per detector, which matters
+     * when the cache is cold (e.g. right after a restart).
+     *
+     * @param mappedMetricDataList Mapped metric data batch.
+     * @return The anomaly results, in input order. An entry is {@code null} if there's no associated detector, or if
+     * its classification failed, in which case the error is logged.
+     */
+    public List<AnomalyResult> classify(List<MappedMetricData> mappedMetricDataList) {
+        notNull(mappedMetricDataList, "mappedMetricDataList can't be null");
+        return classify(mappedMetricDataList, detectorsFor(mappedMetricDataList, null));
+    }
+
+    /**
+     * Classifies a batch of mapped metric data, keeping the detectors' state in the given state store (see
+     * {@link #classify(MappedMetricData, DetectorStateStore)}). The state store is only used on the calling thread,
+     * before and after the batch is classified.
+     *
+     * @param mappedMetricDataList Mapped metric data batch.
+     * @param stateStore           Detector state store.
+     * @return The anomaly results, in input order. An entry is {@code null} if there's no associated detector, its
+     * stored state couldn't be restored, or its classification failed.
+     */
+    public List<AnomalyResult> classify(List<MappedMetricData> mappedMetricDataList, DetectorStateStore stateStore) {
+        notNull(mappedMetricDataList, "mappedMetricDataList can't be null");
+        notNull(stateStore, "stateStore can't be null");
+        return classify(mappedMetricDataList, stateStore, detectorsFor(mappedMetricDataList, stateStore));
+    }
+
+    /**
+     * Like {@link #classify(List, DetectorStateStore)}, but never loads a detector, so it doesn't block on the model
+     * service. Entries whose detector isn't cached (e.g. it was evicted since the caller checked
+     * {@link #hasCachedDetector(UUID)}) aren't classified; their detector UUIDs are added to {@code uncached} instead,
+     * so the caller can load them with {@link #loadDetectorAsync(UUID)} and classify the records again afterwards.
+     *
+     * @param mappedMetricDataList Mapped metric data batch.
+     * @param stateStore           Detector state store.
+     * @param uncached             Set the UUIDs of uncached detectors are added to.
+     * @return The anomaly results, in input order. An entry is {@code null} if its detector isn't cached, there's no
+     * associated detector, its stored state couldn't be restored, or its classification failed.
+     */
+    public List<AnomalyResult> classifyCached(
+            List<MappedMetricData> mappedMetricDataList,
+            DetectorStateStore stateStore,
+            Set<UUID> uncached) {
+
+        notNull(mappedMetricDataList, "mappedMetricDataList can't be null");
+        notNull(stateStore, "stateStore can't be null");
+        notNull(uncached, "uncached can't be null");
+
+        val uuids = uuidsOf(mappedMetricDataList);
+        val detectors = new HashMap<UUID, Detector>(cachedDetectors.getAllPresent(uuids));
+        uuids.removeAll(detectors.keySet());
+        uuids.removeIf(cachedDetectors::isAbsent);
+        uncached.addAll(uuids);
+        return classify(mappedMetricDataList, stateStore, detectors);
+    }
+
+    private List<AnomalyResult> classify(
+            List<MappedMetricData> mappedMetricDataList,
+            DetectorStateStore stateStore,
+            Map<UUID, Detector> detectors) {
+
+        val iter = detectors.entrySet().iterator();
+        while (iter.hasNext()) {
+            val entry = iter.next();
+            val detector = entry.getValue();
+            synchronized (detector) {
+                if (reloadedDetectors.remove(detector)) {
+                    stateStore.adopt(detector);
+                } else if (!stateStore.attach(detector)) {
+                    cachedDetectors.invalidate(entry.getKey());
+                    iter.remove();
+                }
+            }
+        }
+
+        val results = classify(mappedMetricDataList, detectors);
+        for (val detector : detectors.values()) {
+            synchronized (detector) {
+                stateStore.save(detector);
+            }
+        }
+        return results;
+    }
+
+    private List<AnomalyResult> classify(List<MappedMetricData> mappedMetricDataList, Map<UUID, Detector> detectors) {
+        val results = new AnomalyResult[mappedMetricDataList.size()];
+        if (shards.length == 0) {
+            for (int i = 0; i < results.length; i++) {
+                results[i] = classify(mappedMetricDataList.get(i), detectors);
+            }
+            return Arrays.asList(results);
+        }
+
+        // Group the indices by shard, keeping input order within each shard.
+        val shardOf = new int[results.length];
+        val shardSizes = new int[shards.length];
+        for (int i = 0; i < results.length; i++) {
+            shardOf[i] = shardOf(mappedMetricDataList.get(i).getDetectorUuid());
+            shardSizes[shardOf[i]]++;
+        }
+        val shardIndices = new int[shards.length][];
+        for (int s = 0; s < shards.length; s++) {
+            shardIndices[s] = new int[shardSizes[s]];
+            shardSizes[s] = 0;
+        }
+        for (int i = 0; i < results.length; i++) {
+            val s = shardOf[i];
+            shardIndices[s][shardSizes[s]++] = i;
+        }
+
+        val futures = new ArrayList<CompletableFuture<Void>>(shards.length);
+        for (int s = 0; s < shards.length; s++) {
+            val indices = shardIndices[s];
+            if (indices.length > 0) {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    for (val i : indices) {
+                        results[i] = classify(mappedMetricDataList.get(i), detectors);
+                    }
+                }, shards[s]));
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        return Arrays.asList(results);
+    }
+
+    private AnomalyResult classify(MappedMetricData mappedMetricData, Map<UUID, Detector> detectors) {
+        val detector = detectors.get(mappedMetricData.getDetectorUuid());
         if (detector == null) {
-            detector = detectorSource.findDetector(detectorUuid);
-            cachedDetectors.put(detectorUuid, detector);
-        } else {
-            log.trace("Got cached detector");
+            log.warn("No detector for mappedMetricData={}", mappedMetricData);
+            return null;
+        }
+        try {
+            return classify(detector, mappedMetricData.getMetricData());
+        } catch (Exception e) {
+            log.error("Classification error: mappedMetricData={}, error={}",
+                    mappedMetricData,
+                    ErrorUtil.singleLineExceptionTrace(e));
+            return null;
         }
+    }
+
+    private int shardOf(UUID detectorUuid) {
+        return Math.floorMod(detectorUuid.hashCode(), shards.length);
+    }
+
+    private AnomalyResult classify(Detector detector, MetricData metricData) {
+        // Detectors aren't thread-safe, and the checkpointer locks the detector while writing its state.
+        synchronized (detector) {
+            val start = metrics.start();
+            val out = CLASSIFY_RESULT.get();
+            detector.classify(metricData, out);
+            metrics.classified(detector, out.getAnomalyLevel(), start);
+            return out.toAnomalyResult();
+        }
+    }
+
+    /**
+     * @param stateStore State store the detectors' state is kept in, or {@code null}
+     */
+    private Map<UUID, Detector> detectorsFor(
+            List<MappedMetricData> mappedMetricDataList,
+            DetectorStateStore stateStore) {
+
+        val uuids = uuidsOf(mappedMetricDataList);
+        val detectors = new HashMap<UUID, Detector>(cachedDetectors.getAllPresent(uuids));
+        uuids.removeAll(detectors.keySet());
+        uuids.removeIf(cachedDetectors::isAbsent);
+        if (!uuids.isEmpty()) {
+            log.debug("Loading {} uncached detectors", uuids.size());
+            val loaded = new HashMap<UUID, Detector>(detectorSource.findDetectors(uuids));
+            prepare(loaded, warmStartData(mappedMetricDataList, loaded.keySet(), stateStore));
+            loaded.values().removeIf(Objects::isNull);
+            cachedDetectors.putAll(loaded);
+            detectors.putAll(loaded);
+
+            uuids.stream()
+                    .filter(uuid -> !loaded.containsKey(uuid))
+                    .forEach(cachedDetectors::markAbsent);
+        }
+        return detectors;
+    }
+
+    private static Set<UUID> uuidsOf(List<MappedMetricData> mappedMetricDataList) {
+        val uuids = new HashSet<UUID>();
+        for (val mappedMetricData : mappedMetricDataList) {
+            notNull(mappedMetricData, "mappedMetricData can't be null");
+            uuids.add(mappedMetricData.getDetectorUuid());
+        }
+        return uuids;
+    }
+
+    /**
+     * Returns the first metric data for each of the given detectors that should be warm started, i.e. all of them
+     * unless their state is in the state store.
+     */
+    private Map<UUID, MetricData> warmStartData(
+            List<MappedMetricData> mappedMetricDataList,
+            Set<UUID> uuids,
+            DetectorStateStore stateStore) {
+
+        if (warmStarter == null) {
+            return Collections.emptyMap();
+        }
+        val warmStartData = new HashMap<UUID, MetricData>();
+        for (val mappedMetricData : mappedMetricDataList) {
+            val uuid = mappedMetricData.getDetectorUuid();
+            if (uuids.contains(uuid) && !warmStartData.containsKey(uuid)) {
+                warmStartData.put(uuid, mappedMetricData.getMetricData());
+            }
+        }
+        if (stateStore != null) {
+            warmStartData.keySet().removeIf(stateStore::hasState);
+        }
+        return warmStartData;
+    }
+
+    /**
+     * Prepares freshly loaded detectors in place (see {@link #prepare(UUID, Detector, MetricData)}). Warm starts wait
+     * on the metric source, so they run on the detector loader pool rather than one after the other.
+     */
+    private void prepare(Map<UUID, Detector> loaded, Map<UUID, MetricData> warmStartData) {
+        if (warmStartData.isEmpty()) {
+            loaded.replaceAll((uuid, detector) -> prepare(uuid, detector, null));
+            return;
+        }
+        val prepared = new HashMap<UUID, CompletableFuture<Detector>>();
+        loaded.forEach((uuid, detector) -> prepared.put(uuid, CompletableFuture.supplyAsync(
+                () -> prepare(uuid, detector, warmStartData.get(uuid)),
+                detectorLoader)));
+        prepared.forEach((uuid, future) -> loaded.put(uuid, future.join()));
+    }
+
+    /**
+     * Indicates whether the detector is cached, in which case classifying its metric data won't block on the model
+     * service.
+     *
+     * @param detectorUuid Detector UUID.
+     * @return Whether the detector is cached.
+     */
+    public boolean hasCachedDetector(UUID detectorUuid) {
+        notNull(detectorUuid, "detectorUuid can't be null");
+        return cachedDetectors.getIfPresent(detectorUuid) != null;
+    }
+
+    /**
+     * Loads the detector into the cache on the detector loader pool. Concurrent calls for the same detector share a
+     * single load.
+     *
+     * @param detectorUuid Detector UUID.
+     * @return Future that completes with {@code true} once the detector is cached, or {@code false} if there's no
+     * such detector. It completes exceptionally if the load fails.
+     */
+    public CompletableFuture<Boolean> loadDetectorAsync(UUID detectorUuid) {
+        notNull(detectorUuid, "detectorUuid can't be null");
+        return loadDetectorAsync(detectorUuid, null);
+    }
+
+    /**
+     * Like {@link #loadDetectorAsync(UUID)}, but if warm start is enabled and the detector has to be built from
+     * scratch, it's also warm started with the history of the mapped metric data's metric that precedes it. Callers
+     * that keep detector state in a {@link DetectorStateStore} should use {@link #loadDetectorAsync(UUID)} instead when
+     * the store has state for the detector, as that state replaces whatever the warm start learned.
+     *
+     * @param mappedMetricData First mapped metric data for the detector.
+     * @return Future that completes with {@code true} once the detector is cached, or {@code false} if there's no
+     * such detector. It completes exceptionally if the load fails.
+     */
+    public CompletableFuture<Boolean> loadDetectorAsync(MappedMetricData mappedMetricData) {
+        notNull(mappedMetricData, "mappedMetricData can't be null");
+        return loadDetectorAsync(mappedMetricData.getDetectorUuid(), mappedMetricData.getMetricData());
+    }
+
+    private CompletableFuture<Boolean> loadDetectorAsync(UUID detectorUuid, MetricData warmStartData) {
+        val inFlight = loadsInFlight.get(detectorUuid);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        val future = new CompletableFuture<Boolean>();
+        val existing = loadsInFlight.putIfAbsent(detectorUuid, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        try {
+            detectorLoader.execute(() -> {
+                try {
+                    val detector = cachedDetectors.get(detectorUuid, uuid -> loadDetector(uuid, warmStartData));
+                    future.complete(detector != null);
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    loadsInFlight.remove(detectorUuid, future);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            loadsInFlight.remove(detectorUuid, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private Detector detectorFor(MappedMetricData mappedMetricData, boolean warmStart) {
+        notNull(mappedMetricData, "mappedMetricData can't be null");
+
+        val start = metrics.start();
+        val detectorUuid = mappedMetricData.getDetectorUuid();
+        val warmStartData = warmStart ? mappedMetricData.getMetricData() : null;
+        val detector = cachedDetectors.get(detectorUuid, uuid -> loadDetector(uuid, warmStartData));
+        metrics.lookedUp(detector, start);
         return detector;
     }
 
+    private Detector loadDetector(UUID uuid, MetricData warmStartData) {
+        return prepare(uuid, detectorSource.findDetector(uuid), warmStartData);
+    }
+
     /**
-     * Remove detectors from cache that have been modified in last `timePeriod` minutes.
-     * The deleted detectors will be cleaned up and the detectors modified will be reloaded
-     * when corresponding mapped-metric comes in.
+     * Restores the freshly built detector's checkpointed state if there is any, and otherwise warm starts it.
+     *
+     * @param warmStartData First live metric data for the detector, or {@code null} not to warm start it
+     * @return The detector, which is rebuilt if its checkpointed state couldn't be restored
+     */
+    private Detector prepare(UUID uuid, Detector detector, MetricData warmStartData) {
+        if (detector != null && checkpointer != null && checkpointer.contains(uuid)) {
+            if (checkpointer.restore(detector)) {
+                return detector;
+            }
+            // The checkpointed state has been discarded, so the rebuilt detector starts from scratch.
+            detector = detectorSource.findDetector(uuid);
+        }
+        if (detector != null && warmStarter != null && warmStartData != null) {
+            warmStarter.warmStart(detector, warmStartData);
+        }
+        return detector;
+    }
+
+    /**
+     * Reload cached detectors that have been modified in last `timePeriod` minutes, carrying their state over where
+     * the update allows it (see {@link DetectorReloader}). Deleted detectors, and updated detectors that aren't cached,
+     * are evicted; the latter will be loaded when corresponding mapped-metric comes in.
      */
     List<UUID> detectorMapRefresh() {
 
         var updatedDetectors = new ArrayList<UUID>();
         detectorSource.findUpdatedDetectors(detectorRefreshTimePeriod).forEach(key -> {
             updatedDetectors.add(key);
-            cachedDetectors.remove(key);
+
+            // Stale detectors are already being revalidated, which picks up the update too.
+            if (!staleDetectors.contains(key)) {
+                reload(key);
+            }
         });
 
-        log.info("Removed detectors on refresh : {}", updatedDetectors);
+        log.info("Reloaded detectors on refresh : {}", updatedDetectors);
         return updatedDetectors;
     }
+
+    private void reload(UUID uuid) {
+        val cached = cachedDetectors.getIfPresent(uuid);
+        Detector updated = null;
+        if (cached != null) {
+            try {
+                updated = detectorSource.findDetector(uuid);
+            } catch (Exception e) {
+                if (revalidationInterval != null) {
+                    log.warn("Error reloading detector {}, serving it stale: {}", uuid, e.toString());
+                    markStale(uuid);
+                    return;
+                }
+                log.error("Error reloading detector {}", uuid, e);
+            }
+        }
+        staleDetectors.remove(uuid);
+        if (updated == null) {
+            evict(uuid);
+            return;
+        }
+
+        synchronized (cached) {
+            val outcome = reloader.reload(cached, updated);
+            if (outcome == DetectorReloader.Outcome.UNCHANGED) {
+                return;
+            }
+            if (outcome == DetectorReloader.Outcome.RESET && checkpointer != null) {
+                checkpointer.discard(uuid);
+            }
+            reloadedDetectors.add(updated);
+            cachedDetectors.put(uuid, updated);
+        }
+    }
+
+    private void markStale(UUID uuid) {
+        staleDetectors.add(uuid);
+        val jitter = 1.0 + REVALIDATION_JITTER * (2.0 * ThreadLocalRandom.current().nextDouble() - 1.0);
+        val delayMillis = (long) (revalidationInterval.toMillis() * jitter);
+        try {
+            scheduler.schedule(() -> revalidate(uuid), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    private void revalidate(UUID uuid) {
+        try {
+            if (cachedDetectors.getIfPresent(uuid) == null) {
+                // Evicted in the meantime, so it'll be loaded from scratch anyway.
+                staleDetectors.remove(uuid);
+            } else {
+                reload(uuid);
+            }
+        } catch (Exception e) {
+            log.error("Error revalidating detector {}", uuid, e);
+        }
+    }
+
+    /**
+     * Returns the number of detectors served stale because their last reload failed.
+     *
+     * @return Number of stale detectors.
+     */
+    public int getStaleDetectorCount() {
+        return staleDetectors.size();
+    }
+
+    private void evict(UUID uuid) {
+        cachedDetectors.invalidate(uuid);
+        if (checkpointer != null) {
+            checkpointer.discard(uuid);
+        }
+    }
+
+    /**
+     * Checkpoints the cached detectors' state. Does nothing if checkpointing is disabled.
+     *
+     * @return Number of detectors in the snapshot, or 0 if checkpointing is disabled.
+     */
+    public int checkpoint() {
+        return checkpointer == null ? 0 : checkpointer.checkpoint(cachedDetectors.asMap());
+    }
+
+    /**
+     * Stops loading detectors, stops the refresh and checkpoint tasks, writes a final checkpoint and removes the cache
+     * and stale detector meters from the meter registry.
+     */
+    @Override
+    public void close() {
+        cachedDetectors.unbind();
+        meterRegistry.remove(staleDetectorsGauge);
+        detectorLoader.shutdownNow();
+        for (val shard : shards) {
+            shard.shutdown();
+        }
+
+        // Not shutdownNow(): interrupting a running checkpoint would close its file channel.
+        scheduler.shutdown();
+        if (checkpointer != null) {
+            try {
+                scheduler.awaitTermination(1, TimeUnit.MINUTES);
+                checkpoint();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Error writing final detector checkpoint", e);
+            } finally {
+                checkpointer.close();
+            }
+        }
+    }
+
+    /**
+     * {@link DetectorManager} settings. Everything but the cache and refresh period is optional and defaults to off.
+     */
+    @Data
+    @Accessors(chain = true)
+    public static final class Settings {
+
+        /**
+         * Detector cache.
+         */
+        private DetectorCache cachedDetectors = new DetectorCache();
+
+        /**
+         * Registry for the cache, reload and stale detector meters.
+         */
+        private MeterRegistry meterRegistry = Metrics.globalRegistry;
+
+        /**
+         * Tags added to the cache and stale detector meters. Detector managers sharing a registry need different tags,
+         * or their meters clash.
+         */
+        private Tags meterTags = Tags.empty();
+
+        /**
+         * Detector refresh period in minutes.
+         */
+        private int detectorRefreshTimePeriod;
+
+        /**
+         * Detector state checkpointer, or {@code null} to disable checkpointing.
+         */
+        private DetectorCheckpointer checkpointer;
+
+        /**
+         * Number of threads loading detectors for {@link DetectorManager#loadDetectorAsync(UUID)}.
+         */
+        private int detectorLoaderThreads = DEFAULT_DETECTOR_LOADER_THREADS;
+
+        /**
+         * Interval at which detectors whose reload failed are retried while still being served, or {@code null} to
+         * evict them instead.
+         */
+        private Duration revalidationInterval;
+
+        /**
+         * Number of worker shards classifying batches, or 0 to classify them on the calling thread.
+         */
+        private int classificationShards;
+
+        /**
+         * Detector warm starter, or {@code null} to disable warm starts.
+         */
+        private DetectorWarmStarter warmStarter;
+
+        public void validate() {
+            notNull(cachedDetectors, "cachedDetectors can't be null");
+            notNull(meterRegistry, "meterRegistry can't be null");
+            notNull(meterTags, "meterTags can't be null");
+            isTrue(detectorRefreshTimePeriod > 0, "detectorRefreshTimePeriod must be strictly positive");
+            isTrue(detectorLoaderThreads > 0, "detectorLoaderThreads must be strictly positive");
+            isTrue(revalidationInterval == null
+                            || !(revalidationInterval.isNegative() || revalidationInterval.isZero()),
+                    "revalidationInterval must be strictly positive");
+            isTrue(classificationShards >= 0, "classificationShards can't be negative");
+        }
+    }
 }
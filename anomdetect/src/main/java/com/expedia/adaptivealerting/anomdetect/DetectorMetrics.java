@@ -0,0 +1,219 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.expedia.adaptivealerting.anomdetect.detector.ConstantThresholdDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.CusumDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.IndividualsDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.HoltWintersForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MedianPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MultiSeasonalPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PewmaPointForecaster;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.val;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Hot-path meters for detectors, tagged by {@link DetectorType}:
+ * </p>
+ * <ul>
+ * <li>{@value #CLASSIFY_METER}: classification latency.</li>
+ * <li>{@value #LOOKUP_METER}: detector cache lookup latency, including the load on a cache miss.</li>
+ * <li>{@value #BUILD_METER}: detector construction time.</li>
+ * <li>{@value #CLASSIFICATIONS_METER}: classifications, tagged by phase ({@code warmup} or {@code active}).</li>
+ * <li>{@value #ANOMALIES_METER}: classifications, tagged by anomaly level.</li>
+ * </ul>
+ * <p>
+ * It's cheap enough to leave on in production: all meters are registered up front, so recording doesn't allocate, and
+ * the classify and lookup timers are sampled, reading the clock for only one in {@code sampleInterval} calls. Counters
+ * aren't sampled.
+ * </p>
+ */
+public final class DetectorMetrics {
+    static final String CLASSIFY_METER = "detector.classify";
+    static final String LOOKUP_METER = "detector.lookup";
+    static final String BUILD_METER = "detector.build";
+    static final String CLASSIFICATIONS_METER = "detector.classifications";
+    static final String ANOMALIES_METER = "detector.anomalies";
+    static final int DEFAULT_SAMPLE_INTERVAL = 64;
+
+    private static final long NOT_SAMPLED = Long.MIN_VALUE;
+    private static final int WARMUP = 0;
+    private static final int ACTIVE = 1;
+
+    /**
+     * Detector type tag.
+     */
+    public enum DetectorType {
+        EWMA("ewma"),
+        PEWMA("pewma"),
+        HOLT_WINTERS("holtwinters"),
+        MEDIAN("median"),
+        MULTI_SEASONAL("multiseasonal"),
+        CUSUM("cusum"),
+        INDIVIDUALS("individuals"),
+        CONSTANT("constant"),
+        OTHER("other");
+
+        private final String tag;
+
+        DetectorType(String tag) {
+            this.tag = tag;
+        }
+
+        /**
+         * Returns the detector's type. Forecasting detectors are typed by their point forecaster.
+         *
+         * @param detector Detector.
+         * @return Detector type, {@link #OTHER} if it isn't one of the known types.
+         */
+        public static DetectorType of(Detector detector) {
+            if (detector instanceof ForecastingDetector) {
+                val pointForecaster = ((ForecastingDetector) detector).getPointForecaster();
+                if (pointForecaster instanceof EwmaPointForecaster) {
+                    return EWMA;
+                } else if (pointForecaster instanceof PewmaPointForecaster) {
+                    return PEWMA;
+                } else if (pointForecaster instanceof HoltWintersForecaster) {
+                    return HOLT_WINTERS;
+                } else if (pointForecaster instanceof MedianPointForecaster) {
+                    return MEDIAN;
+                } else if (pointForecaster instanceof MultiSeasonalPointForecaster) {
+                    return MULTI_SEASONAL;
+                }
+            } else if (detector instanceof CusumDetector) {
+                return CUSUM;
+            } else if (detector instanceof IndividualsDetector) {
+                return INDIVIDUALS;
+            } else if (detector instanceof ConstantThresholdDetector) {
+                return CONSTANT;
+            }
+            return OTHER;
+        }
+    }
+
+    private final int sampleInterval;
+    private final Timer[] classifyTimers;
+    private final Timer[] lookupTimers;
+    private final Timer[] buildTimers;
+    private final Counter[][] phaseCounters;
+    private final Counter[][] levelCounters;
+
+    /**
+     * Creates detector metrics on the global registry, with the default sample interval.
+     */
+    public DetectorMetrics() {
+        this(Metrics.globalRegistry, DEFAULT_SAMPLE_INTERVAL);
+    }
+
+    /**
+     * Creates detector metrics.
+     *
+     * @param meterRegistry  Meter registry.
+     * @param sampleInterval Average number of calls per timed call. 1 times every call.
+     */
+    public DetectorMetrics(MeterRegistry meterRegistry, int sampleInterval) {
+        notNull(meterRegistry, "meterRegistry can't be null");
+        isTrue(sampleInterval > 0, "sampleInterval must be strictly positive");
+
+        this.sampleInterval = sampleInterval;
+        val types = DetectorType.values();
+        val levels = AnomalyLevel.values();
+        this.classifyTimers = new Timer[types.length];
+        this.lookupTimers = new Timer[types.length];
+        this.buildTimers = new Timer[types.length];
+        this.phaseCounters = new Counter[types.length][2];
+        this.levelCounters = new Counter[types.length][levels.length];
+        for (val type : types) {
+            val i = type.ordinal();
+            classifyTimers[i] = meterRegistry.timer(CLASSIFY_METER, "type", type.tag);
+            lookupTimers[i] = meterRegistry.timer(LOOKUP_METER, "type", type.tag);
+            buildTimers[i] = meterRegistry.timer(BUILD_METER, "type", type.tag);
+            phaseCounters[i][WARMUP] = meterRegistry.counter(CLASSIFICATIONS_METER, "type", type.tag, "phase", "warmup");
+            phaseCounters[i][ACTIVE] = meterRegistry.counter(CLASSIFICATIONS_METER, "type", type.tag, "phase", "active");
+            for (val level : levels) {
+                levelCounters[i][level.ordinal()] = meterRegistry.counter(
+                        ANOMALIES_METER, "type", type.tag, "level", level.name().toLowerCase());
+            }
+        }
+    }
+
+    /**
+     * Starts timing a classification or lookup, if this call is sampled.
+     *
+     * @return Start time to pass to {@link #classified(Detector, AnomalyLevel, long)} or
+     * {@link #lookedUp(Detector, long)}.
+     */
+    public long start() {
+        if (sampleInterval > 1 && ThreadLocalRandom.current().nextInt(sampleInterval) != 0) {
+            return NOT_SAMPLED;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a detector cache lookup.
+     *
+     * @param detector Detector found, or {@code null} if there was none. Lookups that find no detector aren't timed.
+     * @param start    Value returned by {@link #start()}.
+     */
+    public void lookedUp(Detector detector, long start) {
+        if (detector != null && start != NOT_SAMPLED) {
+            lookupTimers[DetectorType.of(detector).ordinal()].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Records a classification.
+     *
+     * @param detector Detector.
+     * @param level    Classified anomaly level, or {@code null} if there was none.
+     * @param start    Value returned by {@link #start()}.
+     */
+    public void classified(Detector detector, AnomalyLevel level, long start) {
+        val type = DetectorType.of(detector).ordinal();
+        if (start != NOT_SAMPLED) {
+            classifyTimers[type].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (level != null) {
+            phaseCounters[type][level == AnomalyLevel.MODEL_WARMUP ? WARMUP : ACTIVE].increment();
+            levelCounters[type][level.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Records the construction of a detector. Construction isn't on the hot path, so it's always timed.
+     *
+     * @param detector Detector.
+     * @param nanos    Construction time in nanoseconds.
+     */
+    public void built(Detector detector, long nanos) {
+        buildTimers[DetectorType.of(detector).ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
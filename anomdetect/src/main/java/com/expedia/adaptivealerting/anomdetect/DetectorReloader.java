@@ -0,0 +1,195 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil;
+import com.expedia.adaptivealerting.anomdetect.detector.AbstractDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.ConstantThresholdDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.CusumDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.IndividualsDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.Aggregator;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.MOfNAggregator;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.HoltWintersForecaster;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Reconfigures a cached detector from its updated definition without throwing away what it has learned, by diffing the
+ * cached and updated detectors' params:
+ * </p>
+ * <ul>
+ * <li>Same params (e.g. only model metadata changed): the cached detector is kept as is.</li>
+ * <li>Structural change (different detector, forecaster or aggregator type, M-of-N window size, or Holt-Winters
+ * frequency, seasonality type or training method): the updated detector starts fresh.</li>
+ * <li>Anything else (thresholds, sigmas, smoothing params, M-of-N anomaly count or suppression): the cached
+ * detector's state is carried over into the updated detector.</li>
+ * </ul>
+ * <p>
+ * State is carried over through {@link com.expedia.adaptivealerting.anomdetect.checkpoint.Checkpointable}, whose state
+ * headers and structure checks reject incompatible state, so a structural change this class doesn't know about still
+ * ends in a reset rather than a misread. Each outcome is counted in the {@value #RELOADS_METER} meter, tagged by
+ * outcome.
+ * </p>
+ */
+@Slf4j
+final class DetectorReloader {
+    static final String RELOADS_METER = "detector.reloads";
+
+    enum Outcome {
+        UNCHANGED("unchanged"),
+        STATE_CARRIED("in-place"),
+        RESET("reset");
+
+        private final String tag;
+
+        Outcome(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final Map<Outcome, Counter> counters = new EnumMap<>(Outcome.class);
+
+    DetectorReloader(MeterRegistry meterRegistry) {
+        notNull(meterRegistry, "meterRegistry can't be null");
+        for (val outcome : Outcome.values()) {
+            counters.put(outcome, meterRegistry.counter(RELOADS_METER, "outcome", outcome.tag));
+        }
+    }
+
+    /**
+     * Reconfigures the cached detector from the updated one. The caller holds the cached detector's lock.
+     *
+     * @param cached  Cached detector.
+     * @param updated Detector freshly built from the updated definition. Receives the cached state unless the outcome
+     *                is {@link Outcome#UNCHANGED} or {@link Outcome#RESET}.
+     * @return {@link Outcome#UNCHANGED} if the cached detector should be kept, otherwise the updated detector replaces
+     * it.
+     */
+    Outcome reload(Detector cached, Detector updated) {
+        notNull(cached, "cached can't be null");
+        notNull(updated, "updated can't be null");
+
+        val outcome = diff(cached, updated);
+        counters.get(outcome).increment();
+        log.info("Reloaded detector {}: {}", updated.getUuid(), outcome);
+        return outcome;
+    }
+
+    private static Outcome diff(Detector cached, Detector updated) {
+        val cachedParams = paramsOf(cached);
+        if (cachedParams != null && cachedParams.equals(paramsOf(updated))) {
+            return Outcome.UNCHANGED;
+        }
+        if (isStructuralChange(cached, updated)) {
+            return Outcome.RESET;
+        }
+
+        val freshState = CheckpointUtil.stateBytes(updated);
+        try {
+            CheckpointUtil.readStateBytes(updated, CheckpointUtil.stateBytes(cached));
+            return Outcome.STATE_CARRIED;
+        } catch (DetectorException e) {
+            log.warn("Can't carry state over to updated detector {}: {}", updated.getUuid(), e.getMessage());
+            CheckpointUtil.readStateBytes(updated, freshState);
+            return Outcome.RESET;
+        }
+    }
+
+    private static boolean isStructuralChange(Detector cached, Detector updated) {
+        if (cached.getClass() != updated.getClass()) {
+            return true;
+        }
+        if (cached instanceof AbstractDetector && isStructuralChange(
+                ((AbstractDetector) cached).getAggregator(),
+                ((AbstractDetector) updated).getAggregator())) {
+            return true;
+        }
+        if (!(cached instanceof ForecastingDetector)) {
+            return false;
+        }
+
+        val cachedPoint = ((ForecastingDetector) cached).getPointForecaster();
+        val updatedPoint = ((ForecastingDetector) updated).getPointForecaster();
+        val cachedInterval = ((ForecastingDetector) cached).getIntervalForecaster();
+        val updatedInterval = ((ForecastingDetector) updated).getIntervalForecaster();
+        if (cachedPoint.getClass() != updatedPoint.getClass()
+                || cachedInterval.getClass() != updatedInterval.getClass()) {
+            return true;
+        }
+        if (cachedPoint instanceof HoltWintersForecaster) {
+            val cachedHw = ((HoltWintersForecaster) cachedPoint).getParams();
+            val updatedHw = ((HoltWintersForecaster) updatedPoint).getParams();
+            return cachedHw.getFrequency() != updatedHw.getFrequency()
+                    || cachedHw.getSeasonalityType() != updatedHw.getSeasonalityType()
+                    || cachedHw.getInitTrainingMethod() != updatedHw.getInitTrainingMethod();
+        }
+        return false;
+    }
+
+    private static boolean isStructuralChange(Aggregator cached, Aggregator updated) {
+        if (cached.getClass() != updated.getClass()) {
+            return true;
+        }
+        return cached instanceof MOfNAggregator
+                && ((MOfNAggregator) cached).getConfig().getN() != ((MOfNAggregator) updated).getConfig().getN();
+    }
+
+    /**
+     * Returns the detector's params, or {@code null} for detectors whose params we don't know how to compare.
+     */
+    private static Object paramsOf(Detector detector) {
+        if (detector instanceof ForecastingDetector) {
+            val forecastingDetector = (ForecastingDetector) detector;
+            return Arrays.asList(
+                    forecastingDetector.getPointForecaster().getParams(),
+                    forecastingDetector.getIntervalForecaster().getParams(),
+                    forecastingDetector.getAnomalyType(),
+                    aggregatorConfigOf(forecastingDetector.getAggregator()));
+        } else if (detector instanceof ConstantThresholdDetector) {
+            val constantThresholdDetector = (ConstantThresholdDetector) detector;
+            return Arrays.asList(
+                    constantThresholdDetector.getParams(),
+                    aggregatorConfigOf(constantThresholdDetector.getAggregator()));
+        } else if (detector instanceof CusumDetector) {
+            val cusumDetector = (CusumDetector) detector;
+            return Arrays.asList(cusumDetector.getParams(), aggregatorConfigOf(cusumDetector.getAggregator()));
+        } else if (detector instanceof IndividualsDetector) {
+            return ((IndividualsDetector) detector).getParams();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the aggregator's config, or its class for aggregators without config.
+     */
+    private static Object aggregatorConfigOf(Aggregator aggregator) {
+        if (aggregator instanceof MOfNAggregator) {
+            return ((MOfNAggregator) aggregator).getConfig();
+        }
+        return aggregator.getClass();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+
+import java.util.UUID;
+
+/**
+ * <p>
+ * External store that owns detector state on behalf of the {@link DetectorManager}, such as a Kafka Streams state
+ * store whose contents move with partition ownership. See
+ * {@link DetectorManager#classify(com.expedia.adaptivealerting.core.data.MappedMetricData, DetectorStateStore)}.
+ * </p>
+ * <p>
+ * A store tracks the detector instances it has attached, so stored state is read once per loaded detector rather than
+ * once per classification. Callers hold the detector's lock around both methods.
+ * </p>
+ */
+public interface DetectorStateStore {
+
+    /**
+     * Indicates whether the store holds state for the given detector.
+     *
+     * @param detectorUuid Detector UUID.
+     * @return Whether there's stored state for the detector.
+     */
+    boolean hasState(UUID detectorUuid);
+
+    /**
+     * Restores the stored state, if any, into the detector unless this store has already attached the detector
+     * instance.
+     *
+     * @param detector Detector.
+     * @return {@code false} if restoring failed part way, in which case the store has discarded the stored state and
+     * the detector should be rebuilt
+     */
+    boolean attach(Detector detector);
+
+    /**
+     * Attaches the detector as is, without restoring the stored state. Its current state replaces the stored state on
+     * the next {@link #save(Detector)}. Used for detectors reloaded with updated params, which already hold the state
+     * they should continue from.
+     *
+     * @param detector Detector.
+     */
+    void adopt(Detector detector);
+
+    /**
+     * Saves the detector's current state.
+     *
+     * @param detector Detector, previously attached to this store.
+     */
+    void save(Detector detector);
+}
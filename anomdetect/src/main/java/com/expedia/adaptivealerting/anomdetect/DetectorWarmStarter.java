@@ -0,0 +1,207 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.expedia.adaptivealerting.anomdetect.comp.MetricHistory;
+import com.expedia.adaptivealerting.anomdetect.comp.MetricHistorySource;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import com.expedia.metrics.MetricData;
+import com.typesafe.config.Config;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Fast-forwards a freshly built detector through its metric's recent history, so that it doesn't spend its warm-up
+ * period (or Holt-Winters training cycles) on live data emitting {@code MODEL_WARMUP}. The history is read from a
+ * {@link MetricHistorySource} and fed to the detector in one {@link Detector#classify(long[], double[],
+ * AnomalyBatchResult)} call.
+ * </p>
+ * <p>
+ * At most {@code max-concurrency} history fetches run at once, so a mass warm-up (e.g. after a deploy, with a cold
+ * cache) doesn't overwhelm the metric backend. A warm start that can't get a permit within {@code max-wait} is
+ * skipped, and the detector warms up on live data as before. Each outcome is counted in the
+ * {@value #WARM_STARTS_METER} meter, tagged by outcome.
+ * </p>
+ */
+@Slf4j
+public class DetectorWarmStarter {
+    static final String CK_HISTORY_SIZE = "history-size";
+    static final String CK_MAX_CONCURRENCY = "max-concurrency";
+    static final String CK_MAX_WAIT = "max-wait";
+    static final int DEFAULT_MAX_CONCURRENCY = 4;
+    static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(10);
+    static final String WARM_STARTS_METER = "detector.warmstarts";
+
+    enum Outcome {
+        WARMED("warmed"),
+        NO_HISTORY("no-history"),
+        SKIPPED("skipped"),
+        FAILED("failed");
+
+        private final String tag;
+
+        Outcome(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final MetricHistorySource metricHistorySource;
+
+    @Getter
+    private final int historySize;
+
+    @Getter
+    private final Duration maxWait;
+
+    private final Semaphore permits;
+    private final Map<Outcome, Counter> counters = new EnumMap<>(Outcome.class);
+
+    /**
+     * Creates a warm starter from the {@code detector-warm-start} configuration block.
+     *
+     * @param metricHistorySource Metric history source.
+     * @param config              Warm start configuration. Requires {@code history-size}; {@code max-concurrency} and
+     *                            {@code max-wait} are optional.
+     */
+    public DetectorWarmStarter(MetricHistorySource metricHistorySource, Config config) {
+        this(
+                metricHistorySource,
+                config.getInt(CK_HISTORY_SIZE),
+                config.hasPath(CK_MAX_CONCURRENCY) ? config.getInt(CK_MAX_CONCURRENCY) : DEFAULT_MAX_CONCURRENCY,
+                config.hasPath(CK_MAX_WAIT) ? config.getDuration(CK_MAX_WAIT) : DEFAULT_MAX_WAIT,
+                Metrics.globalRegistry);
+    }
+
+    /**
+     * Creates a warm starter.
+     *
+     * @param metricHistorySource Metric history source.
+     * @param historySize         Maximum number of historical observations per detector, e.g. two Holt-Winters
+     *                            cycles.
+     * @param maxConcurrency      Maximum number of concurrent history fetches.
+     * @param maxWait             How long a warm start waits for a fetch permit before it's skipped.
+     * @param meterRegistry       Meter registry.
+     */
+    public DetectorWarmStarter(
+            MetricHistorySource metricHistorySource,
+            int historySize,
+            int maxConcurrency,
+            Duration maxWait,
+            MeterRegistry meterRegistry) {
+
+        notNull(metricHistorySource, "metricHistorySource can't be null");
+        isTrue(historySize > 0, "historySize must be strictly positive");
+        isTrue(maxConcurrency > 0, "maxConcurrency must be strictly positive");
+        notNull(maxWait, "maxWait can't be null");
+        isTrue(!maxWait.isNegative(), "maxWait can't be negative");
+        notNull(meterRegistry, "meterRegistry can't be null");
+
+        this.metricHistorySource = metricHistorySource;
+        this.historySize = historySize;
+        this.maxWait = maxWait;
+        this.permits = new Semaphore(maxConcurrency, true);
+        for (val outcome : Outcome.values()) {
+            counters.put(outcome, meterRegistry.counter(WARM_STARTS_METER, "outcome", outcome.tag));
+        }
+    }
+
+    /**
+     * Feeds the detector the history of the given metric data's metric that precedes it. Errors are logged rather than
+     * thrown, since a detector that couldn't be warm started still works; it just warms up on live data.
+     *
+     * @param detector   Freshly built detector.
+     * @param metricData First live metric data for the detector. Only older observations are fed to the detector.
+     * @return Number of historical observations the detector learned from.
+     */
+    public int warmStart(Detector detector, MetricData metricData) {
+        notNull(detector, "detector can't be null");
+        notNull(metricData, "metricData can't be null");
+
+        val history = fetchHistory(detector, metricData);
+        if (history == null) {
+            return 0;
+        }
+
+        // The metric source may already have the live observation (or later ones), which the caller classifies next.
+        val epochSeconds = history.getEpochSeconds();
+        int size = 0;
+        while (size < epochSeconds.length && epochSeconds[size] < metricData.getTimestamp()) {
+            size++;
+        }
+        if (size == 0) {
+            counters.get(Outcome.NO_HISTORY).increment();
+            return 0;
+        }
+
+        val timestamps = size == epochSeconds.length ? epochSeconds : Arrays.copyOf(epochSeconds, size);
+        val values = size == epochSeconds.length ? history.getValues() : Arrays.copyOf(history.getValues(), size);
+        try {
+            synchronized (detector) {
+                detector.classify(timestamps, values, new AnomalyBatchResult(size));
+            }
+        } catch (Exception e) {
+            log.warn("Error warm starting detector {}: {}", detector.getUuid(), e.toString());
+            counters.get(Outcome.FAILED).increment();
+            return 0;
+        }
+        counters.get(Outcome.WARMED).increment();
+        log.debug("Warm started detector {} with {} observations", detector.getUuid(), size);
+        return size;
+    }
+
+    /**
+     * @return The history, or {@code null} if the warm start was skipped or failed
+     */
+    private MetricHistory fetchHistory(Detector detector, MetricData metricData) {
+        try {
+            if (!permits.tryAcquire(maxWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.debug("Skipping warm start of detector {}: too many concurrent warm starts", detector.getUuid());
+                counters.get(Outcome.SKIPPED).increment();
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            counters.get(Outcome.SKIPPED).increment();
+            return null;
+        }
+
+        try {
+            return metricHistorySource.findHistory(metricData.getMetricDefinition(), historySize);
+        } catch (Exception e) {
+            log.warn("Error fetching history to warm start detector {}: {}", detector.getUuid(), e.toString());
+            counters.get(Outcome.FAILED).increment();
+            return null;
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.IntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.MadIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.HoltWintersForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MedianPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MultiSeasonalPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecaster;
+import com.google.common.cache.Weigher;
+import lombok.val;
+
+import java.util.UUID;
+
+/**
+ * <p>
+ * Estimates the retained heap size of a {@link Detector} in bytes, so {@link DetectorCache} can bound the cache by
+ * total detector state rather than by detector count.
+ * </p>
+ * <p>
+ * The estimates are deliberately rough. They only need to rank detectors sensibly against each other: a Holt-Winters
+ * detector keeps per-season state and statistics, so with frequency=168 it is well over an order of magnitude heavier
+ * than an EWMA detector, which keeps a handful of doubles.
+ * </p>
+ */
+final class DetectorWeigher implements Weigher<UUID, Detector> {
+
+    /**
+     * Detector object, UUID and params.
+     */
+    static final int DETECTOR_BYTES = 128;
+
+    /**
+     * Forecasters whose state is a few primitives (EWMA, PEWMA, most interval forecasters).
+     */
+    static final int SIMPLE_FORECASTER_BYTES = 64;
+
+    @Override
+    public int weigh(UUID uuid, Detector detector) {
+        return (int) Math.min(Integer.MAX_VALUE, estimateBytes(detector));
+    }
+
+    long estimateBytes(Detector detector) {
+        long bytes = DETECTOR_BYTES;
+        if (detector instanceof ForecastingDetector) {
+            val forecastingDetector = (ForecastingDetector) detector;
+            bytes += estimateBytes(forecastingDetector.getPointForecaster());
+            bytes += estimateBytes(forecastingDetector.getIntervalForecaster());
+        }
+        return bytes;
+    }
+
+    private long estimateBytes(PointForecaster pointForecaster) {
+        if (pointForecaster instanceof HoltWintersForecaster) {
+            val frequency = ((HoltWintersForecaster) pointForecaster).getParams().getFrequency();
+
+            // Per season: seasonal component, Welford count/mean/M2 (all doubles) and two training cycle slots.
+            val perSeason = Double.BYTES + 3 * Double.BYTES + 2 * Double.BYTES;
+            return SIMPLE_FORECASTER_BYTES + (long) frequency * perSeason;
+        } else if (pointForecaster instanceof MedianPointForecaster) {
+            val windowSize = ((MedianPointForecaster) pointForecaster).getParams().getWindowSize();
+            return SIMPLE_FORECASTER_BYTES + windowBytes(windowSize);
+        } else if (pointForecaster instanceof MultiSeasonalPointForecaster) {
+            // Shared seasonal profiles belong to no one detector, so only count the ones it holds on its own. Profiles
+            // it will copy on write count already, as Guava only weighs an entry when it's put.
+            return SIMPLE_FORECASTER_BYTES + ((MultiSeasonalPointForecaster) pointForecaster).getUnsharedProfileBytes();
+        }
+        return SIMPLE_FORECASTER_BYTES;
+    }
+
+    private long estimateBytes(IntervalForecaster intervalForecaster) {
+        if (intervalForecaster instanceof MadIntervalForecaster) {
+            val windowSize = ((MadIntervalForecaster) intervalForecaster).getParams().getWindowSize();
+            return SIMPLE_FORECASTER_BYTES + windowBytes(windowSize);
+        }
+        return SIMPLE_FORECASTER_BYTES;
+    }
+
+    // Per slot: the value, its heap and heap position, and its entry in the heap array.
+    private static long windowBytes(int windowSize) {
+        return (long) windowSize * (Double.BYTES + 1 + 2 * Integer.BYTES);
+    }
+}
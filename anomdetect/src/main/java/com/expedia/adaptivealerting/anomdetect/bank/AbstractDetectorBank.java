@@ -0,0 +1,253 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.bank;
+
+import com.expedia.adaptivealerting.anomdetect.comp.AnomalyClassifier;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.IntervalForecast;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
+import lombok.val;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Base class for detector banks. A detector bank holds the state of many detectors of the same type in parallel
+ * primitive arrays, indexed by a dense int slot, instead of as a graph of detector, forecaster and params objects per
+ * detector. Classifying is a handful of array reads and writes, which keeps millions of small detectors compact and
+ * cache friendly.
+ * </p>
+ * <p>
+ * Every bank detector pairs a point forecaster (defined by the subclass) with an
+ * {@link ExponentialWelfordIntervalForecaster}, whose state lives here. Results are identical to those of the
+ * equivalent {@link com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector}.
+ * </p>
+ * <p>
+ * Detectors are added and removed by UUID. Removed slots are recycled, so a slot is only meaningful while its detector
+ * is in the bank. Banks aren't thread-safe.
+ * </p>
+ */
+public abstract class AbstractDetectorBank {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final byte FREE = -1;
+    private static final AnomalyType[] ANOMALY_TYPES = AnomalyType.values();
+    private static final AnomalyClassifier[] CLASSIFIERS = Arrays.stream(ANOMALY_TYPES)
+            .map(AnomalyClassifier::new)
+            .toArray(AnomalyClassifier[]::new);
+
+    private final UuidSlotIndex index = new UuidSlotIndex();
+    private final MutableAnomalyResult scratch = new MutableAnomalyResult();
+
+    private int capacity;
+
+    // Slots below this have been used at least once. Free ones among them are on the free list.
+    private int highWaterMark;
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeCount;
+
+    // Anomaly type ordinal, or FREE
+    private byte[] anomalyTypes = new byte[0];
+
+    // Exponential Welford interval forecaster params and state
+    private double[] intervalAlpha = new double[0];
+    private double[] weakSigmas = new double[0];
+    private double[] strongSigmas = new double[0];
+    private double[] variance = new double[0];
+
+    /**
+     * Returns the number of detectors in the bank.
+     *
+     * @return Number of detectors.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Returns the number of slots the bank can hold without growing its arrays.
+     *
+     * @return Slot capacity.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the slot of the given detector.
+     *
+     * @param uuid Detector UUID.
+     * @return Slot, or -1 if the detector isn't in the bank.
+     */
+    public int slotOf(UUID uuid) {
+        notNull(uuid, "uuid can't be null");
+        return index.get(uuid);
+    }
+
+    /**
+     * Returns the UUID of the detector in the given slot.
+     *
+     * @param slot Detector slot.
+     * @return Detector UUID.
+     */
+    public UUID uuidAt(int slot) {
+        checkSlot(slot);
+        return index.uuidAt(slot);
+    }
+
+    /**
+     * Removes a detector from the bank. Its slot will be reused by a later detector.
+     *
+     * @param uuid Detector UUID.
+     * @return Whether the detector was in the bank.
+     */
+    public boolean remove(UUID uuid) {
+        notNull(uuid, "uuid can't be null");
+        val slot = index.remove(uuid);
+        if (slot < 0) {
+            return false;
+        }
+        anomalyTypes[slot] = FREE;
+        if (freeCount == freeSlots.length) {
+            this.freeSlots = Arrays.copyOf(freeSlots, 2 * freeSlots.length);
+        }
+        freeSlots[freeCount++] = slot;
+        return true;
+    }
+
+    /**
+     * Classifies an observation for the detector in the given slot, overwriting all fields of the result.
+     *
+     * @param slot     Detector slot.
+     * @param observed Observed value.
+     * @param out      Anomaly result to write to.
+     */
+    public final void classify(int slot, double observed, MutableAnomalyResult out) {
+        checkSlot(slot);
+        val predicted = forecast(slot, observed);
+
+        // Same arithmetic as ExponentialWelfordIntervalForecaster.
+        val alpha = intervalAlpha[slot];
+        val residual = observed - predicted;
+        val newVariance = (1.0 - alpha) * (variance[slot] + residual * (alpha * residual));
+        variance[slot] = newVariance;
+
+        val stdev = Math.sqrt(newVariance);
+        val weakWidth = weakSigmas[slot] * stdev;
+        val strongWidth = strongSigmas[slot] * stdev;
+        val upperStrong = predicted + strongWidth;
+        val upperWeak = predicted + weakWidth;
+        val lowerWeak = predicted - weakWidth;
+        val lowerStrong = predicted - strongWidth;
+        IntervalForecast.validate(upperStrong, upperWeak, lowerWeak, lowerStrong);
+
+        val level = CLASSIFIERS[anomalyTypes[slot]].classify(upperStrong, upperWeak, lowerWeak, lowerStrong, observed);
+        out.set(level, predicted, upperStrong, upperWeak, lowerWeak, lowerStrong);
+    }
+
+    /**
+     * Classifies a batch of observations, where observation {@code i} belongs to the detector in {@code slots[i]}. A
+     * slot may appear more than once, in which case its observations are classified in order.
+     *
+     * @param slots  Detector slots.
+     * @param values Observed values. Must have the same length as slots.
+     * @param out    Batch result, reset to the batch size and overwritten.
+     */
+    public void classify(int[] slots, double[] values, AnomalyBatchResult out) {
+        notNull(slots, "slots can't be null");
+        notNull(values, "values can't be null");
+        notNull(out, "out can't be null");
+        isTrue(slots.length == values.length, "slots and values must have the same length");
+
+        out.reset(values.length);
+        for (int i = 0; i < values.length; i++) {
+            classify(slots[i], values[i], scratch);
+            out.set(i, scratch);
+        }
+    }
+
+    /**
+     * Generates the point forecast for an observation and updates the point forecaster state of the slot.
+     *
+     * @param slot     Detector slot.
+     * @param observed Observed value.
+     * @return Point forecast.
+     */
+    protected abstract double forecast(int slot, double observed);
+
+    /**
+     * Grows the subclass arrays to the given capacity, preserving their contents.
+     *
+     * @param capacity New capacity.
+     */
+    protected abstract void grow(int capacity);
+
+    /**
+     * Adds a detector, or resets it if it's already in the bank. Subclasses then initialize their point forecaster
+     * state for the returned slot.
+     *
+     * @param uuid           Detector UUID.
+     * @param intervalParams Interval forecaster params.
+     * @param anomalyType    Anomaly type.
+     * @return Detector slot.
+     */
+    protected int addSlot(UUID uuid, ExponentialWelfordIntervalForecaster.Params intervalParams, AnomalyType anomalyType) {
+        notNull(uuid, "uuid can't be null");
+        notNull(intervalParams, "intervalParams can't be null");
+        notNull(anomalyType, "anomalyType can't be null");
+
+        int slot = index.get(uuid);
+        if (slot < 0) {
+            slot = allocateSlot();
+            index.put(uuid, slot);
+        }
+        anomalyTypes[slot] = (byte) anomalyType.ordinal();
+        intervalAlpha[slot] = intervalParams.getAlpha();
+        weakSigmas[slot] = intervalParams.getWeakSigmas();
+        strongSigmas[slot] = intervalParams.getStrongSigmas();
+        variance[slot] = intervalParams.getInitVarianceEstimate();
+        return slot;
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (highWaterMark == capacity) {
+            val newCapacity = Math.max(INITIAL_CAPACITY, 2 * capacity);
+            this.anomalyTypes = Arrays.copyOf(anomalyTypes, newCapacity);
+            this.intervalAlpha = Arrays.copyOf(intervalAlpha, newCapacity);
+            this.weakSigmas = Arrays.copyOf(weakSigmas, newCapacity);
+            this.strongSigmas = Arrays.copyOf(strongSigmas, newCapacity);
+            this.variance = Arrays.copyOf(variance, newCapacity);
+            index.ensureSlotCapacity(newCapacity);
+            grow(newCapacity);
+            this.capacity = newCapacity;
+        }
+        return highWaterMark++;
+    }
+
+    private void checkSlot(int slot) {
+        if (slot < 0 || slot >= highWaterMark || anomalyTypes[slot] == FREE) {
+            throw new IllegalArgumentException("No detector in slot " + slot);
+        }
+    }
+}
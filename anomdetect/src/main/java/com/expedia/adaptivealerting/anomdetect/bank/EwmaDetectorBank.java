@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.bank;
+
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import lombok.val;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * Detector bank for {@link EwmaPointForecaster} detectors with an {@link ExponentialWelfordIntervalForecaster}. Each
+ * detector costs three doubles of EWMA state and params on top of the interval forecaster state.
+ */
+public final class EwmaDetectorBank extends AbstractDetectorBank {
+    private double[] alpha = new double[0];
+    private double[] mean = new double[0];
+
+    /**
+     * Adds a detector with fresh state, or resets it if it's already in the bank.
+     *
+     * @param uuid           Detector UUID.
+     * @param pointParams    EWMA point forecaster params.
+     * @param intervalParams Interval forecaster params.
+     * @param anomalyType    Anomaly type.
+     * @return Detector slot.
+     */
+    public int add(
+            UUID uuid,
+            EwmaPointForecaster.Params pointParams,
+            ExponentialWelfordIntervalForecaster.Params intervalParams,
+            AnomalyType anomalyType) {
+
+        notNull(pointParams, "pointParams can't be null");
+        pointParams.validate();
+
+        val slot = addSlot(uuid, intervalParams, anomalyType);
+        alpha[slot] = pointParams.getAlpha();
+        mean[slot] = pointParams.getInitMeanEstimate();
+        return slot;
+    }
+
+    @Override
+    protected double forecast(int slot, double observed) {
+        // Same arithmetic as EwmaPointForecaster.
+        val newMean = mean[slot] + alpha[slot] * (observed - mean[slot]);
+        mean[slot] = newMean;
+        return newMean;
+    }
+
+    @Override
+    protected void grow(int capacity) {
+        this.alpha = Arrays.copyOf(alpha, capacity);
+        this.mean = Arrays.copyOf(mean, capacity);
+    }
+}
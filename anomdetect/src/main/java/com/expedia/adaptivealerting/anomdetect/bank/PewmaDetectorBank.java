@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.bank;
+
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PewmaPointForecaster;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import lombok.val;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * Detector bank for {@link PewmaPointForecaster} detectors with an {@link ExponentialWelfordIntervalForecaster}. The
+ * PEWMA mean and standard deviation are derived from the two running sums, so they aren't stored.
+ */
+public final class PewmaDetectorBank extends AbstractDetectorBank {
+    private static final double INV_SQRT_2PI = 1.0 / Math.sqrt(2.0 * Math.PI);
+
+    private double[] adjAlpha = new double[0];
+    private double[] beta = new double[0];
+    private int[] warmUpPeriod = new int[0];
+    private int[] trainingCount = new int[0];
+    private double[] s1 = new double[0];
+    private double[] s2 = new double[0];
+
+    /**
+     * Adds a detector with fresh state, or resets it if it's already in the bank.
+     *
+     * @param uuid           Detector UUID.
+     * @param pointParams    PEWMA point forecaster params.
+     * @param intervalParams Interval forecaster params.
+     * @param anomalyType    Anomaly type.
+     * @return Detector slot.
+     */
+    public int add(
+            UUID uuid,
+            PewmaPointForecaster.Params pointParams,
+            ExponentialWelfordIntervalForecaster.Params intervalParams,
+            AnomalyType anomalyType) {
+
+        notNull(pointParams, "pointParams can't be null");
+
+        val slot = addSlot(uuid, intervalParams, anomalyType);
+        val initMean = pointParams.getInitMeanEstimate();
+        adjAlpha[slot] = 1.0 - pointParams.getAlpha();
+        beta[slot] = pointParams.getBeta();
+        warmUpPeriod[slot] = pointParams.getWarmUpPeriod();
+        trainingCount[slot] = 1;
+        s1[slot] = initMean;
+        s2[slot] = initMean * initMean;
+        return slot;
+    }
+
+    @Override
+    protected double forecast(int slot, double observed) {
+        // Same arithmetic as PewmaPointForecaster, which keeps mean = s1 and stdDev = sqrt(s2 - s1 * s1).
+        double s1 = this.s1[slot];
+        double s2 = this.s2[slot];
+
+        double alpha;
+        if (trainingCount[slot] < warmUpPeriod[slot]) {
+            val count = ++trainingCount[slot];
+            alpha = 1.0 - 1.0 / count;
+        } else {
+            val stdDev = Math.sqrt(s2 - s1 * s1);
+            val zt = stdDev != 0.0 ? (observed - s1) / stdDev : 0.0;
+            val pt = INV_SQRT_2PI * Math.exp(-0.5 * zt * zt);
+            alpha = (1.0 - beta[slot] * pt) * adjAlpha[slot];
+        }
+
+        s1 = alpha * s1 + (1.0 - alpha) * observed;
+        s2 = alpha * s2 + (1.0 - alpha) * observed * observed;
+        this.s1[slot] = s1;
+        this.s2[slot] = s2;
+        return s1;
+    }
+
+    @Override
+    protected void grow(int capacity) {
+        this.adjAlpha = Arrays.copyOf(adjAlpha, capacity);
+        this.beta = Arrays.copyOf(beta, capacity);
+        this.warmUpPeriod = Arrays.copyOf(warmUpPeriod, capacity);
+        this.trainingCount = Arrays.copyOf(trainingCount, capacity);
+        this.s1 = Arrays.copyOf(s1, capacity);
+        this.s2 = Arrays.copyOf(s2, capacity);
+    }
+}
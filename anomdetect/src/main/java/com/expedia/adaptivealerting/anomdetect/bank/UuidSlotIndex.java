@@ -0,0 +1,169 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.bank;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * <p>
+ * Primitive (UUID : slot) index for {@link AbstractDetectorBank}. UUIDs are stored as two longs per slot, and the hash
+ * table is an open-addressing int array of slots with linear probing, so an entry costs about 24 bytes rather than
+ * the ~80 bytes of a {@code HashMap<UUID, Integer>} entry with its UUID, boxed slot and node.
+ * </p>
+ * <p>
+ * Not thread-safe.
+ * </p>
+ */
+final class UuidSlotIndex {
+    private static final int EMPTY = -1;
+    private static final int INITIAL_TABLE_SIZE = 16;
+
+    private long[] mostSigBits = new long[0];
+    private long[] leastSigBits = new long[0];
+
+    // Slots, or EMPTY. The size is a power of two, at least twice the number of entries.
+    private int[] table = newTable(INITIAL_TABLE_SIZE);
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Makes room for UUIDs in slots up to (excluding) the given capacity.
+     */
+    void ensureSlotCapacity(int capacity) {
+        if (capacity > mostSigBits.length) {
+            this.mostSigBits = Arrays.copyOf(mostSigBits, capacity);
+            this.leastSigBits = Arrays.copyOf(leastSigBits, capacity);
+        }
+    }
+
+    /**
+     * Returns the slot for the UUID, or -1 if it isn't indexed.
+     */
+    int get(UUID uuid) {
+        return get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    int get(long msb, long lsb) {
+        final int mask = table.length - 1;
+        for (int i = hash(msb, lsb) & mask; ; i = (i + 1) & mask) {
+            final int slot = table[i];
+            if (slot == EMPTY) {
+                return EMPTY;
+            }
+            if (mostSigBits[slot] == msb && leastSigBits[slot] == lsb) {
+                return slot;
+            }
+        }
+    }
+
+    UUID uuidAt(int slot) {
+        return new UUID(mostSigBits[slot], leastSigBits[slot]);
+    }
+
+    /**
+     * Indexes the UUID to the given slot, which must be within the slot capacity. The UUID must not already be indexed.
+     */
+    void put(UUID uuid, int slot) {
+        if (2 * (size + 1) > table.length) {
+            rehash(2 * table.length);
+        }
+        final long msb = uuid.getMostSignificantBits();
+        final long lsb = uuid.getLeastSignificantBits();
+        mostSigBits[slot] = msb;
+        leastSigBits[slot] = lsb;
+        insert(table, slot, hash(msb, lsb));
+        size++;
+    }
+
+    /**
+     * Removes the UUID from the index.
+     *
+     * @return The slot it was indexed to, or -1 if it wasn't indexed.
+     */
+    int remove(UUID uuid) {
+        final long msb = uuid.getMostSignificantBits();
+        final long lsb = uuid.getLeastSignificantBits();
+        final int mask = table.length - 1;
+        int i = hash(msb, lsb) & mask;
+        while (true) {
+            final int slot = table[i];
+            if (slot == EMPTY) {
+                return EMPTY;
+            }
+            if (mostSigBits[slot] == msb && leastSigBits[slot] == lsb) {
+                break;
+            }
+            i = (i + 1) & mask;
+        }
+        final int removed = table[i];
+
+        // Backward shift deletion: move later entries of the probe run into the gap, unless that would put them before
+        // their home position. This keeps lookups tombstone-free.
+        int gap = i;
+        for (int j = (gap + 1) & mask; table[j] != EMPTY; j = (j + 1) & mask) {
+            final int slot = table[j];
+            final int home = hash(mostSigBits[slot], leastSigBits[slot]) & mask;
+            final boolean homeInGapToJ = gap <= j ? (gap < home && home <= j) : (gap < home || home <= j);
+            if (!homeInGapToJ) {
+                table[gap] = slot;
+                gap = j;
+            }
+        }
+        table[gap] = EMPTY;
+        size--;
+        return removed;
+    }
+
+    private void rehash(int tableSize) {
+        final int[] newTable = newTable(tableSize);
+        for (final int slot : table) {
+            if (slot != EMPTY) {
+                insert(newTable, slot, hash(mostSigBits[slot], leastSigBits[slot]));
+            }
+        }
+        this.table = newTable;
+    }
+
+    private static void insert(int[] table, int slot, int hash) {
+        final int mask = table.length - 1;
+        int i = hash & mask;
+        while (table[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        table[i] = slot;
+    }
+
+    private static int[] newTable(int tableSize) {
+        final int[] table = new int[tableSize];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    private static int hash(long msb, long lsb) {
+        // MurmurHash3 finalizer. Random UUIDs are already well mixed, but name-based or sequential ones may not be.
+        long h = msb ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
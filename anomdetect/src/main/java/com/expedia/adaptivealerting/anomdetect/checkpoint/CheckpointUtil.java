@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.checkpoint;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorCheckpointException;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
+import lombok.val;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+
+/**
+ * Helpers for {@link Checkpointable} implementations.
+ */
+public final class CheckpointUtil {
+    private static final AnomalyLevel[] ANOMALY_LEVELS = AnomalyLevel.values();
+    private static final int MAX_HEADER_FIELD = 0xffff;
+
+    private CheckpointUtil() {
+    }
+
+    /**
+     * Writes a 4-byte state header identifying the component type and state version. The state type is an explicit
+     * per-class constant rather than anything derived from the class itself, so renaming or moving a component doesn't
+     * invalidate its checkpoints. Once assigned, a state type must never be changed or reused.
+     *
+     * @param out       Output.
+     * @param stateType Component state type, in [0, 0xffff].
+     * @param version   State version, in [0, 0xffff]. Bump it whenever the component's state layout changes.
+     * @throws IOException if there's a problem writing the header
+     */
+    public static void writeHeader(DataOutput out, int stateType, int version) throws IOException {
+        isTrue(stateType >= 0 && stateType <= MAX_HEADER_FIELD, "Required: stateType in [0, 0xffff]");
+        isTrue(version >= 0 && version <= MAX_HEADER_FIELD, "Required: version in [0, 0xffff]");
+        out.writeShort(stateType);
+        out.writeShort(version);
+    }
+
+    /**
+     * Reads a state header and checks it against the expected component type and state version.
+     *
+     * @param in        Input.
+     * @param stateType Expected component state type.
+     * @param version   Expected state version.
+     * @throws IOException                 if there's a problem reading the header
+     * @throws DetectorCheckpointException if the header doesn't match
+     */
+    public static void readHeader(DataInput in, int stateType, int version) throws IOException {
+        final int actualType = in.readUnsignedShort();
+        final int actualVersion = in.readUnsignedShort();
+        if (actualType != stateType) {
+            throw new DetectorCheckpointException(String.format(
+                    "Incompatible state: state type is 0x%04x but expected 0x%04x", actualType, stateType));
+        }
+        if (actualVersion != version) {
+            throw new DetectorCheckpointException(String.format(
+                    "Incompatible state: state type 0x%04x is v%d but expected v%d", stateType, actualVersion, version));
+        }
+    }
+
+    /**
+     * Checks a structural value read from a checkpoint (e.g. an array length) against the current configuration.
+     *
+     * @param expected Value implied by the current configuration.
+     * @param actual   Value read from the checkpoint.
+     * @param name     Value name, for the error message.
+     * @throws DetectorCheckpointException if the values differ
+     */
+    public static void checkStructure(long expected, long actual, String name) {
+        if (expected != actual) {
+            throw new DetectorCheckpointException(
+                    "Incompatible state: " + name + " is " + actual + " but configuration requires " + expected);
+        }
+    }
+
+    /**
+     * Returns the component state as a byte array.
+     *
+     * @param component Component.
+     * @return Component state.
+     */
+    public static byte[] stateBytes(Checkpointable component) {
+        val bytes = new ByteArrayOutputStream(256);
+        try {
+            component.writeState(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            // Only the component itself can fail here; the byte array stream doesn't.
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads component state previously returned by {@link #stateBytes(Checkpointable)}, replacing the current state.
+     * If this fails, the component may hold partially restored state and should be rebuilt.
+     *
+     * @param component Component.
+     * @param state     Component state.
+     * @throws DetectorCheckpointException if the state is truncated, has trailing bytes or isn't compatible with the
+     *                                     component
+     */
+    public static void readStateBytes(Checkpointable component, byte[] state) {
+        try {
+            val in = new DataInputStream(new ByteArrayInputStream(state));
+            component.readState(in);
+            if (in.available() > 0) {
+                throw new DetectorCheckpointException(in.available() + " unread state bytes");
+            }
+        } catch (IOException e) {
+            throw new DetectorCheckpointException("Error reading state: " + e, e);
+        }
+    }
+
+    public static void writeAnomalyLevel(DataOutput out, AnomalyLevel level) throws IOException {
+        out.writeByte(level == null ? -1 : level.ordinal());
+    }
+
+    public static AnomalyLevel readAnomalyLevel(DataInput in) throws IOException {
+        final int ordinal = in.readByte();
+        if (ordinal < 0) {
+            return null;
+        }
+        if (ordinal >= ANOMALY_LEVELS.length) {
+            throw new DetectorCheckpointException("Invalid anomaly level ordinal: " + ordinal);
+        }
+        return ANOMALY_LEVELS[ordinal];
+    }
+}
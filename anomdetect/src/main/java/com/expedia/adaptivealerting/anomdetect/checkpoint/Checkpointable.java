@@ -0,0 +1,54 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.checkpoint;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorCheckpointException;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * <p>
+ * Component whose learned state can be written to and read from a compact binary checkpoint.
+ * </p>
+ * <p>
+ * State covers only what the component learns from data (means, variances, seasonals, counters). Configuration is not
+ * part of it: on restore the component is first rebuilt from its params, then its state is read back into it. Each
+ * implementation starts its state with a header written by {@link CheckpointUtil#writeHeader(DataOutput, int, int)}
+ * from an explicit state type constant, so a checkpoint written by a different component type or state version is
+ * rejected instead of misread.
+ * </p>
+ */
+public interface Checkpointable {
+
+    /**
+     * Writes the component state.
+     *
+     * @param out Output.
+     * @throws IOException if there's a problem writing the state
+     */
+    void writeState(DataOutput out) throws IOException;
+
+    /**
+     * Reads the component state, replacing the current state.
+     *
+     * @param in Input.
+     * @throws IOException                 if there's a problem reading the state
+     * @throws DetectorCheckpointException if the state isn't compatible with this component
+     */
+    void readState(DataInput in) throws IOException;
+}
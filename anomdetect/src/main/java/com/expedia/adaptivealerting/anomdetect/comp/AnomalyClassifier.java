@@ -59,4 +59,42 @@ public class AnomalyClassifier {
 
         return AnomalyLevel.NORMAL;
     }
+
+    /**
+     * Classifies an observation against primitive thresholds, for batch classification. NaN thresholds are treated as
+     * absent, the same as null thresholds in {@link #classify(AnomalyThresholds, double)}.
+     *
+     * @param upperStrong Upper strong threshold, or NaN if absent.
+     * @param upperWeak   Upper weak threshold, or NaN if absent.
+     * @param lowerWeak   Lower weak threshold, or NaN if absent.
+     * @param lowerStrong Lower strong threshold, or NaN if absent.
+     * @param observed    Observed value.
+     * @return Anomaly level.
+     */
+    public AnomalyLevel classify(
+            double upperStrong,
+            double upperWeak,
+            double lowerWeak,
+            double lowerStrong,
+            double observed) {
+
+        // Comparisons against NaN are always false, so absent thresholds never match.
+        if (anomalyType != AnomalyType.LEFT_TAILED) {
+            if (observed >= upperStrong) {
+                return AnomalyLevel.STRONG;
+            } else if (observed >= upperWeak) {
+                return AnomalyLevel.WEAK;
+            }
+        }
+
+        if (anomalyType != AnomalyType.RIGHT_TAILED) {
+            if (observed <= lowerStrong) {
+                return AnomalyLevel.STRONG;
+            } else if (observed <= lowerWeak) {
+                return AnomalyLevel.WEAK;
+            }
+        }
+
+        return AnomalyLevel.NORMAL;
+    }
 }
@@ -73,6 +73,22 @@ public class DefaultDetectorSource implements DetectorSource {
         return legacyDetectorFactory.createDetector(uuid, modelResource);
     }
 
+    @Override
+    public Map<UUID, Detector> findDetectors(Collection<UUID> uuids) {
+        notNull(uuids, "uuids can't be null");
+
+        val detectors = new HashMap<UUID, Detector>();
+        connector.findLatestModels(uuids).forEach((uuid, modelResource) -> {
+            try {
+                detectors.put(uuid, legacyDetectorFactory.createDetector(uuid, modelResource));
+            } catch (RuntimeException e) {
+                // Don't let one bad model keep the rest of the batch from loading.
+                log.error("Error creating detector: uuid={}, model={}", uuid, modelResource, e);
+            }
+        });
+        return detectors;
+    }
+
     @Override
     public List<UUID> findUpdatedDetectors(int timePeriod) {
         notNull(timePeriod, "timePeriod can't be null");
@@ -94,6 +110,10 @@ public class DefaultDetectorSource implements DetectorSource {
                 .findUpdatedDetectorMappings(timeInSecs);
     }
 
+    @Override
+    public List<DetectorMapping> findEnabledDetectorMappings() {
+        return connector.findEnabledDetectorMappings();
+    }
 
     @Override
     public DetectorMatchResponse findMatchingDetectorMappings(List<Map<String, String>> metricTags) {
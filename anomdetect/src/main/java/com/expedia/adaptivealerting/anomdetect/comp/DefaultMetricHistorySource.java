@@ -0,0 +1,39 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector;
+import com.expedia.metrics.MetricDefinition;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * A {@link MetricHistorySource} backed by the Model Service, which in turn reads the metric source (e.g. Graphite).
+ */
+@RequiredArgsConstructor
+public class DefaultMetricHistorySource implements MetricHistorySource {
+
+    @NonNull
+    private final ModelServiceConnector connector;
+
+    @Override
+    public MetricHistory findHistory(MetricDefinition metricDef, int limit) {
+        notNull(metricDef, "metricDef can't be null");
+        return connector.findMetricHistory(metricDef, limit);
+    }
+}
@@ -18,10 +18,18 @@ package com.expedia.adaptivealerting.anomdetect.comp;
 import com.expedia.adaptivealerting.anomdetect.detector.Detector;
 import com.expedia.adaptivealerting.anomdetect.detector.DetectorConfig;
 import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.Aggregator;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.AggregatorConfig;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.MOfNAggregator;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.PassThroughAggregator;
 import com.expedia.adaptivealerting.anomdetect.forecast.interval.AdditiveIntervalForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.interval.IntervalForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.interval.IntervalForecasterParams;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.MadIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.QuantileIntervalForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MedianPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MultiSeasonalPointForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecasterParams;
 import lombok.val;
@@ -49,12 +57,33 @@ public class DetectorFactory {
         val pointForecaster = createPointForecaster(config.getPointForecasterParams());
         val intervalForecaster = createIntervalForecaster(config.getIntervalForecasterParams());
         val anomalyType = config.getAnomalyType();
-        return new ForecastingDetector(uuid, pointForecaster, intervalForecaster, anomalyType);
+        val aggregator = createAggregator(config.getAggregatorConfig());
+        return new ForecastingDetector(uuid, pointForecaster, intervalForecaster, anomalyType, aggregator);
+    }
+
+    /**
+     * Creates an aggregator from its config.
+     *
+     * @param config Aggregator config, or null for a {@link PassThroughAggregator}.
+     * @return Aggregator.
+     */
+    public Aggregator createAggregator(AggregatorConfig config) {
+        if (config == null || config instanceof PassThroughAggregator.Config) {
+            return new PassThroughAggregator();
+        } else if (config instanceof MOfNAggregator.Config) {
+            return new MOfNAggregator((MOfNAggregator.Config) config);
+        } else {
+            throw new UnsupportedOperationException("Unsupported config type: " + config.getClass());
+        }
     }
 
     private PointForecaster createPointForecaster(PointForecasterParams params) {
         if (params instanceof EwmaPointForecaster.Params) {
             return new EwmaPointForecaster((EwmaPointForecaster.Params) params);
+        } else if (params instanceof MedianPointForecaster.Params) {
+            return new MedianPointForecaster((MedianPointForecaster.Params) params);
+        } else if (params instanceof MultiSeasonalPointForecaster.Params) {
+            return new MultiSeasonalPointForecaster((MultiSeasonalPointForecaster.Params) params);
         } else {
             throw new UnsupportedOperationException("Unsupported params type: " + params.getClass());
         }
@@ -63,6 +92,10 @@ public class DetectorFactory {
     private IntervalForecaster createIntervalForecaster(IntervalForecasterParams params) {
         if (params instanceof AdditiveIntervalForecaster.Params) {
             return new AdditiveIntervalForecaster((AdditiveIntervalForecaster.Params) params);
+        } else if (params instanceof MadIntervalForecaster.Params) {
+            return new MadIntervalForecaster((MadIntervalForecaster.Params) params);
+        } else if (params instanceof QuantileIntervalForecaster.Params) {
+            return new QuantileIntervalForecaster((QuantileIntervalForecaster.Params) params);
         } else {
             throw new UnsupportedOperationException("Unsupported params type: " + params.getClass());
         }
@@ -17,6 +17,7 @@ package com.expedia.adaptivealerting.anomdetect.comp;
 
 import com.expedia.adaptivealerting.anomdetect.DetectorException;
 import com.expedia.adaptivealerting.anomdetect.DetectorManager;
+import com.expedia.adaptivealerting.anomdetect.DetectorMappingException;
 import com.expedia.adaptivealerting.anomdetect.detectormapper.DetectorMapper;
 import com.expedia.adaptivealerting.anomdetect.DetectorNotFoundException;
 import com.expedia.adaptivealerting.anomdetect.detector.Detector;
@@ -24,6 +25,7 @@ import com.expedia.adaptivealerting.anomdetect.detectormapper.DetectorMapping;
 import com.expedia.adaptivealerting.anomdetect.detectormapper.DetectorMatchResponse;
 import com.expedia.metrics.MetricDefinition;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -58,6 +60,16 @@ public interface DetectorSource {
      */
     Detector findDetector(UUID uuid);
 
+    /**
+     * Finds the detectors for the given detector UUIDs in bulk. Prefer this over repeated calls to
+     * {@link #findDetector(UUID)} when loading many detectors at once.
+     *
+     * @param uuids Detector UUIDs.
+     * @return The detectors, keyed by UUID. Detectors that don't exist are absent from the map.
+     * @throws DetectorException if there's a problem while trying to find the detectors
+     */
+    Map<UUID, Detector> findDetectors(Collection<UUID> uuids);
+
     /**
      * Finds the list of detector UUIDs updated in last `timePeriod` minutes
      *
@@ -70,6 +82,15 @@ public interface DetectorSource {
 
     List<DetectorMapping> findUpdatedDetectorMappings(int timePeriod);
 
+    /**
+     * Finds every enabled detector mapping. This is a snapshot for matching metrics locally; keep it up to date with
+     * {@link #findUpdatedDetectorMappings(int)}.
+     *
+     * @return The enabled detector mappings.
+     * @throws DetectorMappingException if there's a problem finding the detector mappings
+     */
+    List<DetectorMapping> findEnabledDetectorMappings();
+
 
     DetectorMatchResponse findMatchingDetectorMappings(List<Map<String, String>> metricTags);
 
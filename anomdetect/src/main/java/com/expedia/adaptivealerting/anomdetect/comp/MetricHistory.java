@@ -0,0 +1,54 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import lombok.Getter;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * Recent observations of a metric, oldest first. Kept as primitive arrays so they can be fed straight into
+ * {@link Detector#classify(long[], double[], AnomalyBatchResult)}.
+ */
+@Getter
+public final class MetricHistory {
+    public static final MetricHistory EMPTY = new MetricHistory(new long[0], new double[0]);
+
+    /**
+     * Observation epoch seconds.
+     */
+    private final long[] epochSeconds;
+
+    /**
+     * Observed values.
+     */
+    private final double[] values;
+
+    public MetricHistory(long[] epochSeconds, double[] values) {
+        notNull(epochSeconds, "epochSeconds can't be null");
+        notNull(values, "values can't be null");
+        isTrue(epochSeconds.length == values.length, "epochSeconds and values must have the same length");
+        this.epochSeconds = epochSeconds;
+        this.values = values;
+    }
+
+    public int size() {
+        return values.length;
+    }
+}
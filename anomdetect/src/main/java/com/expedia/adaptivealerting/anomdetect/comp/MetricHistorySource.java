@@ -0,0 +1,36 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorException;
+import com.expedia.adaptivealerting.anomdetect.DetectorWarmStarter;
+import com.expedia.metrics.MetricDefinition;
+
+/**
+ * Source of recent metric history, used to warm start new detectors (see {@link DetectorWarmStarter}).
+ */
+public interface MetricHistorySource {
+
+    /**
+     * Finds the most recent observations of the given metric.
+     *
+     * @param metricDef The metric.
+     * @param limit     Maximum number of observations.
+     * @return The observations, oldest first. Empty if the metric has no history.
+     * @throws DetectorException if there's a problem finding the history
+     */
+    MetricHistory findHistory(MetricDefinition metricDef, int limit);
+}
@@ -26,6 +26,12 @@ import java.util.Map;
 @Accessors(chain = true)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class ModelResource {
+
+    /**
+     * Detector UUID. Only populated by bulk lookups, which need it to tell the models apart.
+     */
+    private String uuid;
+
     private ModelTypeResource detectorType;
     private Map<String, Object> params;
     private Date dateCreated;
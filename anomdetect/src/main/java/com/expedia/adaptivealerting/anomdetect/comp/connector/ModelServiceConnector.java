@@ -21,6 +21,7 @@ import com.expedia.adaptivealerting.anomdetect.DetectorMappingDeserializationExc
 import com.expedia.adaptivealerting.anomdetect.DetectorMappingRetrievalException;
 import com.expedia.adaptivealerting.anomdetect.DetectorNotFoundException;
 import com.expedia.adaptivealerting.anomdetect.DetectorRetrievalException;
+import com.expedia.adaptivealerting.anomdetect.comp.MetricHistory;
 import com.expedia.adaptivealerting.anomdetect.detectormapper.DetectorMapper;
 import com.expedia.adaptivealerting.anomdetect.detectormapper.DetectorMapping;
 import com.expedia.adaptivealerting.anomdetect.detectormapper.DetectorMatchResponse;
@@ -33,9 +34,17 @@ import lombok.val;
 import org.apache.http.client.fluent.Content;
 
 import java.io.IOException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
@@ -60,9 +69,18 @@ import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 public class ModelServiceConnector {
     public static final String API_PATH_DETECTOR_BY_METRIC_HASH = "/api/detectors/search/findByMetricHash?hash=%s";
     public static final String API_PATH_MODEL_BY_DETECTOR_UUID = "/api/models/search/findLatestByDetectorUuid?uuid=%s";
+    public static final String API_PATH_MODELS_BY_DETECTOR_UUIDS = "/api/models/search/findLatestByDetectorUuids?uuids=%s";
     public static final String API_PATH_DETECTOR_UPDATES = "/api/detectors/search/getLastUpdatedDetectors?interval=%d";
     public static final String API_PATH_DETECTOR_MAPPING_UPDATES = "/api/detectorMappings/lastUpdated?timeInSecs=%d";
+    public static final String API_PATH_ENABLED_DETECTOR_MAPPINGS = "/api/detectorMappings/enabled";
     public static final String API_PATH_MATCHING_DETECTOR_BY_TAGS = "/api/detectorMappings/findMatchingByTags";
+    public static final String API_PATH_METRIC_HISTORY = "/api/metricHistory?metricTags=%s&limit=%d";
+
+    /**
+     * Maximum number of detector UUIDs per bulk model request. This keeps the request URI well under common server
+     * limits (about 45 bytes per UUID).
+     */
+    public static final int MAX_UUIDS_PER_REQUEST = 100;
 
     private final MetricTankIdFactory metricTankIdFactory = new MetricTankIdFactory();
     private final HttpClientWrapper httpClient;
@@ -166,6 +184,60 @@ public class ModelServiceConnector {
         return modelResourceList.get(0);
     }
 
+    /**
+     * Finds the latest model for each of the given detectors. This makes one Model Service call per
+     * {@value #MAX_UUIDS_PER_REQUEST} detectors instead of one per detector.
+     *
+     * @param detectorUuids detector UUIDs
+     * @return latest model for each detector that has one, keyed by detector UUID. Detectors without models are absent.
+     * @throws DetectorRetrievalException       if there's a problem calling the Model Service
+     * @throws DetectorDeserializationException if there's a problem deserializing the Model Service response into a
+     *                                          model list (e.g., invalid models)
+     * @throws DetectorException                if there's any other problem finding the models
+     */
+    public Map<UUID, ModelResource> findLatestModels(Collection<UUID> detectorUuids) {
+        notNull(detectorUuids, "detectorUuids can't be null");
+
+        val models = new HashMap<UUID, ModelResource>();
+        val uuids = new ArrayList<UUID>(detectorUuids);
+        for (int from = 0; from < uuids.size(); from += MAX_UUIDS_PER_REQUEST) {
+            val to = Math.min(from + MAX_UUIDS_PER_REQUEST, uuids.size());
+            for (val model : findLatestModelList(uuids.subList(from, to))) {
+                models.put(UUID.fromString(model.getUuid()), model);
+            }
+        }
+        return models;
+    }
+
+    private List<ModelResource> findLatestModelList(List<UUID> detectorUuids) {
+
+        // http://modelservice/api/models/search/findLatestByDetectorUuids?uuids=%s
+        // http://modelservice/api/models/search/findLatestByDetectorUuids?uuids=85f395a2-e276-7cfd-34bc-cb850ae3bc2e,...
+        val uuidParam = detectorUuids.stream().map(UUID::toString).collect(Collectors.joining(","));
+        val uri = String.format(baseUri + API_PATH_MODELS_BY_DETECTOR_UUIDS, uuidParam);
+
+        Content content;
+        try {
+            content = httpClient.get(uri);
+        } catch (IOException e) {
+            val message = "IOException while getting models for " + detectorUuids.size() + " detectors" +
+                    ": httpMethod=GET" +
+                    ", uri=" + uri;
+            throw new DetectorRetrievalException(message, e);
+        }
+
+        ModelResources modelResources;
+        try {
+            modelResources = objectMapper.readValue(content.asBytes(), ModelResources.class);
+        } catch (IOException e) {
+            val message = "IOException while deserializing models for detectors " + detectorUuids;
+            throw new DetectorDeserializationException(message, e);
+        }
+
+        val modelResourceList = modelResources.getEmbedded().getModels();
+        return modelResourceList == null ? Collections.emptyList() : modelResourceList;
+    }
+
     /**
      * @param sinceMinutes the time period in minutes
      * @return the list of detectormappings that were modified in last since minutes
@@ -258,4 +330,97 @@ public class ModelServiceConnector {
             throw new DetectorMappingDeserializationException(message, e);
         }
     }
+
+    /**
+     * Finds every enabled detector mapping, e.g. to match metrics against them locally.
+     *
+     * @return the enabled detector mappings
+     * @throws DetectorMappingRetrievalException       if there's a problem calling the Model Service
+     * @throws DetectorMappingDeserializationException if there's a problem deserializing the Model Service response
+     */
+    public List<DetectorMapping> findEnabledDetectorMappings() {
+        val uri = baseUri + API_PATH_ENABLED_DETECTOR_MAPPINGS;
+        Content content;
+        try {
+            content = httpClient.get(uri);
+        } catch (IOException e) {
+            val message = "IOException while getting enabled detector mappings" +
+                    ": httpMethod=GET" +
+                    ", uri=" + uri;
+            throw new DetectorMappingRetrievalException(message, e);
+        }
+
+        try {
+            List<DetectorMapping> result = objectMapper.readValue(content.asBytes(), new TypeReference<List<DetectorMapping>>() {
+            });
+            if (result == null) throw new IOException();
+            return result;
+        } catch (IOException e) {
+            throw new DetectorMappingDeserializationException("IOException while deserializing enabled detector mappings", e);
+        }
+    }
+
+    /**
+     * Finds the most recent observations of the given metric, as read by the Model Service from its metric sources.
+     *
+     * @param metricDefinition metric definition
+     * @param limit            maximum number of observations
+     * @return the observations, oldest first
+     * @throws DetectorRetrievalException       if there's a problem calling the Model Service
+     * @throws DetectorDeserializationException if there's a problem deserializing the Model Service response
+     */
+    public MetricHistory findMetricHistory(MetricDefinition metricDefinition, int limit) {
+        notNull(metricDefinition, "metricDefinition can't be null");
+        isTrue(limit > 0, "limit must be strictly positive");
+
+        // http://modelservice/api/metricHistory?metricTags=%s&limit=%d
+        // http://modelservice/api/metricHistory?metricTags=mtype%3Dcount%2Cwhat%3Dbookings&limit=336
+        val metricTags = metricTags(metricDefinition);
+        Content content;
+        try {
+            val uri = String.format(baseUri + API_PATH_METRIC_HISTORY, URLEncoder.encode(metricTags, "UTF-8"), limit);
+            content = httpClient.get(uri);
+        } catch (IOException e) {
+            val message = "IOException while getting metric history" +
+                    ": metricTags=" + metricTags +
+                    ", httpMethod=GET";
+            throw new DetectorRetrievalException(message, e);
+        }
+
+        try {
+            val points = objectMapper.readTree(content.asBytes());
+            if (points == null || !points.isArray()) {
+                throw new IOException("Expected an array of data points");
+            }
+            int size = 0;
+            val epochSeconds = new long[points.size()];
+            val values = new double[points.size()];
+            for (val point : points) {
+                val dataPoint = point.path("dataPoint");
+                if (!dataPoint.isNumber()) {
+                    continue;
+                }
+                epochSeconds[size] = point.path("epochSecond").asLong();
+                values[size] = dataPoint.asDouble();
+                size++;
+            }
+            return size == values.length
+                    ? new MetricHistory(epochSeconds, values)
+                    : new MetricHistory(Arrays.copyOf(epochSeconds, size), Arrays.copyOf(values, size));
+        } catch (IOException e) {
+            val message = "IOException while deserializing metric history" +
+                    ": metricTags=" + metricTags;
+            throw new DetectorDeserializationException(message, e);
+        }
+    }
+
+    /**
+     * Formats the metric's tags the way the Model Service metric sources expect them, e.g. {@code what=bookings},
+     * sorted by key so the same metric always maps to the same query.
+     */
+    private static String metricTags(MetricDefinition metricDefinition) {
+        return new TreeMap<>(metricDefinition.getTags().getKv()).entrySet().stream()
+                .map(tag -> tag.getKey() + "=" + tag.getValue())
+                .collect(Collectors.joining(","));
+    }
 }
@@ -16,6 +16,7 @@
 package com.expedia.adaptivealerting.anomdetect.comp.legacy;
 
 import com.expedia.adaptivealerting.anomdetect.detector.ConstantThresholdDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.AggregatorConfig;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyThresholds;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
 import lombok.Data;
@@ -41,6 +42,11 @@ public class ConstantThresholdParams {
      */
     private AnomalyThresholds thresholds;
 
+    /**
+     * Anomaly aggregator config, e.g. M-of-N. Null passes anomaly levels through unchanged.
+     */
+    private AggregatorConfig aggregatorConfig;
+
     public ConstantThresholdDetector.Params toNewParams() {
         return new ConstantThresholdDetector.Params()
                 .setType(type)
@@ -16,6 +16,7 @@
 package com.expedia.adaptivealerting.anomdetect.comp.legacy;
 
 import com.expedia.adaptivealerting.anomdetect.detector.CusumDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.AggregatorConfig;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
 import lombok.Data;
 import lombok.experimental.Accessors;
@@ -65,6 +66,11 @@ public class CusumParams {
      */
     private int warmUpPeriod = 25;
 
+    /**
+     * Anomaly aggregator config, e.g. M-of-N. Null passes anomaly levels through unchanged.
+     */
+    private AggregatorConfig aggregatorConfig;
+
     public CusumDetector.Params toNewParams() {
         return new CusumDetector.Params()
                 .setType(type)
@@ -15,6 +15,7 @@
  */
 package com.expedia.adaptivealerting.anomdetect.comp.legacy;
 
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.AggregatorConfig;
 import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
 import lombok.Data;
@@ -48,6 +49,11 @@ public final class EwmaParams {
      */
     private double initMeanEstimate = 0.0;
 
+    /**
+     * Anomaly aggregator config, e.g. M-of-N. Null passes anomaly levels through unchanged.
+     */
+    private AggregatorConfig aggregatorConfig;
+
     public EwmaPointForecaster.Params toPointForecasterParams() {
         return new EwmaPointForecaster.Params()
                 .setAlpha(alpha)
@@ -15,6 +15,7 @@
  */
 package com.expedia.adaptivealerting.anomdetect.comp.legacy;
 
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.AggregatorConfig;
 import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.HoltWintersForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersSeasonalEstimatesValidator;
@@ -123,6 +124,11 @@ public final class HoltWintersParams {
      */
     private HoltWintersTrainingMethod initTrainingMethod = HoltWintersTrainingMethod.NONE;
 
+    /**
+     * Anomaly aggregator config, e.g. M-of-N. Null passes anomaly levels through unchanged.
+     */
+    private AggregatorConfig aggregatorConfig;
+
     private final HoltWintersSeasonalEstimatesValidator seasonalEstimatesValidator = new HoltWintersSeasonalEstimatesValidator();
 
     /**
@@ -15,6 +15,8 @@
  */
 package com.expedia.adaptivealerting.anomdetect.comp.legacy;
 
+import com.expedia.adaptivealerting.anomdetect.DetectorMetrics;
+import com.expedia.adaptivealerting.anomdetect.comp.DetectorFactory;
 import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelResource;
 import com.expedia.adaptivealerting.anomdetect.detector.ConstantThresholdDetector;
 import com.expedia.adaptivealerting.anomdetect.detector.CusumDetector;
@@ -22,8 +24,12 @@ import com.expedia.adaptivealerting.anomdetect.detector.Detector;
 import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
 import com.expedia.adaptivealerting.anomdetect.detector.IndividualsDetector;
 import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.MadIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.QuantileIntervalForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.HoltWintersForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MedianPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MultiSeasonalPointForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PewmaPointForecaster;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -47,9 +53,14 @@ public class LegacyDetectorFactory {
     static final String EWMA = "ewma-detector";
     static final String HOLT_WINTERS = "holtwinters-detector";
     static final String INDIVIDUALS = "individuals-detector";
+    static final String MEDIAN = "median-detector";
+    static final String MULTI_SEASONAL = "multi-seasonal-detector";
     static final String PEWMA = "pewma-detector";
+    static final String QUANTILE = "quantile-detector";
 
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final DetectorMetrics metrics = new DetectorMetrics();
+    private final DetectorFactory detectorFactory = new DetectorFactory();
 
     // TODO Currently we use a legacy process to find the detector. The legacy process couples point forecast algos
     //  with interval forecast algos. We will decouple these shortly. [WLW]
@@ -57,6 +68,7 @@ public class LegacyDetectorFactory {
         notNull(uuid, "uuid can't be null");
         notNull(legacyDetectorConfig, "legacyDetectorConfig can't be null");
 
+        val start = System.nanoTime();
         Detector detector;
 
         // TODO Rename to legacyDetectorType [WLW]
@@ -64,11 +76,13 @@ public class LegacyDetectorFactory {
 
         // Note that constant threshold, cusum and individuals are still using the original config schema.
         if (CONSTANT_THRESHOLD.equals(detectorType)) {
-            val params = toParams(legacyDetectorConfig, ConstantThresholdParams.class).toNewParams();
-            detector = new ConstantThresholdDetector(uuid, params);
+            val params = toParams(legacyDetectorConfig, ConstantThresholdParams.class);
+            val aggregator = detectorFactory.createAggregator(params.getAggregatorConfig());
+            detector = new ConstantThresholdDetector(uuid, params.toNewParams(), aggregator);
         } else if (CUSUM.equals(detectorType)) {
-            val params = toParams(legacyDetectorConfig, CusumParams.class).toNewParams();
-            detector = new CusumDetector(uuid, params);
+            val params = toParams(legacyDetectorConfig, CusumParams.class);
+            val aggregator = detectorFactory.createAggregator(params.getAggregatorConfig());
+            detector = new CusumDetector(uuid, params.toNewParams(), aggregator);
         } else if (EWMA.equals(detectorType)) {
             detector = createEwmaDetector(uuid, toParams(legacyDetectorConfig, EwmaParams.class));
         } else if (HOLT_WINTERS.equals(detectorType)) {
@@ -78,12 +92,19 @@ public class LegacyDetectorFactory {
             //  thing we're doing with constant threshold and cusum above. But we're not currently using individuals
             //  so we can just wait til we've migrated over to the new schema. [WLW]
             detector = new IndividualsDetector(uuid, toParams(legacyDetectorConfig, IndividualsDetector.Params.class));
+        } else if (MEDIAN.equals(detectorType)) {
+            detector = createMedianDetector(uuid, toParams(legacyDetectorConfig, MedianParams.class));
+        } else if (MULTI_SEASONAL.equals(detectorType)) {
+            detector = createMultiSeasonalDetector(uuid, toParams(legacyDetectorConfig, MultiSeasonalParams.class));
         } else if (PEWMA.equals(detectorType)) {
             detector = createPewmaDetector(uuid, toParams(legacyDetectorConfig, PewmaParams.class));
+        } else if (QUANTILE.equals(detectorType)) {
+            detector = createQuantileDetector(uuid, toParams(legacyDetectorConfig, QuantileParams.class));
         } else {
             throw new IllegalArgumentException("Unknown detector type: " + detectorType);
         }
 
+        metrics.built(detector, System.nanoTime() - start);
         log.info("Created detector: {}", detector);
         return detector;
     }
@@ -94,7 +115,8 @@ public class LegacyDetectorFactory {
         params.validate();
         val pointForecaster = new EwmaPointForecaster(params.toPointForecasterParams());
         val intervalForecaster = new ExponentialWelfordIntervalForecaster(params.toIntervalForecasterParams());
-        return new ForecastingDetector(uuid, pointForecaster, intervalForecaster, AnomalyType.TWO_TAILED);
+        val aggregator = detectorFactory.createAggregator(params.getAggregatorConfig());
+        return new ForecastingDetector(uuid, pointForecaster, intervalForecaster, AnomalyType.TWO_TAILED, aggregator);
     }
 
     public Detector createHoltWintersDetector(UUID uuid, HoltWintersParams params) {
@@ -102,7 +124,28 @@ public class LegacyDetectorFactory {
         notNull(params, "params can't be null");
         val pointForecaster = new HoltWintersForecaster(params.toPointForecasterParams());
         val intervalForecaster = new ExponentialWelfordIntervalForecaster(params.toIntervalForecasterParams());
-        return new ForecastingDetector(uuid, pointForecaster, intervalForecaster, AnomalyType.TWO_TAILED);
+        val aggregator = detectorFactory.createAggregator(params.getAggregatorConfig());
+        return new ForecastingDetector(uuid, pointForecaster, intervalForecaster, AnomalyType.TWO_TAILED, aggregator);
+    }
+
+    public Detector createMedianDetector(UUID uuid, MedianParams params) {
+        notNull(uuid, "uuid can't be null");
+        notNull(params, "params can't be null");
+        params.validate();
+        val pointForecaster = new MedianPointForecaster(params.toPointForecasterParams());
+        val intervalForecaster = new MadIntervalForecaster(params.toIntervalForecasterParams());
+        val aggregator = detectorFactory.createAggregator(params.getAggregatorConfig());
+        return new ForecastingDetector(uuid, pointForecaster, intervalForecaster, AnomalyType.TWO_TAILED, aggregator);
+    }
+
+    public Detector createMultiSeasonalDetector(UUID uuid, MultiSeasonalParams params) {
+        notNull(uuid, "uuid can't be null");
+        notNull(params, "params can't be null");
+        params.validate();
+        val pointForecaster = new MultiSeasonalPointForecaster(params.toPointForecasterParams());
+        val intervalForecaster = new MadIntervalForecaster(params.toIntervalForecasterParams());
+        val aggregator = detectorFactory.createAggregator(params.getAggregatorConfig());
+        return new ForecastingDetector(uuid, pointForecaster, intervalForecaster, AnomalyType.TWO_TAILED, aggregator);
     }
 
     public Detector createPewmaDetector(UUID uuid, PewmaParams params) {
@@ -111,7 +154,18 @@ public class LegacyDetectorFactory {
         params.validate();
         val pointForecaster = new PewmaPointForecaster(params.toPointForecasterParams());
         val intervalForecaster = new ExponentialWelfordIntervalForecaster(params.toIntervalForecasterParams());
-        return new ForecastingDetector(uuid, pointForecaster, intervalForecaster, AnomalyType.TWO_TAILED);
+        val aggregator = detectorFactory.createAggregator(params.getAggregatorConfig());
+        return new ForecastingDetector(uuid, pointForecaster, intervalForecaster, AnomalyType.TWO_TAILED, aggregator);
+    }
+
+    public Detector createQuantileDetector(UUID uuid, QuantileParams params) {
+        notNull(uuid, "uuid can't be null");
+        notNull(params, "params can't be null");
+        params.validate();
+        val pointForecaster = new EwmaPointForecaster(params.toPointForecasterParams());
+        val intervalForecaster = new QuantileIntervalForecaster(params.toIntervalForecasterParams());
+        val aggregator = detectorFactory.createAggregator(params.getAggregatorConfig());
+        return new ForecastingDetector(uuid, pointForecaster, intervalForecaster, AnomalyType.TWO_TAILED, aggregator);
     }
 
     private <T> T toParams(ModelResource model, Class<T> paramsClass) {
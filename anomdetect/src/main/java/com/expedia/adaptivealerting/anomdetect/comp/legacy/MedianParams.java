@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp.legacy;
+
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.AggregatorConfig;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.MadIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MedianPointForecaster;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors(chain = true)
+@Deprecated
+public final class MedianParams {
+
+    /**
+     * Number of recent observations the median and MAD are taken over.
+     */
+    private int windowSize = 60;
+
+    /**
+     * Weak anomaly threshold, in robust sigmas.
+     */
+    private double weakSigmas = 3.0;
+
+    /**
+     * Strong anomaly threshold, in robust sigmas.
+     */
+    private double strongSigmas = 4.0;
+
+    /**
+     * How many residuals to see before emitting thresholds.
+     */
+    private int warmUpPeriod = 30;
+
+    /**
+     * Anomaly aggregator config, e.g. M-of-N. Null passes anomaly levels through unchanged.
+     */
+    private AggregatorConfig aggregatorConfig;
+
+    public MedianPointForecaster.Params toPointForecasterParams() {
+        return new MedianPointForecaster.Params()
+                .setWindowSize(windowSize);
+    }
+
+    public MadIntervalForecaster.Params toIntervalForecasterParams() {
+        return new MadIntervalForecaster.Params()
+                .setWindowSize(windowSize)
+                .setWeakSigmas(weakSigmas)
+                .setStrongSigmas(strongSigmas)
+                .setWarmUpPeriod(warmUpPeriod);
+    }
+
+    public void validate() {
+        toPointForecasterParams().validate();
+        toIntervalForecasterParams().validate();
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.expedia.adaptivealerting.anomdetect.comp.legacy;
 
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.AggregatorConfig;
 import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PewmaPointForecaster;
 import lombok.Data;
@@ -55,6 +56,11 @@ public final class PewmaParams {
      */
     private int warmUpPeriod = 30;
 
+    /**
+     * Anomaly aggregator config, e.g. M-of-N. Null passes anomaly levels through unchanged.
+     */
+    private AggregatorConfig aggregatorConfig;
+
     public PewmaPointForecaster.Params toPointForecasterParams() {
         return new PewmaPointForecaster.Params()
                 .setAlpha(alpha)
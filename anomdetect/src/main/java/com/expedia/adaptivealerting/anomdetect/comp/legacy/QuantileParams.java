@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp.legacy;
+
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.AggregatorConfig;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.QuantileIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+
+@Data
+@Accessors(chain = true)
+@Deprecated
+public final class QuantileParams {
+
+    /**
+     * Smoothing param for the EWMA point forecast.
+     */
+    private double alpha = 0.15;
+
+    /**
+     * Initial mean estimate.
+     */
+    private double initMeanEstimate = 0.0;
+
+    /**
+     * Residual quantile for the upper weak threshold.
+     */
+    private double weakQuantile = 0.95;
+
+    /**
+     * Residual quantile for the upper strong threshold.
+     */
+    private double strongQuantile = 0.99;
+
+    /**
+     * Per-observation weight decay, in (0, 1].
+     */
+    private double decay = 1.0;
+
+    /**
+     * How many residuals to see before emitting thresholds.
+     */
+    private int warmUpPeriod = 30;
+
+    /**
+     * Anomaly aggregator config, e.g. M-of-N. Null passes anomaly levels through unchanged.
+     */
+    private AggregatorConfig aggregatorConfig;
+
+    public EwmaPointForecaster.Params toPointForecasterParams() {
+        return new EwmaPointForecaster.Params()
+                .setAlpha(alpha)
+                .setInitMeanEstimate(initMeanEstimate);
+    }
+
+    public QuantileIntervalForecaster.Params toIntervalForecasterParams() {
+        return new QuantileIntervalForecaster.Params()
+                .setWeakQuantile(weakQuantile)
+                .setStrongQuantile(strongQuantile)
+                .setDecay(decay)
+                .setWarmUpPeriod(warmUpPeriod);
+    }
+
+    public void validate() {
+        isTrue(0.0 <= alpha && alpha <= 1.0, "Required: alpha in the range [0, 1]");
+        toIntervalForecasterParams().validate();
+    }
+}
@@ -19,10 +19,17 @@ import com.expedia.adaptivealerting.anomdetect.detector.aggregator.Aggregator;
 import com.expedia.adaptivealerting.anomdetect.detector.aggregator.PassThroughAggregator;
 import lombok.Getter;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.UUID;
 
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
+/**
+ * Base class for detectors with an {@link Aggregator}. Subclasses run every classified anomaly level through the
+ * aggregator, on both the single and the batch classification paths, before returning it.
+ */
 public abstract class AbstractDetector implements Detector {
 
     @Getter
@@ -43,4 +50,19 @@ public abstract class AbstractDetector implements Detector {
         this.aggregator = aggregator;
     }
 
+    /**
+     * Writes the aggregator state. Subclasses that override this should call it before writing their own state.
+     */
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        aggregator.writeState(out);
+    }
+
+    /**
+     * Reads the aggregator state. Subclasses that override this should call it before reading their own state.
+     */
+    @Override
+    public void readState(DataInput in) throws IOException {
+        aggregator.readState(in);
+    }
 }
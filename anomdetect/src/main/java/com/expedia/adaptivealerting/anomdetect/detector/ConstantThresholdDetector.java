@@ -16,23 +16,34 @@
 package com.expedia.adaptivealerting.anomdetect.detector;
 
 import com.expedia.adaptivealerting.anomdetect.comp.AnomalyClassifier;
-import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.Aggregator;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.PassThroughAggregator;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyThresholds;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
 import com.expedia.metrics.MetricData;
 import lombok.Data;
 import lombok.Getter;
 import lombok.experimental.Accessors;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.UUID;
 
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.readHeader;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.writeHeader;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
 /**
  * Anomaly detector with constant threshold for weak and strong anomalies. Supports both one- and two-tailed tests.
  */
 public final class ConstantThresholdDetector extends AbstractDetector {
+    private static final int STATE_TYPE = 0x0103;
+    private static final int STATE_VERSION = 1;
 
     @Getter
     private final Params params;
@@ -40,7 +51,11 @@ public final class ConstantThresholdDetector extends AbstractDetector {
     private final AnomalyClassifier classifier;
 
     public ConstantThresholdDetector(UUID uuid, Params params) {
-        super(uuid);
+        this(uuid, params, new PassThroughAggregator());
+    }
+
+    public ConstantThresholdDetector(UUID uuid, Params params, Aggregator aggregator) {
+        super(uuid, aggregator);
         notNull(params, "params can't be null");
         params.validate();
 
@@ -49,11 +64,52 @@ public final class ConstantThresholdDetector extends AbstractDetector {
     }
 
     @Override
-    public AnomalyResult classify(MetricData metricData) {
+    public void classify(MetricData metricData, MutableAnomalyResult out) {
         notNull(metricData, "metricData can't be null");
+        notNull(out, "out can't be null");
+        val thresholds = params.getThresholds();
+        val upperStrong = toDouble(thresholds.getUpperStrong());
+        val upperWeak = toDouble(thresholds.getUpperWeak());
+        val lowerWeak = toDouble(thresholds.getLowerWeak());
+        val lowerStrong = toDouble(thresholds.getLowerStrong());
+        val level = classifier.classify(upperStrong, upperWeak, lowerWeak, lowerStrong, metricData.getValue());
+        out.set(getAggregator().aggregate(level), Double.NaN, upperStrong, upperWeak, lowerWeak, lowerStrong);
+    }
+
+    @Override
+    public void classify(long[] timestamps, double[] values, AnomalyBatchResult out) {
+        notNull(timestamps, "timestamps can't be null");
+        notNull(values, "values can't be null");
+        notNull(out, "out can't be null");
+        isTrue(timestamps.length == values.length, "timestamps and values must have the same length");
+
+        out.reset(values.length);
         val thresholds = params.getThresholds();
-        val level = classifier.classify(thresholds, metricData.getValue());
-        return new AnomalyResult(level).setThresholds(thresholds);
+        val upperStrong = toDouble(thresholds.getUpperStrong());
+        val upperWeak = toDouble(thresholds.getUpperWeak());
+        val lowerWeak = toDouble(thresholds.getLowerWeak());
+        val lowerStrong = toDouble(thresholds.getLowerStrong());
+        for (int i = 0; i < values.length; i++) {
+            val level = classifier.classify(upperStrong, upperWeak, lowerWeak, lowerStrong, values[i]);
+            out.set(i, level, Double.NaN, upperStrong, upperWeak, lowerWeak, lowerStrong);
+        }
+        getAggregator().aggregate(out.getAnomalyLevels(), values.length);
+    }
+
+    private static double toDouble(Double threshold) {
+        return threshold == null ? Double.NaN : threshold;
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        writeHeader(out, STATE_TYPE, STATE_VERSION);
+        super.writeState(out);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        readHeader(in, STATE_TYPE, STATE_VERSION);
+        super.readState(in);
     }
 
     @Data
@@ -15,21 +15,30 @@
  */
 package com.expedia.adaptivealerting.anomdetect.detector;
 
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.Aggregator;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.PassThroughAggregator;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
-import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
 import com.expedia.metrics.MetricData;
 import lombok.Data;
 import lombok.Getter;
 import lombok.experimental.Accessors;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.UUID;
 
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.readHeader;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.writeHeader;
 import static com.expedia.adaptivealerting.core.anomaly.AnomalyLevel.MODEL_WARMUP;
 import static com.expedia.adaptivealerting.core.anomaly.AnomalyLevel.NORMAL;
 import static com.expedia.adaptivealerting.core.anomaly.AnomalyLevel.STRONG;
 import static com.expedia.adaptivealerting.core.anomaly.AnomalyLevel.WEAK;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
 /**
@@ -42,6 +51,8 @@ import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
  * </p>
  */
 public final class CusumDetector extends AbstractDetector {
+    private static final int STATE_TYPE = 0x0101;
+    private static final int STATE_VERSION = 1;
     private static final double STD_DEV_DIVISOR = 1.128;
 
     @Getter
@@ -75,7 +86,11 @@ public final class CusumDetector extends AbstractDetector {
     private double prevValue = 0.0;
 
     public CusumDetector(UUID uuid, Params params) {
-        super(uuid);
+        this(uuid, params, new PassThroughAggregator());
+    }
+
+    public CusumDetector(UUID uuid, Params params, Aggregator aggregator) {
+        super(uuid, aggregator);
         notNull(params, "params can't be null");
         params.validate();
         this.params = params;
@@ -83,11 +98,29 @@ public final class CusumDetector extends AbstractDetector {
     }
 
     @Override
-    public AnomalyResult classify(MetricData metricData) {
+    public void classify(MetricData metricData, MutableAnomalyResult out) {
         notNull(metricData, "metricData can't be null");
+        notNull(out, "out can't be null");
+        val level = getAggregator().aggregate(classify(metricData.getValue()));
+        out.set(level, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+    }
+
+    @Override
+    public void classify(long[] timestamps, double[] values, AnomalyBatchResult out) {
+        notNull(timestamps, "timestamps can't be null");
+        notNull(values, "values can't be null");
+        notNull(out, "out can't be null");
+        isTrue(timestamps.length == values.length, "timestamps and values must have the same length");
+
+        out.reset(values.length);
+        for (int i = 0; i < values.length; i++) {
+            out.set(i, classify(values[i]), Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+        }
+        getAggregator().aggregate(out.getAnomalyLevels(), values.length);
+    }
 
+    private AnomalyLevel classify(double observed) {
         val params = getParams();
-        val observed = metricData.getValue();
 
         this.movingRange += Math.abs(this.prevValue - observed);
 
@@ -104,10 +137,10 @@ public final class CusumDetector extends AbstractDetector {
         // FIXME This eventually overflows. Realistically it won't happen, but would be nice to fix it anyway. [WLW]
         this.totalDataPoints++;
 
-        Double upperStrong;
-        Double upperWeak;
-        Double lowerStrong;
-        Double lowerWeak;
+        double upperStrong;
+        double upperWeak;
+        double lowerStrong;
+        double lowerWeak;
         AnomalyLevel level;
 
         if (totalDataPoints <= params.getWarmUpPeriod()) {
@@ -160,7 +193,7 @@ public final class CusumDetector extends AbstractDetector {
             }
         }
 
-        return new AnomalyResult(level);
+        return level;
     }
 
     private void resetSums() {
@@ -175,6 +208,28 @@ public final class CusumDetector extends AbstractDetector {
         return movingRange;
     }
 
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        writeHeader(out, STATE_TYPE, STATE_VERSION);
+        super.writeState(out);
+        out.writeInt(totalDataPoints);
+        out.writeDouble(sumHigh);
+        out.writeDouble(sumLow);
+        out.writeDouble(movingRange);
+        out.writeDouble(prevValue);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        readHeader(in, STATE_TYPE, STATE_VERSION);
+        super.readState(in);
+        this.totalDataPoints = in.readInt();
+        this.sumHigh = in.readDouble();
+        this.sumLow = in.readDouble();
+        this.movingRange = in.readDouble();
+        this.prevValue = in.readDouble();
+    }
+
     @Data
     @Accessors(chain = true)
     public static final class Params implements DetectorConfig {
@@ -15,16 +15,25 @@
  */
 package com.expedia.adaptivealerting.anomdetect.detector;
 
+import com.expedia.adaptivealerting.anomdetect.checkpoint.Checkpointable;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
+import com.expedia.adaptivealerting.core.util.MetricUtil;
 import com.expedia.metrics.MetricData;
+import lombok.val;
 
 import java.util.UUID;
 
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
 /**
  * Anomaly detector interface. An anomaly detector takes a metric data point as an input, and classifies it as
  * anomalous or not as an output. See {@link AnomalyResult} for more details on the classification.
+ * Detectors that learn from the data expose their learned state through {@link Checkpointable}.
  */
-public interface Detector {
+public interface Detector extends Checkpointable {
 
     /**
      * Returns the anomaly detector UUID.
@@ -39,5 +48,49 @@ public interface Detector {
      * @param metricData Metric data point.
      * @return Anomaly result.
      */
-    AnomalyResult classify(MetricData metricData);
+    default AnomalyResult classify(MetricData metricData) {
+        val out = new MutableAnomalyResult();
+        classify(metricData, out);
+        return out.toAnomalyResult();
+    }
+
+    /**
+     * Classifies a given metric data point into a caller-owned result, overwriting all of its fields. Unlike
+     * {@link #classify(MetricData)} this doesn't allocate, so callers on the hot path should reuse a single result.
+     *
+     * @param metricData Metric data point.
+     * @param out        Anomaly result to write to.
+     */
+    void classify(MetricData metricData, MutableAnomalyResult out);
+
+    /**
+     * <p>
+     * Classifies a batch of observations of this detector's metric, in order. The result for observation {@code i} is
+     * the same as {@link #classify(MetricData)} would have returned for it, and the detector learns from the batch the
+     * same way.
+     * </p>
+     * <p>
+     * The default implementation simply classifies each observation in turn. Detectors override it with a loop over the
+     * primitive arrays that doesn't allocate per observation. If classification fails partway through the batch, the
+     * detector may already have learned from some of it.
+     * </p>
+     *
+     * @param timestamps Observation epoch seconds.
+     * @param values     Observed values. Must have the same length as timestamps.
+     * @param out        Batch result, reset to the batch size and overwritten.
+     */
+    default void classify(long[] timestamps, double[] values, AnomalyBatchResult out) {
+        notNull(timestamps, "timestamps can't be null");
+        notNull(values, "values can't be null");
+        notNull(out, "out can't be null");
+        isTrue(timestamps.length == values.length, "timestamps and values must have the same length");
+
+        out.reset(values.length);
+        val metricDef = MetricUtil.metricDefinition();
+        val result = new MutableAnomalyResult();
+        for (int i = 0; i < values.length; i++) {
+            classify(new MetricData(metricDef, values[i], timestamps[i]), result);
+            out.set(i, result);
+        }
+    }
 }
@@ -16,14 +16,17 @@
 package com.expedia.adaptivealerting.anomdetect.detector;
 
 import com.expedia.adaptivealerting.anomdetect.comp.AnomalyClassifier;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.Aggregator;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.PassThroughAggregator;
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
 import com.expedia.adaptivealerting.anomdetect.forecast.interval.IntervalForecast;
 import com.expedia.adaptivealerting.anomdetect.forecast.interval.IntervalForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.interval.IntervalForecasterParams;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecasterParams;
-import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
-import com.expedia.adaptivealerting.core.anomaly.AnomalyThresholds;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
 import com.expedia.metrics.MetricData;
 import lombok.Data;
 import lombok.Generated;
@@ -31,8 +34,14 @@ import lombok.Getter;
 import lombok.experimental.Accessors;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.UUID;
 
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.readHeader;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.writeHeader;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
 /**
@@ -44,13 +53,21 @@ import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
  * <p>
  * We actually generate two types of forecast: point and interval forecasts. These are based upon underlying
  * {@link PointForecaster} and {@link IntervalForecaster} implementations. Additionally we use {@link AnomalyType} to
- * apply either a one- or two-tailed test when generating the classification.
+ * apply either a one- or two-tailed test when generating the classification. Finally the detector's {@link Aggregator}
+ * turns the classification into the published anomaly level, e.g. escalating to STRONG once m of the last n
+ * observations were anomalous.
+ * </p>
+ * <p>
+ * The detector can also project its forecasts over the next few observations with {@link #forecastBand(int)}, e.g.
+ * for dashboards. The band is cached until the next observation, so repeated reads between observations are free.
  * </p>
  *
  * @see PointForecaster
  * @see IntervalForecaster
  */
 public class ForecastingDetector extends AbstractDetector {
+    private static final int STATE_TYPE = 0x0104;
+    private static final int STATE_VERSION = 1;
 
     @Getter
     @Generated // https://reflectoring.io/100-percent-test-coverage/
@@ -64,13 +81,30 @@ public class ForecastingDetector extends AbstractDetector {
     @Generated // https://reflectoring.io/100-percent-test-coverage/
     private AnomalyType anomalyType;
 
+    private final AnomalyClassifier classifier;
+
+    /**
+     * Band projected from the current state, or null if there's been an observation since it was last projected.
+     */
+    private ForecastBand band;
+
     public ForecastingDetector(
             UUID uuid,
             PointForecaster pointForecaster,
             IntervalForecaster intervalForecaster,
             AnomalyType anomalyType) {
 
-        super(uuid);
+        this(uuid, pointForecaster, intervalForecaster, anomalyType, new PassThroughAggregator());
+    }
+
+    public ForecastingDetector(
+            UUID uuid,
+            PointForecaster pointForecaster,
+            IntervalForecaster intervalForecaster,
+            AnomalyType anomalyType,
+            Aggregator aggregator) {
+
+        super(uuid, aggregator);
 
         notNull(pointForecaster, "pointForecaster can't be null");
         notNull(intervalForecaster, "intervalForecaster can't be null");
@@ -79,29 +113,89 @@ public class ForecastingDetector extends AbstractDetector {
         this.pointForecaster = pointForecaster;
         this.intervalForecaster = intervalForecaster;
         this.anomalyType = anomalyType;
+        this.classifier = new AnomalyClassifier(anomalyType);
     }
 
     @Override
-    public AnomalyResult classify(MetricData metricData) {
+    public void classify(MetricData metricData, MutableAnomalyResult out) {
         notNull(metricData, "metricData can't be null");
+        notNull(out, "out can't be null");
+
+        this.band = null;
+
+        pointForecaster.forecast(metricData, out);
+        intervalForecaster.forecast(metricData, out.getPredicted(), out);
+        IntervalForecast.validate(out.getUpperStrong(), out.getUpperWeak(), out.getLowerWeak(), out.getLowerStrong());
+        out.setAnomalyLevel(classifier.classify(
+                out.getUpperStrong(),
+                out.getUpperWeak(),
+                out.getLowerWeak(),
+                out.getLowerStrong(),
+                metricData.getValue()));
+        out.setAnomalyLevel(getAggregator().aggregate(out.getAnomalyLevel()));
+    }
+
+    @Override
+    public void classify(long[] timestamps, double[] values, AnomalyBatchResult out) {
+        notNull(timestamps, "timestamps can't be null");
+        notNull(values, "values can't be null");
+        notNull(out, "out can't be null");
+        isTrue(timestamps.length == values.length, "timestamps and values must have the same length");
+
+        this.band = null;
+        out.reset(values.length);
+        val predicted = out.getPredicted();
+        pointForecaster.forecast(timestamps, values, predicted);
+        intervalForecaster.forecast(timestamps, values, predicted, out);
+
+        val levels = out.getAnomalyLevels();
+        val upperStrong = out.getUpperStrong();
+        val upperWeak = out.getUpperWeak();
+        val lowerWeak = out.getLowerWeak();
+        val lowerStrong = out.getLowerStrong();
+        for (int i = 0; i < values.length; i++) {
+            IntervalForecast.validate(upperStrong[i], upperWeak[i], lowerWeak[i], lowerStrong[i]);
+            levels[i] = classifier.classify(upperStrong[i], upperWeak[i], lowerWeak[i], lowerStrong[i], values[i]);
+        }
+        getAggregator().aggregate(levels, values.length);
+    }
 
-        val pointForecast = pointForecaster.forecast(metricData);
-        val intervalForecast = intervalForecaster.forecast(metricData, pointForecast.getValue());
-        val thresholds = toAnomalyThresholds(intervalForecast);
-        val observed = metricData.getValue();
-        val level = new AnomalyClassifier(anomalyType).classify(thresholds, observed);
+    /**
+     * Returns the point and interval forecasts for the next {@code horizon} observations, projected from the current
+     * state without changing it. The band is cached until the next observation or state restore, and callers must
+     * not modify it. Like classification, this isn't thread-safe; callers that share the detector synchronize on it.
+     *
+     * @param horizon Number of observations ahead.
+     * @return Forecast band.
+     * @throws UnsupportedOperationException if the forecasters don't support horizon forecasts
+     */
+    public ForecastBand forecastBand(int horizon) {
+        isTrue(horizon > 0, "Required: horizon > 0");
+        ForecastBand band = this.band;
+        if (band == null || band.getHorizon() != horizon) {
+            band = new ForecastBand(horizon);
+            pointForecaster.forecastHorizon(band);
+            intervalForecaster.forecastHorizon(band);
+            this.band = band;
+        }
+        return band;
+    }
 
-        return new AnomalyResult(level)
-                .setPredicted(pointForecast.getValue())
-                .setThresholds(thresholds);
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        writeHeader(out, STATE_TYPE, STATE_VERSION);
+        super.writeState(out);
+        pointForecaster.writeState(out);
+        intervalForecaster.writeState(out);
     }
 
-    private AnomalyThresholds toAnomalyThresholds(IntervalForecast intervalForecast) {
-        return new AnomalyThresholds(
-                intervalForecast.getUpperStrong(),
-                intervalForecast.getUpperWeak(),
-                intervalForecast.getLowerWeak(),
-                intervalForecast.getLowerStrong());
+    @Override
+    public void readState(DataInput in) throws IOException {
+        readHeader(in, STATE_TYPE, STATE_VERSION);
+        this.band = null;
+        super.readState(in);
+        pointForecaster.readState(in);
+        intervalForecaster.readState(in);
     }
 
     /**
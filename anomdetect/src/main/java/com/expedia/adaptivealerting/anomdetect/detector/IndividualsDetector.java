@@ -15,21 +15,27 @@
  */
 package com.expedia.adaptivealerting.anomdetect.detector;
 
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
-import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
-import com.expedia.adaptivealerting.core.anomaly.AnomalyThresholds;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
 import com.expedia.metrics.MetricData;
 import lombok.Data;
 import lombok.Getter;
 import lombok.experimental.Accessors;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.UUID;
 
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.readHeader;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.writeHeader;
 import static com.expedia.adaptivealerting.core.anomaly.AnomalyLevel.MODEL_WARMUP;
 import static com.expedia.adaptivealerting.core.anomaly.AnomalyLevel.NORMAL;
 import static com.expedia.adaptivealerting.core.anomaly.AnomalyLevel.STRONG;
 import static com.expedia.adaptivealerting.core.anomaly.AnomalyLevel.WEAK;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 import static java.lang.Math.abs;
 import static java.lang.Math.sqrt;
@@ -43,6 +49,8 @@ import static java.lang.Math.sqrt;
  * @see <a href="https://www.spcforexcel.com/knowledge/variable-control-charts/individuals-control-charts">https://www.spcforexcel.com/knowledge/variable-control-charts/individuals-control-charts</a>
  */
 public final class IndividualsDetector implements Detector {
+    private static final int STATE_TYPE = 0x0102;
+    private static final int STATE_VERSION = 1;
     private static final double R_CONTROL_CHART_CONSTANT_D4 = 3.267;
     private static final double R_CONTROL_CHART_CONSTANT_D2 = 1.128;
 
@@ -117,26 +125,46 @@ public final class IndividualsDetector implements Detector {
     }
 
     @Override
-    public AnomalyResult classify(MetricData metricData) {
+    public void classify(MetricData metricData, MutableAnomalyResult out) {
         notNull(metricData, "metricData can't be null");
-
-        val params = getParams();
+        notNull(out, "out can't be null");
 
         val observed = metricData.getValue();
         val stdDev = sqrt(this.variance);
 //        val weakDelta = params.getWeakSigmas() * stdDev;
         val strongDelta = params.getStrongSigmas() * stdDev;
 
-        val currentRange = Math.abs(prevValue - observed);
-
         // TODO Modify this to use AnomalyClassifier.classify() so we can get tail checks. [WLW]
 
         // Looks like currently this detector supports only a single anomaly level (strong).
-        val thresholds = new AnomalyThresholds(
-                this.mean + strongDelta,
-                this.mean + strongDelta,
-                this.mean - strongDelta,
-                this.mean - strongDelta);
+        val upper = this.mean + strongDelta;
+        val lower = this.mean - strongDelta;
+
+        val level = classify(observed);
+        out.set(level, this.mean, upper, upper, lower, lower);
+    }
+
+    @Override
+    public void classify(long[] timestamps, double[] values, AnomalyBatchResult out) {
+        notNull(timestamps, "timestamps can't be null");
+        notNull(values, "values can't be null");
+        notNull(out, "out can't be null");
+        isTrue(timestamps.length == values.length, "timestamps and values must have the same length");
+
+        out.reset(values.length);
+        val strongSigmas = params.getStrongSigmas();
+        for (int i = 0; i < values.length; i++) {
+            val strongDelta = strongSigmas * sqrt(this.variance);
+            val upper = this.mean + strongDelta;
+            val lower = this.mean - strongDelta;
+            val level = classify(values[i]);
+            out.set(i, level, this.mean, upper, upper, lower, lower);
+        }
+    }
+
+    private AnomalyLevel classify(double observed) {
+        val params = getParams();
+        val currentRange = Math.abs(prevValue - observed);
 
         AnomalyLevel level;
 
@@ -169,11 +197,7 @@ public final class IndividualsDetector implements Detector {
             lowerControlLimit_X = this.target - multiplier * averageMovingRange;
         }
         this.prevValue = observed;
-
-        final AnomalyResult result = new AnomalyResult(level);
-        result.setPredicted(this.mean);
-        result.setThresholds(thresholds);
-        return result;
+        return level;
     }
 
     private double getRunningMean(double observed) {
@@ -184,6 +208,34 @@ public final class IndividualsDetector implements Detector {
         return movingRangeSum / Math.max(1, totalDataPoints - 1);
     }
 
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        writeHeader(out, STATE_TYPE, STATE_VERSION);
+        out.writeDouble(movingRangeSum);
+        out.writeDouble(target);
+        out.writeDouble(prevValue);
+        out.writeInt(totalDataPoints);
+        out.writeDouble(upperControlLimit_R);
+        out.writeDouble(upperControlLimit_X);
+        out.writeDouble(lowerControlLimit_X);
+        out.writeDouble(variance);
+        out.writeDouble(mean);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        readHeader(in, STATE_TYPE, STATE_VERSION);
+        this.movingRangeSum = in.readDouble();
+        this.target = in.readDouble();
+        this.prevValue = in.readDouble();
+        this.totalDataPoints = in.readInt();
+        this.upperControlLimit_R = in.readDouble();
+        this.upperControlLimit_X = in.readDouble();
+        this.lowerControlLimit_X = in.readDouble();
+        this.variance = in.readDouble();
+        this.mean = in.readDouble();
+    }
+
     @Data
     @Accessors(chain = true)
     public static final class Params implements DetectorConfig {
@@ -15,12 +15,53 @@
  */
 package com.expedia.adaptivealerting.anomdetect.detector.aggregator;
 
+import com.expedia.adaptivealerting.anomdetect.checkpoint.Checkpointable;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
 
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
 /**
- * Interface for anomaly aggregation strategies,
+ * Interface for anomaly aggregation strategies. Detectors run their aggregator on each classification, so it can
+ * suppress or escalate anomaly levels based on the detector's recent history before anything is published.
  */
-public interface Aggregator {
+public interface Aggregator extends Checkpointable {
+
+    /**
+     * Adds a classification to the aggregator's history and returns the aggregated anomaly level, without allocating.
+     *
+     * @param level Classified anomaly level.
+     * @return Aggregated anomaly level.
+     */
+    AnomalyLevel aggregate(AnomalyLevel level);
+
+    /**
+     * Aggregates a batch of classifications in order, replacing each level with its aggregated level.
+     *
+     * @param levels Classified anomaly levels.
+     * @param size   Number of levels to aggregate.
+     */
+    default void aggregate(AnomalyLevel[] levels, int size) {
+        for (int i = 0; i < size; i++) {
+            levels[i] = aggregate(levels[i]);
+        }
+    }
 
-    AnomalyResult aggregate(AnomalyResult result);
+    /**
+     * Aggregates a classification result.
+     *
+     * @param result Classification result.
+     * @return The given result if the aggregated level is the same, otherwise a copy with the aggregated level.
+     */
+    default AnomalyResult aggregate(AnomalyResult result) {
+        notNull(result, "result can't be null");
+        final AnomalyLevel level = aggregate(result.getAnomalyLevel());
+        if (level == result.getAnomalyLevel()) {
+            return result;
+        }
+        return new AnomalyResult()
+                .setAnomalyLevel(level)
+                .setPredicted(result.getPredicted())
+                .setThresholds(result.getThresholds());
+    }
 }
@@ -15,8 +15,8 @@
  */
 package com.expedia.adaptivealerting.anomdetect.detector.aggregator;
 
+import com.expedia.adaptivealerting.anomdetect.DetectorCheckpointException;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
-import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AccessLevel;
@@ -27,6 +27,13 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.checkStructure;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.readHeader;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.writeHeader;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
@@ -35,17 +42,30 @@ import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
  *
  * <ul>
  * <li>STRONG if at least m of the past n anomalies were either WEAK or STRONG;</li>
+ * <li>otherwise, if {@code suppress} is set and the passed level is WEAK or STRONG, NORMAL, so isolated anomalies
+ * don't reach the alert mapper;</li>
  * <li>otherwise, it's the anomaly level of the passed anomaly result.</li>
  * </ul>
+ *
+ * <p>
+ * The window is a ring of bits, one per classification, with a running count of the set bits. Each classification
+ * clears the oldest bit and sets the newest one, so updates are O(1) and a window costs n / 8 bytes regardless of n.
+ * </p>
  */
 public class MOfNAggregator implements Aggregator {
+    private static final int STATE_TYPE = 0x0202;
+    private static final int STATE_VERSION = 2;
 
     @Getter
     @Generated // https://reflectoring.io/100-percent-test-coverage/
     private Config config;
 
-    private final AnomalyLevel[] buffer;
-    private int bufferIndex = 0;
+    private final int m;
+    private final int n;
+    private final boolean suppress;
+    private final long[] bits;
+    private int bitIndex = 0;
+    private int numAnomalies = 0;
 
     /**
      * Creates a 3-of-5 aggregator.
@@ -57,38 +77,62 @@ public class MOfNAggregator implements Aggregator {
     public MOfNAggregator(Config config) {
         notNull(config, "config can't be null");
         this.config = config;
-        this.buffer = new AnomalyLevel[config.getN()];
+        this.m = config.getM();
+        this.n = config.getN();
+        this.suppress = config.isSuppress();
+        this.bits = new long[(n + Long.SIZE - 1) / Long.SIZE];
     }
 
     @Override
-    public AnomalyResult aggregate(AnomalyResult result) {
-        notNull(result, "result can't be null");
-
-        buffer[bufferIndex++] = result.getAnomalyLevel();
-        if (bufferIndex >= config.getN()) {
-            bufferIndex = 0;
+    public AnomalyLevel aggregate(AnomalyLevel level) {
+        val word = bitIndex >>> 6;
+        val mask = 1L << bitIndex;
+        val wasAnomaly = (bits[word] & mask) != 0L;
+        val isAnomaly = level == AnomalyLevel.WEAK || level == AnomalyLevel.STRONG;
+        if (wasAnomaly != isAnomaly) {
+            bits[word] ^= mask;
+            numAnomalies += isAnomaly ? 1 : -1;
         }
-
-        val aggregatedResult = new AnomalyResult()
-                .setAnomalyLevel(result.getAnomalyLevel())
-                .setPredicted(result.getPredicted())
-                .setThresholds(result.getThresholds());
-
-        if (numAnomalies() >= config.getM()) {
-            aggregatedResult.setAnomalyLevel(AnomalyLevel.STRONG);
+        if (++bitIndex == n) {
+            bitIndex = 0;
+        }
+        if (numAnomalies >= m) {
+            return AnomalyLevel.STRONG;
         }
+        return suppress && isAnomaly ? AnomalyLevel.NORMAL : level;
+    }
 
-        return aggregatedResult;
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        writeHeader(out, STATE_TYPE, STATE_VERSION);
+        out.writeInt(n);
+        out.writeInt(bitIndex);
+        for (val word : bits) {
+            out.writeLong(word);
+        }
     }
 
-    private int numAnomalies() {
-        int numAnomalies = 0;
-        for (int i = 0; i < buffer.length; i++) {
-            if (buffer[i] == AnomalyLevel.WEAK || buffer[i] == AnomalyLevel.STRONG) {
-                numAnomalies++;
-            }
+    @Override
+    public void readState(DataInput in) throws IOException {
+        readHeader(in, STATE_TYPE, STATE_VERSION);
+        checkStructure(n, in.readInt(), "n");
+        val index = in.readInt();
+        if (index < 0 || index >= n) {
+            throw new DetectorCheckpointException("Invalid bitIndex: " + index);
+        }
+        val words = new long[bits.length];
+        int count = 0;
+        for (int i = 0; i < words.length; i++) {
+            words[i] = in.readLong();
+            count += Long.bitCount(words[i]);
+        }
+        val tailBits = n % Long.SIZE;
+        if (tailBits != 0 && (words[words.length - 1] >>> tailBits) != 0L) {
+            throw new DetectorCheckpointException("Bits set beyond n");
         }
-        return numAnomalies;
+        System.arraycopy(words, 0, bits, 0, bits.length);
+        this.bitIndex = index;
+        this.numAnomalies = count;
     }
 
     @Data
@@ -98,13 +142,24 @@ public class MOfNAggregator implements Aggregator {
         private int m;
         private int n;
 
+        /**
+         * Whether to report WEAK and STRONG anomalies as NORMAL until m of the past n are anomalous. Otherwise they're
+         * passed through, and the aggregator only escalates.
+         */
+        private boolean suppress;
+
+        public Config(int m, int n) {
+            this(m, n, false);
+        }
+
         @JsonCreator
-        public Config(@JsonProperty("m") int m, @JsonProperty("n") int n) {
+        public Config(@JsonProperty("m") int m, @JsonProperty("n") int n, @JsonProperty("suppress") boolean suppress) {
             isTrue(m > 0, "Required: m > 0");
             isTrue(n >= m, "Required: n > m");
 
             this.m = m;
             this.n = n;
+            this.suppress = suppress;
         }
     }
 }
@@ -15,18 +15,36 @@
  */
 package com.expedia.adaptivealerting.anomdetect.detector.aggregator;
 
+import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.readHeader;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.writeHeader;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
 /**
  * "Aggregator" that simply returns the passed {@link AnomalyResult}.
  */
 public class PassThroughAggregator implements Aggregator {
+    private static final int STATE_TYPE = 0x0201;
+    private static final int STATE_VERSION = 1;
+
+    @Override
+    public AnomalyLevel aggregate(AnomalyLevel level) {
+        return level;
+    }
+
+    @Override
+    public void aggregate(AnomalyLevel[] levels, int size) {
+    }
 
     @Override
     public AnomalyResult aggregate(AnomalyResult result) {
@@ -34,6 +52,16 @@ public class PassThroughAggregator implements Aggregator {
         return result;
     }
 
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        writeHeader(out, STATE_TYPE, STATE_VERSION);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        readHeader(in, STATE_TYPE, STATE_VERSION);
+    }
+
     /**
      * Dummy config for config deserialization. We don't actually use it for anything since it has no config params.
      */
@@ -18,16 +18,13 @@ package com.expedia.adaptivealerting.anomdetect.detectormapper;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 /**
- * CacheUtil utilities.
+ * CacheUtil utilities. These build readable metric keys and detector lists for logging; the cache itself is keyed
+ * by {@link MetricKey}.
  */
 @Slf4j
 public final class CacheUtil {
@@ -43,16 +40,6 @@ public final class CacheUtil {
         return String.join(",", listOfEntries);
     }
 
-    public static Map<String, String> getTags(String hashKey) {
-        String[] keyVals = hashKey.split(",");
-        Map<String, String> tags = new HashMap<>();
-        Arrays.asList(keyVals).forEach(keyVal -> {
-            String[] kv = keyVal.split(DELIMITER);
-            tags.put(kv[0], kv[1]);
-        });
-        return tags;
-    }
-
     public static String getDetectorIds(List<Detector> detectors) {
         List<String> result = new ArrayList<>();
         detectors.forEach(detector -> {
@@ -60,14 +47,4 @@ public final class CacheUtil {
         });
         return String.join("|", result);
     }
-
-    public static List<Detector> buildDetectors(String bunchOfDetectorIds) {
-        if (bunchOfDetectorIds == null || "".equals(bunchOfDetectorIds)) {
-            return Collections.emptyList();
-        }
-        String[] detectorList = bunchOfDetectorIds.split("\\|");
-        return Arrays.asList(detectorList).stream()
-                .map(detector -> new Detector(UUID.fromString(detector)))
-                .collect(Collectors.toList());
-    }
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detectormapper;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * <p>
+ * {@link DetectorMapperCache} entry: a metric's tags and its pre-built, immutable list of detectors, so cache hits
+ * return the list as is.
+ * </p>
+ * <p>
+ * The tags are only kept to index entries for updated detector mappings, as a flat key/value array. Tag strings,
+ * detectors and whole detector lists repeat across many metrics, so they're interned weakly and entries share them.
+ * </p>
+ */
+final class CachedMapping {
+    private static final Interner<String> STRING_INTERNER = Interners.newWeakInterner();
+    private static final Interner<Detector> DETECTOR_INTERNER = Interners.newWeakInterner();
+    private static final Interner<List<Detector>> DETECTORS_INTERNER = Interners.newWeakInterner();
+    private static final String[] NO_TAGS = new String[0];
+
+    /**
+     * Tag keys and values, alternating.
+     */
+    private final String[] tags;
+
+    /**
+     * Matching detectors. Shared between entries and callers, so it must not be modified.
+     */
+    @Getter
+    private final List<Detector> detectors;
+
+    private CachedMapping(String[] tags, List<Detector> detectors) {
+        this.tags = tags;
+        this.detectors = detectors;
+    }
+
+    static CachedMapping of(Map<String, String> tags, List<Detector> detectors) {
+        final String[] flatTags = tags.isEmpty() ? NO_TAGS : new String[2 * tags.size()];
+        int i = 0;
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            flatTags[i++] = STRING_INTERNER.intern(tag.getKey());
+            flatTags[i++] = STRING_INTERNER.intern(String.valueOf(tag.getValue()));
+        }
+        return new CachedMapping(flatTags, internDetectors(detectors));
+    }
+
+    void forEachTag(BiConsumer<String, String> action) {
+        for (int i = 0; i < tags.length; i += 2) {
+            action.accept(tags[i], tags[i + 1]);
+        }
+    }
+
+    Map<String, String> getTags() {
+        final Map<String, String> result = new HashMap<>();
+        for (int i = 0; i < tags.length; i += 2) {
+            result.put(tags[i], tags[i + 1]);
+        }
+        return result;
+    }
+
+    boolean hasAnyDetector(Set<UUID> uuids) {
+        for (Detector detector : detectors) {
+            if (uuids.contains(detector.getUuid())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a copy of this entry without the given detectors.
+     */
+    CachedMapping withoutDetectors(Set<UUID> uuids) {
+        final Detector[] remaining = new Detector[detectors.size()];
+        int size = 0;
+        for (Detector detector : detectors) {
+            if (!uuids.contains(detector.getUuid())) {
+                remaining[size++] = detector;
+            }
+        }
+        return new CachedMapping(tags, immutableList(remaining, size));
+    }
+
+    private static List<Detector> internDetectors(List<Detector> detectors) {
+        final Detector[] interned = new Detector[detectors.size()];
+        for (int i = 0; i < interned.length; i++) {
+            interned[i] = DETECTOR_INTERNER.intern(detectors.get(i));
+        }
+        return immutableList(interned, interned.length);
+    }
+
+    private static List<Detector> immutableList(Detector[] detectors, int size) {
+        if (size == 0) {
+            return Collections.emptyList();
+        } else if (size == 1) {
+            return DETECTORS_INTERNER.intern(Collections.singletonList(detectors[0]));
+        }
+        return DETECTORS_INTERNER.intern(Collections.unmodifiableList(Arrays.asList(size == detectors.length
+                ? detectors
+                : Arrays.copyOf(detectors, size))));
+    }
+}
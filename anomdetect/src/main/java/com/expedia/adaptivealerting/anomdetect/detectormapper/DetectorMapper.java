@@ -20,14 +20,19 @@ import com.expedia.adaptivealerting.anomdetect.comp.DetectorSource;
 import com.expedia.adaptivealerting.core.util.AssertUtil;
 import com.expedia.metrics.MetricDefinition;
 import com.typesafe.config.Config;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -40,8 +45,13 @@ import java.util.stream.Collectors;
 @Slf4j
 public class DetectorMapper {
     private static final String CK_DETECTOR_CACHE_UPDATE_PERIOD = "detector-mapping-cache-update-period";
+    private static final String CK_DETECTOR_MAPPING_LOCAL_MATCHING = "detector-mapping-local-matching";
+    private static final String CK_DETECTOR_MAPPING_BATCH = "detector-mapping-batch";
+    static final String WARM_UP_PROGRESS_METER = "mapper.warmup.metrics";
+    static final String WARM_UP_DURATION_METER = "mapper.warmup.duration";
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-    private AtomicLong lastElasticLookUpLatency = new AtomicLong(-1);
+    private final AtomicLong warmUpProgress = Metrics.gauge(WARM_UP_PROGRESS_METER, new AtomicLong(0));
+    private final Timer warmUpDuration = Metrics.timer(WARM_UP_DURATION_METER);
 
     @Getter
     @NonNull
@@ -49,20 +59,54 @@ public class DetectorMapper {
     private DetectorMapperCache cache;
     private int detectorCacheUpdateTimePeriod;
 
+    /**
+     * Local matcher for cache misses, or null to look them up in Elasticsearch only.
+     */
+    private DetectorMappingIndex index;
+
+    private LookupBatchController batchController;
+
     public DetectorMapper(DetectorSource detectorSource, DetectorMapperCache cache, int detectorCacheUpdateTimePeriod) {
+        this(detectorSource, cache, null, detectorCacheUpdateTimePeriod);
+    }
+
+    public DetectorMapper(DetectorSource detectorSource, DetectorMapperCache cache, DetectorMappingIndex index,
+                          int detectorCacheUpdateTimePeriod) {
+        this(detectorSource, cache, index, new LookupBatchController(), detectorCacheUpdateTimePeriod);
+    }
+
+    public DetectorMapper(DetectorSource detectorSource, DetectorMapperCache cache, DetectorMappingIndex index,
+                          LookupBatchController batchController, int detectorCacheUpdateTimePeriod) {
         AssertUtil.notNull(detectorSource, "detectorSource can't be null");
+        AssertUtil.notNull(batchController, "batchController can't be null");
 
         this.detectorSource = detectorSource;
         this.cache = cache;
+        this.index = index;
+        this.batchController = batchController;
         this.detectorCacheUpdateTimePeriod = detectorCacheUpdateTimePeriod;
         this.initScheduler();
     }
 
     public DetectorMapper(DetectorSource detectorSource, Config config) {
-        this(detectorSource, new DetectorMapperCache(), config.getInt(CK_DETECTOR_CACHE_UPDATE_PERIOD));
+        this(detectorSource,
+                new DetectorMapperCache(),
+                localMatchingEnabled(config) ? new DetectorMappingIndex() : null,
+                config.hasPath(CK_DETECTOR_MAPPING_BATCH)
+                        ? new LookupBatchController(config.getConfig(CK_DETECTOR_MAPPING_BATCH))
+                        : new LookupBatchController(),
+                config.getInt(CK_DETECTOR_CACHE_UPDATE_PERIOD));
+    }
+
+    private static boolean localMatchingEnabled(Config config) {
+        return config.hasPath(CK_DETECTOR_MAPPING_LOCAL_MATCHING)
+                && config.getBoolean(CK_DETECTOR_MAPPING_LOCAL_MATCHING);
     }
 
     private void initScheduler() {
+        if (index != null) {
+            scheduler.execute(this::loadDetectorMappingIndexIfNotLoaded);
+        }
         scheduler.scheduleWithFixedDelay(() -> {
             try {
                 log.trace("Updating detector mapping cache");
@@ -74,25 +118,37 @@ public class DetectorMapper {
     }
 
     public List<Detector> getDetectorsFromCache(MetricDefinition metricDefinition) {
-        String cacheKey = CacheUtil.getKey(metricDefinition.getTags().getKv());
-        return cache.get(cacheKey);
+        Map<String, String> tags = metricDefinition.getTags().getKv();
+        if (!isLocalMatchingReady()) {
+            return cache.get(tags);
+        }
+        List<Detector> detectors = cache.getIfPresent(tags);
+        if (detectors == null) {
+            detectors = index.findDetectors(tags);
+            cache.put(tags, detectors);
+        }
+        return detectors;
     }
 
     public boolean isSuccessfulDetectorMappingLookup(List<Map<String, String>> cacheMissedMetricTags) {
+        if (isLocalMatchingReady()) {
+            log.debug("Mapping-Cache: local lookup for {} metrics", cacheMissedMetricTags.size());
+            cacheMissedMetricTags.forEach(tags -> cache.put(tags, index.findDetectors(tags)));
+            return true;
+        }
 
         log.info("Mapping-Cache: lookup for {} metrics", cacheMissedMetricTags.size());
         DetectorMatchResponse matchingDetectorMappings = detectorSource.findMatchingDetectorMappings(cacheMissedMetricTags);
 
         if (matchingDetectorMappings != null) {
 
-            lastElasticLookUpLatency.set(matchingDetectorMappings.getLookupTimeInMillis());
+            batchController.onLookup(cacheMissedMetricTags.size(), matchingDetectorMappings.getLookupTimeInMillis());
             Map<Integer, List<Detector>> groupedDetectorsByIndex = matchingDetectorMappings.getGroupedDetectorsBySearchIndex();
 
             //populate cache and result map
             groupedDetectorsByIndex.forEach((index, detectors) -> {
-                String cacheKey = CacheUtil.getKey(cacheMissedMetricTags.get(index));
                 if (!detectors.isEmpty()) {
-                    cache.put(cacheKey, detectors);
+                    cache.put(cacheMissedMetricTags.get(index), detectors);
                 }
             });
 
@@ -102,31 +158,126 @@ public class DetectorMapper {
             int i = 0;
             for (Map<String, String> tags : cacheMissedMetricTags) {
                 if (!searchIndexes.contains(i)) {
-                    String cacheKey = CacheUtil.getKey(tags);
-                    cache.put(cacheKey, Collections.EMPTY_LIST);
+                    cache.put(tags, Collections.emptyList());
                 }
                 i++;
             }
 
         } else {
-            lastElasticLookUpLatency.set(-2);
+            batchController.onLookupFailure();
         }
         return matchingDetectorMappings != null;
     }
 
-    //TODO - make batch size configureable
+    /**
+     * @return how many cache-missed metrics to look up at once, adjusted to the observed lookup times
+     * @see LookupBatchController
+     */
     public int optimalBatchSize() {
-        if (lastElasticLookUpLatency.longValue() == -1L || lastElasticLookUpLatency.longValue() > 100L) {
-            return 80;
+        return batchController.getBatchSize();
+    }
+
+    /**
+     * @return how long a cache-missed metric may wait for its batch to fill up before it's looked up anyway
+     */
+    public long maxBatchWaitMillis() {
+        return batchController.getMaxWait().toMillis();
+    }
+
+
+    /**
+     * Fills the cache before the mapper starts taking metrics, so they don't all miss at once after a restart. Loads
+     * the local matcher if enabled, and resolves the given metrics, e.g. those cached by the previous run, in batches.
+     * Progress and duration are reported as the {@value #WARM_UP_PROGRESS_METER} gauge and the
+     * {@value #WARM_UP_DURATION_METER} timer.
+     *
+     * @param metricTags tags of the metrics to resolve
+     */
+    public void warmUp(Collection<Map<String, String>> metricTags) {
+        AssertUtil.notNull(metricTags, "metricTags can't be null");
+        long start = System.nanoTime();
+        log.info("Warming up detector mapping cache for {} metrics", metricTags.size());
+        if (index != null) {
+            try {
+                // On the scheduler, so it doesn't race the load at startup.
+                scheduler.submit(this::loadDetectorMappingIndexIfNotLoaded).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                log.error("Error loading detector mappings for local matching", e);
+            }
+        }
+
+        List<Map<String, String>> batch = new ArrayList<>();
+        for (Map<String, String> tags : metricTags) {
+            batch.add(tags);
+            if (batch.size() >= optimalBatchSize()) {
+                warmUpBatch(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            warmUpBatch(batch);
+        }
+
+        long durationNanos = System.nanoTime() - start;
+        warmUpDuration.record(durationNanos, TimeUnit.NANOSECONDS);
+        log.info("Warmed up detector mapping cache with {} of {} metrics in {} ms",
+                warmUpProgress.get(), metricTags.size(), TimeUnit.NANOSECONDS.toMillis(durationNanos));
+    }
+
+    private void warmUpBatch(List<Map<String, String>> batch) {
+        if (isSuccessfulDetectorMappingLookup(batch)) {
+            warmUpProgress.addAndGet(batch.size());
+        } else {
+            log.warn("Mapping-Cache: warm-up lookup failed for {} metrics", batch.size());
+        }
+    }
+
+    /**
+     * @return tags of the metrics currently cached, e.g. to warm up the next run with
+     */
+    public List<Map<String, String>> getCachedMetricTags() {
+        return cache.getMetricTags();
+    }
+
+    private boolean isLocalMatchingReady() {
+        return index != null && index.isReady();
+    }
+
+    /**
+     * Loads the local matcher from a snapshot of the enabled detector mappings. If this fails, lookups keep going to
+     * Elasticsearch and the next cache update retries.
+     */
+    void loadDetectorMappingIndex() {
+        try {
+            List<DetectorMapping> enabledDetectorMappings = detectorSource.findEnabledDetectorMappings();
+            index.load(enabledDetectorMappings);
+            log.info("Loaded {} detector mappings for local matching", index.size());
+        } catch (Exception e) {
+            log.error("Error loading detector mappings for local matching, falling back to Elasticsearch", e);
         }
-        return 0;
     }
 
+    private void loadDetectorMappingIndexIfNotLoaded() {
+        if (!index.isLoaded()) {
+            loadDetectorMappingIndex();
+        }
+    }
 
     void detectorCacheUpdate() {
 
         List<DetectorMapping> detectorMappings = detectorSource.findUpdatedDetectorMappings(detectorCacheUpdateTimePeriod * 60);
 
+        if (index != null) {
+            if (index.isLoaded()) {
+                index.update(detectorMappings);
+            } else {
+                loadDetectorMappingIndex();
+            }
+        }
+
         List<DetectorMapping> disabledDetectorMappings = detectorMappings.stream()
                 .filter(dt -> !dt.isEnabled())
                 .collect(Collectors.toList());
@@ -17,6 +17,8 @@ package com.expedia.adaptivealerting.anomdetect.detectormapper;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Metrics;
 import lombok.extern.slf4j.Slf4j;
@@ -24,9 +26,12 @@ import lombok.extern.slf4j.Slf4j;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -36,10 +41,11 @@ import java.util.stream.Collectors;
  * <p>
  *     Ad-mapper attaches detectors to each incoming metric.
  *     Detectors matching to a given metric are fetched from modelservice, which are cached in {@linkplain DetectorMapperCache}. <br>
- *     Since this cache can grow in size, for space optimization we transform <br>
+ *     This is on the path of every incoming metric, so lookups are allocation-light and the cache is compact <br>
  *
- *      - metric into metric-key generated using {@link CacheUtil#getKey(Map)} <br>
- *      - detector's list into a concatenated string of detector uuid generated using {@link CacheUtil#getDetectorIds(List)} <br>
+ *      - metric tags are keyed by a 128-bit {@link MetricKey} fingerprint, computed without sorting or concatenating them <br>
+ *      - detectors are stored as a pre-built immutable list in a {@link CachedMapping}, so a hit doesn't parse anything <br>
+ *      - entries are indexed by tag and by detector, so mapping updates only visit the entries they affect <br>
  * eg.
  * <pre>
  *   Metric1
@@ -49,14 +55,22 @@ import java.util.stream.Collectors;
  *              }
  *      }
  *
- * has two matching detectors <em> D1(uuid= UUID_ONE), D2(uuid= UUID_TWO) </em> it will be stored in cache as <em>("k1:v1,k2:v2" : "UUID_ONE,UUID_TWO") </em>
+ * has two matching detectors <em> D1(uuid= UUID_ONE), D2(uuid= UUID_TWO) </em> it will be stored in cache as <em>(fingerprint("k1:v1,k2:v2") : [D1, D2]) </em>
  * </pre>
  * The DetectorMapperCache can be updated using methods {@link #removeDisabledDetectorMappings(List)} and {@link #invalidateMetricsWithOldDetectorMappings(List)} }
  */
 @Slf4j
 public class DetectorMapperCache {
 
-    private Cache<String, String> cache;
+    private Cache<MetricKey, CachedMapping> cache;
+
+    /**
+     * Secondary indexes from tag (key, value) and from detector UUID to the cached metrics having it, so updates to
+     * detector mappings only visit the affected entries. Guarded by {@link #indexLock}; lookups don't need it.
+     */
+    private final Map<String, Map<String, MetricKeySet>> keysByTag = new HashMap<>();
+    private final Map<UUID, MetricKeySet> keysByDetector = new HashMap<>();
+    private final Object indexLock = new Object();
     private Counter cacheHit;
     private Counter cacheMiss;
     private AtomicLong cacheSize;
@@ -67,6 +81,7 @@ public class DetectorMapperCache {
     public DetectorMapperCache() {
         this.cache = CacheBuilder.newBuilder()
                 .expireAfterWrite(120, TimeUnit.MINUTES)
+                .removalListener(this::onRemoval)
                 .build();
         this.cacheSize = Metrics.gauge("cache.size", new AtomicLong(0));
         this.cacheHit = Metrics.counter("cache.hit");
@@ -74,79 +89,107 @@ public class DetectorMapperCache {
     }
 
     /**
-     * @param key the metric-key generated using {@link CacheUtil#getKey(Map)} <br>
-     * @return the list of Detectors
+     * @param tags the metric tags
+     * @return the immutable list of Detectors, shared between lookups
+     */
+    public List<Detector> get(Map<String, String> tags) {
+        List<Detector> detectors = getIfPresent(tags);
+        return detectors == null ? Collections.emptyList() : detectors;
+    }
+
+    /**
+     * Like {@link #get(Map)}, but tells a cache miss apart from a cached empty mapping.
+     *
+     * @param tags metric tags
+     * @return the cached detectors, or null on a cache miss
      */
-    public List<Detector> get(String key) {
-        String bunchOfCachedDetectorIds = cache.getIfPresent(key);
-        if (bunchOfCachedDetectorIds == null) {
+    public List<Detector> getIfPresent(Map<String, String> tags) {
+        CachedMapping mapping = cache.getIfPresent(MetricKey.of(tags));
+        if (mapping == null) {
             this.cacheMiss.increment();
-            return Collections.emptyList();
+            return null;
         } else {
             this.cacheHit.increment();
-            return CacheUtil.buildDetectors(bunchOfCachedDetectorIds);
+            return mapping.getDetectors();
         }
     }
 
     /**
-     * @param key       the metric-key generated using {@link CacheUtil#getKey(Map)} <br>
+     * @param tags      the metric tags
      * @param detectors the detectors
      */
-    public void put(String key, List<Detector> detectors) {
-        String bunchOfDetectorIds = CacheUtil.getDetectorIds(detectors);
-        log.trace("Updating cache with {} - {}", key, bunchOfDetectorIds);
-        cache.put(key, bunchOfDetectorIds);
+    public void put(Map<String, String> tags, List<Detector> detectors) {
+        if (log.isTraceEnabled()) {
+            log.trace("Updating cache with {} - {}", CacheUtil.getKey(tags), CacheUtil.getDetectorIds(detectors));
+        }
+        put(MetricKey.of(tags), CachedMapping.of(tags, detectors));
         this.cacheSize.set(cache.size());
     }
 
+    private void put(MetricKey key, CachedMapping mapping) {
+        synchronized (indexLock) {
+            CachedMapping oldMapping = cache.getIfPresent(key);
+            cache.put(key, mapping);
+            if (oldMapping != null) {
+                unindexDetectors(key, oldMapping, mapping);
+            }
+            index(key, mapping);
+        }
+    }
+
+    /**
+     * @return the tags of every cached metric
+     */
+    public List<Map<String, String>> getMetricTags() {
+        return cache.asMap().values().stream()
+                .map(CachedMapping::getTags)
+                .collect(Collectors.toList());
+    }
 
     /**
      * Remove disabled detector mappings from cache.
      *  <pre>
      *  eg. If cache has entries
-     *  <em> ("k1:v1,k2:v2" : "UUID_ONE,UUID_TWO")</em>
-     *  <em> ("k3:v3,k3:v4" : "UUID_FIVE,UUID_ONE,UUID_THREE")</em>
+     *  <em> ("k1:v1,k2:v2" : [UUID_ONE, UUID_TWO])</em>
+     *  <em> ("k3:v3,k3:v4" : [UUID_FIVE, UUID_ONE, UUID_THREE])</em>
      *
      *  and detector  <em> D1(uuid=UUID_ONE)</em> is disabled, this method removes UUID_ONE from all cache entry values.
      *
-     *   <em> ("k1:v1,k2:v2" : "UUID_TWO")</em>
-     *   <em> ("k3:v3,k3:v4" : "UUID_FIVE,UUID_THREE")</em>
+     *   <em> ("k1:v1,k2:v2" : [UUID_TWO])</em>
+     *   <em> ("k3:v3,k3:v4" : [UUID_FIVE, UUID_THREE])</em>
      * </pre>
+     * Only the entries indexed under the disabled detectors are visited.
      *
      * @param disabledMappings the list of mappings
      */
     public void removeDisabledDetectorMappings(List<DetectorMapping> disabledMappings) {
-        List<UUID> detectorIdsOfDisabledMappings = disabledMappings.stream().map(detectorMapping -> detectorMapping.getDetector().getUuid()).collect(Collectors.toList());
+        Set<UUID> detectorIdsOfDisabledMappings = disabledMappings.stream()
+                .map(detectorMapping -> detectorMapping.getDetector().getUuid())
+                .collect(Collectors.toSet());
 
-        Map<String, String> mappingsWhichNeedsAnUpdate = new HashMap<>();
-
-        this.cache.asMap().forEach((key, bunchOfDetectorIds) -> {
-            if (detectorIdsOfDisabledMappings.stream().anyMatch(uuid -> bunchOfDetectorIds.contains(uuid.toString()))) {
-                mappingsWhichNeedsAnUpdate.put(key, bunchOfDetectorIds);
+        Map<MetricKey, CachedMapping> modifiedDetectorMappings = new HashMap<>();
+        synchronized (indexLock) {
+            for (UUID uuid : detectorIdsOfDisabledMappings) {
+                MetricKeySet keys = keysByDetector.get(uuid);
+                if (keys == null) {
+                    continue;
+                }
+                keys.forEach(key -> {
+                    CachedMapping mapping = cache.getIfPresent(key);
+                    if (mapping != null && mapping.hasAnyDetector(detectorIdsOfDisabledMappings)) {
+                        modifiedDetectorMappings.put(key, mapping.withoutDetectors(detectorIdsOfDisabledMappings));
+                    }
+                });
             }
-        });
-
-
-        Map<String, String> modifiedDetectorMappings = new HashMap<>();
-        mappingsWhichNeedsAnUpdate.forEach((key, bunchOfDetectorIds) -> {
-            String bunchOfUpdatedDetectorIds =
-                    removeDisabledDetectorIds(detectorIdsOfDisabledMappings, bunchOfDetectorIds);
-            modifiedDetectorMappings.put(key, bunchOfUpdatedDetectorIds);
-        });
-
-        log.info("removing mappings : {} from cache entries",
-                Arrays.toString(detectorIdsOfDisabledMappings.toArray()));
-        modifiedDetectorMappings.forEach((key, value) -> log.info("cache key: {}, updated mapping {}", key, value));
-
-        this.cache.putAll(modifiedDetectorMappings);
-    }
+            modifiedDetectorMappings.forEach(this::put);
+        }
 
-    private String removeDisabledDetectorIds(List<UUID> detectorUuids, String detectorIdsString) {
-        List<Detector> detectors = CacheUtil.buildDetectors(detectorIdsString);
-        detectorUuids.forEach(uuid -> {
-            detectors.remove(new Detector(uuid));
-        });
-        return CacheUtil.getDetectorIds(detectors);
+        log.info("removing mappings : {} from {} cache entries",
+                Arrays.toString(detectorIdsOfDisabledMappings.toArray()), modifiedDetectorMappings.size());
+        if (log.isDebugEnabled()) {
+            modifiedDetectorMappings.forEach((key, mapping) -> log.debug("cache key: {}, updated mapping {}",
+                    CacheUtil.getKey(mapping.getTags()), CacheUtil.getDetectorIds(mapping.getDetectors())));
+        }
     }
 
     /**
@@ -154,56 +197,118 @@ public class DetectorMapperCache {
      *
      * This causes a cache-miss and eventually removed metrics are re-populated with new mappings.
      *
+     * Each expression is flattened into AND clauses, one per branch of its ORs, and the metrics matching a clause are
+     * found by intersecting the cached metrics having each of its tags. Expressions that can't be flattened, like an
+     * empty AND matching every metric, invalidate the whole cache.
+     *
      * @param detectorMappings the new detector mappings
      */
     public void invalidateMetricsWithOldDetectorMappings(List<DetectorMapping> detectorMappings) {
-        final List<String> matchingMappings = new ArrayList<>();
-        List<Map<String, String>> listOfTagsFromExpression = findTags(detectorMappings);
-
-        //iterate over the list of cache entries and find for matches and invalidate those from cache.
-        //FIXME - This is a brute force approach with time complexity of O(n * m).
-        // But assumption is that this will work as we are doing this in memory
-        // and m (no of new mappings) will be always less.
-        this.cache.asMap().forEach((metricKey, value) -> {
-            Map<String, String> metricTags = CacheUtil.getTags(metricKey);
-            if (doMetricTagsMatchesWithTagsPresentInExpression(metricTags, listOfTagsFromExpression)) {
-                matchingMappings.add(metricKey);
+        final Set<MetricKey> matchingMetricKeys = new HashSet<>();
+        synchronized (indexLock) {
+            for (DetectorMapping detectorMapping : detectorMappings) {
+                List<Set<Field>> clauses = DetectorMappingIndex.clauses(detectorMapping.getExpression());
+                if (clauses == null) {
+                    log.warn("invalidating all cache entries for mapping with unsupported expression: {}",
+                            detectorMapping.getExpression());
+                    cache.invalidateAll();
+                    return;
+                }
+                clauses.forEach(clause -> matchingMetricKeys.addAll(findKeys(clause)));
             }
-        });
-        log.info("invalidating cache entries: {} for input : {}",
-                Arrays.toString(matchingMappings.toArray()),
+        }
+        log.info("invalidating {} cache entries for input : {}",
+                matchingMetricKeys.size(),
                 Arrays.toString(detectorMappings.stream()
                         .map(mapping -> mapping.getDetector().getUuid().toString())
                         .toArray()));
         //invalidate matches.
-        cache.invalidateAll(matchingMappings);
+        cache.invalidateAll(matchingMetricKeys);
     }
 
-    private List<Map<String, String>> findTags(List<DetectorMapping> newDetectorMappings) {
-        return newDetectorMappings.stream()
-                .map(detectorMapping ->
-                        findTagsFromDetectorMappingExpression(detectorMapping.getExpression()))
-                .collect(Collectors.toList());
+    /**
+     * Finds the cached metrics having all the given tags, starting from the tag with the fewest metrics.
+     */
+    private Set<MetricKey> findKeys(Set<Field> clause) {
+        List<MetricKeySet> keysByTerm = new ArrayList<>(clause.size());
+        for (Field term : clause) {
+            MetricKeySet keys = keysByTag.getOrDefault(term.getKey(), Collections.emptyMap()).get(term.getValue());
+            if (keys == null) {
+                return Collections.emptySet();
+            }
+            keysByTerm.add(keys);
+        }
+        keysByTerm.sort(Comparator.comparingInt(MetricKeySet::size));
+        Set<MetricKey> result = new HashSet<>();
+        keysByTerm.get(0).forEach(key -> {
+            for (int i = 1; i < keysByTerm.size(); i++) {
+                if (!keysByTerm.get(i).contains(key)) {
+                    return;
+                }
+            }
+            result.add(key);
+        });
+        return result;
     }
 
-    private boolean doMetricTagsMatchesWithTagsPresentInExpression(Map<String, String> metricTags,
-                                                                   List<Map<String, String>> tagsFromDetectorMappingExpression) {
-        //FIXME - we are doing an exact match here. so this will work as along as we always use AND condition
-        //in expression.
-        //we need to improve this logic to handle OR, NOT conditions as well.
-        for (Map<String, String> tags : tagsFromDetectorMappingExpression) {
-            for (Map.Entry<String, String> entry : tags.entrySet()) {
-                if (metricTags.get(entry.getKey()) == null
-                        || !metricTags.get(entry.getKey()).equals(entry.getValue())) {
-                    return false;
-                }
+    private void index(MetricKey key, CachedMapping mapping) {
+        mapping.forEachTag((tagKey, tagValue) -> keysByTag
+                .computeIfAbsent(tagKey, k -> new HashMap<>())
+                .computeIfAbsent(tagValue, v -> new MetricKeySet())
+                .add(key));
+        mapping.getDetectors().forEach(detector -> keysByDetector
+                .computeIfAbsent(detector.getUuid(), uuid -> new MetricKeySet())
+                .add(key));
+    }
+
+    /**
+     * Removes an entry from the indexes, once it's no longer cached. If the metric has been cached again since, only
+     * the detectors it no longer has are removed.
+     */
+    private void onRemoval(RemovalNotification<MetricKey, CachedMapping> notification) {
+        if (notification.getCause() == RemovalCause.REPLACED || notification.getValue() == null) {
+            // put() re-indexes replaced entries itself.
+            return;
+        }
+        MetricKey key = notification.getKey();
+        synchronized (indexLock) {
+            CachedMapping currentMapping = cache.getIfPresent(key);
+            unindexDetectors(key, notification.getValue(), currentMapping);
+            if (currentMapping == null) {
+                notification.getValue().forEachTag((tagKey, tagValue) -> {
+                    Map<String, MetricKeySet> keysByValue = keysByTag.get(tagKey);
+                    if (keysByValue != null && removeKey(keysByValue, tagValue, key) && keysByValue.isEmpty()) {
+                        keysByTag.remove(tagKey);
+                    }
+                });
+            }
+        }
+        this.cacheSize.set(cache.size());
+    }
+
+    private void unindexDetectors(MetricKey key, CachedMapping oldMapping, CachedMapping newMapping) {
+        for (Detector detector : oldMapping.getDetectors()) {
+            if (newMapping == null || !newMapping.getDetectors().contains(detector)) {
+                removeKey(keysByDetector, detector.getUuid(), key);
             }
         }
-        return true;
     }
 
-    private Map<String, String> findTagsFromDetectorMappingExpression(ExpressionTree expression) {
-        return expression.getOperands()
-                .stream().collect(Collectors.toMap(op -> op.getField().getKey(), op -> op.getField().getValue()));
+    /**
+     * Removes the key from the set under the given index entry, and the entry itself once its set is empty.
+     *
+     * @return whether the index entry was removed
+     */
+    private static <T> boolean removeKey(Map<T, MetricKeySet> index, T indexKey, MetricKey key) {
+        MetricKeySet keys = index.get(indexKey);
+        if (keys == null) {
+            return false;
+        }
+        keys.remove(key);
+        if (keys.isEmpty()) {
+            index.remove(indexKey);
+            return true;
+        }
+        return false;
     }
 }
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detectormapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * In-process percolator: matches metric tags against the enabled {@link DetectorMapping} expressions locally, so the
+ * ad-mapper only needs Elasticsearch as a fallback.
+ * </p>
+ * <p>
+ * Each expression is flattened into clauses, i.e. conjunctions of tag terms, one per branch of its ORs. An inverted
+ * index maps (tag key, tag value) terms to clauses, with each clause under the term fewest clauses require. To match
+ * a metric, each of its tags looks up its clauses, and each of those checks its other terms against the metric. A
+ * lookup therefore only touches the clauses posted under the metric's own tags, not every mapping.
+ * </p>
+ * <p>
+ * The index is loaded from a snapshot of the enabled mappings with {@link #load(List)} and kept in sync with
+ * {@link #update(List)}. Both rebuild an immutable snapshot of the index and swap it in, so lookups never block and
+ * always see a consistent index. Mappings the index can't represent, e.g. an empty AND, which matches every metric,
+ * leave it incomplete, and {@link #isReady()} stays false until they're gone.
+ * </p>
+ */
+@Slf4j
+public class DetectorMappingIndex {
+
+    /**
+     * Maximum number of clauses an expression may flatten into. An AND of ORs multiplies out, so this bounds the
+     * index size for pathological expressions.
+     */
+    static final int MAX_CLAUSES_PER_MAPPING = 64;
+
+    private final Map<String, DetectorMapping> mappings = new HashMap<>();
+    private volatile Snapshot snapshot;
+
+    /**
+     * Replaces the indexed mappings with the given snapshot of enabled mappings.
+     *
+     * @param enabledMappings the enabled mappings
+     */
+    public synchronized void load(List<DetectorMapping> enabledMappings) {
+        notNull(enabledMappings, "enabledMappings can't be null");
+        mappings.clear();
+        enabledMappings.stream()
+                .filter(DetectorMapping::isEnabled)
+                .forEach(mapping -> mappings.put(mappingKey(mapping), mapping));
+        rebuild();
+    }
+
+    /**
+     * Applies updated mappings: enabled mappings are added or replaced, and disabled mappings are removed. Updates
+     * before the first {@link #load(List)} are ignored, as the snapshot will include them.
+     *
+     * @param updatedMappings the updated mappings
+     */
+    public synchronized void update(List<DetectorMapping> updatedMappings) {
+        notNull(updatedMappings, "updatedMappings can't be null");
+        if (snapshot == null || updatedMappings.isEmpty()) {
+            return;
+        }
+        updatedMappings.forEach(mapping -> {
+            if (mapping.isEnabled()) {
+                mappings.put(mappingKey(mapping), mapping);
+            } else {
+                mappings.remove(mappingKey(mapping));
+            }
+        });
+        rebuild();
+    }
+
+    /**
+     * @return whether a snapshot has been loaded
+     */
+    public boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    /**
+     * @return whether a snapshot has been loaded and every mapping in it is indexed, so lookups are authoritative
+     */
+    public boolean isReady() {
+        final Snapshot current = snapshot;
+        return current != null && current.unsupportedMappings == 0;
+    }
+
+    /**
+     * @return the number of indexed mappings
+     */
+    public int size() {
+        final Snapshot current = snapshot;
+        return current == null ? 0 : current.mappingCount;
+    }
+
+    /**
+     * Finds the detectors whose mappings match the given metric tags.
+     *
+     * @param tags the metric tags
+     * @return the matching detectors, without duplicates
+     * @throws IllegalStateException if no snapshot has been loaded
+     */
+    public List<Detector> findDetectors(Map<String, String> tags) {
+        notNull(tags, "tags can't be null");
+        final Snapshot current = snapshot;
+        if (current == null) {
+            throw new IllegalStateException("No detector mappings loaded");
+        }
+        return current.match(tags);
+    }
+
+    private void rebuild() {
+        final Snapshot next = new Snapshot(mappings.values());
+        if (next.unsupportedMappings > 0) {
+            log.warn("{} of {} detector mappings can't be matched locally", next.unsupportedMappings, mappings.size());
+        }
+        log.info("Indexed {} detector mappings in {} clauses", next.mappingCount, next.clauseCount);
+        this.snapshot = next;
+    }
+
+    private static String mappingKey(DetectorMapping mapping) {
+        // Mappings always have an ID in the model service, but fall back to the content for hand-built ones.
+        return mapping.getId() != null
+                ? mapping.getId()
+                : mapping.getDetector() + "/" + mapping.getExpression();
+    }
+
+    /**
+     * Flattens an expression into its clauses, or returns null if it has no clauses the index can represent.
+     */
+    static List<Set<Field>> clauses(ExpressionTree expression) {
+        if (expression == null || expression.getOperands() == null) {
+            return null;
+        }
+        List<Set<Field>> result;
+        if (expression.getOperator() == Operator.OR) {
+            result = new ArrayList<>();
+            for (Operand operand : expression.getOperands()) {
+                final List<Set<Field>> operandClauses = clauses(operand);
+                if (operandClauses == null) {
+                    return null;
+                }
+                result.addAll(operandClauses);
+                if (result.size() > MAX_CLAUSES_PER_MAPPING) {
+                    return null;
+                }
+            }
+        } else {
+            result = Collections.singletonList(Collections.emptySet());
+            for (Operand operand : expression.getOperands()) {
+                final List<Set<Field>> operandClauses = clauses(operand);
+                if (operandClauses == null || result.size() * operandClauses.size() > MAX_CLAUSES_PER_MAPPING) {
+                    return null;
+                }
+                final List<Set<Field>> product = new ArrayList<>();
+                for (Set<Field> left : result) {
+                    for (Set<Field> right : operandClauses) {
+                        final Set<Field> clause = new LinkedHashSet<>(left);
+                        clause.addAll(right);
+                        product.add(clause);
+                    }
+                }
+                result = product;
+            }
+        }
+        for (Set<Field> clause : result) {
+            if (clause.isEmpty()) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    private static List<Set<Field>> clauses(Operand operand) {
+        if (operand.getField() != null) {
+            return Collections.singletonList(Collections.singleton(operand.getField()));
+        }
+        return clauses(operand.getExpression());
+    }
+
+    /**
+     * Immutable index over a set of mappings.
+     */
+    private static final class Snapshot {
+        private final Map<String, Map<String, Clause[]>> postings = new HashMap<>();
+        private final int clauseCount;
+        private final int mappingCount;
+        private final int unsupportedMappings;
+
+        Snapshot(Collection<DetectorMapping> mappings) {
+            final List<Clause> clauses = new ArrayList<>();
+            int unsupported = 0;
+            for (DetectorMapping mapping : mappings) {
+                final List<Set<Field>> mappingClauses = clauses(mapping.getExpression());
+                if (mapping.getDetector() == null || mappingClauses == null) {
+                    unsupported++;
+                    continue;
+                }
+                mappingClauses.forEach(terms -> clauses.add(new Clause(terms, mapping.getDetector())));
+            }
+
+            // Post each clause under its rarest term only, so terms most mappings share, like an org ID, don't make
+            // every lookup visit every clause.
+            final Map<Field, Integer> termCounts = new HashMap<>();
+            clauses.forEach(clause -> clause.terms.forEach(term -> termCounts.merge(term, 1, Integer::sum)));
+            final Map<Field, List<Clause>> postingLists = new HashMap<>();
+            for (Clause clause : clauses) {
+                final Field rarest = Collections.min(clause.terms, Comparator.comparing(termCounts::get));
+                postingLists.computeIfAbsent(rarest, term -> new ArrayList<>()).add(clause);
+            }
+            postingLists.forEach((term, termClauses) -> postings
+                    .computeIfAbsent(term.getKey(), key -> new HashMap<>())
+                    .put(term.getValue(), termClauses.toArray(new Clause[0])));
+
+            this.clauseCount = clauses.size();
+            this.mappingCount = mappings.size() - unsupported;
+            this.unsupportedMappings = unsupported;
+        }
+
+        List<Detector> match(Map<String, String> tags) {
+            List<Detector> result = null;
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                final Map<String, Clause[]> byValue = postings.get(tag.getKey());
+                final Clause[] candidates = byValue == null ? null : byValue.get(tag.getValue());
+                if (candidates == null) {
+                    continue;
+                }
+                for (Clause clause : candidates) {
+                    if (clause.matches(tags)) {
+                        if (result == null) {
+                            result = new ArrayList<>(2);
+                        }
+                        if (!result.contains(clause.detector)) {
+                            result.add(clause.detector);
+                        }
+                    }
+                }
+            }
+            return result == null ? Collections.emptyList() : Collections.unmodifiableList(result);
+        }
+    }
+
+    /**
+     * Conjunction of tag terms, all of which a metric needs to match its detector.
+     */
+    private static final class Clause {
+        private final Set<Field> terms;
+        private final String[] keys;
+        private final String[] values;
+        private final Detector detector;
+
+        Clause(Set<Field> terms, Detector detector) {
+            this.terms = terms;
+            this.keys = terms.stream().map(Field::getKey).toArray(String[]::new);
+            this.values = terms.stream().map(Field::getValue).toArray(String[]::new);
+            this.detector = detector;
+        }
+
+        boolean matches(Map<String, String> tags) {
+            for (int i = 0; i < keys.length; i++) {
+                if (!Objects.equals(values[i], tags.get(keys[i]))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
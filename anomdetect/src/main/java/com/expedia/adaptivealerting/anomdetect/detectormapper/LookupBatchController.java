@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detectormapper;
+
+import com.typesafe.config.Config;
+import io.micrometer.core.instrument.Metrics;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Sizes the batches of cache-missed metrics that the ad-mapper looks up in Elasticsearch.
+ * </p>
+ * <p>
+ * A batch is flushed once it reaches the target size or its oldest metric has waited {@code max-wait}, and larger
+ * drains are split into chunks of at most the target size. The target size follows an AIMD loop driven by the lookup
+ * time Elasticsearch reports: each full batch looked up within {@code target-lookup-time} grows it by
+ * {@code additive-increase}, and each slower or failed lookup multiplies it by {@code multiplicative-decrease}, within
+ * [{@code min-size}, {@code max-size}]. So the batches grow while Elasticsearch keeps up and back off quickly when it
+ * doesn't.
+ * </p>
+ * <p>
+ * The target size is published as the {@value #BATCH_SIZE_METER} gauge. Thread-safe.
+ * </p>
+ */
+@Slf4j
+public class LookupBatchController {
+    static final String BATCH_SIZE_METER = "mapper.lookup.batch.size";
+    static final String CK_MIN_SIZE = "min-size";
+    static final String CK_MAX_SIZE = "max-size";
+    static final String CK_INITIAL_SIZE = "initial-size";
+    static final String CK_MAX_WAIT = "max-wait";
+    static final String CK_TARGET_LOOKUP_TIME = "target-lookup-time";
+    static final String CK_ADDITIVE_INCREASE = "additive-increase";
+    static final String CK_MULTIPLICATIVE_DECREASE = "multiplicative-decrease";
+    static final int DEFAULT_MIN_SIZE = 10;
+    static final int DEFAULT_MAX_SIZE = 500;
+    static final int DEFAULT_INITIAL_SIZE = 80;
+    static final Duration DEFAULT_MAX_WAIT = Duration.ofMillis(200);
+    static final Duration DEFAULT_TARGET_LOOKUP_TIME = Duration.ofMillis(100);
+    static final int DEFAULT_ADDITIVE_INCREASE = 10;
+    static final double DEFAULT_MULTIPLICATIVE_DECREASE = 0.5;
+
+    @Getter
+    private final int minSize;
+
+    @Getter
+    private final int maxSize;
+
+    @Getter
+    private final Duration maxWait;
+
+    private final long targetLookupMillis;
+    private final int additiveIncrease;
+    private final double multiplicativeDecrease;
+    private final AtomicInteger batchSize;
+
+    /**
+     * Creates a batch controller with the default targets.
+     */
+    public LookupBatchController() {
+        this(DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE, DEFAULT_INITIAL_SIZE, DEFAULT_MAX_WAIT, DEFAULT_TARGET_LOOKUP_TIME,
+                DEFAULT_ADDITIVE_INCREASE, DEFAULT_MULTIPLICATIVE_DECREASE);
+    }
+
+    /**
+     * Creates a batch controller from the {@code detector-mapping-batch} configuration block. Missing keys fall back to
+     * the defaults.
+     *
+     * @param config Batch configuration.
+     */
+    public LookupBatchController(Config config) {
+        this(
+                config.hasPath(CK_MIN_SIZE) ? config.getInt(CK_MIN_SIZE) : DEFAULT_MIN_SIZE,
+                config.hasPath(CK_MAX_SIZE) ? config.getInt(CK_MAX_SIZE) : DEFAULT_MAX_SIZE,
+                config.hasPath(CK_INITIAL_SIZE) ? config.getInt(CK_INITIAL_SIZE) : DEFAULT_INITIAL_SIZE,
+                config.hasPath(CK_MAX_WAIT) ? config.getDuration(CK_MAX_WAIT) : DEFAULT_MAX_WAIT,
+                config.hasPath(CK_TARGET_LOOKUP_TIME)
+                        ? config.getDuration(CK_TARGET_LOOKUP_TIME)
+                        : DEFAULT_TARGET_LOOKUP_TIME,
+                config.hasPath(CK_ADDITIVE_INCREASE) ? config.getInt(CK_ADDITIVE_INCREASE) : DEFAULT_ADDITIVE_INCREASE,
+                config.hasPath(CK_MULTIPLICATIVE_DECREASE)
+                        ? config.getDouble(CK_MULTIPLICATIVE_DECREASE)
+                        : DEFAULT_MULTIPLICATIVE_DECREASE);
+    }
+
+    /**
+     * Creates a batch controller.
+     *
+     * @param minSize                Smallest target batch size.
+     * @param maxSize                Largest target batch size, and so the largest lookup.
+     * @param initialSize            Target batch size to start with.
+     * @param maxWait                How long a metric may wait for its batch to fill up.
+     * @param targetLookupTime       Lookup time the batch size is tuned for.
+     * @param additiveIncrease       Batch size increase after a full batch looked up within the target time.
+     * @param multiplicativeDecrease Batch size factor after a slow or failed lookup, in (0, 1).
+     */
+    public LookupBatchController(int minSize, int maxSize, int initialSize, Duration maxWait,
+                                 Duration targetLookupTime, int additiveIncrease, double multiplicativeDecrease) {
+        isTrue(minSize > 0, "minSize must be strictly positive");
+        isTrue(maxSize >= minSize, "maxSize must be at least minSize");
+        isTrue(minSize <= initialSize && initialSize <= maxSize, "initialSize must be in [minSize, maxSize]");
+        notNull(maxWait, "maxWait can't be null");
+        isTrue(maxWait.toMillis() > 0, "maxWait must be at least 1 ms");
+        notNull(targetLookupTime, "targetLookupTime can't be null");
+        isTrue(!targetLookupTime.isNegative(), "targetLookupTime must be non-negative");
+        isTrue(additiveIncrease >= 0, "additiveIncrease must be non-negative");
+        isTrue(0.0 < multiplicativeDecrease && multiplicativeDecrease < 1.0,
+                "multiplicativeDecrease must be in (0, 1)");
+
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.maxWait = maxWait;
+        this.targetLookupMillis = targetLookupTime.toMillis();
+        this.additiveIncrease = additiveIncrease;
+        this.multiplicativeDecrease = multiplicativeDecrease;
+        this.batchSize = new AtomicInteger(initialSize);
+        Metrics.gauge(BATCH_SIZE_METER, batchSize);
+        log.info("Initialized lookup batch controller: minSize={}, maxSize={}, initialSize={}, maxWait={}, "
+                        + "targetLookupTime={}, additiveIncrease={}, multiplicativeDecrease={}",
+                minSize, maxSize, initialSize, maxWait, targetLookupTime, additiveIncrease, multiplicativeDecrease);
+    }
+
+    /**
+     * @return the current target batch size
+     */
+    public int getBatchSize() {
+        return batchSize.get();
+    }
+
+    /**
+     * Adjusts the target batch size after a lookup.
+     *
+     * @param lookupSize       Number of metrics looked up.
+     * @param lookupTimeMillis Lookup time reported by Elasticsearch.
+     */
+    public void onLookup(int lookupSize, long lookupTimeMillis) {
+        if (lookupTimeMillis > targetLookupMillis) {
+            decrease();
+        } else {
+            // A partial batch being fast says nothing about a bigger one.
+            batchSize.updateAndGet(size -> lookupSize >= size ? Math.min(maxSize, size + additiveIncrease) : size);
+        }
+    }
+
+    /**
+     * Backs off after a failed lookup.
+     */
+    public void onLookupFailure() {
+        decrease();
+    }
+
+    private void decrease() {
+        batchSize.updateAndGet(size -> Math.max(minSize, (int) (size * multiplicativeDecrease)));
+    }
+}
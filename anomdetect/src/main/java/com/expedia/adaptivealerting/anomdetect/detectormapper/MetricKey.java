@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detectormapper;
+
+import lombok.EqualsAndHashCode;
+
+import java.util.Map;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * 128-bit fingerprint of a metric's tags, used as the {@link DetectorMapperCache} key. Each tag is hashed on its own
+ * and the tag hashes are summed, so the fingerprint doesn't depend on iteration order and is the same as that of the
+ * sorted tag set, without sorting or building intermediate collections.
+ * </p>
+ * <p>
+ * Tags are hashed in two independent 64-bit lanes, FNV-1a over the UTF-16 chars followed by the MurmurHash3
+ * finalizer. Metric tags aren't adversarial, and at 128 bits an accidental collision is negligible even for billions
+ * of metrics.
+ * </p>
+ */
+@EqualsAndHashCode
+public final class MetricKey {
+    private static final long SEED_1 = 0xcbf29ce484222325L;
+    private static final long SEED_2 = 0x84222325cbf29ce4L;
+    private static final long PRIME_1 = 0x100000001b3L;
+    private static final long PRIME_2 = 0x9e3779b97f4a7c15L;
+
+    // Hashed between key and value, outside the char range so "ab"->"c" and "a"->"bc" differ.
+    private static final long SEPARATOR = 0x10000L;
+
+    private final long high;
+    private final long low;
+
+    MetricKey(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Returns the fingerprint of the given tags.
+     *
+     * @param tags Metric tags.
+     * @return Tags fingerprint.
+     */
+    public static MetricKey of(Map<String, String> tags) {
+        notNull(tags, "tags can't be null");
+        long high = 0L;
+        long low = 0L;
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            long h1 = SEED_1;
+            long h2 = SEED_2;
+            final String key = tag.getKey();
+            for (int i = 0; i < key.length(); i++) {
+                h1 = (h1 ^ key.charAt(i)) * PRIME_1;
+                h2 = (h2 ^ key.charAt(i)) * PRIME_2;
+            }
+            h1 = (h1 ^ SEPARATOR) * PRIME_1;
+            h2 = (h2 ^ SEPARATOR) * PRIME_2;
+            final String value = String.valueOf(tag.getValue());
+            for (int i = 0; i < value.length(); i++) {
+                h1 = (h1 ^ value.charAt(i)) * PRIME_1;
+                h2 = (h2 ^ value.charAt(i)) * PRIME_2;
+            }
+            high += fmix64(h1);
+            low += fmix64(h2);
+        }
+        return new MetricKey(high, low);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+
+    private static long fmix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detectormapper;
+
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Compact set of {@link MetricKey}s, for the {@link DetectorMapperCache} secondary indexes. Every cached metric is in
+ * one set per tag and per detector, and most sets are small, so it uses open addressing over a plain array: a handful
+ * of bytes per member instead of a {@link java.util.HashMap} node, and two slots for the many singletons.
+ * </p>
+ * <p>
+ * Not thread-safe.
+ * </p>
+ */
+final class MetricKeySet {
+    private static final int MIN_CAPACITY = 2;
+
+    private MetricKey[] table = new MetricKey[MIN_CAPACITY];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(MetricKey key) {
+        return table[indexOf(key)] != null;
+    }
+
+    /**
+     * @return whether the key was added, i.e. it wasn't in the set yet
+     */
+    boolean add(MetricKey key) {
+        int i = indexOf(key);
+        if (table[i] != null) {
+            return false;
+        }
+        if (4 * (size + 1) > 3 * table.length) {
+            resize(2 * table.length);
+            i = indexOf(key);
+        }
+        table[i] = key;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return whether the key was removed, i.e. it was in the set
+     */
+    boolean remove(MetricKey key) {
+        int hole = indexOf(key);
+        if (table[hole] == null) {
+            return false;
+        }
+        table[hole] = null;
+        size--;
+
+        // Shift back the keys after the hole that can't be found past it anymore.
+        final int mask = table.length - 1;
+        for (int i = (hole + 1) & mask; table[i] != null; i = (i + 1) & mask) {
+            final int slot = slot(table[i], mask);
+            final boolean reachable = hole <= i ? hole < slot && slot <= i : hole < slot || slot <= i;
+            if (!reachable) {
+                table[hole] = table[i];
+                table[i] = null;
+                hole = i;
+            }
+        }
+        return true;
+    }
+
+    void forEach(Consumer<MetricKey> action) {
+        for (MetricKey key : table) {
+            if (key != null) {
+                action.accept(key);
+            }
+        }
+    }
+
+    /**
+     * Returns the slot holding the key, or the empty slot where it would go.
+     */
+    private int indexOf(MetricKey key) {
+        final int mask = table.length - 1;
+        int i = slot(key, mask);
+        while (table[i] != null && !table[i].equals(key)) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void resize(int capacity) {
+        final MetricKey[] oldTable = table;
+        this.table = new MetricKey[capacity];
+        for (MetricKey key : oldTable) {
+            if (key != null) {
+                table[indexOf(key)] = key;
+            }
+        }
+    }
+
+    private static int slot(MetricKey key, int mask) {
+        final int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+
+/**
+ * <p>
+ * Forecasts for the next few observations of a metric, projected from a detector's current state. Step {@code h}
+ * holds the forecast {@code h + 1} observations ahead. The point forecaster fills in the point forecasts and variance
+ * factors, and the interval forecaster then fills in the thresholds around them.
+ * </p>
+ * <p>
+ * The variance factor for a step is the forecast error variance at that step relative to the one-step-ahead variance,
+ * so it's 1 for the first step and grows with the horizon for models whose uncertainty compounds. Absent values (e.g.
+ * while the model is still training) are {@link Double#NaN}.
+ * </p>
+ */
+public final class ForecastBand {
+
+    @Getter
+    private final int horizon;
+
+    private final double[] predicted;
+    private final double[] varianceFactors;
+    private final double[] upperStrong;
+    private final double[] upperWeak;
+    private final double[] lowerWeak;
+    private final double[] lowerStrong;
+
+    /**
+     * Creates an empty band with the given horizon.
+     *
+     * @param horizon Number of steps ahead.
+     */
+    public ForecastBand(int horizon) {
+        isTrue(horizon > 0, "Required: horizon > 0");
+        this.horizon = horizon;
+        this.predicted = nans(horizon);
+        this.varianceFactors = nans(horizon);
+        this.upperStrong = nans(horizon);
+        this.upperWeak = nans(horizon);
+        this.lowerWeak = nans(horizon);
+        this.lowerStrong = nans(horizon);
+    }
+
+    public double getPredicted(int h) {
+        return predicted[h];
+    }
+
+    public double getVarianceFactor(int h) {
+        return varianceFactors[h];
+    }
+
+    public double getUpperStrong(int h) {
+        return upperStrong[h];
+    }
+
+    public double getUpperWeak(int h) {
+        return upperWeak[h];
+    }
+
+    public double getLowerWeak(int h) {
+        return lowerWeak[h];
+    }
+
+    public double getLowerStrong(int h) {
+        return lowerStrong[h];
+    }
+
+    /**
+     * Sets the point forecast for step {@code h}.
+     *
+     * @param h              Step index.
+     * @param predicted      Point forecast.
+     * @param varianceFactor Forecast error variance relative to one step ahead.
+     */
+    public void setPredicted(int h, double predicted, double varianceFactor) {
+        this.predicted[h] = predicted;
+        this.varianceFactors[h] = varianceFactor;
+    }
+
+    /**
+     * Sets the thresholds for step {@code h}.
+     *
+     * @param h           Step index.
+     * @param upperStrong Upper strong threshold.
+     * @param upperWeak   Upper weak threshold.
+     * @param lowerWeak   Lower weak threshold.
+     * @param lowerStrong Lower strong threshold.
+     */
+    public void setThresholds(int h, double upperStrong, double upperWeak, double lowerWeak, double lowerStrong) {
+        this.upperStrong[h] = upperStrong;
+        this.upperWeak[h] = upperWeak;
+        this.lowerWeak[h] = lowerWeak;
+        this.lowerStrong[h] = lowerStrong;
+    }
+
+    private static double[] nans(int length) {
+        double[] array = new double[length];
+        Arrays.fill(array, Double.NaN);
+        return array;
+    }
+}
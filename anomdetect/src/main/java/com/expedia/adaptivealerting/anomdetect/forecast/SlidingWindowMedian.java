@@ -0,0 +1,242 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+
+/**
+ * <p>
+ * Median of the last {@code capacity} values, updated in O(log capacity) per value without allocating.
+ * </p>
+ * <p>
+ * Values live in a ring buffer. The ring slots are split between a max-heap holding the lower half of the window and a
+ * min-heap holding the upper half, so the median is at the heap tops. Each slot records which heap it's in and where,
+ * so when the window is full the oldest value is removed from its heap directly rather than by lazy deletion, and the
+ * heaps never hold more than the window.
+ * </p>
+ */
+public final class SlidingWindowMedian {
+    private static final byte LOWER = 0;
+    private static final byte UPPER = 1;
+
+    private final double[] values;
+    private final byte[] heapOf;
+    private final int[] positions;
+    private final SlotHeap lower;
+    private final SlotHeap upper;
+
+    private int size;
+    private int next;
+
+    public SlidingWindowMedian(int capacity) {
+        isTrue(capacity > 0, "Required: capacity > 0");
+        this.values = new double[capacity];
+        this.heapOf = new byte[capacity];
+        this.positions = new int[capacity];
+        this.lower = new SlotHeap(capacity, true);
+        this.upper = new SlotHeap(capacity, false);
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the median of the window: the middle value, or the mean of the two middle values when the window holds an
+     * even number of values.
+     *
+     * @return Window median, or NaN if the window is empty.
+     */
+    public double median() {
+        if (size == 0) {
+            return Double.NaN;
+        }
+        if (lower.size > upper.size) {
+            return values[lower.top()];
+        }
+        return (values[lower.top()] + values[upper.top()]) / 2.0;
+    }
+
+    /**
+     * Adds a value to the window, evicting the oldest value if the window is full. NaN values are ignored.
+     *
+     * @param value Value to add.
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        int slot = next;
+        if (size == values.length) {
+            (heapOf[slot] == LOWER ? lower : upper).remove(positions[slot]);
+        } else {
+            size++;
+        }
+        values[slot] = value;
+        if (belongsInLower(value)) {
+            lower.push(slot);
+        } else {
+            upper.push(slot);
+        }
+        rebalance();
+        next = (slot + 1) % values.length;
+    }
+
+    public void clear() {
+        size = 0;
+        next = 0;
+        lower.size = 0;
+        upper.size = 0;
+    }
+
+    /**
+     * Writes the window contents, oldest first.
+     *
+     * @param out Output.
+     * @throws IOException if the write fails.
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeInt(size);
+        int slot = size == values.length ? next : 0;
+        for (int i = 0; i < size; i++) {
+            out.writeDouble(values[slot]);
+            slot = (slot + 1) % values.length;
+        }
+    }
+
+    /**
+     * Replaces the window contents with values written by {@link #writeState(DataOutput)}. If the state came from a
+     * larger window, only its most recent values are kept.
+     *
+     * @param in Input.
+     * @throws IOException if the read fails.
+     */
+    public void readState(DataInput in) throws IOException {
+        clear();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            add(in.readDouble());
+        }
+    }
+
+    // Evicting the oldest value can empty the lower heap, so fall back to the upper heap's top.
+    private boolean belongsInLower(double value) {
+        if (lower.size > 0) {
+            return value <= values[lower.top()];
+        }
+        return upper.size == 0 || value <= values[upper.top()];
+    }
+
+    // Keeps lower.size == upper.size or lower.size == upper.size + 1.
+    private void rebalance() {
+        if (lower.size > upper.size + 1) {
+            upper.push(lower.pop());
+        } else if (upper.size > lower.size) {
+            lower.push(upper.pop());
+        }
+    }
+
+    /**
+     * Binary heap of ring slots, ordered by the slots' values.
+     */
+    private final class SlotHeap {
+        private final int[] slots;
+        private final boolean max;
+        private final byte id;
+        private int size;
+
+        SlotHeap(int capacity, boolean max) {
+            this.slots = new int[capacity];
+            this.max = max;
+            this.id = max ? LOWER : UPPER;
+        }
+
+        int top() {
+            return slots[0];
+        }
+
+        void push(int slot) {
+            heapOf[slot] = id;
+            place(slot, size);
+            size++;
+            siftUp(size - 1);
+        }
+
+        int pop() {
+            int slot = slots[0];
+            remove(0);
+            return slot;
+        }
+
+        void remove(int pos) {
+            size--;
+            if (pos == size) {
+                return;
+            }
+            place(slots[size], pos);
+            siftDown(pos);
+            siftUp(pos);
+        }
+
+        private void siftUp(int pos) {
+            int slot = slots[pos];
+            while (pos > 0) {
+                int parent = (pos - 1) >>> 1;
+                if (!before(slot, slots[parent])) {
+                    break;
+                }
+                place(slots[parent], pos);
+                pos = parent;
+            }
+            place(slot, pos);
+        }
+
+        private void siftDown(int pos) {
+            int slot = slots[pos];
+            int half = size >>> 1;
+            while (pos < half) {
+                int child = 2 * pos + 1;
+                int right = child + 1;
+                if (right < size && before(slots[right], slots[child])) {
+                    child = right;
+                }
+                if (!before(slots[child], slot)) {
+                    break;
+                }
+                place(slots[child], pos);
+                pos = child;
+            }
+            place(slot, pos);
+        }
+
+        private boolean before(int a, int b) {
+            return max ? values[a] > values[b] : values[a] < values[b];
+        }
+
+        private void place(int slot, int pos) {
+            slots[pos] = slot;
+            positions[slot] = pos;
+        }
+    }
+}
@@ -15,32 +15,99 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.interval;
 
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
 import com.expedia.metrics.MetricData;
 import lombok.Data;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.Accessors;
+import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.readHeader;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.writeHeader;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
 @RequiredArgsConstructor
 public class AdditiveIntervalForecaster implements IntervalForecaster {
+    private static final int STATE_TYPE = 0x0402;
+    private static final int STATE_VERSION = 1;
 
     @Getter
     @NonNull
     private Params params;
 
     @Override
-    public IntervalForecast forecast(MetricData metricData, double pointForecast) {
+    public void forecast(MetricData metricData, double pointForecast, MutableAnomalyResult out) {
         notNull(metricData, "metricData can't be null");
 
-        return new IntervalForecast(
-                pointForecast + params.getStrongValue(),
-                pointForecast + params.getWeakValue(),
-                pointForecast - params.getWeakValue(),
-                pointForecast - params.getStrongValue());
+        val upperStrong = pointForecast + params.getStrongValue();
+        val upperWeak = pointForecast + params.getWeakValue();
+        val lowerWeak = pointForecast - params.getWeakValue();
+        val lowerStrong = pointForecast - params.getStrongValue();
+        IntervalForecast.validate(upperStrong, upperWeak, lowerWeak, lowerStrong);
+        out.setThresholds(upperStrong, upperWeak, lowerWeak, lowerStrong);
+    }
+
+    @Override
+    public void forecast(long[] timestamps, double[] values, double[] pointForecasts, AnomalyBatchResult out) {
+        val upperStrong = out.getUpperStrong();
+        val upperWeak = out.getUpperWeak();
+        val lowerWeak = out.getLowerWeak();
+        val lowerStrong = out.getLowerStrong();
+        val weakValue = params.getWeakValue();
+        val strongValue = params.getStrongValue();
+        for (int i = 0; i < values.length; i++) {
+            val pointForecast = pointForecasts[i];
+            val us = pointForecast + strongValue;
+            val uw = pointForecast + weakValue;
+            val lw = pointForecast - weakValue;
+            val ls = pointForecast - strongValue;
+            IntervalForecast.validate(us, uw, lw, ls);
+            upperStrong[i] = us;
+            upperWeak[i] = uw;
+            lowerWeak[i] = lw;
+            lowerStrong[i] = ls;
+        }
+    }
+
+    /**
+     * Applies the same fixed offsets at every step. They're configured rather than estimated from the data, so they
+     * don't widen with the horizon.
+     */
+    @Override
+    public void forecastHorizon(ForecastBand band) {
+        notNull(band, "band can't be null");
+        for (int h = 0; h < band.getHorizon(); h++) {
+            val pointForecast = band.getPredicted(h);
+            if (Double.isNaN(pointForecast)) {
+                continue;
+            }
+            val upperStrong = pointForecast + params.getStrongValue();
+            val upperWeak = pointForecast + params.getWeakValue();
+            val lowerWeak = pointForecast - params.getWeakValue();
+            val lowerStrong = pointForecast - params.getStrongValue();
+            IntervalForecast.validate(upperStrong, upperWeak, lowerWeak, lowerStrong);
+            band.setThresholds(h, upperStrong, upperWeak, lowerWeak, lowerStrong);
+        }
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        // Stateless. The header still guards against restoring another forecaster's state.
+        writeHeader(out, STATE_TYPE, STATE_VERSION);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        readHeader(in, STATE_TYPE, STATE_VERSION);
     }
 
     @Data
@@ -15,12 +15,21 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.interval;
 
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
 import com.expedia.metrics.MetricData;
 import lombok.Data;
 import lombok.Getter;
 import lombok.experimental.Accessors;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.readHeader;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.writeHeader;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.isBetween;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
@@ -39,6 +48,8 @@ import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
  * </ul>
  */
 public class ExponentialWelfordIntervalForecaster implements IntervalForecaster {
+    private static final int STATE_TYPE = 0x0401;
+    private static final int STATE_VERSION = 1;
 
     @Getter
     private Params params;
@@ -57,7 +68,7 @@ public class ExponentialWelfordIntervalForecaster implements IntervalForecaster
     }
 
     @Override
-    public IntervalForecast forecast(MetricData metricData, double pointForecast) {
+    public void forecast(MetricData metricData, double pointForecast, MutableAnomalyResult out) {
 
         // https://en.wikipedia.org/wiki/Moving_average#Exponentially_weighted_moving_variance_and_standard_deviation
         // http://people.ds.cam.ac.uk/fanf2/hermes/doc/antiforgery/stats.pdf
@@ -66,7 +77,10 @@ public class ExponentialWelfordIntervalForecaster implements IntervalForecaster
         val incr = params.getAlpha() * residual;
 
         // FIXME I believe this belongs here... [WLW]
-        this.variance = (1.0 - params.getAlpha()) * (this.variance + residual * incr);
+        // A missing point forecast has no residual, and would make the variance NaN from then on.
+        if (!Double.isNaN(residual)) {
+            this.variance = (1.0 - params.getAlpha()) * (this.variance + residual * incr);
+        }
 
         val stdev = Math.sqrt(variance);
         val weakWidth = params.getWeakSigmas() * stdev;
@@ -75,11 +89,80 @@ public class ExponentialWelfordIntervalForecaster implements IntervalForecaster
         // FIXME ...but this is where it is in the legacy code (and where the unit tests expect it). [WLW]
 //        this.variance = (1.0 - params.getAlpha()) * (this.variance + residual * incr);
 
-        return new IntervalForecast(
-                pointForecast + strongWidth,
-                pointForecast + weakWidth,
-                pointForecast - weakWidth,
-                pointForecast - strongWidth);
+        val upperStrong = pointForecast + strongWidth;
+        val upperWeak = pointForecast + weakWidth;
+        val lowerWeak = pointForecast - weakWidth;
+        val lowerStrong = pointForecast - strongWidth;
+        IntervalForecast.validate(upperStrong, upperWeak, lowerWeak, lowerStrong);
+        out.setThresholds(upperStrong, upperWeak, lowerWeak, lowerStrong);
+    }
+
+    @Override
+    public void forecast(long[] timestamps, double[] values, double[] pointForecasts, AnomalyBatchResult out) {
+        val upperStrong = out.getUpperStrong();
+        val upperWeak = out.getUpperWeak();
+        val lowerWeak = out.getLowerWeak();
+        val lowerStrong = out.getLowerStrong();
+        val alpha = params.getAlpha();
+        val weakSigmas = params.getWeakSigmas();
+        val strongSigmas = params.getStrongSigmas();
+        for (int i = 0; i < values.length; i++) {
+            val pointForecast = pointForecasts[i];
+            val residual = values[i] - pointForecast;
+            if (!Double.isNaN(residual)) {
+                this.variance = (1.0 - alpha) * (this.variance + residual * (alpha * residual));
+            }
+
+            val stdev = Math.sqrt(variance);
+            val weakWidth = weakSigmas * stdev;
+            val strongWidth = strongSigmas * stdev;
+            val us = pointForecast + strongWidth;
+            val uw = pointForecast + weakWidth;
+            val lw = pointForecast - weakWidth;
+            val ls = pointForecast - strongWidth;
+            IntervalForecast.validate(us, uw, lw, ls);
+            upperStrong[i] = us;
+            upperWeak[i] = uw;
+            lowerWeak[i] = lw;
+            lowerStrong[i] = ls;
+        }
+    }
+
+    /**
+     * Scales the current standard deviation by the square root of each step's variance factor, so the band widens with
+     * the horizon as the point forecaster's uncertainty compounds.
+     */
+    @Override
+    public void forecastHorizon(ForecastBand band) {
+        notNull(band, "band can't be null");
+        val weakSigmas = params.getWeakSigmas();
+        val strongSigmas = params.getStrongSigmas();
+        for (int h = 0; h < band.getHorizon(); h++) {
+            val pointForecast = band.getPredicted(h);
+            if (Double.isNaN(pointForecast)) {
+                continue;
+            }
+            val stdev = Math.sqrt(variance * band.getVarianceFactor(h));
+            val weakWidth = weakSigmas * stdev;
+            val strongWidth = strongSigmas * stdev;
+            band.setThresholds(h,
+                    pointForecast + strongWidth,
+                    pointForecast + weakWidth,
+                    pointForecast - weakWidth,
+                    pointForecast - strongWidth);
+        }
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        writeHeader(out, STATE_TYPE, STATE_VERSION);
+        out.writeDouble(variance);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        readHeader(in, STATE_TYPE, STATE_VERSION);
+        this.variance = in.readDouble();
     }
 
     @Data
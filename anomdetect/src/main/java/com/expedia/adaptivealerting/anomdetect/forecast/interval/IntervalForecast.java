@@ -20,8 +20,6 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
-
 @Data
 @NoArgsConstructor
 public class IntervalForecast {
@@ -37,16 +35,41 @@ public class IntervalForecast {
             @JsonProperty("lowerWeak") double lowerWeak,
             @JsonProperty("lowerStrong") double lowerStrong) {
 
-        isTrue(upperStrong >= upperWeak,
-                String.format("Required: upperStrong (%f) >= upperWeak (%f)", upperStrong, upperWeak));
-        isTrue(upperWeak >= lowerWeak,
-                String.format("Required: upperWeak (%f) >= lowerWeak (%f)", upperWeak, lowerWeak));
-        isTrue(lowerWeak >= lowerStrong,
-                String.format("Required: lowerWeak (%f) >= lowerStrong (%f)", lowerWeak, lowerStrong));
+        validate(upperStrong, upperWeak, lowerWeak, lowerStrong);
 
         this.upperStrong = upperStrong;
         this.upperWeak = upperWeak;
         this.lowerWeak = lowerWeak;
         this.lowerStrong = lowerStrong;
     }
+
+    /**
+     * Checks that the bounds are ordered. Batch forecasts use this instead of creating an {@link IntervalForecast}, so
+     * the messages are only formatted on failure. All four bounds absent (NaN) is valid: there's no interval when
+     * there's no point forecast yet.
+     *
+     * @param upperStrong Upper strong bound.
+     * @param upperWeak   Upper weak bound.
+     * @param lowerWeak   Lower weak bound.
+     * @param lowerStrong Lower strong bound.
+     * @throws IllegalArgumentException if the bounds aren't ordered
+     */
+    public static void validate(double upperStrong, double upperWeak, double lowerWeak, double lowerStrong) {
+        if (Double.isNaN(upperStrong) && Double.isNaN(upperWeak) && Double.isNaN(lowerWeak)
+                && Double.isNaN(lowerStrong)) {
+            return;
+        }
+        if (!(upperStrong >= upperWeak)) {
+            throw new IllegalArgumentException(
+                    String.format("Required: upperStrong (%f) >= upperWeak (%f)", upperStrong, upperWeak));
+        }
+        if (!(upperWeak >= lowerWeak)) {
+            throw new IllegalArgumentException(
+                    String.format("Required: upperWeak (%f) >= lowerWeak (%f)", upperWeak, lowerWeak));
+        }
+        if (!(lowerWeak >= lowerStrong)) {
+            throw new IllegalArgumentException(
+                    String.format("Required: lowerWeak (%f) >= lowerStrong (%f)", lowerWeak, lowerStrong));
+        }
+    }
 }
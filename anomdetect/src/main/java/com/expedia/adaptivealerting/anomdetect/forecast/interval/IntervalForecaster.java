@@ -15,9 +15,81 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.interval;
 
+import com.expedia.adaptivealerting.anomdetect.checkpoint.Checkpointable;
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
+import com.expedia.adaptivealerting.core.util.MetricUtil;
 import com.expedia.metrics.MetricData;
+import lombok.val;
 
-public interface IntervalForecaster {
+public interface IntervalForecaster extends Checkpointable {
 
-    IntervalForecast forecast(MetricData metricData, double pointForecast);
+    /**
+     * Generates an interval forecast for the observation. Allocates the forecast; see
+     * {@link #forecast(MetricData, double, MutableAnomalyResult)} for the hot path.
+     *
+     * @param metricData    Observation.
+     * @param pointForecast Point forecast for the observation.
+     * @return Interval forecast.
+     */
+    default IntervalForecast forecast(MetricData metricData, double pointForecast) {
+        val out = new MutableAnomalyResult();
+        forecast(metricData, pointForecast, out);
+        return new IntervalForecast(
+                out.getUpperStrong(),
+                out.getUpperWeak(),
+                out.getLowerWeak(),
+                out.getLowerStrong());
+    }
+
+    /**
+     * Generates an interval forecast for the observation and writes it to the thresholds of the given result, without
+     * allocating.
+     *
+     * @param metricData    Observation.
+     * @param pointForecast Point forecast for the observation.
+     * @param out           Result to write the interval forecast to.
+     */
+    void forecast(MetricData metricData, double pointForecast, MutableAnomalyResult out);
+
+    /**
+     * Generates interval forecasts for a batch of observations, in order, and writes them to the threshold columns of
+     * the batch result. Element {@code i} holds the bounds that {@link #forecast(MetricData, double)} would have
+     * returned for observation {@code i}. Implementations override the default with a loop that doesn't allocate per
+     * observation.
+     *
+     * @param timestamps     Observation epoch seconds.
+     * @param values         Observed values.
+     * @param pointForecasts Point forecasts for the observations.
+     * @param out            Batch result with room for the batch.
+     */
+    default void forecast(long[] timestamps, double[] values, double[] pointForecasts, AnomalyBatchResult out) {
+        val metricDef = MetricUtil.metricDefinition();
+        val result = new MutableAnomalyResult();
+        val upperStrong = out.getUpperStrong();
+        val upperWeak = out.getUpperWeak();
+        val lowerWeak = out.getLowerWeak();
+        val lowerStrong = out.getLowerStrong();
+        for (int i = 0; i < values.length; i++) {
+            forecast(new MetricData(metricDef, values[i], timestamps[i]), pointForecasts[i], result);
+            upperStrong[i] = result.getUpperStrong();
+            upperWeak[i] = result.getUpperWeak();
+            lowerWeak[i] = result.getLowerWeak();
+            lowerStrong[i] = result.getLowerStrong();
+        }
+    }
+
+    /**
+     * Fills in the thresholds around the point forecasts of a horizon forecast, without changing the state. Steps
+     * without a point forecast are left absent.
+     *
+     * @param band Band with point forecasts and variance factors to write the thresholds to.
+     * @throws UnsupportedOperationException if the forecaster doesn't support horizon forecasts
+     */
+    default void forecastHorizon(ForecastBand band) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " doesn't support horizon forecasts");
+    }
+
+    IntervalForecasterParams getParams();
 }
@@ -22,8 +22,10 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 @JsonSubTypes({
         @JsonSubTypes.Type(value = AdditiveIntervalForecaster.Params.class, name = "additive"),
         @JsonSubTypes.Type(value = ExponentialWelfordIntervalForecaster.Params.class, name = "exponential-welford"),
+        @JsonSubTypes.Type(value = MadIntervalForecaster.Params.class, name = "mad"),
         @JsonSubTypes.Type(value = MultiplicativeIntervalForecaster.Params.class, name = "multiplicative"),
         @JsonSubTypes.Type(value = PowerLawIntervalForecaster.Params.class, name = "power-law"),
+        @JsonSubTypes.Type(value = QuantileIntervalForecaster.Params.class, name = "quantile"),
 })
 public interface IntervalForecasterParams {
 
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast.interval;
+
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
+import com.expedia.adaptivealerting.anomdetect.forecast.SlidingWindowMedian;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
+import com.expedia.metrics.MetricData;
+import lombok.Data;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import lombok.val;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.readHeader;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.writeHeader;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Interval forecaster based on the median absolute deviation (MAD) of the last {@code windowSize} residuals. The
+ * thresholds are the point forecast plus or minus a number of robust sigmas, where a robust sigma is
+ * {@code 1.4826 * MAD}, the MAD's estimate of the standard deviation for Gaussian residuals. Up to half of the window
+ * can be outliers without inflating the bands, where a standard deviation is dragged up by a single spike.
+ * </p>
+ * <p>
+ * Paired with {@link com.expedia.adaptivealerting.anomdetect.forecast.point.MedianPointForecaster}, the residuals are
+ * deviations from the rolling median, so this is the rolling MAD of the metric itself. The bands for an observation
+ * come from the residuals before it, and are absent until the warm-up period is over.
+ * </p>
+ */
+public class MadIntervalForecaster implements IntervalForecaster {
+
+    /**
+     * Ratio of the standard deviation to the MAD for a normal distribution.
+     */
+    static final double MAD_TO_SIGMA = 1.4826;
+    private static final int STATE_TYPE = 0x0405;
+    private static final int STATE_VERSION = 1;
+
+    @Getter
+    private final Params params;
+
+    private final SlidingWindowMedian absoluteResiduals;
+
+    public MadIntervalForecaster() {
+        this(new Params());
+    }
+
+    public MadIntervalForecaster(Params params) {
+        notNull(params, "params can't be null");
+        params.validate();
+        this.params = params;
+        this.absoluteResiduals = new SlidingWindowMedian(params.getWindowSize());
+    }
+
+    @Override
+    public void forecast(MetricData metricData, double pointForecast, MutableAnomalyResult out) {
+        notNull(metricData, "metricData can't be null");
+        val sigma = robustSigma();
+        val weakWidth = params.getWeakSigmas() * sigma;
+        val strongWidth = params.getStrongSigmas() * sigma;
+        out.setThresholds(
+                pointForecast + strongWidth,
+                pointForecast + weakWidth,
+                pointForecast - weakWidth,
+                pointForecast - strongWidth);
+
+        // A missing point forecast (e.g. during warm-up) has no residual, and the window skips NaN.
+        absoluteResiduals.add(Math.abs(metricData.getValue() - pointForecast));
+    }
+
+    @Override
+    public void forecast(long[] timestamps, double[] values, double[] pointForecasts, AnomalyBatchResult out) {
+        val upperStrongOut = out.getUpperStrong();
+        val upperWeakOut = out.getUpperWeak();
+        val lowerWeakOut = out.getLowerWeak();
+        val lowerStrongOut = out.getLowerStrong();
+        val weakSigmas = params.getWeakSigmas();
+        val strongSigmas = params.getStrongSigmas();
+        for (int i = 0; i < values.length; i++) {
+            val pointForecast = pointForecasts[i];
+            val sigma = robustSigma();
+            upperStrongOut[i] = pointForecast + strongSigmas * sigma;
+            upperWeakOut[i] = pointForecast + weakSigmas * sigma;
+            lowerWeakOut[i] = pointForecast - weakSigmas * sigma;
+            lowerStrongOut[i] = pointForecast - strongSigmas * sigma;
+
+            absoluteResiduals.add(Math.abs(values[i] - pointForecast));
+        }
+    }
+
+    /**
+     * Scales the robust sigma by the square root of each step's variance factor.
+     */
+    @Override
+    public void forecastHorizon(ForecastBand band) {
+        notNull(band, "band can't be null");
+        val sigma = robustSigma();
+        if (Double.isNaN(sigma)) {
+            return;
+        }
+        for (int h = 0; h < band.getHorizon(); h++) {
+            val pointForecast = band.getPredicted(h);
+            if (Double.isNaN(pointForecast)) {
+                continue;
+            }
+            val scaledSigma = Math.sqrt(band.getVarianceFactor(h)) * sigma;
+            val weakWidth = params.getWeakSigmas() * scaledSigma;
+            val strongWidth = params.getStrongSigmas() * scaledSigma;
+            band.setThresholds(h,
+                    pointForecast + strongWidth,
+                    pointForecast + weakWidth,
+                    pointForecast - weakWidth,
+                    pointForecast - strongWidth);
+        }
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        writeHeader(out, STATE_TYPE, STATE_VERSION);
+        absoluteResiduals.writeState(out);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        readHeader(in, STATE_TYPE, STATE_VERSION);
+        absoluteResiduals.readState(in);
+    }
+
+    // NaN until the warm-up period is over.
+    private double robustSigma() {
+        if (absoluteResiduals.size() < params.getWarmUpPeriod()) {
+            return Double.NaN;
+        }
+        return MAD_TO_SIGMA * absoluteResiduals.median();
+    }
+
+    @Data
+    @Accessors(chain = true)
+    public static final class Params implements IntervalForecasterParams {
+
+        /**
+         * Number of recent residuals to take the MAD over.
+         */
+        private int windowSize = 60;
+
+        /**
+         * Weak anomaly threshold, in robust sigmas.
+         */
+        private double weakSigmas = 3.0;
+
+        /**
+         * Strong anomaly threshold, in robust sigmas.
+         */
+        private double strongSigmas = 4.0;
+
+        /**
+         * Number of residuals to see before emitting thresholds. Can't exceed the window size.
+         */
+        private int warmUpPeriod = 30;
+
+        @Override
+        public void validate() {
+            isTrue(windowSize > 0, "Required: windowSize > 0");
+            isTrue(0.0 <= weakSigmas, "Required: weakSigmas >= 0.0");
+            isTrue(weakSigmas <= strongSigmas, "Required: weakSigmas <= strongSigmas");
+            isTrue(0 < warmUpPeriod && warmUpPeriod <= windowSize, "Required: 0 < warmUpPeriod <= windowSize");
+        }
+    }
+}
@@ -15,31 +15,98 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.interval;
 
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
 import com.expedia.metrics.MetricData;
 import lombok.Data;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.Accessors;
+import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.readHeader;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.writeHeader;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
 @RequiredArgsConstructor
 public class MultiplicativeIntervalForecaster implements IntervalForecaster {
+    private static final int STATE_TYPE = 0x0403;
+    private static final int STATE_VERSION = 1;
 
     @Getter
     @NonNull
     private Params params;
 
     @Override
-    public IntervalForecast forecast(MetricData metricData, double pointForecast) {
+    public void forecast(MetricData metricData, double pointForecast, MutableAnomalyResult out) {
         notNull(metricData, "metricData can't be null");
-        return new IntervalForecast(
-                pointForecast * (1.0 + params.getStrongMultiplier()),
-                pointForecast * (1.0 + params.getWeakMultiplier()),
-                pointForecast * (1.0 - params.getWeakMultiplier()),
-                pointForecast * (1.0 - params.getStrongMultiplier()));
+        val upperStrong = pointForecast * (1.0 + params.getStrongMultiplier());
+        val upperWeak = pointForecast * (1.0 + params.getWeakMultiplier());
+        val lowerWeak = pointForecast * (1.0 - params.getWeakMultiplier());
+        val lowerStrong = pointForecast * (1.0 - params.getStrongMultiplier());
+        IntervalForecast.validate(upperStrong, upperWeak, lowerWeak, lowerStrong);
+        out.setThresholds(upperStrong, upperWeak, lowerWeak, lowerStrong);
+    }
+
+    @Override
+    public void forecast(long[] timestamps, double[] values, double[] pointForecasts, AnomalyBatchResult out) {
+        val upperStrong = out.getUpperStrong();
+        val upperWeak = out.getUpperWeak();
+        val lowerWeak = out.getLowerWeak();
+        val lowerStrong = out.getLowerStrong();
+        val weakMultiplier = params.getWeakMultiplier();
+        val strongMultiplier = params.getStrongMultiplier();
+        for (int i = 0; i < values.length; i++) {
+            val pointForecast = pointForecasts[i];
+            val us = pointForecast * (1.0 + strongMultiplier);
+            val uw = pointForecast * (1.0 + weakMultiplier);
+            val lw = pointForecast * (1.0 - weakMultiplier);
+            val ls = pointForecast * (1.0 - strongMultiplier);
+            IntervalForecast.validate(us, uw, lw, ls);
+            upperStrong[i] = us;
+            upperWeak[i] = uw;
+            lowerWeak[i] = lw;
+            lowerStrong[i] = ls;
+        }
+    }
+
+    /**
+     * Applies the same fixed multipliers at every step. They're configured rather than estimated from the data, so
+     * they don't widen with the horizon.
+     */
+    @Override
+    public void forecastHorizon(ForecastBand band) {
+        notNull(band, "band can't be null");
+        for (int h = 0; h < band.getHorizon(); h++) {
+            val pointForecast = band.getPredicted(h);
+            if (Double.isNaN(pointForecast)) {
+                continue;
+            }
+            val upperStrong = pointForecast * (1.0 + params.getStrongMultiplier());
+            val upperWeak = pointForecast * (1.0 + params.getWeakMultiplier());
+            val lowerWeak = pointForecast * (1.0 - params.getWeakMultiplier());
+            val lowerStrong = pointForecast * (1.0 - params.getStrongMultiplier());
+            IntervalForecast.validate(upperStrong, upperWeak, lowerWeak, lowerStrong);
+            band.setThresholds(h, upperStrong, upperWeak, lowerWeak, lowerStrong);
+        }
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        // Stateless. The header still guards against restoring another forecaster's state.
+        writeHeader(out, STATE_TYPE, STATE_VERSION);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        readHeader(in, STATE_TYPE, STATE_VERSION);
     }
 
     @Data
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast.interval;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Streaming estimate of a single quantile using the P-square algorithm, which tracks five markers (the minimum, the
+ * maximum, the quantile itself and the two midway quantiles) and nudges them towards their ideal positions with a
+ * piecewise-parabolic fit. Memory is constant and updates don't allocate.
+ * </p>
+ * <p>
+ * With a decay below 1, marker positions are scaled down before each update, so older observations carry
+ * exponentially less weight and the estimate follows a drifting distribution. The effective window is about
+ * {@code 1 / (1 - decay)} observations. The minimum and maximum markers only bound the fit and aren't decayed.
+ * </p>
+ *
+ * @see <a href="https://www.cse.wustl.edu/~jain/papers/ftp/psqr.pdf">The P-Square Algorithm for Dynamic Calculation of
+ * Quantiles and Histograms Without Storing Observations</a>
+ */
+final class P2Quantile {
+    private static final int MARKERS = 5;
+
+    private final double decay;
+    private final double[] increments;
+    private final double[] heights = new double[MARKERS];
+    private final double[] positions = new double[MARKERS];
+    private final double[] desired = new double[MARKERS];
+    private long count;
+
+    P2Quantile(double p, double decay) {
+        this.decay = decay;
+        this.increments = new double[]{0.0, p / 2.0, p, (1.0 + p) / 2.0, 1.0};
+    }
+
+    /**
+     * Returns the quantile estimate, or NaN until the first five observations have been seen.
+     *
+     * @return Quantile estimate.
+     */
+    double quantile() {
+        return count < MARKERS ? Double.NaN : heights[2];
+    }
+
+    long count() {
+        return count;
+    }
+
+    void add(double x) {
+        if (count < MARKERS) {
+            heights[(int) count++] = x;
+            if (count == MARKERS) {
+                Arrays.sort(heights);
+                for (int i = 0; i < MARKERS; i++) {
+                    positions[i] = i;
+                    desired[i] = (MARKERS - 1) * increments[i];
+                }
+            }
+            return;
+        }
+        count++;
+
+        if (decay < 1.0) {
+            for (int i = 1; i < MARKERS; i++) {
+                positions[i] *= decay;
+                desired[i] *= decay;
+            }
+        }
+
+        // Find the cell k such that heights[k] <= x < heights[k + 1], extending the extremes if needed.
+        int k;
+        if (x < heights[0]) {
+            heights[0] = x;
+            k = 0;
+        } else if (x >= heights[MARKERS - 1]) {
+            heights[MARKERS - 1] = x;
+            k = MARKERS - 2;
+        } else {
+            k = 0;
+            while (x >= heights[k + 1]) {
+                k++;
+            }
+        }
+        for (int i = k + 1; i < MARKERS; i++) {
+            positions[i] += 1.0;
+        }
+        for (int i = 0; i < MARKERS; i++) {
+            desired[i] += increments[i];
+        }
+
+        for (int i = 1; i < MARKERS - 1; i++) {
+            double d = desired[i] - positions[i];
+            if ((d >= 1.0 && positions[i + 1] - positions[i] > 1.0)
+                    || (d <= -1.0 && positions[i - 1] - positions[i] < -1.0)) {
+                int sign = d > 0.0 ? 1 : -1;
+                double height = parabolic(i, sign);
+                if (heights[i - 1] < height && height < heights[i + 1]) {
+                    heights[i] = height;
+                } else {
+                    heights[i] = linear(i, sign);
+                }
+                positions[i] += sign;
+            }
+        }
+    }
+
+    void writeState(DataOutput out) throws IOException {
+        out.writeLong(count);
+        for (int i = 0; i < MARKERS; i++) {
+            out.writeDouble(heights[i]);
+            out.writeDouble(positions[i]);
+            out.writeDouble(desired[i]);
+        }
+    }
+
+    void readState(DataInput in) throws IOException {
+        this.count = in.readLong();
+        for (int i = 0; i < MARKERS; i++) {
+            heights[i] = in.readDouble();
+            positions[i] = in.readDouble();
+            desired[i] = in.readDouble();
+        }
+    }
+
+    private double parabolic(int i, int sign) {
+        double below = positions[i] - positions[i - 1];
+        double above = positions[i + 1] - positions[i];
+        return heights[i] + sign / (positions[i + 1] - positions[i - 1])
+                * ((below + sign) * (heights[i + 1] - heights[i]) / above
+                + (above - sign) * (heights[i] - heights[i - 1]) / below);
+    }
+
+    private double linear(int i, int sign) {
+        return heights[i] + sign * (heights[i + sign] - heights[i]) / (positions[i + sign] - positions[i]);
+    }
+}
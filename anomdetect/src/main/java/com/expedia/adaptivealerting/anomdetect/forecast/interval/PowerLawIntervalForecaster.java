@@ -15,6 +15,9 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.interval;
 
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
 import com.expedia.metrics.MetricData;
 import lombok.Data;
 import lombok.Getter;
@@ -23,29 +26,100 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.Accessors;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.readHeader;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.writeHeader;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
 @RequiredArgsConstructor
 public class PowerLawIntervalForecaster implements IntervalForecaster {
+    private static final int STATE_TYPE = 0x0404;
+    private static final int STATE_VERSION = 1;
 
     @Getter
     @NonNull
     private Params params;
 
     @Override
-    public IntervalForecast forecast(MetricData metricData, double pointForecast) {
+    public void forecast(MetricData metricData, double pointForecast, MutableAnomalyResult out) {
         notNull(metricData, "metricData can't be null");
 
         val width = params.getAlpha() * Math.pow(pointForecast, params.getBeta());
         val weakWidth = params.getWeakMultiplier() * width;
         val strongWidth = params.getStrongMultiplier() * width;
 
-        return new IntervalForecast(
-                pointForecast + strongWidth,
-                pointForecast + weakWidth,
-                pointForecast - weakWidth,
-                pointForecast - strongWidth);
+        val upperStrong = pointForecast + strongWidth;
+        val upperWeak = pointForecast + weakWidth;
+        val lowerWeak = pointForecast - weakWidth;
+        val lowerStrong = pointForecast - strongWidth;
+        IntervalForecast.validate(upperStrong, upperWeak, lowerWeak, lowerStrong);
+        out.setThresholds(upperStrong, upperWeak, lowerWeak, lowerStrong);
+    }
+
+    @Override
+    public void forecast(long[] timestamps, double[] values, double[] pointForecasts, AnomalyBatchResult out) {
+        val upperStrong = out.getUpperStrong();
+        val upperWeak = out.getUpperWeak();
+        val lowerWeak = out.getLowerWeak();
+        val lowerStrong = out.getLowerStrong();
+        val alpha = params.getAlpha();
+        val beta = params.getBeta();
+        val weakMultiplier = params.getWeakMultiplier();
+        val strongMultiplier = params.getStrongMultiplier();
+        for (int i = 0; i < values.length; i++) {
+            val pointForecast = pointForecasts[i];
+            val width = alpha * Math.pow(pointForecast, beta);
+            val weakWidth = weakMultiplier * width;
+            val strongWidth = strongMultiplier * width;
+            val us = pointForecast + strongWidth;
+            val uw = pointForecast + weakWidth;
+            val lw = pointForecast - weakWidth;
+            val ls = pointForecast - strongWidth;
+            IntervalForecast.validate(us, uw, lw, ls);
+            upperStrong[i] = us;
+            upperWeak[i] = uw;
+            lowerWeak[i] = lw;
+            lowerStrong[i] = ls;
+        }
+    }
+
+    /**
+     * Applies the power law to each step's point forecast. The widths depend only on the point forecast, so they
+     * don't widen with the horizon.
+     */
+    @Override
+    public void forecastHorizon(ForecastBand band) {
+        notNull(band, "band can't be null");
+        for (int h = 0; h < band.getHorizon(); h++) {
+            val pointForecast = band.getPredicted(h);
+            if (Double.isNaN(pointForecast)) {
+                continue;
+            }
+            val width = params.getAlpha() * Math.pow(pointForecast, params.getBeta());
+            val weakWidth = params.getWeakMultiplier() * width;
+            val strongWidth = params.getStrongMultiplier() * width;
+            val upperStrong = pointForecast + strongWidth;
+            val upperWeak = pointForecast + weakWidth;
+            val lowerWeak = pointForecast - weakWidth;
+            val lowerStrong = pointForecast - strongWidth;
+            IntervalForecast.validate(upperStrong, upperWeak, lowerWeak, lowerStrong);
+            band.setThresholds(h, upperStrong, upperWeak, lowerWeak, lowerStrong);
+        }
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        // Stateless. The header still guards against restoring another forecaster's state.
+        writeHeader(out, STATE_TYPE, STATE_VERSION);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        readHeader(in, STATE_TYPE, STATE_VERSION);
     }
 
     @Data
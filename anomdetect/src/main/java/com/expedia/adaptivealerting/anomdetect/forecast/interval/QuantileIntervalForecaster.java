@@ -0,0 +1,208 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast.interval;
+
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
+import com.expedia.metrics.MetricData;
+import lombok.Data;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import lombok.val;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.readHeader;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.writeHeader;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Interval forecaster that places the thresholds at quantiles of the recent residuals (observed minus point forecast)
+ * rather than at a multiple of their standard deviation. Skewed metrics such as latencies get asymmetric bands that
+ * match their actual tails, where sigma-based bands are either too tight on the long side or too loose on the short
+ * one.
+ * </p>
+ * <p>
+ * Each of the four thresholds is tracked by a P-square sketch, so memory is constant per detector and updates don't
+ * allocate, however long the detector runs. The bands for an observation come from the residuals before it, and the
+ * thresholds are absent until the warm-up period has given the sketches enough residuals to separate the tails from
+ * the median. Optional exponential decay lets the bands follow a changing residual distribution.
+ * </p>
+ */
+public class QuantileIntervalForecaster implements IntervalForecaster {
+    private static final int STATE_TYPE = 0x0406;
+    private static final int STATE_VERSION = 1;
+
+    @Getter
+    private final Params params;
+
+    private final P2Quantile upperStrong;
+    private final P2Quantile upperWeak;
+    private final P2Quantile lowerWeak;
+    private final P2Quantile lowerStrong;
+
+    public QuantileIntervalForecaster() {
+        this(new Params());
+    }
+
+    public QuantileIntervalForecaster(Params params) {
+        notNull(params, "params can't be null");
+        params.validate();
+        this.params = params;
+        this.upperStrong = new P2Quantile(params.getStrongQuantile(), params.getDecay());
+        this.upperWeak = new P2Quantile(params.getWeakQuantile(), params.getDecay());
+        this.lowerWeak = new P2Quantile(1.0 - params.getWeakQuantile(), params.getDecay());
+        this.lowerStrong = new P2Quantile(1.0 - params.getStrongQuantile(), params.getDecay());
+    }
+
+    @Override
+    public void forecast(MetricData metricData, double pointForecast, MutableAnomalyResult out) {
+        notNull(metricData, "metricData can't be null");
+
+        // The sketches estimate each quantile independently, so early on their estimates can cross. Clamp them so
+        // that the thresholds stay ordered.
+        val us = quantile(upperStrong);
+        val uw = Math.min(upperWeak.quantile(), us);
+        val lw = Math.min(lowerWeak.quantile(), uw);
+        val ls = Math.min(lowerStrong.quantile(), lw);
+        out.setThresholds(pointForecast + us, pointForecast + uw, pointForecast + lw, pointForecast + ls);
+
+        addResidual(metricData.getValue() - pointForecast);
+    }
+
+    @Override
+    public void forecast(long[] timestamps, double[] values, double[] pointForecasts, AnomalyBatchResult out) {
+        val upperStrongOut = out.getUpperStrong();
+        val upperWeakOut = out.getUpperWeak();
+        val lowerWeakOut = out.getLowerWeak();
+        val lowerStrongOut = out.getLowerStrong();
+        for (int i = 0; i < values.length; i++) {
+            val pointForecast = pointForecasts[i];
+            val us = quantile(upperStrong);
+            val uw = Math.min(upperWeak.quantile(), us);
+            val lw = Math.min(lowerWeak.quantile(), uw);
+            val ls = Math.min(lowerStrong.quantile(), lw);
+            upperStrongOut[i] = pointForecast + us;
+            upperWeakOut[i] = pointForecast + uw;
+            lowerWeakOut[i] = pointForecast + lw;
+            lowerStrongOut[i] = pointForecast + ls;
+
+            addResidual(values[i] - pointForecast);
+        }
+    }
+
+    /**
+     * Scales the one-step residual quantiles by the square root of each step's variance factor, so the band widens with
+     * the horizon as the point forecaster's uncertainty compounds.
+     */
+    @Override
+    public void forecastHorizon(ForecastBand band) {
+        notNull(band, "band can't be null");
+        val us = quantile(upperStrong);
+        val uw = Math.min(upperWeak.quantile(), us);
+        val lw = Math.min(lowerWeak.quantile(), uw);
+        val ls = Math.min(lowerStrong.quantile(), lw);
+        for (int h = 0; h < band.getHorizon(); h++) {
+            val pointForecast = band.getPredicted(h);
+            if (Double.isNaN(pointForecast)) {
+                continue;
+            }
+            val scale = Math.sqrt(band.getVarianceFactor(h));
+            band.setThresholds(h,
+                    pointForecast + scale * us,
+                    pointForecast + scale * uw,
+                    pointForecast + scale * lw,
+                    pointForecast + scale * ls);
+        }
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        writeHeader(out, STATE_TYPE, STATE_VERSION);
+        upperStrong.writeState(out);
+        upperWeak.writeState(out);
+        lowerWeak.writeState(out);
+        lowerStrong.writeState(out);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        readHeader(in, STATE_TYPE, STATE_VERSION);
+        upperStrong.readState(in);
+        upperWeak.readState(in);
+        lowerWeak.readState(in);
+        lowerStrong.readState(in);
+    }
+
+    // NaN until the warm-up period is over. The other thresholds are clamped to this one, so they're NaN too.
+    private double quantile(P2Quantile sketch) {
+        return sketch.count() < params.getWarmUpPeriod() ? Double.NaN : sketch.quantile();
+    }
+
+    private void addResidual(double residual) {
+        // A missing point forecast (e.g. during warm-up) has no residual.
+        if (Double.isNaN(residual)) {
+            return;
+        }
+        upperStrong.add(residual);
+        upperWeak.add(residual);
+        lowerWeak.add(residual);
+        lowerStrong.add(residual);
+    }
+
+    @Data
+    @Accessors(chain = true)
+    public static final class Params implements IntervalForecasterParams {
+
+        /**
+         * Residual quantile for the upper weak threshold. The lower weak threshold uses {@code 1 - weakQuantile}.
+         */
+        private double weakQuantile = 0.95;
+
+        /**
+         * Residual quantile for the upper strong threshold. The lower strong threshold uses
+         * {@code 1 - strongQuantile}.
+         */
+        private double strongQuantile = 0.99;
+
+        /**
+         * Per-observation weight decay, in (0, 1]. 1 weighs all residuals equally; lower values track recent
+         * residuals over a window of about {@code 1 / (1 - decay)} observations.
+         */
+        private double decay = 1.0;
+
+        /**
+         * Number of residuals to see before emitting thresholds. The sketches start out with every quantile at the
+         * median of the first five residuals, and each marker moves one position per residual, so the tails need a few
+         * dozen residuals to settle.
+         */
+        private int warmUpPeriod = 30;
+
+        @Override
+        public void validate() {
+            isTrue(0.5 < weakQuantile && weakQuantile < 1.0, "Required: 0.5 < weakQuantile < 1.0");
+            isTrue(weakQuantile < strongQuantile && strongQuantile < 1.0,
+                    "Required: weakQuantile < strongQuantile < 1.0");
+            isTrue(0.0 < decay && decay <= 1.0, "Required: 0.0 < decay <= 1.0");
+            isTrue(warmUpPeriod >= 5, "Required: warmUpPeriod >= 5");
+        }
+    }
+}
@@ -15,6 +15,8 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.point;
 
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
 import com.expedia.metrics.MetricData;
 import lombok.Data;
 import lombok.Generated;
@@ -22,10 +24,18 @@ import lombok.Getter;
 import lombok.experimental.Accessors;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.readHeader;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.writeHeader;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.isBetween;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
 public class EwmaPointForecaster implements PointForecaster {
+    private static final int STATE_TYPE = 0x0302;
+    private static final int STATE_VERSION = 1;
 
     @Getter
     @Generated // https://reflectoring.io/100-percent-test-coverage/
@@ -47,13 +57,45 @@ public class EwmaPointForecaster implements PointForecaster {
     }
 
     @Override
-    public PointForecast forecast(MetricData metricData) {
+    public void forecast(MetricData metricData, MutableAnomalyResult out) {
         notNull(metricData, "metricData can't be null");
         val observed = metricData.getValue();
         updateMeanEstimate(observed);
 
         // TODO Handle warmup
-        return new PointForecast(mean, false);
+        out.setPredicted(mean);
+    }
+
+    /**
+     * EWMA has no warm-up period; the initial mean estimate stands in for the observations it hasn't seen.
+     */
+    @Override
+    public boolean isWarmingUp() {
+        return false;
+    }
+
+    @Override
+    public void forecast(long[] timestamps, double[] values, double[] out) {
+        val alpha = params.getAlpha();
+        double mean = this.mean;
+        for (int i = 0; i < values.length; i++) {
+            mean += alpha * (values[i] - mean);
+            out[i] = mean;
+        }
+        this.mean = mean;
+    }
+
+    /**
+     * Projects a flat forecast at the current mean. Treating EWMA as simple exponential smoothing, the forecast error
+     * variance {@code h} steps ahead is {@code 1 + (h - 1) alpha^2} times the one-step-ahead variance.
+     */
+    @Override
+    public void forecastHorizon(ForecastBand band) {
+        notNull(band, "band can't be null");
+        val alphaSquared = params.getAlpha() * params.getAlpha();
+        for (int h = 0; h < band.getHorizon(); h++) {
+            band.setPredicted(h, mean, 1.0 + h * alphaSquared);
+        }
     }
 
     private void updateMeanEstimate(double observed) {
@@ -64,6 +106,18 @@ public class EwmaPointForecaster implements PointForecaster {
         this.mean += incr;
     }
 
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        writeHeader(out, STATE_TYPE, STATE_VERSION);
+        out.writeDouble(mean);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        readHeader(in, STATE_TYPE, STATE_VERSION);
+        this.mean = in.readDouble();
+    }
+
     @Data
     @Accessors(chain = true)
     public static final class Params implements PointForecasterParams {
@@ -15,6 +15,7 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.point;
 
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersForecasterException;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersOnlineAlgorithm;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersOnlineComponents;
@@ -22,6 +23,7 @@ import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWi
 import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersSimpleTrainingModel;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersTrainingMethod;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.SeasonalityType;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
 import com.expedia.metrics.MetricData;
 import lombok.Data;
 import lombok.Generated;
@@ -30,14 +32,21 @@ import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Arrays;
 
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.readHeader;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.writeHeader;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 import static java.lang.String.format;
 
 // TODO Rename to HoltWintersPointForecaster [WLW]
 public class HoltWintersForecaster implements PointForecaster {
+    private static final int STATE_TYPE = 0x0304;
+    private static final int STATE_VERSION = 1;
 
     @Getter
     @Generated // https://reflectoring.io/100-percent-test-coverage/
@@ -68,18 +77,62 @@ public class HoltWintersForecaster implements PointForecaster {
     }
 
     @Override
-    public PointForecast forecast(MetricData metricData) {
+    public void forecast(MetricData metricData, MutableAnomalyResult out) {
         notNull(metricData, "metricData can't be null");
         try {
-            double prevForecast = components.getForecast();
+            out.setPredicted(components.getForecast());
             trainOrObserve(metricData.getValue());
-            return new PointForecast(prevForecast, stillWarmingUp());
         } catch (Exception e) {
             throw new HoltWintersForecasterException(
                     format("Exception occurred during classification. %s: \"%s\"", e.getClass(), e.getMessage()), e);
         }
     }
 
+    @Override
+    public void forecast(long[] timestamps, double[] values, double[] out) {
+        try {
+            for (int i = 0; i < values.length; i++) {
+                out[i] = components.getForecast();
+                trainOrObserve(values[i]);
+            }
+        } catch (Exception e) {
+            throw new HoltWintersForecasterException(
+                    format("Exception occurred during classification. %s: \"%s\"", e.getClass(), e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Projects level + trend + seasonal from the current components. The variance factors follow the additive
+     * Holt-Winters model, where the error {@code j} steps back contributes {@code alpha (1 + j beta)}, plus
+     * {@code gamma} when it falls in the same season, to the forecast error. They're an approximation for the
+     * multiplicative model. Nothing is projected until the initial training is complete.
+     */
+    @Override
+    public void forecastHorizon(ForecastBand band) {
+        notNull(band, "band can't be null");
+        if (!isInitialTrainingComplete()) {
+            return;
+        }
+        val frequency = params.getFrequency();
+        val alpha = params.getAlpha();
+        val beta = params.getBeta();
+        val gamma = params.getGamma();
+        val level = components.getLevel();
+        val base = components.getBase();
+        val seasonalIdx = components.getCurrentSeasonalIndex();
+        double varianceFactor = 1.0;
+        for (int h = 0; h < band.getHorizon(); h++) {
+            val season = components.getSeasonal((seasonalIdx + h) % frequency);
+            val predicted = holtWintersOnlineAlgorithm.getForecast(
+                    params.getSeasonalityType(), level, (h + 1) * base, season);
+            band.setPredicted(h, predicted, varianceFactor);
+
+            val j = h + 1;
+            val c = alpha * (1.0 + j * beta) + (j % frequency == 0 ? gamma : 0.0);
+            varianceFactor += c * c;
+        }
+    }
+
     public boolean isInitialTrainingComplete() {
         switch (params.getInitTrainingMethod()) {
             case NONE:
@@ -100,8 +153,27 @@ public class HoltWintersForecaster implements PointForecaster {
         }
     }
 
-    private boolean stillWarmingUp() {
-        return components.getN() <= params.getWarmUpPeriod();
+    /**
+     * The forecaster is warming up during initial training and for the first {@code warmUpPeriod} observations after
+     * it.
+     */
+    @Override
+    public boolean isWarmingUp() {
+        return !isInitialTrainingComplete() || components.getN() < params.getWarmUpPeriod();
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        writeHeader(out, STATE_TYPE, STATE_VERSION);
+        components.writeState(out);
+        holtWintersSimpleTrainingModel.writeState(out);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        readHeader(in, STATE_TYPE, STATE_VERSION);
+        components.readState(in);
+        holtWintersSimpleTrainingModel.readState(in);
     }
 
     @Data
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast.point;
+
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
+import com.expedia.adaptivealerting.anomdetect.forecast.SlidingWindowMedian;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
+import com.expedia.metrics.MetricData;
+import lombok.Data;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import lombok.val;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.readHeader;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.writeHeader;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Point forecaster that predicts the median of the last {@code windowSize} observations. Unlike a moving average, a
+ * burst of spikes shorter than half the window doesn't move the forecast, so it suits spiky metrics.
+ * </p>
+ * <p>
+ * The forecast for an observation is the median of the observations before it, so an outlier can't pull its own
+ * forecast towards itself. The forecast is absent until the first observation.
+ * </p>
+ */
+public class MedianPointForecaster implements PointForecaster {
+    private static final int STATE_TYPE = 0x0301;
+    private static final int STATE_VERSION = 1;
+
+    @Getter
+    private final Params params;
+
+    private final SlidingWindowMedian window;
+
+    public MedianPointForecaster() {
+        this(new Params());
+    }
+
+    public MedianPointForecaster(Params params) {
+        notNull(params, "params can't be null");
+        params.validate();
+        this.params = params;
+        this.window = new SlidingWindowMedian(params.getWindowSize());
+    }
+
+    @Override
+    public void forecast(MetricData metricData, MutableAnomalyResult out) {
+        notNull(metricData, "metricData can't be null");
+        out.setPredicted(window.median());
+        window.add(metricData.getValue());
+    }
+
+    /**
+     * The median has no warm-up period beyond the first observation, before which the forecast is absent.
+     */
+    @Override
+    public boolean isWarmingUp() {
+        return window.size() == 0;
+    }
+
+    @Override
+    public void forecast(long[] timestamps, double[] values, double[] out) {
+        for (int i = 0; i < values.length; i++) {
+            out[i] = window.median();
+            window.add(values[i]);
+        }
+    }
+
+    /**
+     * Projects a flat forecast at the current median. The window median has no closed-form error growth, so the variance
+     * factor stays at 1 for every step.
+     */
+    @Override
+    public void forecastHorizon(ForecastBand band) {
+        notNull(band, "band can't be null");
+        val median = window.median();
+        if (Double.isNaN(median)) {
+            return;
+        }
+        for (int h = 0; h < band.getHorizon(); h++) {
+            band.setPredicted(h, median, 1.0);
+        }
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        writeHeader(out, STATE_TYPE, STATE_VERSION);
+        window.writeState(out);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        readHeader(in, STATE_TYPE, STATE_VERSION);
+        window.readState(in);
+    }
+
+    @Data
+    @Accessors(chain = true)
+    public static final class Params implements PointForecasterParams {
+
+        /**
+         * Number of recent observations to take the median over. 1440 covers a day of minutely data.
+         */
+        private int windowSize = 60;
+
+        @Override
+        public void validate() {
+            isTrue(windowSize > 0, "Required: windowSize > 0");
+        }
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast.point;
+
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
+import com.expedia.metrics.MetricData;
+import lombok.Data;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import lombok.val;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.readHeader;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.writeHeader;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Point forecaster with a level and any number of additive seasonal components, e.g. a daily and a weekly one. The
+ * forecast is the level plus each component's value for the observation's timestamp, and the forecast error corrects
+ * the level and the current slot of each component, as in additive Holt-Winters.
+ * </p>
+ * <p>
+ * Each component covers its period with a fixed number of slots, so it can be much coarser than the data: a weekly
+ * component at hourly resolution takes 168 slots however often the metric is reported. Slots are indexed by timestamp,
+ * so gaps in the data don't shift the seasons. Profiles are stored as floats and shared copy-on-write: forecasters
+ * whose initial profiles are equal share one array until a forecaster first updates a slot. With {@code gamma = 0}
+ * (a profile fitted offline and then held fixed) they stay shared for good.
+ * </p>
+ */
+public class MultiSeasonalPointForecaster implements PointForecaster {
+    private static final int STATE_TYPE = 0x0307;
+    private static final int STATE_VERSION = 1;
+
+    @Getter
+    private final Params params;
+
+    private final SeasonalComponent[] components;
+    private double level = Double.NaN;
+    private long lastEpochSecond = Long.MIN_VALUE;
+    private long stepSeconds;
+
+    public MultiSeasonalPointForecaster(Params params) {
+        notNull(params, "params can't be null");
+        params.validate();
+        this.params = params;
+        val seasons = params.getSeasons();
+        this.components = new SeasonalComponent[seasons.size()];
+        for (int i = 0; i < components.length; i++) {
+            components[i] = new SeasonalComponent(seasons.get(i));
+        }
+    }
+
+    /**
+     * Returns the number of bytes of seasonal profile this forecaster holds on its own once it's running: profiles it
+     * has already copied, plus shared profiles it will copy on its first update. Fixed shared profiles don't count.
+     * Since pending copies are counted up front, the value doesn't change when a profile is copied, so a cache weight
+     * taken when the forecaster is inserted still holds afterwards.
+     *
+     * @return Unshared profile bytes.
+     */
+    public long getUnsharedProfileBytes() {
+        long bytes = 0L;
+        for (val component : components) {
+            if (component.shared == null || component.gamma > 0.0) {
+                bytes += (long) component.values.length * Float.BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public void forecast(MetricData metricData, MutableAnomalyResult out) {
+        notNull(metricData, "metricData can't be null");
+        out.setPredicted(forecastAndObserve(metricData.getTimestamp(), metricData.getValue()));
+    }
+
+    /**
+     * The level is unknown until the first observation, before which the forecast is absent.
+     */
+    @Override
+    public boolean isWarmingUp() {
+        return Double.isNaN(level);
+    }
+
+    @Override
+    public void forecast(long[] timestamps, double[] values, double[] out) {
+        for (int i = 0; i < values.length; i++) {
+            out[i] = forecastAndObserve(timestamps[i], values[i]);
+        }
+    }
+
+    /**
+     * Projects the current level plus the seasonal profiles at the next {@code band.getHorizon()} timestamps, spaced by
+     * the interval between the last two observations. As for EWMA, the level error {@code h} steps ahead has variance
+     * {@code 1 + (h - 1) alpha^2} times the one-step-ahead variance. Nothing is projected until the forecaster has seen
+     * two observations.
+     */
+    @Override
+    public void forecastHorizon(ForecastBand band) {
+        notNull(band, "band can't be null");
+        if (Double.isNaN(level) || stepSeconds <= 0L) {
+            return;
+        }
+        val alphaSquared = params.getAlpha() * params.getAlpha();
+        for (int h = 0; h < band.getHorizon(); h++) {
+            val epochSecond = lastEpochSecond + (h + 1) * stepSeconds;
+            double predicted = level;
+            for (val component : components) {
+                predicted += component.values[component.slot(epochSecond)];
+            }
+            band.setPredicted(h, predicted, 1.0 + h * alphaSquared);
+        }
+    }
+
+    private double forecastAndObserve(long epochSecond, double observed) {
+        double seasonal = 0.0;
+        for (val component : components) {
+            seasonal += component.select(epochSecond);
+        }
+        val forecast = level + seasonal;
+        if (Double.isNaN(observed)) {
+            return forecast;
+        }
+
+        if (Double.isNaN(level)) {
+            level = observed - seasonal;
+        } else {
+            val error = observed - forecast;
+            level += params.getAlpha() * error;
+            for (val component : components) {
+                component.correct(error);
+            }
+        }
+        if (lastEpochSecond != Long.MIN_VALUE && epochSecond > lastEpochSecond) {
+            stepSeconds = epochSecond - lastEpochSecond;
+        }
+        lastEpochSecond = epochSecond;
+        return forecast;
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        writeHeader(out, STATE_TYPE, STATE_VERSION);
+        out.writeDouble(level);
+        out.writeLong(lastEpochSecond);
+        out.writeLong(stepSeconds);
+        out.writeInt(components.length);
+        for (val component : components) {
+            component.writeState(out);
+        }
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        readHeader(in, STATE_TYPE, STATE_VERSION);
+        this.level = in.readDouble();
+        this.lastEpochSecond = in.readLong();
+        this.stepSeconds = in.readLong();
+        val count = in.readInt();
+        isTrue(count == components.length,
+                "Checkpoint has " + count + " seasonal components, expected " + components.length);
+        for (val component : components) {
+            component.readState(in);
+        }
+    }
+
+    /**
+     * One seasonal component. Reads go to {@code values}, which is the shared profile's array until the first write
+     * copies it.
+     */
+    private static final class SeasonalComponent {
+        private final long periodSeconds;
+        private final long slotSeconds;
+        private final double gamma;
+
+        private float[] values;
+
+        // Keeps the interned profile reachable while we read from it. Null once this component has its own copy.
+        private SeasonalProfile shared;
+
+        private int currentSlot;
+
+        SeasonalComponent(Season season) {
+            this.periodSeconds = season.getPeriodSeconds();
+            this.slotSeconds = season.getPeriodSeconds() / season.getSlots();
+            this.gamma = season.getGamma();
+            val initProfile = season.getInitProfile();
+            share(initProfile == null ? new float[season.getSlots()] : initProfile.clone());
+
+            // Point the params at the shared copy too, or each detector's params would keep a private one alive.
+            if (initProfile != null) {
+                season.setInitProfile(values);
+            }
+        }
+
+        int slot(long epochSecond) {
+            return (int) (Math.floorMod(epochSecond, periodSeconds) / slotSeconds);
+        }
+
+        double select(long epochSecond) {
+            this.currentSlot = slot(epochSecond);
+            return values[currentSlot];
+        }
+
+        void correct(double error) {
+            if (gamma == 0.0) {
+                return;
+            }
+            if (shared != null) {
+                this.values = values.clone();
+                this.shared = null;
+            }
+            values[currentSlot] += (float) (gamma * error);
+        }
+
+        void writeState(DataOutput out) throws IOException {
+            out.writeBoolean(shared != null);
+            out.writeInt(values.length);
+            for (val value : values) {
+                out.writeFloat(value);
+            }
+        }
+
+        void readState(DataInput in) throws IOException {
+            val isShared = in.readBoolean();
+            val length = in.readInt();
+            isTrue(length == values.length, "Checkpoint has " + length + " slots, expected " + values.length);
+            val restored = new float[length];
+            for (int i = 0; i < length; i++) {
+                restored[i] = in.readFloat();
+            }
+            // A component that never updates can share whatever it restores, which keeps getUnsharedProfileBytes() exact.
+            if (isShared || gamma == 0.0) {
+                share(restored);
+            } else {
+                this.values = restored;
+                this.shared = null;
+            }
+        }
+
+        private void share(float[] profile) {
+            this.shared = SeasonalProfile.of(profile);
+            this.values = shared.values();
+        }
+    }
+
+    @Data
+    @Accessors(chain = true)
+    public static final class Params implements PointForecasterParams {
+
+        /**
+         * Level smoothing param.
+         */
+        private double alpha = 0.15;
+
+        /**
+         * Seasonal components. Must have at least one.
+         */
+        private List<Season> seasons = new ArrayList<>();
+
+        @Override
+        public void validate() {
+            isTrue(0.0 <= alpha && alpha <= 1.0, "Required: 0.0 <= alpha <= 1.0");
+            notNull(seasons, "seasons can't be null");
+            isTrue(!seasons.isEmpty(), "Required: at least one season");
+            for (val season : seasons) {
+                notNull(season, "season can't be null");
+                season.validate();
+            }
+        }
+    }
+
+    @Data
+    @Accessors(chain = true)
+    public static final class Season {
+
+        /**
+         * Season length in seconds, e.g. 86400 for daily or 604800 for weekly seasonality.
+         */
+        private long periodSeconds;
+
+        /**
+         * Number of slots the period is divided into. Must divide the period evenly. With fewer slots than the metric
+         * has observations per period, neighbouring observations share a slot.
+         */
+        private int slots;
+
+        /**
+         * Seasonal smoothing param. 0 holds the initial profile fixed.
+         */
+        private double gamma = 0.1;
+
+        /**
+         * Initial profile, one value per slot, e.g. from an offline training run. Defaults to zeros. Forecasters replace
+         * it with the equal shared array, so it mustn't be modified once a forecaster has been built from it.
+         */
+        private float[] initProfile;
+
+        public void validate() {
+            isTrue(periodSeconds > 0L, "Required: periodSeconds > 0");
+            isTrue(slots > 0, "Required: slots > 0");
+            isTrue(periodSeconds % slots == 0L, "Required: slots divides periodSeconds");
+            isTrue(0.0 <= gamma && gamma <= 1.0, "Required: 0.0 <= gamma <= 1.0");
+            isTrue(initProfile == null || initProfile.length == slots, "Required: initProfile has one value per slot");
+        }
+    }
+}
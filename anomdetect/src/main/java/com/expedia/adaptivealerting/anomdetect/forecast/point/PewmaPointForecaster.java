@@ -15,6 +15,8 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.point;
 
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
 import com.expedia.metrics.MetricData;
 import lombok.Data;
 import lombok.Generated;
@@ -22,11 +24,19 @@ import lombok.Getter;
 import lombok.experimental.Accessors;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.readHeader;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.writeHeader;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.isBetween;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
 public class PewmaPointForecaster implements PointForecaster {
+    private static final int STATE_TYPE = 0x0303;
+    private static final int STATE_VERSION = 1;
 
     @Getter
     @Generated // https://reflectoring.io/100-percent-test-coverage/
@@ -82,13 +92,50 @@ public class PewmaPointForecaster implements PointForecaster {
     }
 
     @Override
-    public PointForecast forecast(MetricData metricData) {
+    public void forecast(MetricData metricData, MutableAnomalyResult out) {
         notNull(metricData, "metricData can't be null");
         val observed = metricData.getValue();
         updateEstimates(observed);
 
         // TODO Handle warmup
-        return new PointForecast(mean, false);
+        out.setPredicted(mean);
+    }
+
+    @Override
+    public boolean isWarmingUp() {
+        return trainingCount < params.getWarmUpPeriod();
+    }
+
+    @Override
+    public void forecast(long[] timestamps, double[] values, double[] out) {
+        // Same arithmetic as updateEstimates(), but on locals. The density is only needed after the warmup period.
+        val warmUpPeriod = params.getWarmUpPeriod();
+        val beta = params.getBeta();
+        double s1 = this.s1;
+        double s2 = this.s2;
+        double mean = this.mean;
+        double stdDev = this.stdDev;
+        for (int i = 0; i < values.length; i++) {
+            val value = values[i];
+            double alpha;
+            if (trainingCount < warmUpPeriod) {
+                trainingCount++;
+                alpha = 1.0 - 1.0 / trainingCount;
+            } else {
+                val zt = stdDev != 0.0 ? (value - mean) / stdDev : 0.0;
+                val pt = (1.0 / Math.sqrt(2.0 * Math.PI)) * Math.exp(-0.5 * zt * zt);
+                alpha = (1.0 - beta * pt) * adjAlpha;
+            }
+            s1 = alpha * s1 + (1.0 - alpha) * value;
+            s2 = alpha * s2 + (1.0 - alpha) * value * value;
+            mean = s1;
+            stdDev = Math.sqrt(s2 - s1 * s1);
+            out[i] = mean;
+        }
+        this.s1 = s1;
+        this.s2 = s2;
+        this.mean = mean;
+        this.stdDev = stdDev;
     }
 
     private void updateMeanAndStdDev() {
@@ -96,6 +143,20 @@ public class PewmaPointForecaster implements PointForecaster {
         this.stdDev = Math.sqrt(this.s2 - this.s1 * this.s1);
     }
 
+    /**
+     * Projects a flat forecast at the current mean, widening the variance as for simple exponential smoothing with the
+     * nominal smoothing weight. Future observations can't be weighted by their probability since they haven't been
+     * seen, so the band uses the weight that applies to an unsurprising observation.
+     */
+    @Override
+    public void forecastHorizon(ForecastBand band) {
+        notNull(band, "band can't be null");
+        val alphaSquared = params.getAlpha() * params.getAlpha();
+        for (int h = 0; h < band.getHorizon(); h++) {
+            band.setPredicted(h, mean, 1.0 + h * alphaSquared);
+        }
+    }
+
     private void updateEstimates(double value) {
         double zt = 0;
         if (this.stdDev != 0.0) {
@@ -118,6 +179,23 @@ public class PewmaPointForecaster implements PointForecaster {
         return (1.0 - params.getBeta() * pt) * this.adjAlpha;
     }
 
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        writeHeader(out, STATE_TYPE, STATE_VERSION);
+        out.writeInt(trainingCount);
+        out.writeDouble(s1);
+        out.writeDouble(s2);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        readHeader(in, STATE_TYPE, STATE_VERSION);
+        this.trainingCount = in.readInt();
+        this.s1 = in.readDouble();
+        this.s2 = in.readDouble();
+        updateMeanAndStdDev();
+    }
+
     @Data
     @Accessors(chain = true)
     public static class Params implements PointForecasterParams {
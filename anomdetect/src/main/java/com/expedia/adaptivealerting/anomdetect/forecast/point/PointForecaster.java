@@ -15,9 +15,75 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.point;
 
+import com.expedia.adaptivealerting.anomdetect.checkpoint.Checkpointable;
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
+import com.expedia.adaptivealerting.core.util.MetricUtil;
 import com.expedia.metrics.MetricData;
+import lombok.val;
 
-public interface PointForecaster {
+public interface PointForecaster extends Checkpointable {
 
-    PointForecast forecast(MetricData metricData);
+    /**
+     * Generates a point forecast for the observation. Allocates the forecast; see
+     * {@link #forecast(MetricData, MutableAnomalyResult)} for the hot path.
+     *
+     * @param metricData Observation.
+     * @return Point forecast.
+     */
+    default PointForecast forecast(MetricData metricData) {
+        val warmup = isWarmingUp();
+        val out = new MutableAnomalyResult();
+        forecast(metricData, out);
+        return new PointForecast(out.getPredicted(), warmup);
+    }
+
+    /**
+     * Indicates whether the forecaster is still warming up, i.e. whether the forecast for the next observation comes
+     * from the warm-up period and shouldn't be trusted yet.
+     *
+     * @return Whether the forecaster is warming up.
+     */
+    boolean isWarmingUp();
+
+    /**
+     * Generates a point forecast for the observation and writes it to the predicted field of the given result, without
+     * allocating.
+     *
+     * @param metricData Observation.
+     * @param out        Result to write the point forecast to.
+     */
+    void forecast(MetricData metricData, MutableAnomalyResult out);
+
+    /**
+     * Generates point forecasts for a batch of observations, in order. {@code out[i]} is the value that
+     * {@link #forecast(MetricData)} would have returned for observation {@code i}. Implementations override the default
+     * with a loop that doesn't allocate per observation.
+     *
+     * @param timestamps Observation epoch seconds.
+     * @param values     Observed values.
+     * @param out        Point forecasts. Must be at least as long as values.
+     */
+    default void forecast(long[] timestamps, double[] values, double[] out) {
+        val metricDef = MetricUtil.metricDefinition();
+        val result = new MutableAnomalyResult();
+        for (int i = 0; i < values.length; i++) {
+            forecast(new MetricData(metricDef, values[i], timestamps[i]), result);
+            out[i] = result.getPredicted();
+        }
+    }
+
+    /**
+     * Projects point forecasts for the next {@code band.getHorizon()} observations from the current state, along with
+     * their variance factors, without changing the state. Steps the forecaster can't forecast yet (e.g. during initial
+     * training) are left absent.
+     *
+     * @param band Band to write the point forecasts to.
+     * @throws UnsupportedOperationException if the forecaster doesn't support horizon forecasts
+     */
+    default void forecastHorizon(ForecastBand band) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " doesn't support horizon forecasts");
+    }
+
+    PointForecasterParams getParams();
 }
@@ -22,6 +22,8 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 @JsonSubTypes({
         @JsonSubTypes.Type(value = EwmaPointForecaster.Params.class, name = "ewma"),
         @JsonSubTypes.Type(value = HoltWintersForecaster.Params.class, name = "holt-winters"),
+        @JsonSubTypes.Type(value = MedianPointForecaster.Params.class, name = "median"),
+        @JsonSubTypes.Type(value = MultiSeasonalPointForecaster.Params.class, name = "multi-seasonal"),
         @JsonSubTypes.Type(value = PewmaPointForecaster.Params.class, name = "pewma"),
 })
 public interface PointForecasterParams {
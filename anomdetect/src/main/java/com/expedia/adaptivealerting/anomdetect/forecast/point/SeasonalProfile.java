@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast.point;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Read-only seasonal profile that can be shared between forecasters. {@link #of(float[])} interns profiles by content,
+ * so every forecaster built from the same template or training run points at one array instead of holding its own
+ * copy.
+ * </p>
+ * <p>
+ * The interner holds profiles weakly. A profile stays shared for as long as some forecaster references it, so
+ * forecasters must keep the profile itself, not just its array.
+ * </p>
+ */
+final class SeasonalProfile {
+    private static final Interner<SeasonalProfile> INTERNER = Interners.newWeakInterner();
+
+    private final float[] values;
+    private final int hash;
+
+    private SeasonalProfile(float[] values) {
+        this.values = values;
+        this.hash = Arrays.hashCode(values);
+    }
+
+    /**
+     * Returns the shared profile with the given values. The caller must not modify the array afterwards.
+     *
+     * @param values Profile values.
+     * @return Shared profile.
+     */
+    static SeasonalProfile of(float[] values) {
+        return INTERNER.intern(new SeasonalProfile(values));
+    }
+
+    /**
+     * Returns the profile's values. Callers must not modify the array; copy it first.
+     */
+    float[] values() {
+        return values;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SeasonalProfile)) {
+            return false;
+        }
+        SeasonalProfile that = (SeasonalProfile) o;
+        return hash == that.hash && Arrays.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
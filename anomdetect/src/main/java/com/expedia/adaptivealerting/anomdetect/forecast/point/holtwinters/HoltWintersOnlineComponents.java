@@ -17,12 +17,22 @@ package com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters;
 
 import com.expedia.adaptivealerting.anomdetect.comp.legacy.HoltWintersParams;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.HoltWintersForecaster;
+import com.expedia.adaptivealerting.anomdetect.checkpoint.Checkpointable;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
 import lombok.NonNull;
-import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import lombok.Setter;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Arrays;
 
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.checkStructure;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.readHeader;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.writeHeader;
+
 /**
  * Encapsulates the values that represent the components for the {@link HoltWintersOnlineAlgorithm} logic.
  * This represents the model's online data as opposed to {@link HoltWintersParams} which represents the users values for
@@ -31,21 +41,48 @@ import java.util.Arrays;
  * @see <a href="https://otexts.org/fpp2/holt-winters.html">Holt-Winters' Seasonal Method</a> and
  * <a href="https://robjhyndman.com/hyndsight/seasonal-periods/">https://robjhyndman.com/hyndsight/seasonal-periods/</a>
  * for naming conventions (e.g. usage of "frequency" and "cycle").
+ * <p>
+ * Per-season statistics are kept as primitive Welford accumulators (count, mean, M2) so the state can be checkpointed
+ * and restored exactly. The accumulators for all seasons share one array, three slots per season, so an update touches
+ * one contiguous block instead of a separate statistics object per season.
  */
 @Data
-public class HoltWintersOnlineComponents {
+public class HoltWintersOnlineComponents implements Checkpointable {
+    private static final int STATE_TYPE = 0x0305;
+    // Version 1 held serialized SummaryStatistics.
+    private static final int STATE_VERSION = 2;
     private static final double MULTIPLICATIVE_IDENTITY = 1;
     private static final double ADDITIVE_IDENTITY = 0;
+    private static final int STATS_STRIDE = 3;
+    private static final int COUNT_OFFSET = 0;
+    private static final int MEAN_OFFSET = 1;
+    private static final int M2_OFFSET = 2;
     @NonNull
     private final HoltWintersForecaster.Params params;
     private double level = 0;
     private double base = 0;
-    @NonNull
-    private double[] seasonal;
-    private SummaryStatistics overallSummaryStatistics = new SummaryStatistics();
-    private SummaryStatistics[] seasonalSummaryStatistics;
     private double forecast = Double.NaN;
 
+    /**
+     * Total number of observed values.
+     */
+    @Setter(AccessLevel.NONE)
+    private long n = 0;
+
+    /**
+     * Seasonal components, indexed by season. The getter returns this array itself, not a copy.
+     */
+    @Setter(AccessLevel.NONE)
+    private double[] seasonal;
+
+    /**
+     * Welford accumulators of the observed values per season, three slots per season: count, mean and M2. The count is
+     * exact as a double up to 2^53 observations.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private double[] seasonalStats;
+
     /**
      * Constructs HoltWintersOnlineComponents object
      *
@@ -55,14 +92,12 @@ public class HoltWintersOnlineComponents {
         this.params = params;
         initLevelFromParams(params);
         initBaseFromParams(params);
+        this.seasonal = new double[params.getFrequency()];
+        this.seasonalStats = new double[params.getFrequency() * STATS_STRIDE];
         initSeasonalsFromParams(params);
         initSeasonalStatistics(params);
     }
 
-    public long getN() {
-        return overallSummaryStatistics.getN();
-    }
-
     public double getSeasonal(int seasonalIdx) {
         return seasonal[seasonalIdx];
     }
@@ -88,15 +123,30 @@ public class HoltWintersOnlineComponents {
 
     public void setSeasonal(int seasonalIdx, double seasonalValue, double observed) {
         seasonal[seasonalIdx] = seasonalValue;
-        seasonalSummaryStatistics[seasonalIdx].addValue(observed);
+        addSeasonalValue(seasonalIdx, observed);
     }
 
     public void addValue(double observed) {
-        overallSummaryStatistics.addValue(observed);
+        n++;
     }
 
+    /**
+     * Returns the (bias-corrected) sample standard deviation of the values observed for the given season, with the
+     * same conventions as Commons Math: 0 for a single value and NaN for none.
+     *
+     * @param seasonalIdx Seasonal index.
+     * @return Seasonal standard deviation.
+     */
     public double getSeasonalStandardDeviation(int seasonalIdx) {
-        return seasonalSummaryStatistics[seasonalIdx].getStandardDeviation();
+        final int i = seasonalIdx * STATS_STRIDE;
+        final double count = seasonalStats[i + COUNT_OFFSET];
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (count == 1) {
+            return 0.0;
+        }
+        return Math.sqrt(seasonalStats[i + M2_OFFSET] / (count - 1));
     }
 
     /**
@@ -121,12 +171,11 @@ public class HoltWintersOnlineComponents {
         } else if (s != params.getFrequency()) {
             throw new IllegalStateException(String.format("Invalid: initSeasonalEstimates array is not the same size (%d) as frequency (%d). Ensure only valid parameters are used.", s, params.getFrequency()));
         } else {
-            this.seasonal = Arrays.copyOf(params.getInitSeasonalEstimates(), params.getFrequency());
+            System.arraycopy(params.getInitSeasonalEstimates(), 0, seasonal, 0, s);
         }
     }
 
     private void fillSeasonalsWithIdentity() {
-        seasonal = new double[params.getFrequency()];
         Arrays.fill(seasonal, seasonalityIdentity());
     }
 
@@ -137,11 +186,51 @@ public class HoltWintersOnlineComponents {
     }
 
     private void initSeasonalStatistics(HoltWintersForecaster.Params params) {
-        seasonalSummaryStatistics = new SummaryStatistics[params.getFrequency()];
         for (int i = 0; i < params.getFrequency(); i++) {
-            seasonalSummaryStatistics[i] = new SummaryStatistics();
-            seasonalSummaryStatistics[i].addValue(seasonal[i]);
+            addSeasonalValue(i, getSeasonal(i));
         }
     }
 
+    private void addSeasonalValue(int seasonalIdx, double value) {
+        // Welford's online algorithm
+        final int i = seasonalIdx * STATS_STRIDE;
+        final double count = ++seasonalStats[i + COUNT_OFFSET];
+        final double delta = value - seasonalStats[i + MEAN_OFFSET];
+        final double mean = seasonalStats[i + MEAN_OFFSET] += delta / count;
+        seasonalStats[i + M2_OFFSET] += delta * (value - mean);
+    }
+
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        writeHeader(out, STATE_TYPE, STATE_VERSION);
+        out.writeInt(seasonal.length);
+        out.writeDouble(level);
+        out.writeDouble(base);
+        out.writeDouble(forecast);
+        out.writeLong(n);
+        for (int s = 0; s < seasonal.length; s++) {
+            final int i = s * STATS_STRIDE;
+            out.writeDouble(seasonal[s]);
+            out.writeLong((long) seasonalStats[i + COUNT_OFFSET]);
+            out.writeDouble(seasonalStats[i + MEAN_OFFSET]);
+            out.writeDouble(seasonalStats[i + M2_OFFSET]);
+        }
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        readHeader(in, STATE_TYPE, STATE_VERSION);
+        checkStructure(seasonal.length, in.readInt(), "frequency");
+        this.level = in.readDouble();
+        this.base = in.readDouble();
+        this.forecast = in.readDouble();
+        this.n = in.readLong();
+        for (int s = 0; s < seasonal.length; s++) {
+            final int i = s * STATS_STRIDE;
+            seasonal[s] = in.readDouble();
+            seasonalStats[i + COUNT_OFFSET] = in.readLong();
+            seasonalStats[i + MEAN_OFFSET] = in.readDouble();
+            seasonalStats[i + M2_OFFSET] = in.readDouble();
+        }
+    }
 }
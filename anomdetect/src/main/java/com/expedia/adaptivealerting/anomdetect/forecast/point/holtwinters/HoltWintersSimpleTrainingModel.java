@@ -15,14 +15,21 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters;
 
+import com.expedia.adaptivealerting.anomdetect.DetectorCheckpointException;
+import com.expedia.adaptivealerting.anomdetect.checkpoint.Checkpointable;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.HoltWintersForecaster;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Arrays;
 
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.checkStructure;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.readHeader;
+import static com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil.writeHeader;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.isFalse;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
-import static java.util.stream.DoubleStream.concat;
 
 /**
  * Implements an online model to train the HoltWintersComponents values based on the first two cycles of observations.
@@ -31,24 +38,30 @@ import static java.util.stream.DoubleStream.concat;
  * <br>
  * R source code: <a href="https://github.com/robjhyndman/forecast/blob/master/R/HoltWintersNew.R#L61-L67">https://github.com/robjhyndman/forecast/blob/master/R/HoltWintersNew.R#L61-L67</a>
  */
-public class HoltWintersSimpleTrainingModel {
+public class HoltWintersSimpleTrainingModel implements Checkpointable {
+    private static final int STATE_TYPE = 0x0306;
+    private static final int STATE_VERSION = 1;
+    private final int frequency;
     private int n = 0;
-    private final double[] firstCycle;
-    private final double[] secondCycle;
+
+    /**
+     * The first two cycles of observations, back to back. Allocated on the first observation and released once
+     * training completes, so a trained forecaster (or one that doesn't use SIMPLE training) doesn't hold onto them.
+     */
+    private double[] cycles;
 
     public HoltWintersSimpleTrainingModel(HoltWintersForecaster.Params params) {
-        this.firstCycle = new double[params.getFrequency()];
-        this.secondCycle = new double[params.getFrequency()];
+        this.frequency = params.getFrequency();
     }
 
     /**
      * SIMPLE training method requires 2 complete cycles of observations to finish training the initial level, base and seasonal components (l, b, s).
-     * l and s can be calculated after the first cycle, b can only be determined after the 2nd cycle. This object stores those 2 cycles as the
-     * firstCycle and secondCycle array fields.
+     * l and s can be calculated after the first cycle, b can only be determined after the 2nd cycle. This object stores those 2 cycles back to
+     * back in a single array, which is released once training completes.
      * <p>
      * E.g. if frequency=4, then on the 8th observation, the model will complete its training of l, b, s.
      * Furthermore, on the 8th observation this method will then fit the model to the 8 initial observations, by running through those 8 stored data
-     * points (in firstCycle and secondCycle) one at a time, to retrospectively apply the smoothing parameters (alpha, beta, gamma) to l, b, s.
+     * points one at a time, to retrospectively apply the smoothing parameters (alpha, beta, gamma) to l, b, s.
      * <p>
      * After the 8th observation, the components.getForecast() returns the correct forecast for the 9th observation which is the first non-training
      * observation that can be used to detect anomalies.
@@ -61,20 +74,19 @@ public class HoltWintersSimpleTrainingModel {
         checkNulls(params, components);
         checkTrainingMethod(params);
         checkStillInInitialTraining(params);
-        int frequency = params.getFrequency();
 
         // Capture data points
-        if (isBetween(n, 0, frequency - 1)) {
-            firstCycle[n] = y;
-        } else {
-            secondCycle[n - frequency] = y;
+        if (cycles == null) {
+            cycles = new double[2 * frequency];
         }
+        cycles[n] = y;
         // Train
         if (n == params.calculateInitTrainingPeriod() - 1) {
             setLevel(components);
             setSeasonals(y, params, components);
             setBase(params, components);
             updateComponentsAndForecast(params, components);
+            cycles = null;
         }
         n++;
     }
@@ -83,28 +95,34 @@ public class HoltWintersSimpleTrainingModel {
         return n >= (params.calculateInitTrainingPeriod());
     }
 
+    boolean isHoldingObservations() {
+        return cycles != null;
+    }
+
     /**
      * Update the level, base and seasonal components by running the main algorithm over each of the observations to this point.
      */
     private void updateComponentsAndForecast(HoltWintersForecaster.Params params, HoltWintersOnlineComponents components) {
         HoltWintersOnlineAlgorithm algorithm = new HoltWintersOnlineAlgorithm();
-        concat(Arrays.stream(firstCycle), Arrays.stream(secondCycle)).forEach(y -> algorithm.observeValueAndUpdateForecast(y, params, components));
+        for (double y : cycles) {
+            algorithm.observeValueAndUpdateForecast(y, params, components);
+        }
     }
 
     private void setLevel(HoltWintersOnlineComponents components) {
-        components.setLevel(mean(firstCycle));
+        components.setLevel(mean(0, frequency));
     }
 
     private void setBase(HoltWintersForecaster.Params params, HoltWintersOnlineComponents components) {
-        double base = (mean(secondCycle) - components.getLevel()) / params.getFrequency();
+        double base = (mean(frequency, 2 * frequency) - components.getLevel()) / params.getFrequency();
         components.setBase(base);
     }
 
     private void setSeasonals(double y, HoltWintersForecaster.Params params, HoltWintersOnlineComponents components) {
         for (int i = 0; i < params.getFrequency(); i++) {
             double s = params.isMultiplicative()
-                    ? firstCycle[i] / components.getLevel()
-                    : firstCycle[i] - components.getLevel();
+                    ? cycles[i] / components.getLevel()
+                    : cycles[i] - components.getLevel();
             components.setSeasonal(i, s, y);
         }
     }
@@ -126,13 +144,42 @@ public class HoltWintersSimpleTrainingModel {
     }
 
     // TODO HW: Potential reuse opportunity
-    private boolean isBetween(int x, int lower, int upper) {
-        return lower <= x && x <= upper;
+    private double mean(int from, int to) {
+        return Arrays.stream(cycles, from, to).average().getAsDouble();
     }
 
-    // TODO HW: Potential reuse opportunity
-    private double mean(double[] values) {
-        return Arrays.stream(values).average().getAsDouble();
+
+    /**
+     * Writes the training progress. The captured observations are only written while training is still in progress,
+     * since they're never read again afterwards.
+     */
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        writeHeader(out, STATE_TYPE, STATE_VERSION);
+        out.writeInt(frequency);
+        out.writeInt(n);
+        if (n < 2 * frequency) {
+            for (int i = 0; i < n; i++) {
+                out.writeDouble(cycles[i]);
+            }
+        }
     }
 
+    @Override
+    public void readState(DataInput in) throws IOException {
+        readHeader(in, STATE_TYPE, STATE_VERSION);
+        checkStructure(frequency, in.readInt(), "frequency");
+        final int count = in.readInt();
+        if (count < 0 || count > 2 * frequency) {
+            throw new DetectorCheckpointException("Invalid training count: " + count);
+        }
+        cycles = null;
+        if (count > 0 && count < 2 * frequency) {
+            cycles = new double[2 * frequency];
+            for (int i = 0; i < count; i++) {
+                cycles[i] = in.readDouble();
+            }
+        }
+        this.n = count;
+    }
 }
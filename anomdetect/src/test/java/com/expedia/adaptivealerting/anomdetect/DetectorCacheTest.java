@@ -0,0 +1,309 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.MadIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.HoltWintersForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MedianPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MultiSeasonalPointForecaster;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.expedia.metrics.MetricData;
+import com.expedia.metrics.MetricDefinition;
+import com.typesafe.config.ConfigFactory;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.val;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link DetectorCache} unit test.
+ */
+public final class DetectorCacheTest {
+
+    @Test
+    public void testGet_loadsOnceAndCaches() {
+        val cacheUnderTest = new DetectorCache();
+        val uuid = UUID.randomUUID();
+        val detector = ewmaDetector(uuid);
+        val loads = new AtomicInteger();
+
+        val first = cacheUnderTest.get(uuid, id -> {
+            loads.incrementAndGet();
+            return detector;
+        });
+        val second = cacheUnderTest.get(uuid, id -> {
+            loads.incrementAndGet();
+            return detector;
+        });
+
+        assertSame(detector, first);
+        assertSame(detector, second);
+        assertEquals(1, loads.get());
+        assertSame(detector, cacheUnderTest.getIfPresent(uuid));
+    }
+
+    @Test
+    public void testGet_nullNotCached() {
+        val cacheUnderTest = new DetectorCache();
+        val uuid = UUID.randomUUID();
+        assertNull(cacheUnderTest.get(uuid, id -> null));
+        assertNull(cacheUnderTest.getIfPresent(uuid));
+        assertEquals(0, cacheUnderTest.size());
+    }
+
+    @Test(expected = DetectorNotFoundException.class)
+    public void testGet_loaderExceptionPropagates() {
+        new DetectorCache().get(UUID.randomUUID(), id -> {
+            throw new DetectorNotFoundException("No models");
+        });
+    }
+
+    @Test
+    public void testGet_negativeCaching() {
+        val cacheUnderTest = new DetectorCache(10, 0, Duration.ofMinutes(1));
+        val uuid = UUID.randomUUID();
+        val loads = new AtomicInteger();
+
+        assertNull(cacheUnderTest.get(uuid, id -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        assertTrue(cacheUnderTest.isAbsent(uuid));
+        assertNull(cacheUnderTest.get(uuid, id -> {
+            loads.incrementAndGet();
+            return ewmaDetector(uuid);
+        }));
+        assertEquals(1, loads.get());
+
+        // Invalidating clears the negative entry, e.g. when the detector has just been created.
+        cacheUnderTest.invalidate(uuid);
+        assertNotNull(cacheUnderTest.get(uuid, DetectorCacheTest::ewmaDetector));
+    }
+
+    @Test
+    public void testGet_negativeCachingOfLoaderExceptions() {
+        val cacheUnderTest = new DetectorCache(10, 0, Duration.ofMinutes(1));
+        val uuid = UUID.randomUUID();
+        try {
+            cacheUnderTest.get(uuid, id -> {
+                throw new DetectorRetrievalException("Model service down", new IOException());
+            });
+            fail("Expected DetectorRetrievalException");
+        } catch (DetectorRetrievalException e) {
+            // Expected
+        }
+        assertNull(cacheUnderTest.get(uuid, DetectorCacheTest::ewmaDetector));
+
+        cacheUnderTest.put(uuid, ewmaDetector(uuid));
+        assertFalse(cacheUnderTest.isAbsent(uuid));
+    }
+
+    @Test
+    public void testGet_negativeEntriesExpire() throws InterruptedException {
+        val cacheUnderTest = new DetectorCache(10, 0, Duration.ofMillis(1));
+        val uuid = UUID.randomUUID();
+        assertNull(cacheUnderTest.get(uuid, id -> null));
+        Thread.sleep(20);
+        assertNotNull(cacheUnderTest.get(uuid, DetectorCacheTest::ewmaDetector));
+    }
+
+    @Test
+    public void testMarkAbsent_disabled() {
+        val cacheUnderTest = new DetectorCache();
+        val uuid = UUID.randomUUID();
+        cacheUnderTest.markAbsent(uuid);
+        assertFalse(cacheUnderTest.isAbsent(uuid));
+    }
+
+    @Test
+    public void testInvalidate() {
+        val cacheUnderTest = new DetectorCache();
+        val uuid = UUID.randomUUID();
+        cacheUnderTest.put(uuid, ewmaDetector(uuid));
+        cacheUnderTest.invalidate(uuid);
+        assertNull(cacheUnderTest.getIfPresent(uuid));
+    }
+
+    @Test
+    public void testSizeBound() {
+        val cacheUnderTest = new DetectorCache(10, 0);
+        for (int i = 0; i < 100; i++) {
+            val uuid = UUID.randomUUID();
+            cacheUnderTest.put(uuid, ewmaDetector(uuid));
+        }
+        assertTrue(cacheUnderTest.size() <= 10);
+    }
+
+    @Test
+    public void testWeightBound_heavyDetectorsTakeMoreRoom() {
+        val weigher = new DetectorWeigher();
+        val ewmaWeight = weigher.weigh(null, ewmaDetector(UUID.randomUUID()));
+        val holtWintersWeight = weigher.weigh(null, holtWintersDetector(UUID.randomUUID(), 168));
+        assertTrue(holtWintersWeight > 10 * ewmaWeight);
+
+        // Room for roughly 10 EWMA detectors but fewer than 2 Holt-Winters detectors.
+        val cacheUnderTest = new DetectorCache(Long.MAX_VALUE, 10L * ewmaWeight);
+        for (int i = 0; i < 10; i++) {
+            val uuid = UUID.randomUUID();
+            cacheUnderTest.put(uuid, holtWintersDetector(uuid, 168));
+        }
+        assertTrue(cacheUnderTest.size() <= 1);
+    }
+
+    @Test
+    public void testWeight_medianDetectorGrowsWithWindow() {
+        val weigher = new DetectorWeigher();
+        val ewmaWeight = weigher.weigh(null, ewmaDetector(UUID.randomUUID()));
+        val medianDetector = new ForecastingDetector(
+                UUID.randomUUID(),
+                new MedianPointForecaster(new MedianPointForecaster.Params().setWindowSize(1440)),
+                new MadIntervalForecaster(new MadIntervalForecaster.Params().setWindowSize(1440)),
+                AnomalyType.TWO_TAILED);
+        assertTrue(weigher.weigh(null, medianDetector) > 100 * ewmaWeight);
+    }
+
+    @Test
+    public void testWeight_sharedSeasonalProfilesDontCount() {
+        val weigher = new DetectorWeigher();
+        val ewmaWeight = weigher.weigh(null, ewmaDetector(UUID.randomUUID()));
+        assertEquals(ewmaWeight, weigher.weigh(null, multiSeasonalDetector(0.0)));
+        assertEquals(ewmaWeight + 1440 * Float.BYTES, weigher.weigh(null, multiSeasonalDetector(0.1)));
+    }
+
+    @Test
+    public void testWeight_seasonalProfileCopiesCountedOnInsert() {
+        val weigher = new DetectorWeigher();
+        val detector = multiSeasonalDetector(0.1);
+        val weightOnInsert = weigher.weigh(null, detector);
+
+        // The first update copies the shared profile; the weight taken on insert already covers the copy.
+        val metricDefinition = new MetricDefinition("seasonal");
+        detector.classify(new MetricData(metricDefinition, 100.0, 0L));
+        detector.classify(new MetricData(metricDefinition, 200.0, 60L));
+        assertEquals(weightOnInsert, weigher.weigh(null, detector));
+    }
+
+    @Test
+    public void testConfig() {
+        val config = ConfigFactory.parseString("max-size = 5\nmax-weight = 1M\nnegative-ttl = 1 minute");
+        val cacheUnderTest = new DetectorCache(config);
+        val uuid = UUID.randomUUID();
+        cacheUnderTest.put(uuid, ewmaDetector(uuid));
+        assertEquals(1, cacheUnderTest.size());
+    }
+
+    @Test
+    public void testBindTo_separatesCachesByTag() {
+        val meterRegistry = new SimpleMeterRegistry();
+        val cache1 = new DetectorCache();
+        val cache2 = new DetectorCache();
+        cache1.bindTo(meterRegistry, Tags.of("manager", "1"));
+        cache2.bindTo(meterRegistry, Tags.of("manager", "2"));
+
+        val uuid = UUID.randomUUID();
+        cache1.put(uuid, ewmaDetector(uuid));
+        assertEquals(1.0, cacheSize(meterRegistry, "1"), 0.0);
+        assertEquals(0.0, cacheSize(meterRegistry, "2"), 0.0);
+    }
+
+    @Test
+    public void testUnbind_removesMeters() {
+        val meterRegistry = new SimpleMeterRegistry();
+        val cacheUnderTest = new DetectorCache(10, 0, Duration.ofMinutes(1));
+        cacheUnderTest.bindTo(meterRegistry, Tags.empty());
+        assertNotNull(meterRegistry.find("cache.size").tag("cache", DetectorCache.NEGATIVE_CACHE_NAME).gauge());
+
+        cacheUnderTest.unbind();
+        assertTrue(meterRegistry.getMeters().isEmpty());
+
+        // Can be bound again, e.g. to a replacement registry.
+        cacheUnderTest.bindTo(meterRegistry, Tags.empty());
+        assertNotNull(meterRegistry.find("cache.size").tag("cache", DetectorCache.CACHE_NAME).gauge());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBindTo_alreadyBound() {
+        val cacheUnderTest = new DetectorCache();
+        cacheUnderTest.bindTo(new SimpleMeterRegistry(), Tags.empty());
+        cacheUnderTest.bindTo(new SimpleMeterRegistry(), Tags.empty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidNegativeTtl() {
+        new DetectorCache(10, 0, Duration.ofMinutes(-1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxSize() {
+        new DetectorCache(0, 0);
+    }
+
+    private static double cacheSize(SimpleMeterRegistry meterRegistry, String manager) {
+        return meterRegistry.get("cache.size")
+                .tag("cache", DetectorCache.CACHE_NAME)
+                .tag("manager", manager)
+                .gauge()
+                .value();
+    }
+
+    private static Detector multiSeasonalDetector(double gamma) {
+        val season = new MultiSeasonalPointForecaster.Season()
+                .setPeriodSeconds(86_400L)
+                .setSlots(1440)
+                .setGamma(gamma);
+        return new ForecastingDetector(
+                UUID.randomUUID(),
+                new MultiSeasonalPointForecaster(
+                        new MultiSeasonalPointForecaster.Params().setSeasons(Collections.singletonList(season))),
+                new ExponentialWelfordIntervalForecaster(),
+                AnomalyType.TWO_TAILED);
+    }
+
+    private static Detector ewmaDetector(UUID uuid) {
+        return new ForecastingDetector(
+                uuid,
+                new EwmaPointForecaster(),
+                new ExponentialWelfordIntervalForecaster(),
+                AnomalyType.TWO_TAILED);
+    }
+
+    private static Detector holtWintersDetector(UUID uuid, int frequency) {
+        val params = new HoltWintersForecaster.Params().setFrequency(frequency);
+        return new ForecastingDetector(
+                uuid,
+                new HoltWintersForecaster(params),
+                new ExponentialWelfordIntervalForecaster(),
+                AnomalyType.TWO_TAILED);
+    }
+}
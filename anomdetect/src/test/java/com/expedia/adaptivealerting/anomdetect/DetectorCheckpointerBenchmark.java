@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.util.TestObjectMother;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.expedia.metrics.MetricData;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * <p>
+ * Measures how long it takes to checkpoint and restore a large detector population, to size the checkpoint interval
+ * and the restart budget. Each operation is timed once per iteration over the whole population.
+ * </p>
+ * <p>
+ * Run with {@code main} from the IDE, or from the test classpath. It isn't part of the unit test suite.
+ * </p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class DetectorCheckpointerBenchmark {
+    private static final Duration INTERVAL = Duration.ofMinutes(5);
+
+    @Param("1000000")
+    private int detectorCount;
+
+    private Path tempDir;
+    private Path snapshotPath;
+    private Map<UUID, Detector> detectors;
+    private Detector[] freshDetectors;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        this.tempDir = Files.createTempDirectory("detector-checkpoint-benchmark");
+        this.snapshotPath = tempDir.resolve("detectors.snapshot");
+        this.detectors = new HashMap<>(detectorCount * 2);
+
+        val metricDefinition = TestObjectMother.metricDefinition();
+        for (int i = 0; i < detectorCount; i++) {
+            val uuid = UUID.randomUUID();
+            val detector = ewmaDetector(uuid);
+            for (int j = 0; j < 10; j++) {
+                detector.classify(new MetricData(metricDefinition, 100.0 + i % 7 + j, j));
+            }
+            detectors.put(uuid, detector);
+        }
+        new DetectorCheckpointer(snapshotPath, INTERVAL).checkpoint(detectors);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        this.freshDetectors = detectors.keySet().stream()
+                .map(DetectorCheckpointerBenchmark::ewmaDetector)
+                .toArray(Detector[]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws IOException {
+        try (Stream<Path> paths = Files.walk(tempDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Writes a snapshot of all detectors, replacing the previous one.
+     */
+    @Benchmark
+    public int checkpoint() {
+        val checkpointer = new DetectorCheckpointer(snapshotPath, INTERVAL);
+        try {
+            return checkpointer.checkpoint(detectors);
+        } finally {
+            checkpointer.close();
+        }
+    }
+
+    /**
+     * Opens the snapshot, which is what a restart pays before it can classify anything.
+     */
+    @Benchmark
+    public int openSnapshot() {
+        val checkpointer = new DetectorCheckpointer(snapshotPath, INTERVAL);
+        try {
+            return checkpointer.size();
+        } finally {
+            checkpointer.close();
+        }
+    }
+
+    /**
+     * Opens the snapshot and restores every detector, as if all of them were reloaded right after a restart.
+     */
+    @Benchmark
+    public int restoreAll() {
+        val checkpointer = new DetectorCheckpointer(snapshotPath, INTERVAL);
+        try {
+            int restored = 0;
+            for (val detector : freshDetectors) {
+                if (checkpointer.restore(detector)) {
+                    restored++;
+                }
+            }
+            return restored;
+        } finally {
+            checkpointer.close();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        val options = new OptionsBuilder()
+                .include(DetectorCheckpointerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    private static Detector ewmaDetector(UUID uuid) {
+        return new ForecastingDetector(
+                uuid,
+                new EwmaPointForecaster(),
+                new ExponentialWelfordIntervalForecaster(),
+                AnomalyType.TWO_TAILED);
+    }
+}
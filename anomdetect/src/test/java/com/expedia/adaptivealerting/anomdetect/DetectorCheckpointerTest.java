@@ -0,0 +1,324 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PewmaPointForecaster;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.typesafe.config.ConfigFactory;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.assertSameClassifications;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.classify;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.values;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link DetectorCheckpointer} unit test.
+ */
+public final class DetectorCheckpointerTest {
+    private static final Duration INTERVAL = Duration.ofMinutes(5);
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path snapshotPath;
+
+    @Before
+    public void setUp() {
+        this.snapshotPath = tempFolder.getRoot().toPath().resolve("detectors.snapshot");
+    }
+
+    @Test
+    public void testCheckpointAndRestore() {
+        val detectors = warmDetectors(3);
+        val checkpointer = new DetectorCheckpointer(snapshotPath, INTERVAL);
+        assertEquals(3, checkpointer.checkpoint(detectors));
+        checkpointer.close();
+
+        // Simulate a restart.
+        val restartedCheckpointer = new DetectorCheckpointer(snapshotPath, INTERVAL);
+        assertEquals(3, restartedCheckpointer.size());
+        for (val entry : detectors.entrySet()) {
+            val restored = ewmaDetector(entry.getKey());
+            assertTrue(restartedCheckpointer.restore(restored));
+            assertSameClassifications(entry.getValue(), restored, values(2L, 20));
+        }
+    }
+
+    @Test
+    public void testRestore_noSnapshot() {
+        val checkpointer = new DetectorCheckpointer(snapshotPath, INTERVAL);
+        assertEquals(0, checkpointer.size());
+
+        val uuid = UUID.randomUUID();
+        val detector = ewmaDetector(uuid);
+        assertTrue(checkpointer.restore(detector));
+        assertSameClassifications(ewmaDetector(uuid), detector, values(2L, 20));
+    }
+
+    @Test
+    public void testCheckpoint_carriesOverUnloadedDetectors() {
+        val first = warmDetectors(2);
+        new DetectorCheckpointer(snapshotPath, INTERVAL).checkpoint(first);
+
+        // After a restart only one new detector is loaded before the next checkpoint.
+        val checkpointer = new DetectorCheckpointer(snapshotPath, INTERVAL);
+        val second = warmDetectors(1);
+        assertEquals(3, checkpointer.checkpoint(second));
+
+        for (val entry : first.entrySet()) {
+            val restored = ewmaDetector(entry.getKey());
+            assertTrue(checkpointer.restore(restored));
+            assertSameClassifications(entry.getValue(), restored, values(2L, 20));
+        }
+    }
+
+    @Test
+    public void testCheckpoint_replacesLoadedDetectors() {
+        val uuid = UUID.randomUUID();
+        val detector = ewmaDetector(uuid);
+        val detectors = singleton(uuid, detector);
+        val checkpointer = new DetectorCheckpointer(snapshotPath, INTERVAL);
+        checkpointer.checkpoint(detectors);
+
+        classify(detector, values(3L, 50));
+        assertEquals(1, checkpointer.checkpoint(detectors));
+
+        val restored = ewmaDetector(uuid);
+        assertTrue(checkpointer.restore(restored));
+        assertSameClassifications(detector, restored, values(2L, 20));
+    }
+
+    @Test
+    public void testCheckpoint_manyDetectors() {
+        val detectors = new HashMap<UUID, Detector>();
+        for (int i = 0; i < 1500; i++) {
+            val uuid = UUID.randomUUID();
+            detectors.put(uuid, ewmaDetector(uuid));
+        }
+        new DetectorCheckpointer(snapshotPath, INTERVAL).checkpoint(detectors);
+        assertEquals(1500, new DetectorCheckpointer(snapshotPath, INTERVAL).size());
+    }
+
+    @Test
+    public void testDiscard() {
+        val detectors = warmDetectors(2);
+        val checkpointer = new DetectorCheckpointer(snapshotPath, INTERVAL);
+        checkpointer.checkpoint(detectors);
+
+        val discarded = detectors.keySet().iterator().next();
+        checkpointer.discard(discarded);
+        checkpointer.discard(UUID.randomUUID());
+        assertEquals(1, checkpointer.size());
+        assertFalse(checkpointer.contains(discarded));
+        assertTrue(checkpointer.contains(detectors.keySet().stream().filter(uuid -> !uuid.equals(discarded))
+                .findFirst().get()));
+
+        val detector = ewmaDetector(discarded);
+        assertTrue(checkpointer.restore(detector));
+        assertSameClassifications(ewmaDetector(discarded), detector, values(2L, 20));
+
+        // Discarded records aren't carried over.
+        assertEquals(1, checkpointer.checkpoint(new HashMap<>()));
+    }
+
+    @Test
+    public void testDiscard_duringCheckpoint() throws IOException {
+        val previous = warmDetectors(1);
+        val discarded = previous.keySet().iterator().next();
+        val checkpointer = new DetectorCheckpointer(snapshotPath, INTERVAL);
+        checkpointer.checkpoint(previous);
+
+        // The detector is updated while the next checkpoint is being written, after its record was carried over.
+        // Records are written in UUID order, so this detector's UUID must sort last.
+        val uuid = new UUID(Long.MAX_VALUE, Long.MAX_VALUE);
+        val detector = mock(Detector.class);
+        when(detector.getUuid()).thenReturn(uuid);
+        doAnswer(invocation -> {
+            checkpointer.discard(discarded);
+            return null;
+        }).when(detector).writeState(any(DataOutput.class));
+
+        assertEquals(2, checkpointer.checkpoint(singleton(uuid, detector)));
+        assertEquals(1, checkpointer.size());
+    }
+
+    @Test
+    public void testCheckpoint_skipsFailingDetector() throws IOException {
+        val uuid = UUID.randomUUID();
+        val detector = mock(Detector.class);
+        when(detector.getUuid()).thenReturn(uuid);
+        doThrow(new IOException("Boom")).when(detector).writeState(any(DataOutput.class));
+
+        val checkpointer = new DetectorCheckpointer(snapshotPath, INTERVAL);
+        assertEquals(0, checkpointer.checkpoint(singleton(uuid, detector)));
+    }
+
+    @Test
+    public void testCheckpoint_failingDetectorKeepsPreviousRecord() throws IOException {
+        val detectors = warmDetectors(1);
+        val uuid = detectors.keySet().iterator().next();
+        val checkpointer = new DetectorCheckpointer(snapshotPath, INTERVAL);
+        checkpointer.checkpoint(detectors);
+
+        val failing = mock(Detector.class);
+        when(failing.getUuid()).thenReturn(uuid);
+        doThrow(new IOException("Boom")).when(failing).writeState(any(DataOutput.class));
+        assertEquals(1, checkpointer.checkpoint(singleton(uuid, failing)));
+
+        val restored = ewmaDetector(uuid);
+        assertTrue(checkpointer.restore(restored));
+        assertSameClassifications(detectors.get(uuid), restored, values(2L, 20));
+    }
+
+    @Test(expected = DetectorCheckpointException.class)
+    public void testCheckpoint_unwritablePath() throws IOException {
+        val file = tempFolder.newFile();
+        new DetectorCheckpointer(file.toPath().resolve("detectors.snapshot"), INTERVAL).checkpoint(warmDetectors(1));
+    }
+
+    @Test
+    public void testRestore_incompatibleState() {
+        val detectors = warmDetectors(1);
+        val uuid = detectors.keySet().iterator().next();
+        val checkpointer = new DetectorCheckpointer(snapshotPath, INTERVAL);
+        checkpointer.checkpoint(detectors);
+
+        // The detector was reconfigured to use a different forecaster.
+        val pewmaDetector = new ForecastingDetector(
+                uuid,
+                new PewmaPointForecaster(),
+                new ExponentialWelfordIntervalForecaster(),
+                AnomalyType.TWO_TAILED);
+        assertFalse(checkpointer.restore(pewmaDetector));
+        assertEquals(0, checkpointer.size());
+    }
+
+    @Test
+    public void testRestore_unreadState() {
+        val detectors = warmDetectors(1);
+        val uuid = detectors.keySet().iterator().next();
+        val checkpointer = new DetectorCheckpointer(snapshotPath, INTERVAL);
+        checkpointer.checkpoint(detectors);
+
+        val detector = mock(Detector.class);
+        when(detector.getUuid()).thenReturn(uuid);
+        assertFalse(checkpointer.restore(detector));
+    }
+
+    @Test
+    public void testOpen_unsupportedFormat() throws IOException {
+        Files.write(snapshotPath, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertEquals(0, new DetectorCheckpointer(snapshotPath, INTERVAL).size());
+    }
+
+    @Test
+    public void testOpen_truncated() throws IOException {
+        new DetectorCheckpointer(snapshotPath, INTERVAL).checkpoint(warmDetectors(2));
+        val bytes = Files.readAllBytes(snapshotPath);
+        Files.write(snapshotPath, Arrays.copyOf(bytes, bytes.length - 1));
+        assertEquals(0, new DetectorCheckpointer(snapshotPath, INTERVAL).size());
+    }
+
+    @Test
+    public void testOpen_unsorted() throws IOException {
+        try (val out = new DataOutputStream(Files.newOutputStream(snapshotPath))) {
+            out.writeInt(DetectorCheckpointer.MAGIC);
+            out.writeShort(DetectorCheckpointer.FORMAT_VERSION);
+            for (int i = 0; i < 2; i++) {
+                out.writeLong(0L);
+                out.writeLong(0L);
+                out.writeInt(0);
+            }
+        }
+        assertEquals(0, new DetectorCheckpointer(snapshotPath, INTERVAL).size());
+    }
+
+    @Test
+    public void testClose() {
+        val checkpointer = new DetectorCheckpointer(snapshotPath, INTERVAL);
+        checkpointer.checkpoint(warmDetectors(1));
+        checkpointer.close();
+        assertEquals(0, checkpointer.size());
+    }
+
+    @Test
+    public void testConfig() {
+        val config = ConfigFactory.parseString("path = \"" + snapshotPath + "\"\ninterval = 1 minute");
+        val checkpointer = new DetectorCheckpointer(config);
+        assertEquals(snapshotPath, checkpointer.getPath());
+        assertEquals(Duration.ofMinutes(1), checkpointer.getInterval());
+
+        val defaultConfig = ConfigFactory.parseString("path = \"" + snapshotPath + "\"");
+        assertEquals(DetectorCheckpointer.DEFAULT_INTERVAL, new DetectorCheckpointer(defaultConfig).getInterval());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidInterval() {
+        new DetectorCheckpointer(snapshotPath, Duration.ZERO);
+    }
+
+    private static Map<UUID, Detector> warmDetectors(int count) {
+        val detectors = new HashMap<UUID, Detector>();
+        for (int i = 0; i < count; i++) {
+            val uuid = UUID.randomUUID();
+            val detector = ewmaDetector(uuid);
+            classify(detector, values(i, 50));
+            detectors.put(uuid, detector);
+        }
+        return detectors;
+    }
+
+    private static Map<UUID, Detector> singleton(UUID uuid, Detector detector) {
+        val detectors = new HashMap<UUID, Detector>();
+        detectors.put(uuid, detector);
+        return detectors;
+    }
+
+    private static Detector ewmaDetector(UUID uuid) {
+        return new ForecastingDetector(
+                uuid,
+                new EwmaPointForecaster(),
+                new ExponentialWelfordIntervalForecaster(),
+                AnomalyType.TWO_TAILED);
+    }
+}
@@ -16,27 +16,67 @@
 package com.expedia.adaptivealerting.anomdetect;
 
 import com.expedia.adaptivealerting.anomdetect.comp.DetectorSource;
+import com.expedia.adaptivealerting.anomdetect.comp.MetricHistory;
+import com.expedia.adaptivealerting.anomdetect.comp.MetricHistorySource;
 import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PewmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.util.BatchTestUtil;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
 import com.expedia.adaptivealerting.core.data.MappedMetricData;
 import com.expedia.metrics.MetricData;
 import com.expedia.metrics.MetricDefinition;
 import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.val;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.values;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -47,6 +87,9 @@ public final class DetectorManagerTest {
     private final int detectorRefreshPeriod = 1;
     private final int badDetectorRefreshPeriod = 0;
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     private DetectorManager managerUnderTest;
 
     @Mock
@@ -69,8 +112,7 @@ public final class DetectorManagerTest {
     @Mock
     private Detector detector;
 
-    @Mock
-    private AnomalyResult anomalyResult;
+    private final AnomalyResult anomalyResult = new AnomalyResult(AnomalyLevel.NORMAL).setPredicted(100.0);
 
     @Mock
     private Config config;
@@ -108,7 +150,7 @@ public final class DetectorManagerTest {
     public void testClassify() {
         val result = managerUnderTest.classify(goodMappedMetricData);
         assertNotNull(result);
-        assertSame(anomalyResult, result);
+        assertEquals(anomalyResult, result);
     }
 
     @Test
@@ -116,9 +158,85 @@ public final class DetectorManagerTest {
         managerUnderTest.classify(goodMappedMetricData);
 
         // This one grabs the cached detector
-        // TODO Come up with some way to actually prove this. E.g. mock the cache and verify().
-        //  For now I just put a log.trace() in there. [WLW]
         managerUnderTest.classify(goodMappedMetricData);
+        verify(detectorSource, times(1)).findDetector(mappedUuid);
+    }
+
+    @Test
+    public void testDetectorRefresh_reloadsUpdatedDetectors() {
+        val cached = ewmaDetector(mappedUuid);
+        val updated = ewmaDetector(mappedUuid, new ExponentialWelfordIntervalForecaster.Params().setWeakSigmas(2.5));
+        when(detectorSource.findDetector(mappedUuid)).thenReturn(cached, updated);
+        when(detectorSource.findUpdatedDetectors(detectorRefreshPeriod))
+                .thenReturn(Collections.singletonList(mappedUuid));
+
+        managerUnderTest.classify(goodMappedMetricData);
+        managerUnderTest.detectorMapRefresh();
+
+        // The updated detector takes over the cached detector's state, and the next record doesn't reload it.
+        val stateStore = mock(DetectorStateStore.class);
+        managerUnderTest.classify(goodMappedMetricData, stateStore);
+        verify(stateStore).adopt(updated);
+        verify(stateStore, never()).attach(any(Detector.class));
+        verify(stateStore).save(updated);
+        verify(detectorSource, times(2)).findDetector(mappedUuid);
+    }
+
+    @Test
+    public void testDetectorRefresh_keepsUnchangedDetector() {
+        val cached = ewmaDetector(mappedUuid);
+        when(detectorSource.findDetector(mappedUuid)).thenReturn(cached, ewmaDetector(mappedUuid));
+        when(detectorSource.findUpdatedDetectors(detectorRefreshPeriod))
+                .thenReturn(Collections.singletonList(mappedUuid));
+
+        managerUnderTest.classify(goodMappedMetricData);
+        managerUnderTest.detectorMapRefresh();
+
+        val stateStore = mock(DetectorStateStore.class);
+        when(stateStore.attach(cached)).thenReturn(true);
+        managerUnderTest.classify(goodMappedMetricData, stateStore);
+        verify(stateStore).attach(cached);
+    }
+
+    @Test
+    public void testDetectorRefresh_evictsDeletedDetectors() {
+        managerUnderTest.classify(goodMappedMetricData);
+        when(detectorSource.findDetector(mappedUuid)).thenReturn(null);
+        when(detectorSource.findUpdatedDetectors(detectorRefreshPeriod))
+                .thenReturn(Collections.singletonList(mappedUuid));
+
+        managerUnderTest.detectorMapRefresh();
+        assertFalse(managerUnderTest.hasCachedDetector(mappedUuid));
+    }
+
+    @Test
+    public void testDetectorRefresh_evictsDetectorsThatFailToReload() {
+        managerUnderTest.classify(goodMappedMetricData);
+        when(detectorSource.findDetector(mappedUuid)).thenThrow(new DetectorException("Model service down"));
+        when(detectorSource.findUpdatedDetectors(detectorRefreshPeriod))
+                .thenReturn(Collections.singletonList(mappedUuid));
+
+        managerUnderTest.detectorMapRefresh();
+        assertFalse(managerUnderTest.hasCachedDetector(mappedUuid));
+    }
+
+    @Test
+    public void testDetectorRefresh_resetDiscardsCheckpointedState() {
+        val checkpointer = checkpointerWithState(mappedUuid);
+        val manager = new DetectorManager(detectorSource, settings().setCheckpointer(checkpointer));
+        val cached = ewmaDetector(mappedUuid);
+        val updated = new ForecastingDetector(
+                mappedUuid,
+                new PewmaPointForecaster(),
+                new ExponentialWelfordIntervalForecaster(),
+                AnomalyType.TWO_TAILED);
+        when(detectorSource.findDetector(mappedUuid)).thenReturn(cached, updated);
+        when(detectorSource.findUpdatedDetectors(detectorRefreshPeriod))
+                .thenReturn(Collections.singletonList(mappedUuid));
+
+        manager.classify(goodMappedMetricData);
+        manager.detectorMapRefresh();
+        assertEquals(0, checkpointer.size());
     }
 
     @Test
@@ -127,6 +245,559 @@ public final class DetectorManagerTest {
         assertNull(result);
     }
 
+    @Test
+    public void testClassifyBatch_loadsMissesInOneCall() {
+        val batch = Arrays.asList(goodMappedMetricData, badMappedMetricData, goodMappedMetricData);
+        val results = managerUnderTest.classify(batch);
+
+        assertEquals(3, results.size());
+        assertEquals(anomalyResult, results.get(0));
+        assertNull(results.get(1));
+        assertEquals(anomalyResult, results.get(2));
+        verify(detectorSource, times(1)).findDetectors(new HashSet<>(Arrays.asList(mappedUuid, unmappedUuid)));
+        verify(detectorSource, never()).findDetector(any(UUID.class));
+    }
+
+    @Test
+    public void testClassifyBatch_usesCachedDetectors() {
+        managerUnderTest.classify(goodMappedMetricData);
+
+        val results = managerUnderTest.classify(Collections.singletonList(goodMappedMetricData));
+        assertEquals(anomalyResult, results.get(0));
+        verify(detectorSource, never()).findDetectors(anyCollection());
+    }
+
+    @Test
+    public void testClassifyCached_reportsUncachedDetectorsWithoutLoading() {
+        managerUnderTest.classify(goodMappedMetricData);
+        val stateStore = mock(DetectorStateStore.class);
+        when(stateStore.attach(detector)).thenReturn(true);
+
+        val uncached = new HashSet<UUID>();
+        val results = managerUnderTest.classifyCached(
+                Arrays.asList(goodMappedMetricData, badMappedMetricData), stateStore, uncached);
+
+        assertEquals(anomalyResult, results.get(0));
+        assertNull(results.get(1));
+        assertEquals(Collections.singleton(unmappedUuid), uncached);
+        verify(detectorSource, never()).findDetectors(anyCollection());
+        verify(detectorSource, never()).findDetector(unmappedUuid);
+        verify(stateStore).save(detector);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testClassifyBatch_nullEntry() {
+        managerUnderTest.classify(Collections.singletonList((MappedMetricData) null));
+    }
+
+    @Test
+    public void testCheckpoint_disabled() {
+        assertEquals(0, managerUnderTest.checkpoint());
+        managerUnderTest.close();
+    }
+
+    @Test
+    public void testCheckpoint_restoresStateAfterRestart() {
+        val checkpointConfig = ConfigFactory.parseString("path = \"" + snapshotPath() + "\"");
+        when(config.hasPath("detector-checkpoint")).thenReturn(true);
+        when(config.getConfig("detector-checkpoint")).thenReturn(checkpointConfig);
+        when(detectorSource.findDetector(mappedUuid)).thenAnswer(invocation -> ewmaDetector(mappedUuid));
+
+        val control = ewmaDetector(mappedUuid);
+        val values = values(1L, 50);
+        val manager = new DetectorManager(detectorSource, config);
+        for (int i = 0; i < values.length; i++) {
+            val metricData = new MetricData(goodDefinition, values[i], i);
+            manager.classify(new MappedMetricData(metricData, mappedUuid));
+            control.classify(metricData);
+        }
+        manager.close();
+
+        // The restored detector carries on where the original left off, rather than starting from scratch.
+        val restartedManager = new DetectorManager(detectorSource, config);
+        val metricData = new MetricData(goodDefinition, 500.0, values.length);
+        val result = restartedManager.classify(new MappedMetricData(metricData, mappedUuid));
+        assertEquals(control.classify(metricData), result);
+        assertNotEquals(ewmaDetector(mappedUuid).classify(metricData), result);
+    }
+
+    @Test
+    public void testCheckpoint_rebuildsDetectorIfRestoreFails() {
+        val checkpointer = checkpointerWithState(mappedUuid);
+        val manager = new DetectorManager(detectorSource, settings().setCheckpointer(checkpointer));
+
+        // The mock detector doesn't read the checkpointed state, so the restore fails.
+        manager.classify(goodMappedMetricData);
+        verify(detectorSource, times(2)).findDetector(mappedUuid);
+        assertEquals(0, checkpointer.size());
+    }
+
+    @Test
+    public void testCheckpoint_rebuildsBatchDetectorIfRestoreFails() {
+        val checkpointer = checkpointerWithState(mappedUuid);
+        val manager = new DetectorManager(detectorSource, settings().setCheckpointer(checkpointer));
+
+        val results = manager.classify(Collections.singletonList(goodMappedMetricData));
+        assertEquals(anomalyResult, results.get(0));
+        verify(detectorSource, times(1)).findDetector(mappedUuid);
+    }
+
+    @Test
+    public void testDetectorRefresh_discardsCheckpointedState() {
+        val checkpointer = checkpointerWithState(mappedUuid);
+        val manager = new DetectorManager(detectorSource, settings().setCheckpointer(checkpointer));
+        when(detectorSource.findUpdatedDetectors(detectorRefreshPeriod))
+                .thenReturn(Collections.singletonList(mappedUuid));
+
+        manager.detectorMapRefresh();
+        assertEquals(0, checkpointer.size());
+    }
+
+    @Test
+    public void testClassify_negativeCaching() {
+        val manager = new DetectorManager(detectorSource, settings().setCachedDetectors(negativeCache()));
+        assertNull(manager.classify(badMappedMetricData));
+        assertNull(manager.classify(badMappedMetricData));
+        verify(detectorSource, times(1)).findDetector(unmappedUuid);
+
+        // A refresh reporting the detector as updated (e.g. just created) clears the negative entry.
+        when(detectorSource.findUpdatedDetectors(detectorRefreshPeriod))
+                .thenReturn(Collections.singletonList(unmappedUuid));
+        manager.detectorMapRefresh();
+        manager.classify(badMappedMetricData);
+        verify(detectorSource, times(2)).findDetector(unmappedUuid);
+    }
+
+    @Test
+    public void testClassifyBatch_negativeCaching() {
+        val manager = new DetectorManager(detectorSource, settings().setCachedDetectors(negativeCache()));
+        val batch = Arrays.asList(goodMappedMetricData, badMappedMetricData);
+        manager.classify(batch);
+        manager.classify(batch);
+        verify(detectorSource, times(1)).findDetectors(anyCollection());
+    }
+
+    @Test
+    public void testDetectorRefresh_servesStaleDetectorUntilRevalidated() throws Exception {
+        val manager = new DetectorManager(detectorSource, settings()
+                .setDetectorLoaderThreads(1)
+                .setRevalidationInterval(Duration.ofMillis(50)));
+        manager.classify(goodMappedMetricData);
+
+        when(detectorSource.findDetector(mappedUuid))
+                .thenThrow(new DetectorException("Model service down"))
+                .thenReturn(detector);
+        when(detectorSource.findUpdatedDetectors(detectorRefreshPeriod))
+                .thenReturn(Collections.singletonList(mappedUuid));
+        manager.detectorMapRefresh();
+        assertTrue(manager.hasCachedDetector(mappedUuid));
+        assertEquals(1, manager.getStaleDetectorCount());
+        assertEquals(anomalyResult, manager.classify(goodMappedMetricData));
+
+        // Revalidation succeeds in the background.
+        val deadline = System.currentTimeMillis() + 5000;
+        while (manager.getStaleDetectorCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, manager.getStaleDetectorCount());
+        assertTrue(manager.hasCachedDetector(mappedUuid));
+        manager.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRevalidationInterval() {
+        new DetectorManager(detectorSource, settings().setRevalidationInterval(Duration.ZERO));
+    }
+
+    @Test
+    public void testHasCachedDetector() {
+        assertFalse(managerUnderTest.hasCachedDetector(mappedUuid));
+        managerUnderTest.classify(goodMappedMetricData);
+        assertTrue(managerUnderTest.hasCachedDetector(mappedUuid));
+    }
+
+    @Test
+    public void testLoadDetectorAsync() throws Exception {
+        assertTrue(managerUnderTest.loadDetectorAsync(mappedUuid).get(5, TimeUnit.SECONDS));
+        assertTrue(managerUnderTest.hasCachedDetector(mappedUuid));
+
+        // The detector is now cached, so classification doesn't go back to the source.
+        managerUnderTest.classify(goodMappedMetricData);
+        verify(detectorSource, times(1)).findDetector(mappedUuid);
+    }
+
+    @Test
+    public void testLoadDetectorAsync_notFound() throws Exception {
+        assertFalse(managerUnderTest.loadDetectorAsync(unmappedUuid).get(5, TimeUnit.SECONDS));
+        assertFalse(managerUnderTest.hasCachedDetector(unmappedUuid));
+    }
+
+    @Test
+    public void testLoadDetectorAsync_sharesLoadInFlight() throws Exception {
+        val release = new CountDownLatch(1);
+        when(detectorSource.findDetector(mappedUuid)).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return detector;
+        });
+
+        val first = managerUnderTest.loadDetectorAsync(mappedUuid);
+        val second = managerUnderTest.loadDetectorAsync(mappedUuid);
+        assertSame(first, second);
+
+        release.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        verify(detectorSource, times(1)).findDetector(mappedUuid);
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void testLoadDetectorAsync_error() throws Exception {
+        when(detectorSource.findDetector(mappedUuid)).thenThrow(new DetectorException("Model service unavailable"));
+        managerUnderTest.loadDetectorAsync(mappedUuid).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testLoadDetectorAsync_afterClose() {
+        managerUnderTest.close();
+        assertTrue(managerUnderTest.loadDetectorAsync(mappedUuid).isCompletedExceptionally());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullSettings() {
+        new DetectorManager(detectorSource, (DetectorManager.Settings) null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullCache() {
+        new DetectorManager(detectorSource, settings().setCachedDetectors(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidDetectorRefreshTimePeriod() {
+        new DetectorManager(detectorSource, new DetectorManager.Settings());
+    }
+
+    @Test
+    public void testMeters_taggedPerManagerAndRemovedOnClose() {
+        val meterRegistry = new SimpleMeterRegistry();
+        val manager1 = new DetectorManager(detectorSource, settings()
+                .setMeterRegistry(meterRegistry)
+                .setMeterTags(Tags.of("manager", "1")));
+        val manager2 = new DetectorManager(detectorSource, settings()
+                .setMeterRegistry(meterRegistry)
+                .setMeterTags(Tags.of("manager", "2")));
+        manager1.classify(goodMappedMetricData);
+
+        assertEquals(1.0, meterRegistry.get("cache.size").tag("manager", "1").gauge().value(), 0.0);
+        assertEquals(0.0, meterRegistry.get("cache.size").tag("manager", "2").gauge().value(), 0.0);
+        assertNotNull(meterRegistry.find(DetectorManager.STALE_DETECTORS_METER).tag("manager", "1").gauge());
+
+        manager1.close();
+        assertNull(meterRegistry.find("cache.size").tag("manager", "1").gauge());
+        assertNull(meterRegistry.find(DetectorManager.STALE_DETECTORS_METER).tag("manager", "1").gauge());
+        assertNotNull(meterRegistry.find("cache.size").tag("manager", "2").gauge());
+        manager2.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullMeterRegistry() {
+        new DetectorManager(detectorSource, settings().setMeterRegistry(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidDetectorLoaderThreads() {
+        new DetectorManager(detectorSource, settings().setDetectorLoaderThreads(0));
+    }
+
+    @Test
+    public void testClassifyWithStateStore() {
+        val stateStore = mock(DetectorStateStore.class);
+        when(stateStore.attach(detector)).thenReturn(true);
+
+        assertEquals(anomalyResult, managerUnderTest.classify(goodMappedMetricData, stateStore));
+        val inOrder = inOrder(stateStore, detector);
+        inOrder.verify(stateStore).attach(detector);
+        inOrder.verify(detector).classify(eq(goodMetricData), any(MutableAnomalyResult.class));
+        inOrder.verify(stateStore).save(detector);
+    }
+
+    @Test
+    public void testClassifyWithStateStore_noDetector() {
+        val stateStore = mock(DetectorStateStore.class);
+        assertNull(managerUnderTest.classify(badMappedMetricData, stateStore));
+        verify(stateStore, never()).attach(any(Detector.class));
+    }
+
+    @Test
+    public void testClassifyWithStateStore_evictsDetectorIfAttachFails() {
+        val stateStore = mock(DetectorStateStore.class);
+        when(stateStore.attach(detector)).thenReturn(false);
+
+        assertNull(managerUnderTest.classify(goodMappedMetricData, stateStore));
+        verify(detector, never()).classify(any(MetricData.class), any(MutableAnomalyResult.class));
+        verify(stateStore, never()).save(detector);
+        assertFalse(managerUnderTest.hasCachedDetector(mappedUuid));
+    }
+
+    @Test
+    public void testClassifyBatch_shardedMatchesUnsharded() {
+        val uuids = new ArrayList<UUID>();
+        for (int i = 0; i < 20; i++) {
+            uuids.add(UUID.randomUUID());
+        }
+        when(detectorSource.findDetectors(anyCollection())).thenAnswer(invocation -> {
+            val detectors = new HashMap<UUID, Detector>();
+            for (val uuid : invocation.<Collection<UUID>>getArgument(0)) {
+                detectors.put(uuid, ewmaDetector(uuid));
+            }
+            return detectors;
+        });
+        when(config.hasPath("classification-shards")).thenReturn(true);
+        when(config.getInt("classification-shards")).thenReturn(4);
+        val shardedManager = new DetectorManager(detectorSource, config);
+
+        val values = BatchTestUtil.valuesWithAnomalies(1L, 2000);
+        for (int from = 0; from < values.length; from += 500) {
+            val batch = new ArrayList<MappedMetricData>();
+            for (int i = from; i < from + 500; i++) {
+                val metricData = new MetricData(goodDefinition, values[i], i);
+                batch.add(new MappedMetricData(metricData, uuids.get(i % uuids.size())));
+            }
+            assertEquals(managerUnderTest.classify(batch), shardedManager.classify(batch));
+        }
+        shardedManager.close();
+    }
+
+    @Test
+    public void testClassifyBatch_classificationError() {
+        doThrow(new RuntimeException("Classification error"))
+                .when(detector).classify(eq(goodMetricData), any(MutableAnomalyResult.class));
+        val manager = new DetectorManager(detectorSource, settings()
+                .setDetectorLoaderThreads(1)
+                .setClassificationShards(2));
+
+        val results = manager.classify(Arrays.asList(goodMappedMetricData, badMappedMetricData));
+        assertEquals(Arrays.asList(null, null), results);
+        manager.close();
+    }
+
+    @Test
+    public void testClassifyBatchWithStateStore() {
+        val stateStore = mock(DetectorStateStore.class);
+        when(stateStore.attach(detector)).thenReturn(true);
+        val manager = new DetectorManager(detectorSource, settings()
+                .setDetectorLoaderThreads(1)
+                .setClassificationShards(2));
+
+        val results = manager.classify(
+                Arrays.asList(goodMappedMetricData, badMappedMetricData, goodMappedMetricData), stateStore);
+        assertEquals(Arrays.asList(anomalyResult, null, anomalyResult), results);
+
+        // State is attached and saved once per batch, around the classifications.
+        val inOrder = inOrder(stateStore, detector);
+        inOrder.verify(stateStore).attach(detector);
+        inOrder.verify(detector, times(2)).classify(eq(goodMetricData), any(MutableAnomalyResult.class));
+        inOrder.verify(stateStore).save(detector);
+        manager.close();
+    }
+
+    @Test
+    public void testClassifyBatchWithStateStore_evictsDetectorIfAttachFails() {
+        val stateStore = mock(DetectorStateStore.class);
+        when(stateStore.attach(detector)).thenReturn(false);
+
+        val results = managerUnderTest.classify(Collections.singletonList(goodMappedMetricData), stateStore);
+        assertNull(results.get(0));
+        verify(detector, never()).classify(any(MetricData.class), any(MutableAnomalyResult.class));
+        verify(stateStore, never()).save(detector);
+        assertFalse(managerUnderTest.hasCachedDetector(mappedUuid));
+    }
+
+    @Test
+    public void testClassifyBatchWithStateStore_adoptsReloadedDetector() {
+        val updated = ewmaDetector(mappedUuid, new ExponentialWelfordIntervalForecaster.Params().setWeakSigmas(2.5));
+        when(detectorSource.findDetector(mappedUuid)).thenReturn(ewmaDetector(mappedUuid), updated);
+        when(detectorSource.findUpdatedDetectors(detectorRefreshPeriod))
+                .thenReturn(Collections.singletonList(mappedUuid));
+        managerUnderTest.classify(goodMappedMetricData);
+        managerUnderTest.detectorMapRefresh();
+
+        val stateStore = mock(DetectorStateStore.class);
+        managerUnderTest.classify(Collections.singletonList(goodMappedMetricData), stateStore);
+        verify(stateStore).adopt(updated);
+        verify(stateStore, never()).attach(any(Detector.class));
+        verify(stateStore).save(updated);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidClassificationShards() {
+        new DetectorManager(detectorSource, settings().setClassificationShards(-1));
+    }
+
+    @Test
+    public void testWarmStart_newDetector() {
+        val warmStarter = mock(DetectorWarmStarter.class);
+        val manager = warmStartManager(warmStarter, null);
+
+        assertEquals(anomalyResult, manager.classify(goodMappedMetricData));
+        manager.classify(goodMappedMetricData);
+        verify(warmStarter, times(1)).warmStart(detector, goodMetricData);
+        manager.close();
+    }
+
+    @Test
+    public void testWarmStart_skipsCheckpointedDetector() {
+        val warmStarter = mock(DetectorWarmStarter.class);
+        when(detectorSource.findDetector(mappedUuid)).thenAnswer(invocation -> ewmaDetector(mappedUuid));
+        val manager = warmStartManager(warmStarter, checkpointerWithState(mappedUuid));
+
+        manager.classify(goodMappedMetricData);
+        verify(warmStarter, never()).warmStart(any(Detector.class), any(MetricData.class));
+        manager.close();
+    }
+
+    @Test
+    public void testWarmStart_rebuiltDetector() {
+        val warmStarter = mock(DetectorWarmStarter.class);
+        val manager = warmStartManager(warmStarter, checkpointerWithState(mappedUuid));
+
+        // The mock detector doesn't read the checkpointed state, so it's rebuilt from scratch and warm started.
+        manager.classify(goodMappedMetricData);
+        verify(warmStarter).warmStart(detector, goodMetricData);
+        manager.close();
+    }
+
+    @Test
+    public void testWarmStart_stateStore() {
+        val warmStarter = mock(DetectorWarmStarter.class);
+        val stateStore = mock(DetectorStateStore.class);
+        when(stateStore.attach(detector)).thenReturn(true);
+        val manager = warmStartManager(warmStarter, null);
+
+        manager.classify(goodMappedMetricData, stateStore);
+        verify(warmStarter).warmStart(detector, goodMetricData);
+        manager.close();
+    }
+
+    @Test
+    public void testWarmStart_skipsDetectorWithStoredState() {
+        val warmStarter = mock(DetectorWarmStarter.class);
+        val stateStore = mock(DetectorStateStore.class);
+        when(stateStore.hasState(mappedUuid)).thenReturn(true);
+        when(stateStore.attach(detector)).thenReturn(true);
+        val manager = warmStartManager(warmStarter, null);
+
+        manager.classify(goodMappedMetricData, stateStore);
+        manager.classify(Collections.singletonList(goodMappedMetricData), stateStore);
+        verify(warmStarter, never()).warmStart(any(Detector.class), any(MetricData.class));
+        manager.close();
+    }
+
+    @Test
+    public void testWarmStart_batch() {
+        val warmStarter = mock(DetectorWarmStarter.class);
+        val manager = warmStartManager(warmStarter, null);
+
+        val laterMetricData = new MetricData(goodDefinition, 200.0, goodMetricData.getTimestamp() + 60);
+        val results = manager.classify(Arrays.asList(
+                goodMappedMetricData,
+                new MappedMetricData(laterMetricData, mappedUuid),
+                badMappedMetricData));
+        assertEquals(anomalyResult, results.get(0));
+
+        // Warm started once, with the history preceding the detector's first record in the batch.
+        verify(warmStarter, times(1)).warmStart(any(Detector.class), any(MetricData.class));
+        verify(warmStarter).warmStart(detector, goodMetricData);
+        manager.close();
+    }
+
+    @Test
+    public void testWarmStart_batchWithStateStore() {
+        val warmStarter = mock(DetectorWarmStarter.class);
+        val stateStore = mock(DetectorStateStore.class);
+        when(stateStore.attach(detector)).thenReturn(true);
+        val manager = warmStartManager(warmStarter, null);
+
+        manager.classify(Collections.singletonList(goodMappedMetricData), stateStore);
+        verify(warmStarter).warmStart(detector, goodMetricData);
+        manager.close();
+    }
+
+    @Test
+    public void testWarmStart_loadDetectorAsync() throws Exception {
+        val warmStarter = mock(DetectorWarmStarter.class);
+        val manager = warmStartManager(warmStarter, null);
+
+        assertTrue(manager.loadDetectorAsync(goodMappedMetricData).get(5, TimeUnit.SECONDS));
+        verify(warmStarter).warmStart(detector, goodMetricData);
+        manager.close();
+    }
+
+    @Test
+    public void testWarmStart_loadDetectorAsyncByUuid() throws Exception {
+        val warmStarter = mock(DetectorWarmStarter.class);
+        val manager = warmStartManager(warmStarter, null);
+
+        assertTrue(manager.loadDetectorAsync(mappedUuid).get(5, TimeUnit.SECONDS));
+        verify(warmStarter, never()).warmStart(any(Detector.class), any(MetricData.class));
+        manager.close();
+    }
+
+    @Test
+    public void testWarmStart_config() {
+        val metricHistorySource = mock(MetricHistorySource.class);
+        when(metricHistorySource.findHistory(any(MetricDefinition.class), anyInt())).thenReturn(MetricHistory.EMPTY);
+        when(config.hasPath("detector-warm-start")).thenReturn(true);
+        when(config.getConfig("detector-warm-start")).thenReturn(ConfigFactory.parseString("history-size = 336"));
+
+        val manager = new DetectorManager(detectorSource, metricHistorySource, config);
+        manager.classify(goodMappedMetricData);
+        verify(metricHistorySource).findHistory(goodDefinition, 336);
+        manager.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWarmStart_configWithoutMetricHistorySource() {
+        when(config.hasPath("detector-warm-start")).thenReturn(true);
+        new DetectorManager(detectorSource, config);
+    }
+
+    private static DetectorCache negativeCache() {
+        return new DetectorCache(100, 0, Duration.ofMinutes(1));
+    }
+
+    private Path snapshotPath() {
+        return tempFolder.getRoot().toPath().resolve("detectors.snapshot");
+    }
+
+    private DetectorCheckpointer checkpointerWithState(UUID uuid) {
+        val checkpointer = new DetectorCheckpointer(snapshotPath(), Duration.ofMinutes(5));
+        checkpointer.checkpoint(Collections.singletonMap(uuid, ewmaDetector(uuid)));
+        return checkpointer;
+    }
+
+    private DetectorManager warmStartManager(DetectorWarmStarter warmStarter, DetectorCheckpointer checkpointer) {
+        return new DetectorManager(detectorSource, settings()
+                .setCheckpointer(checkpointer)
+                .setDetectorLoaderThreads(1)
+                .setWarmStarter(warmStarter));
+    }
+
+    private DetectorManager.Settings settings() {
+        return new DetectorManager.Settings().setDetectorRefreshTimePeriod(detectorRefreshPeriod);
+    }
+
+    private static Detector ewmaDetector(UUID uuid) {
+        return ewmaDetector(uuid, new ExponentialWelfordIntervalForecaster.Params());
+    }
+
+    private static Detector ewmaDetector(UUID uuid, ExponentialWelfordIntervalForecaster.Params intervalParams) {
+        return new ForecastingDetector(
+                uuid,
+                new EwmaPointForecaster(),
+                new ExponentialWelfordIntervalForecaster(intervalParams),
+                AnomalyType.TWO_TAILED);
+    }
+
     private void initTestObjects() {
         this.mappedUuid = UUID.randomUUID();
         this.unmappedUuid = UUID.randomUUID();
@@ -145,10 +816,16 @@ public final class DetectorManagerTest {
     }
 
     private void initDependencies() {
-        when(detector.classify(goodMetricData)).thenReturn(anomalyResult);
+        when(detector.getUuid()).thenReturn(mappedUuid);
+        doAnswer(invocation -> {
+            invocation.<MutableAnomalyResult>getArgument(1).set(anomalyResult);
+            return null;
+        }).when(detector).classify(eq(goodMetricData), any(MutableAnomalyResult.class));
 
         when(detectorSource.findDetector(mappedUuid)).thenReturn(detector);
         when(detectorSource.findDetector(unmappedUuid)).thenReturn(null);
+        when(detectorSource.findDetectors(anyCollection()))
+                .thenReturn(Collections.singletonMap(mappedUuid, detector));
         when(detectorSource.findUpdatedDetectors(detectorRefreshPeriod)).thenReturn(updatedDetectors);
 
         when(config.getInt("detector-refresh-period")).thenReturn(detectorRefreshPeriod);
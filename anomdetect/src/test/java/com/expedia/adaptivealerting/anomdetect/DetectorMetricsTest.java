@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorMetrics.DetectorType;
+import com.expedia.adaptivealerting.anomdetect.detector.ConstantThresholdDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.CusumDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.IndividualsDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.HoltWintersForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MedianPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MultiSeasonalPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PewmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecaster;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyThresholds;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public final class DetectorMetricsTest {
+    private SimpleMeterRegistry meterRegistry;
+    private DetectorMetrics metricsUnderTest;
+
+    @Before
+    public void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.metricsUnderTest = new DetectorMetrics(meterRegistry, 1);
+    }
+
+    @Test
+    public void testDetectorType() {
+        assertEquals(DetectorType.EWMA, DetectorType.of(forecastingDetector(new EwmaPointForecaster())));
+        assertEquals(DetectorType.PEWMA, DetectorType.of(forecastingDetector(new PewmaPointForecaster())));
+        assertEquals(DetectorType.HOLT_WINTERS, DetectorType.of(forecastingDetector(
+                new HoltWintersForecaster(new HoltWintersForecaster.Params().setFrequency(24)))));
+        assertEquals(DetectorType.MEDIAN, DetectorType.of(forecastingDetector(new MedianPointForecaster())));
+        assertEquals(DetectorType.MULTI_SEASONAL, DetectorType.of(forecastingDetector(new MultiSeasonalPointForecaster(
+                new MultiSeasonalPointForecaster.Params().setSeasons(Collections.singletonList(
+                        new MultiSeasonalPointForecaster.Season().setPeriodSeconds(86_400L).setSlots(24)))))));
+        assertEquals(DetectorType.OTHER, DetectorType.of(forecastingDetector(mock(PointForecaster.class))));
+        assertEquals(DetectorType.CUSUM, DetectorType.of(new CusumDetector(UUID.randomUUID(), new CusumDetector.Params())));
+        assertEquals(DetectorType.INDIVIDUALS, DetectorType.of(
+                new IndividualsDetector(UUID.randomUUID(), new IndividualsDetector.Params())));
+        assertEquals(DetectorType.CONSTANT, DetectorType.of(constantThresholdDetector()));
+        assertEquals(DetectorType.OTHER, DetectorType.of(mock(Detector.class)));
+    }
+
+    @Test
+    public void testClassified() {
+        val detector = forecastingDetector(new EwmaPointForecaster());
+        metricsUnderTest.classified(detector, AnomalyLevel.MODEL_WARMUP, metricsUnderTest.start());
+        metricsUnderTest.classified(detector, AnomalyLevel.STRONG, metricsUnderTest.start());
+        metricsUnderTest.classified(detector, AnomalyLevel.STRONG, metricsUnderTest.start());
+        metricsUnderTest.classified(detector, null, metricsUnderTest.start());
+
+        assertEquals(4, meterRegistry.timer(DetectorMetrics.CLASSIFY_METER, "type", "ewma").count());
+        assertEquals(1.0, phaseCount("ewma", "warmup"), 0.0);
+        assertEquals(2.0, phaseCount("ewma", "active"), 0.0);
+        assertEquals(1.0, levelCount("ewma", "model_warmup"), 0.0);
+        assertEquals(2.0, levelCount("ewma", "strong"), 0.0);
+        assertEquals(0.0, levelCount("ewma", "normal"), 0.0);
+        assertEquals(0.0, levelCount("pewma", "strong"), 0.0);
+    }
+
+    @Test
+    public void testLookedUp() {
+        val detector = constantThresholdDetector();
+        metricsUnderTest.lookedUp(detector, metricsUnderTest.start());
+        metricsUnderTest.lookedUp(null, metricsUnderTest.start());
+
+        assertEquals(1, meterRegistry.timer(DetectorMetrics.LOOKUP_METER, "type", "constant").count());
+        assertEquals(0, meterRegistry.timer(DetectorMetrics.LOOKUP_METER, "type", "other").count());
+    }
+
+    @Test
+    public void testBuilt() {
+        metricsUnderTest.built(constantThresholdDetector(), 1_000L);
+
+        val timer = meterRegistry.timer(DetectorMetrics.BUILD_METER, "type", "constant");
+        assertEquals(1, timer.count());
+        assertEquals(1_000.0, timer.totalTime(TimeUnit.NANOSECONDS), 0.0);
+    }
+
+    @Test
+    public void testTimersAreSampled() {
+        val sampledMetrics = new DetectorMetrics(meterRegistry, 10);
+        val detector = forecastingDetector(new PewmaPointForecaster());
+        for (int i = 0; i < 10_000; i++) {
+            sampledMetrics.classified(detector, AnomalyLevel.NORMAL, sampledMetrics.start());
+        }
+
+        // Counters see every call; the timer sees about one in ten.
+        assertEquals(10_000.0, levelCount("pewma", "normal"), 0.0);
+        val timed = meterRegistry.timer(DetectorMetrics.CLASSIFY_METER, "type", "pewma").count();
+        assertTrue("timed=" + timed, timed > 500 && timed < 1_500);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullMeterRegistry() {
+        new DetectorMetrics(null, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSampleInterval() {
+        new DetectorMetrics(meterRegistry, 0);
+    }
+
+    private double phaseCount(String type, String phase) {
+        return meterRegistry.counter(DetectorMetrics.CLASSIFICATIONS_METER, "type", type, "phase", phase).count();
+    }
+
+    private double levelCount(String type, String level) {
+        return meterRegistry.counter(DetectorMetrics.ANOMALIES_METER, "type", type, "level", level).count();
+    }
+
+    private static Detector forecastingDetector(PointForecaster pointForecaster) {
+        return new ForecastingDetector(
+                UUID.randomUUID(), pointForecaster, new ExponentialWelfordIntervalForecaster(), AnomalyType.TWO_TAILED);
+    }
+
+    private static Detector constantThresholdDetector() {
+        return new ConstantThresholdDetector(UUID.randomUUID(), new ConstantThresholdDetector.Params()
+                .setType(AnomalyType.TWO_TAILED)
+                .setThresholds(new AnomalyThresholds(100.0, 50.0, null, null)));
+    }
+}
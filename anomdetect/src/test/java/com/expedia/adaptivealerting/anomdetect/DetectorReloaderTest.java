@@ -0,0 +1,241 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil;
+import com.expedia.adaptivealerting.anomdetect.detector.CusumDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.Aggregator;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.MOfNAggregator;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.PassThroughAggregator;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.HoltWintersForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PewmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.SeasonalityType;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInput;
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.classify;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.values;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link DetectorReloader} unit test.
+ */
+public final class DetectorReloaderTest {
+    private SimpleMeterRegistry meterRegistry;
+    private DetectorReloader reloaderUnderTest;
+    private UUID uuid;
+
+    @Before
+    public void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.reloaderUnderTest = new DetectorReloader(meterRegistry);
+        this.uuid = UUID.randomUUID();
+    }
+
+    @Test
+    public void testReload_sameParams() {
+        val cached = trained(ewmaDetector(new ExponentialWelfordIntervalForecaster.Params()));
+        val updated = ewmaDetector(new ExponentialWelfordIntervalForecaster.Params());
+        assertEquals(DetectorReloader.Outcome.UNCHANGED, reloaderUnderTest.reload(cached, updated));
+        assertEquals(1.0, count("unchanged"), 0.0);
+    }
+
+    @Test
+    public void testReload_sigmasChanged() {
+        val cached = trained(ewmaDetector(new ExponentialWelfordIntervalForecaster.Params()));
+        val updated = ewmaDetector(new ExponentialWelfordIntervalForecaster.Params().setWeakSigmas(2.5));
+        assertCarried(cached, updated);
+    }
+
+    @Test
+    public void testReload_holtWintersSmoothingChanged() {
+        val cached = trained(holtWintersDetector(new HoltWintersForecaster.Params().setFrequency(24)));
+        val updated = holtWintersDetector(new HoltWintersForecaster.Params().setFrequency(24).setAlpha(0.3));
+        assertCarried(cached, updated);
+    }
+
+    @Test
+    public void testReload_cusumThresholdsChanged() {
+        val cached = trained(cusumDetector(new CusumDetector.Params().setType(AnomalyType.TWO_TAILED)));
+        val updated = cusumDetector(new CusumDetector.Params().setType(AnomalyType.TWO_TAILED).setWeakSigmas(2.0));
+        assertCarried(cached, updated);
+    }
+
+    @Test
+    public void testReload_mOfNCountChanged() {
+        val cached = trained(mOfNDetector(new MOfNAggregator.Config(3, 5)));
+        val updated = mOfNDetector(new MOfNAggregator.Config(2, 5));
+        assertCarried(cached, updated);
+    }
+
+    @Test
+    public void testReload_mOfNSameConfig() {
+        val cached = trained(mOfNDetector(new MOfNAggregator.Config(3, 5)));
+        val updated = mOfNDetector(new MOfNAggregator.Config(3, 5));
+        assertEquals(DetectorReloader.Outcome.UNCHANGED, reloaderUnderTest.reload(cached, updated));
+    }
+
+    @Test
+    public void testReload_mOfNWindowChanged() {
+        val cached = trained(mOfNDetector(new MOfNAggregator.Config(3, 5)));
+        val updated = mOfNDetector(new MOfNAggregator.Config(3, 10));
+        assertReset(cached, updated);
+    }
+
+    @Test
+    public void testReload_mOfNSuppressChanged() {
+        val cached = trained(mOfNDetector(new MOfNAggregator.Config(3, 5)));
+        val updated = mOfNDetector(new MOfNAggregator.Config(3, 5, true));
+        assertCarried(cached, updated);
+    }
+
+    @Test
+    public void testReload_cusumAggregatorChanged() {
+        val params = new CusumDetector.Params().setType(AnomalyType.TWO_TAILED);
+        val cached = trained(new CusumDetector(uuid, params, new MOfNAggregator(new MOfNAggregator.Config(3, 5))));
+        val updated = new CusumDetector(uuid, params, new MOfNAggregator(new MOfNAggregator.Config(2, 5)));
+        assertCarried(cached, updated);
+
+        assertReset(trained(cusumDetector(params)), new CusumDetector(uuid, params, new MOfNAggregator()));
+    }
+
+    @Test
+    public void testReload_aggregatorTypeChanged() {
+        val cached = trained(ewmaDetector(new ExponentialWelfordIntervalForecaster.Params()));
+        val updated = mOfNDetector(new MOfNAggregator.Config(3, 5));
+        assertReset(cached, updated);
+    }
+
+    @Test
+    public void testReload_holtWintersFrequencyChanged() {
+        val cached = trained(holtWintersDetector(new HoltWintersForecaster.Params().setFrequency(24)));
+        val updated = holtWintersDetector(new HoltWintersForecaster.Params().setFrequency(12));
+        assertReset(cached, updated);
+    }
+
+    @Test
+    public void testReload_holtWintersSeasonalityTypeChanged() {
+        val cached = trained(holtWintersDetector(new HoltWintersForecaster.Params().setFrequency(24)));
+        val updated = holtWintersDetector(new HoltWintersForecaster.Params()
+                .setFrequency(24)
+                .setSeasonalityType(SeasonalityType.ADDITIVE));
+        assertReset(cached, updated);
+    }
+
+    @Test
+    public void testReload_algorithmChanged() {
+        val cached = trained(ewmaDetector(new ExponentialWelfordIntervalForecaster.Params()));
+        val updated = forecastingDetector(new PewmaPointForecaster(), new ExponentialWelfordIntervalForecaster.Params());
+        assertReset(cached, updated);
+
+        val cusum = cusumDetector(new CusumDetector.Params().setType(AnomalyType.TWO_TAILED));
+        assertReset(trained(ewmaDetector(new ExponentialWelfordIntervalForecaster.Params())), cusum);
+    }
+
+    @Test
+    public void testReload_incompatibleStateResets() throws Exception {
+        val cached = mock(Detector.class);
+        val updated = mock(Detector.class);
+        when(updated.getUuid()).thenReturn(uuid);
+        doThrow(new DetectorCheckpointException("Incompatible state"))
+                .doNothing()
+                .when(updated).readState(any(DataInput.class));
+
+        assertEquals(DetectorReloader.Outcome.RESET, reloaderUnderTest.reload(cached, updated));
+        assertEquals(1.0, count("reset"), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReload_nullCached() {
+        reloaderUnderTest.reload(null, ewmaDetector(new ExponentialWelfordIntervalForecaster.Params()));
+    }
+
+    private void assertCarried(Detector cached, Detector updated) {
+        assertEquals(DetectorReloader.Outcome.STATE_CARRIED, reloaderUnderTest.reload(cached, updated));
+        assertArrayEquals(CheckpointUtil.stateBytes(cached), CheckpointUtil.stateBytes(updated));
+        assertEquals(1.0, count("in-place"), 0.0);
+    }
+
+    private void assertReset(Detector cached, Detector updated) {
+        val freshState = CheckpointUtil.stateBytes(updated);
+        assertEquals(DetectorReloader.Outcome.RESET, reloaderUnderTest.reload(cached, updated));
+        assertArrayEquals(freshState, CheckpointUtil.stateBytes(updated));
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.counter(DetectorReloader.RELOADS_METER, "outcome", outcome).count();
+    }
+
+    private static Detector trained(Detector detector) {
+        classify(detector, values(1L, 100));
+        return detector;
+    }
+
+    private Detector ewmaDetector(ExponentialWelfordIntervalForecaster.Params intervalParams) {
+        return forecastingDetector(new EwmaPointForecaster(), intervalParams);
+    }
+
+    private Detector holtWintersDetector(HoltWintersForecaster.Params params) {
+        return forecastingDetector(new HoltWintersForecaster(params), new ExponentialWelfordIntervalForecaster.Params());
+    }
+
+    private Detector mOfNDetector(MOfNAggregator.Config config) {
+        return forecastingDetector(
+                new EwmaPointForecaster(),
+                new ExponentialWelfordIntervalForecaster.Params(),
+                new MOfNAggregator(config));
+    }
+
+    private Detector forecastingDetector(
+            PointForecaster pointForecaster,
+            ExponentialWelfordIntervalForecaster.Params intervalParams) {
+
+        return forecastingDetector(pointForecaster, intervalParams, new PassThroughAggregator());
+    }
+
+    private Detector forecastingDetector(
+            PointForecaster pointForecaster,
+            ExponentialWelfordIntervalForecaster.Params intervalParams,
+            Aggregator aggregator) {
+
+        return new ForecastingDetector(
+                uuid,
+                pointForecaster,
+                new ExponentialWelfordIntervalForecaster(intervalParams),
+                AnomalyType.TWO_TAILED,
+                aggregator);
+    }
+
+    private Detector cusumDetector(CusumDetector.Params params) {
+        return new CusumDetector(uuid, params);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.expedia.adaptivealerting.anomdetect.comp.MetricHistory;
+import com.expedia.adaptivealerting.anomdetect.comp.MetricHistorySource;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.expedia.metrics.MetricData;
+import com.expedia.metrics.MetricDefinition;
+import com.typesafe.config.ConfigFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.values;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public final class DetectorWarmStarterTest {
+    private static final int HISTORY_SIZE = 50;
+    private static final UUID DETECTOR_UUID = UUID.randomUUID();
+
+    private MetricDefinition metricDef;
+    private MetricHistorySource metricHistorySource;
+    private SimpleMeterRegistry meterRegistry;
+    private DetectorWarmStarter warmStarterUnderTest;
+
+    @Before
+    public void setUp() {
+        this.metricDef = new MetricDefinition("bookings");
+        this.metricHistorySource = mock(MetricHistorySource.class);
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.warmStarterUnderTest =
+                new DetectorWarmStarter(metricHistorySource, HISTORY_SIZE, 1, Duration.ZERO, meterRegistry);
+    }
+
+    @Test
+    public void testWarmStart() {
+        val history = history(HISTORY_SIZE);
+        when(metricHistorySource.findHistory(metricDef, HISTORY_SIZE)).thenReturn(history);
+
+        // The source already has the live observation and a later one, which the detector mustn't learn from.
+        val live = new MetricData(metricDef, 500.0, history.getEpochSeconds()[HISTORY_SIZE - 2]);
+        val detector = ewmaDetector();
+        assertEquals(HISTORY_SIZE - 2, warmStarterUnderTest.warmStart(detector, live));
+
+        val control = ewmaDetector();
+        for (int i = 0; i < HISTORY_SIZE - 2; i++) {
+            control.classify(new MetricData(metricDef, history.getValues()[i], history.getEpochSeconds()[i]));
+        }
+        val result = detector.classify(live);
+        assertEquals(control.classify(live), result);
+        assertNotEquals(ewmaDetector().classify(live), result);
+        assertEquals(1.0, count("warmed"), 0.0);
+    }
+
+    @Test
+    public void testWarmStart_wholeHistory() {
+        val history = history(HISTORY_SIZE);
+        when(metricHistorySource.findHistory(metricDef, HISTORY_SIZE)).thenReturn(history);
+
+        val live = new MetricData(metricDef, 500.0, history.getEpochSeconds()[HISTORY_SIZE - 1] + 60);
+        assertEquals(HISTORY_SIZE, warmStarterUnderTest.warmStart(ewmaDetector(), live));
+    }
+
+    @Test
+    public void testWarmStart_noHistory() {
+        when(metricHistorySource.findHistory(metricDef, HISTORY_SIZE)).thenReturn(MetricHistory.EMPTY);
+        assertEquals(0, warmStarterUnderTest.warmStart(ewmaDetector(), new MetricData(metricDef, 500.0, 0L)));
+        assertEquals(1.0, count("no-history"), 0.0);
+    }
+
+    @Test
+    public void testWarmStart_sourceError() {
+        when(metricHistorySource.findHistory(metricDef, HISTORY_SIZE))
+                .thenThrow(new DetectorException("Metric source unavailable"));
+        assertEquals(0, warmStarterUnderTest.warmStart(ewmaDetector(), new MetricData(metricDef, 500.0, 0L)));
+        assertEquals(1.0, count("failed"), 0.0);
+    }
+
+    @Test
+    public void testWarmStart_classificationError() {
+        when(metricHistorySource.findHistory(metricDef, HISTORY_SIZE)).thenReturn(history(HISTORY_SIZE));
+        val detector = mock(Detector.class);
+        doThrow(new IllegalStateException()).when(detector)
+                .classify(any(long[].class), any(double[].class), any(AnomalyBatchResult.class));
+
+        assertEquals(0, warmStarterUnderTest.warmStart(detector, new MetricData(metricDef, 500.0, Long.MAX_VALUE)));
+        assertEquals(1.0, count("failed"), 0.0);
+    }
+
+    @Test
+    public void testWarmStart_skippedWhenTooManyConcurrentFetches() throws Exception {
+        val fetching = new CountDownLatch(1);
+        val release = new CountDownLatch(1);
+        when(metricHistorySource.findHistory(metricDef, HISTORY_SIZE)).thenAnswer(invocation -> {
+            fetching.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return MetricHistory.EMPTY;
+        });
+        val live = new MetricData(metricDef, 500.0, 0L);
+        val first = CompletableFuture.supplyAsync(() -> warmStarterUnderTest.warmStart(ewmaDetector(), live));
+        assertTrue(fetching.await(5, TimeUnit.SECONDS));
+
+        // The only permit is taken, and the warm starter doesn't wait for it.
+        assertEquals(0, warmStarterUnderTest.warmStart(ewmaDetector(), live));
+        assertEquals(1.0, count("skipped"), 0.0);
+
+        release.countDown();
+        assertEquals(0, (int) first.get(5, TimeUnit.SECONDS));
+        assertEquals(1.0, count("no-history"), 0.0);
+    }
+
+    @Test
+    public void testConfig() {
+        val config = ConfigFactory.parseString("history-size = 336\nmax-wait = 1 second");
+        val warmStarter = new DetectorWarmStarter(metricHistorySource, config);
+        assertEquals(336, warmStarter.getHistorySize());
+        assertEquals(Duration.ofSeconds(1), warmStarter.getMaxWait());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidHistorySize() {
+        new DetectorWarmStarter(metricHistorySource, 0, 1, Duration.ZERO, meterRegistry);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxConcurrency() {
+        new DetectorWarmStarter(metricHistorySource, HISTORY_SIZE, 0, Duration.ZERO, meterRegistry);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxWait() {
+        new DetectorWarmStarter(metricHistorySource, HISTORY_SIZE, 1, Duration.ofSeconds(-1), meterRegistry);
+    }
+
+    private static MetricHistory history(int size) {
+        val values = values(1L, size);
+        val epochSeconds = new long[size];
+        for (int i = 0; i < size; i++) {
+            epochSeconds[i] = 1_000_000L + 60L * i;
+        }
+        return new MetricHistory(epochSeconds, values);
+    }
+
+    private static Detector ewmaDetector() {
+        return new ForecastingDetector(
+                DETECTOR_UUID,
+                new EwmaPointForecaster(),
+                new ExponentialWelfordIntervalForecaster(),
+                AnomalyType.TWO_TAILED);
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.counter(DetectorWarmStarter.WARM_STARTS_METER, "outcome", outcome).count();
+    }
+}
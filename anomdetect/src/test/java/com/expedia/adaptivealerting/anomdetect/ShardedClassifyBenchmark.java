@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.expedia.adaptivealerting.anomdetect.comp.DetectorSource;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.HoltWintersForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.SeasonalityType;
+import com.expedia.adaptivealerting.anomdetect.util.BatchTestUtil;
+import com.expedia.adaptivealerting.anomdetect.util.TestObjectMother;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.expedia.adaptivealerting.core.data.MappedMetricData;
+import com.expedia.metrics.MetricData;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * <p>
+ * Measures {@link DetectorManager} batch classification throughput across classification shard counts, with Holt-Winters
+ * detectors. 0 shards classifies on the calling thread. Scores are nanoseconds per record. Scaling is bounded by the
+ * number of cores, so compare shard counts on the machine ad-manager runs on.
+ * </p>
+ * <p>
+ * Run with {@code main} from the IDE, or from the test classpath. It isn't part of the unit test suite.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ShardedClassifyBenchmark {
+    private static final int DETECTOR_COUNT = 1000;
+    private static final int BATCH_SIZE = 4096;
+
+    @Param({"0", "1", "2", "4", "8", "16", "32"})
+    private int shards;
+
+    private DetectorManager manager;
+    private List<MappedMetricData> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        val detectorSource = mock(DetectorSource.class);
+        when(detectorSource.findDetectors(anyCollection())).thenAnswer(invocation -> {
+            val detectors = new HashMap<UUID, Detector>();
+            for (val uuid : invocation.<Collection<UUID>>getArgument(0)) {
+                detectors.put(uuid, holtWintersDetector(uuid));
+            }
+            return detectors;
+        });
+        this.manager = new DetectorManager(detectorSource, new DetectorManager.Settings()
+                .setDetectorRefreshTimePeriod(5)
+                .setDetectorLoaderThreads(1)
+                .setClassificationShards(shards));
+
+        val uuids = new UUID[DETECTOR_COUNT];
+        for (int i = 0; i < DETECTOR_COUNT; i++) {
+            uuids[i] = UUID.randomUUID();
+        }
+        val values = BatchTestUtil.valuesWithAnomalies(1L, BATCH_SIZE);
+        val metricDefinition = TestObjectMother.metricDefinition();
+        this.batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            val metricData = new MetricData(metricDefinition, values[i], 1_500_000_000L + 60L * i);
+            batch.add(new MappedMetricData(metricData, uuids[i % DETECTOR_COUNT]));
+        }
+
+        // Loads the detectors into the cache, so the benchmark only measures classification.
+        manager.classify(batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<AnomalyResult> classify() {
+        return manager.classify(batch);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        val options = new OptionsBuilder()
+                .include(ShardedClassifyBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    private static Detector holtWintersDetector(UUID uuid) {
+        val params = new HoltWintersForecaster.Params()
+                .setFrequency(168)
+                .setSeasonalityType(SeasonalityType.MULTIPLICATIVE);
+        return new ForecastingDetector(
+                uuid,
+                new HoltWintersForecaster(params),
+                new ExponentialWelfordIntervalForecaster(),
+                AnomalyType.TWO_TAILED);
+    }
+}
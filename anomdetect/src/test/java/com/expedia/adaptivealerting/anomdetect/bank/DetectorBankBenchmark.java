@@ -0,0 +1,258 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.bank;
+
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PewmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecaster;
+import com.expedia.adaptivealerting.anomdetect.util.TestObjectMother;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
+import com.expedia.metrics.MetricData;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Compares a detector bank against one {@link ForecastingDetector} object per detector, looked up by UUID in a
+ * {@link HashMap}. Each invocation classifies a chunk of observations for randomly chosen detectors, so the scores are
+ * nanoseconds per observation and include the UUID lookup (or, for {@code bankBatch}, use pre-resolved slots).
+ * </p>
+ * <p>
+ * {@code main} also prints the retained heap per detector for both designs before running the benchmark. Give the JVM
+ * enough heap for the object design, e.g. {@code -Xmx4g}.
+ * </p>
+ * <p>
+ * Run with {@code main} from the IDE, or from the test classpath. It isn't part of the unit test suite.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class DetectorBankBenchmark {
+    private static final int CHUNK_SIZE = 1024;
+    private static final int CHUNK_COUNT = 256;
+
+    @Param({"1000000"})
+    private int detectorCount;
+
+    @Param({"ewma", "pewma"})
+    private String detectorType;
+
+    private UUID[] uuids;
+    private Map<UUID, Detector> detectors;
+    private AbstractDetectorBank bank;
+
+    private UUID[][] chunkUuids;
+    private int[][] chunkSlots;
+    private double[][] chunkValues;
+    private MetricData[][] chunkMetricData;
+    private int chunk;
+    private int pass;
+
+    private final MutableAnomalyResult result = new MutableAnomalyResult();
+    private final AnomalyBatchResult batchResult = new AnomalyBatchResult(CHUNK_SIZE);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.uuids = uuids(detectorCount);
+        this.detectors = objectDetectors(uuids, detectorType);
+        this.bank = bank(uuids, detectorType);
+
+        val random = new Random(1L);
+        val metricDefinition = TestObjectMother.metricDefinition();
+        this.chunkUuids = new UUID[CHUNK_COUNT][CHUNK_SIZE];
+        this.chunkSlots = new int[CHUNK_COUNT][CHUNK_SIZE];
+        this.chunkValues = new double[CHUNK_COUNT][CHUNK_SIZE];
+        this.chunkMetricData = new MetricData[CHUNK_COUNT][CHUNK_SIZE];
+        for (int c = 0; c < CHUNK_COUNT; c++) {
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                val uuid = uuids[random.nextInt(detectorCount)];
+                val value = 100.0 + 10.0 * random.nextGaussian();
+                chunkUuids[c][i] = uuid;
+                chunkSlots[c][i] = bank.slotOf(uuid);
+                chunkValues[c][i] = value;
+                chunkMetricData[c][i] = new MetricData(metricDefinition, value, 1_500_000_000L + 60L * i);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.detectors = null;
+        this.bank = null;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_SIZE)
+    public MutableAnomalyResult objectPerDetector() {
+        val c = nextChunk();
+        val uuids = chunkUuids[c];
+        val metricData = chunkMetricData[valueChunk(c)];
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            detectors.get(uuids[i]).classify(metricData[i], result);
+        }
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_SIZE)
+    public MutableAnomalyResult bank() {
+        val c = nextChunk();
+        val uuids = chunkUuids[c];
+        val values = chunkValues[valueChunk(c)];
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            bank.classify(bank.slotOf(uuids[i]), values[i], result);
+        }
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_SIZE)
+    public AnomalyBatchResult bankBatch() {
+        val c = nextChunk();
+        bank.classify(chunkSlots[c], chunkValues[valueChunk(c)], batchResult);
+        return batchResult;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        printFootprint(1_000_000);
+        val options = new OptionsBuilder()
+                .include(DetectorBankBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    private int nextChunk() {
+        val c = chunk;
+        this.chunk = (c + 1) % CHUNK_COUNT;
+        if (chunk == 0) {
+            pass++;
+        }
+        return c;
+    }
+
+    // Pairs each chunk of detectors with a different chunk of values on every pass. Feeding a detector the same value
+    // over and over collapses the PEWMA variance to rounding noise, which can go negative.
+    private int valueChunk(int c) {
+        return (c + pass) % CHUNK_COUNT;
+    }
+
+    private static void printFootprint(int detectorCount) {
+        val uuids = uuids(detectorCount);
+        for (val type : new String[]{"ewma", "pewma"}) {
+            long before = usedHeap();
+            Object objects = objectDetectors(uuids, type);
+            val objectBytes = usedHeap() - before;
+            objects = null;
+
+            before = usedHeap();
+            Object bank = bank(uuids, type);
+            val bankBytes = usedHeap() - before;
+
+            System.out.printf("%s, %d detectors: object-per-detector %d bytes/detector, bank %d bytes/detector%n",
+                    type, detectorCount, objectBytes / detectorCount, bankBytes / detectorCount);
+            bank = null;
+        }
+    }
+
+    private static long usedHeap() {
+        val runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static UUID[] uuids(int count) {
+        val uuids = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            uuids[i] = UUID.randomUUID();
+        }
+        return uuids;
+    }
+
+    private static Map<UUID, Detector> objectDetectors(UUID[] uuids, String type) {
+        val detectors = new HashMap<UUID, Detector>();
+        for (val uuid : uuids) {
+            detectors.put(uuid, new ForecastingDetector(
+                    uuid, pointForecaster(type), new ExponentialWelfordIntervalForecaster(), AnomalyType.TWO_TAILED));
+        }
+        return detectors;
+    }
+
+    private static AbstractDetectorBank bank(UUID[] uuids, String type) {
+        val intervalParams = new ExponentialWelfordIntervalForecaster.Params();
+        switch (type) {
+            case "ewma":
+                val ewmaBank = new EwmaDetectorBank();
+                val ewmaParams = new EwmaPointForecaster.Params().setInitMeanEstimate(100.0);
+                for (val uuid : uuids) {
+                    ewmaBank.add(uuid, ewmaParams, intervalParams, AnomalyType.TWO_TAILED);
+                }
+                return ewmaBank;
+            case "pewma":
+                val pewmaBank = new PewmaDetectorBank();
+                val pewmaParams = new PewmaPointForecaster.Params().setInitMeanEstimate(100.0);
+                for (val uuid : uuids) {
+                    pewmaBank.add(uuid, pewmaParams, intervalParams, AnomalyType.TWO_TAILED);
+                }
+                return pewmaBank;
+            default:
+                throw new IllegalArgumentException("Unknown detector type: " + type);
+        }
+    }
+
+    private static PointForecaster pointForecaster(String type) {
+        switch (type) {
+            case "ewma":
+                return new EwmaPointForecaster(new EwmaPointForecaster.Params().setInitMeanEstimate(100.0));
+            case "pewma":
+                return new PewmaPointForecaster(new PewmaPointForecaster.Params().setInitMeanEstimate(100.0));
+            default:
+                throw new IllegalArgumentException("Unknown detector type: " + type);
+        }
+    }
+}
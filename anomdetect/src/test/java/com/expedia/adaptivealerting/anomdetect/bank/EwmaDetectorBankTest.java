@@ -0,0 +1,204 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.bank;
+
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.util.TestObjectMother;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
+import com.expedia.metrics.MetricData;
+import lombok.val;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class EwmaDetectorBankTest {
+    private static final int DETECTOR_COUNT = 50;
+
+    @Test
+    public void testClassify_matchesForecastingDetector() {
+        val random = new Random(1L);
+        val bank = new EwmaDetectorBank();
+        val detectors = new ArrayList<Detector>();
+        val slots = new ArrayList<Integer>();
+        for (int i = 0; i < DETECTOR_COUNT; i++) {
+            val uuid = UUID.randomUUID();
+            val pointParams = pointParams(random);
+            val intervalParams = intervalParams(random);
+            val type = AnomalyType.values()[i % AnomalyType.values().length];
+            detectors.add(new ForecastingDetector(
+                    uuid, new EwmaPointForecaster(pointParams), new ExponentialWelfordIntervalForecaster(intervalParams), type));
+            slots.add(bank.add(uuid, pointParams, intervalParams, type));
+        }
+        assertEquals(DETECTOR_COUNT, bank.size());
+
+        val out = new MutableAnomalyResult();
+        for (int i = 0; i < 20_000; i++) {
+            val d = random.nextInt(DETECTOR_COUNT);
+            val value = 100.0 + 10.0 * random.nextGaussian() + (i % 97 == 0 ? 80.0 : 0.0);
+            bank.classify(slots.get(d), value, out);
+            assertEquals("Classification " + i, detectors.get(d).classify(metricData(value, i)), out.toAnomalyResult());
+        }
+    }
+
+    @Test
+    public void testClassifyBatch_matchesSingleClassify() {
+        val random = new Random(2L);
+        val bank = new EwmaDetectorBank();
+        val reference = new EwmaDetectorBank();
+        for (int i = 0; i < DETECTOR_COUNT; i++) {
+            val uuid = UUID.randomUUID();
+            val pointParams = pointParams(random);
+            val intervalParams = intervalParams(random);
+            bank.add(uuid, pointParams, intervalParams, AnomalyType.TWO_TAILED);
+            reference.add(uuid, pointParams, intervalParams, AnomalyType.TWO_TAILED);
+        }
+
+        val slots = new int[500];
+        val values = new double[500];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = random.nextInt(DETECTOR_COUNT);
+            values[i] = 100.0 + 10.0 * random.nextGaussian();
+        }
+        val batch = new AnomalyBatchResult();
+        bank.classify(slots, values, batch);
+
+        val out = new MutableAnomalyResult();
+        assertEquals(slots.length, batch.getSize());
+        for (int i = 0; i < slots.length; i++) {
+            reference.classify(slots[i], values[i], out);
+            assertEquals(out.toAnomalyResult(), batch.toAnomalyResult(i));
+        }
+    }
+
+    @Test
+    public void testRemove_recyclesSlot() {
+        val bank = new EwmaDetectorBank();
+        val first = UUID.randomUUID();
+        val second = UUID.randomUUID();
+        val slot = bank.add(first, new EwmaPointForecaster.Params(), new ExponentialWelfordIntervalForecaster.Params(),
+                AnomalyType.TWO_TAILED);
+        bank.classify(slot, 100.0, new MutableAnomalyResult());
+
+        assertTrue(bank.remove(first));
+        assertFalse(bank.remove(first));
+        assertEquals(-1, bank.slotOf(first));
+        assertEquals(0, bank.size());
+
+        // The recycled slot starts from fresh state.
+        val params = new EwmaPointForecaster.Params().setInitMeanEstimate(50.0);
+        assertEquals(slot, bank.add(second, params, new ExponentialWelfordIntervalForecaster.Params(),
+                AnomalyType.TWO_TAILED));
+        assertEquals(second, bank.uuidAt(slot));
+        assertEquals(slot, bank.slotOf(second));
+
+        val out = new MutableAnomalyResult();
+        bank.classify(slot, 50.0, out);
+        assertEquals(50.0, out.getPredicted(), 0.0);
+    }
+
+    @Test
+    public void testAdd_existingDetectorResetsState() {
+        val bank = new EwmaDetectorBank();
+        val uuid = UUID.randomUUID();
+        val params = new EwmaPointForecaster.Params().setInitMeanEstimate(10.0);
+        val slot = bank.add(uuid, params, new ExponentialWelfordIntervalForecaster.Params(), AnomalyType.TWO_TAILED);
+        bank.classify(slot, 1000.0, new MutableAnomalyResult());
+
+        assertEquals(slot, bank.add(uuid, params, new ExponentialWelfordIntervalForecaster.Params(),
+                AnomalyType.TWO_TAILED));
+        assertEquals(1, bank.size());
+
+        val out = new MutableAnomalyResult();
+        bank.classify(slot, 10.0, out);
+        assertEquals(10.0, out.getPredicted(), 0.0);
+    }
+
+    @Test
+    public void testGrow() {
+        val bank = new EwmaDetectorBank();
+        val uuids = new ArrayList<UUID>();
+        for (int i = 0; i < 1000; i++) {
+            val uuid = UUID.randomUUID();
+            uuids.add(uuid);
+            assertEquals(i, bank.add(uuid, new EwmaPointForecaster.Params().setInitMeanEstimate(i),
+                    new ExponentialWelfordIntervalForecaster.Params(), AnomalyType.TWO_TAILED));
+        }
+        assertTrue(bank.capacity() >= 1000);
+
+        val out = new MutableAnomalyResult();
+        for (int i = 0; i < uuids.size(); i++) {
+            bank.classify(bank.slotOf(uuids.get(i)), i, out);
+            assertEquals(i, out.getPredicted(), 0.0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testClassify_freeSlot() {
+        val bank = new EwmaDetectorBank();
+        val uuid = UUID.randomUUID();
+        val slot = bank.add(uuid, new EwmaPointForecaster.Params(), new ExponentialWelfordIntervalForecaster.Params(),
+                AnomalyType.TWO_TAILED);
+        bank.remove(uuid);
+        bank.classify(slot, 1.0, new MutableAnomalyResult());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testClassify_unusedSlot() {
+        new EwmaDetectorBank().classify(0, 1.0, new MutableAnomalyResult());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testClassifyBatch_lengthMismatch() {
+        new EwmaDetectorBank().classify(new int[1], new double[2], new AnomalyBatchResult());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAdd_invalidParams() {
+        new EwmaDetectorBank().add(UUID.randomUUID(), new EwmaPointForecaster.Params().setAlpha(2.0),
+                new ExponentialWelfordIntervalForecaster.Params(), AnomalyType.TWO_TAILED);
+    }
+
+    static ExponentialWelfordIntervalForecaster.Params intervalParams(Random random) {
+        val weakSigmas = 1.0 + 3.0 * random.nextDouble();
+        return new ExponentialWelfordIntervalForecaster.Params()
+                .setAlpha(0.05 + 0.3 * random.nextDouble())
+                .setInitVarianceEstimate(100.0 * random.nextDouble())
+                .setWeakSigmas(weakSigmas)
+                .setStrongSigmas(weakSigmas + random.nextDouble());
+    }
+
+    static MetricData metricData(double value, int i) {
+        return new MetricData(TestObjectMother.metricDefinition(), value, 1_500_000_000L + 60L * i);
+    }
+
+    private static EwmaPointForecaster.Params pointParams(Random random) {
+        return new EwmaPointForecaster.Params()
+                .setAlpha(0.05 + 0.5 * random.nextDouble())
+                .setInitMeanEstimate(90.0 + 20.0 * random.nextDouble());
+    }
+}
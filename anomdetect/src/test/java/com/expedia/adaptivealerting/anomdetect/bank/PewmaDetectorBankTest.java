@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.bank;
+
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PewmaPointForecaster;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
+import lombok.val;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.anomdetect.bank.EwmaDetectorBankTest.intervalParams;
+import static com.expedia.adaptivealerting.anomdetect.bank.EwmaDetectorBankTest.metricData;
+import static org.junit.Assert.assertEquals;
+
+public final class PewmaDetectorBankTest {
+    private static final int DETECTOR_COUNT = 50;
+
+    @Test
+    public void testClassify_matchesForecastingDetector() {
+        val random = new Random(1L);
+        val bank = new PewmaDetectorBank();
+        val detectors = new ArrayList<Detector>();
+        val slots = new ArrayList<Integer>();
+        for (int i = 0; i < DETECTOR_COUNT; i++) {
+            val uuid = UUID.randomUUID();
+            val pointParams = new PewmaPointForecaster.Params()
+                    .setAlpha(0.05 + 0.5 * random.nextDouble())
+                    .setBeta(random.nextDouble())
+                    .setInitMeanEstimate(90.0 + 20.0 * random.nextDouble())
+                    .setWarmUpPeriod(random.nextInt(40));
+            val intervalParams = intervalParams(random);
+            val type = AnomalyType.values()[i % AnomalyType.values().length];
+            detectors.add(new ForecastingDetector(
+                    uuid, new PewmaPointForecaster(pointParams), new ExponentialWelfordIntervalForecaster(intervalParams), type));
+            slots.add(bank.add(uuid, pointParams, intervalParams, type));
+        }
+
+        val out = new MutableAnomalyResult();
+        for (int i = 0; i < 20_000; i++) {
+            val d = random.nextInt(DETECTOR_COUNT);
+            val value = 100.0 + 10.0 * random.nextGaussian() + (i % 97 == 0 ? 80.0 : 0.0);
+            bank.classify(slots.get(d), value, out);
+            assertEquals("Classification " + i, detectors.get(d).classify(metricData(value, i)), out.toAnomalyResult());
+        }
+    }
+
+    @Test
+    public void testAdd_resetsRecycledSlot() {
+        val bank = new PewmaDetectorBank();
+        val first = UUID.randomUUID();
+        val params = new PewmaPointForecaster.Params().setInitMeanEstimate(100.0);
+        val slot = bank.add(first, params, new ExponentialWelfordIntervalForecaster.Params(), AnomalyType.TWO_TAILED);
+        bank.classify(slot, 500.0, new MutableAnomalyResult());
+        bank.remove(first);
+
+        val second = UUID.randomUUID();
+        assertEquals(slot, bank.add(second, params, new ExponentialWelfordIntervalForecaster.Params(),
+                AnomalyType.TWO_TAILED));
+
+        val detector = new ForecastingDetector(second, new PewmaPointForecaster(params),
+                new ExponentialWelfordIntervalForecaster(), AnomalyType.TWO_TAILED);
+        val out = new MutableAnomalyResult();
+        bank.classify(slot, 120.0, out);
+        assertEquals(detector.classify(metricData(120.0, 0)), out.toAnomalyResult());
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.bank;
+
+import lombok.val;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+public final class UuidSlotIndexTest {
+
+    @Test
+    public void testPutGetRemove() {
+        val index = new UuidSlotIndex();
+        index.ensureSlotCapacity(2);
+        val uuid = UUID.randomUUID();
+
+        assertEquals(-1, index.get(uuid));
+        index.put(uuid, 1);
+        assertEquals(1, index.get(uuid));
+        assertEquals(uuid, index.uuidAt(1));
+        assertEquals(1, index.size());
+
+        assertEquals(1, index.remove(uuid));
+        assertEquals(-1, index.get(uuid));
+        assertEquals(-1, index.remove(uuid));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testRandomOperationsMatchHashMap() {
+        val random = new Random(1L);
+        val index = new UuidSlotIndex();
+        val expected = new HashMap<UUID, Integer>();
+        val uuids = new ArrayList<UUID>();
+        index.ensureSlotCapacity(100_000);
+
+        // Sequential UUIDs share most bits, which makes long probe runs likely.
+        for (int i = 0; i < 100_000; i++) {
+            val removeExisting = !uuids.isEmpty() && random.nextInt(3) == 0;
+            if (removeExisting) {
+                val uuid = uuids.remove(random.nextInt(uuids.size()));
+                assertEquals((int) expected.remove(uuid), index.remove(uuid));
+            } else {
+                val uuid = new UUID(42L, i);
+                uuids.add(uuid);
+                expected.put(uuid, i);
+                index.put(uuid, i);
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        for (val entry : expected.entrySet()) {
+            assertEquals((int) entry.getValue(), index.get(entry.getKey()));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(-1, index.get(UUID.randomUUID()));
+        }
+    }
+}
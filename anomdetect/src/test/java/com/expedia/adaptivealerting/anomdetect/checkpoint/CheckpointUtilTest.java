@@ -0,0 +1,170 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.checkpoint;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorCheckpointException;
+import com.expedia.adaptivealerting.anomdetect.detector.ConstantThresholdDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.CusumDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.IndividualsDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.MOfNAggregator;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.PassThroughAggregator;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.AdditiveIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.MadIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.MultiplicativeIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.PowerLawIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.QuantileIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.HoltWintersForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MedianPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MultiSeasonalPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PewmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersOnlineComponents;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersSimpleTrainingModel;
+import com.expedia.adaptivealerting.anomdetect.util.TestObjectMother;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
+import com.expedia.metrics.MetricData;
+import lombok.val;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public final class CheckpointUtilTest {
+    private static final Class<?>[] CHECKPOINTABLES = {
+            CusumDetector.class,
+            IndividualsDetector.class,
+            ConstantThresholdDetector.class,
+            ForecastingDetector.class,
+            PassThroughAggregator.class,
+            MOfNAggregator.class,
+            MedianPointForecaster.class,
+            EwmaPointForecaster.class,
+            PewmaPointForecaster.class,
+            HoltWintersForecaster.class,
+            HoltWintersOnlineComponents.class,
+            HoltWintersSimpleTrainingModel.class,
+            MultiSeasonalPointForecaster.class,
+            ExponentialWelfordIntervalForecaster.class,
+            AdditiveIntervalForecaster.class,
+            MultiplicativeIntervalForecaster.class,
+            PowerLawIntervalForecaster.class,
+            MadIntervalForecaster.class,
+            QuantileIntervalForecaster.class
+    };
+
+    @Test
+    public void testHeader() throws IOException {
+        val bytes = new ByteArrayOutputStream();
+        CheckpointUtil.writeHeader(new DataOutputStream(bytes), 0x0101, 1);
+        CheckpointUtil.readHeader(input(bytes), 0x0101, 1);
+    }
+
+    @Test(expected = DetectorCheckpointException.class)
+    public void testHeader_differentType() throws IOException {
+        val bytes = new ByteArrayOutputStream();
+        CheckpointUtil.writeHeader(new DataOutputStream(bytes), 0x0101, 1);
+        CheckpointUtil.readHeader(input(bytes), 0x0102, 1);
+    }
+
+    @Test(expected = DetectorCheckpointException.class)
+    public void testHeader_differentVersion() throws IOException {
+        val bytes = new ByteArrayOutputStream();
+        CheckpointUtil.writeHeader(new DataOutputStream(bytes), 0x0101, 1);
+        CheckpointUtil.readHeader(input(bytes), 0x0101, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHeader_stateTypeOutOfRange() throws IOException {
+        CheckpointUtil.writeHeader(new DataOutputStream(new ByteArrayOutputStream()), 0x10000, 1);
+    }
+
+    @Test
+    public void testStateTypes_unique() throws Exception {
+        val stateTypes = new HashMap<Integer, Class<?>>();
+        for (val type : CHECKPOINTABLES) {
+            val field = type.getDeclaredField("STATE_TYPE");
+            field.setAccessible(true);
+            val previous = stateTypes.put(field.getInt(null), type);
+            assertNull(type + " reuses the state type of " + previous, previous);
+        }
+    }
+
+    @Test
+    public void testCheckStructure() {
+        CheckpointUtil.checkStructure(5, 5, "n");
+    }
+
+    @Test(expected = DetectorCheckpointException.class)
+    public void testCheckStructure_mismatch() {
+        CheckpointUtil.checkStructure(5, 6, "n");
+    }
+
+    @Test
+    public void testAnomalyLevel() throws IOException {
+        val bytes = new ByteArrayOutputStream();
+        val out = new DataOutputStream(bytes);
+        CheckpointUtil.writeAnomalyLevel(out, AnomalyLevel.WEAK);
+        CheckpointUtil.writeAnomalyLevel(out, null);
+
+        val in = input(bytes);
+        assertEquals(AnomalyLevel.WEAK, CheckpointUtil.readAnomalyLevel(in));
+        assertNull(CheckpointUtil.readAnomalyLevel(in));
+    }
+
+    @Test(expected = DetectorCheckpointException.class)
+    public void testAnomalyLevel_invalidOrdinal() throws IOException {
+        val in = new DataInputStream(new ByteArrayInputStream(new byte[]{(byte) AnomalyLevel.values().length}));
+        CheckpointUtil.readAnomalyLevel(in);
+    }
+
+    private static DataInputStream input(ByteArrayOutputStream bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    @Test
+    public void testStateBytes() {
+        val forecaster = new EwmaPointForecaster();
+        forecaster.forecast(new MetricData(TestObjectMother.metricDefinition(), 10.0, 1L));
+        val state = CheckpointUtil.stateBytes(forecaster);
+
+        val restored = new EwmaPointForecaster();
+        CheckpointUtil.readStateBytes(restored, state);
+        assertArrayEquals(state, CheckpointUtil.stateBytes(restored));
+    }
+
+    @Test(expected = DetectorCheckpointException.class)
+    public void testReadStateBytes_trailingBytes() {
+        val state = CheckpointUtil.stateBytes(new EwmaPointForecaster());
+        CheckpointUtil.readStateBytes(new EwmaPointForecaster(), Arrays.copyOf(state, state.length + 1));
+    }
+
+    @Test(expected = DetectorCheckpointException.class)
+    public void testReadStateBytes_truncated() {
+        val state = CheckpointUtil.stateBytes(new EwmaPointForecaster());
+        CheckpointUtil.readStateBytes(new EwmaPointForecaster(), Arrays.copyOf(state, state.length - 1));
+    }
+}
@@ -39,12 +39,14 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 
@@ -136,6 +138,37 @@ public final class DefaultDetectorSourceTest {
         sourceUnderTest.findDetector(DETECTOR_UUID_EXCEPTION);
     }
 
+    @Test
+    public void testFindDetectors() {
+        val uuids = Arrays.asList(DETECTOR_UUID_EWMA, DETECTOR_UUID_MISSING_DETECTOR);
+        when(connector.findLatestModels(uuids))
+                .thenReturn(Collections.singletonMap(DETECTOR_UUID_EWMA, modelResource_ewma));
+
+        val results = sourceUnderTest.findDetectors(uuids);
+        assertEquals(1, results.size());
+        assertEquals(detector, results.get(DETECTOR_UUID_EWMA));
+    }
+
+    @Test
+    public void testFindDetectors_skipsBadModels() {
+        val badModel = new ModelResource().setDetectorType(new ModelTypeResource("bad-detector"));
+        val models = new HashMap<UUID, ModelResource>();
+        models.put(DETECTOR_UUID_EWMA, modelResource_ewma);
+        models.put(DETECTOR_UUID_EXCEPTION, badModel);
+        when(connector.findLatestModels(models.keySet())).thenReturn(models);
+        when(legacyDetectorFactory.createDetector(DETECTOR_UUID_EXCEPTION, badModel))
+                .thenThrow(new IllegalArgumentException("Illegal type: bad-detector"));
+
+        val results = sourceUnderTest.findDetectors(models.keySet());
+        assertEquals(1, results.size());
+        assertTrue(results.containsKey(DETECTOR_UUID_EWMA));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindDetectors_nullUuids() {
+        sourceUnderTest.findDetectors(null);
+    }
+
     private void initTestObjects() {
         initTestObjects_findDetectors();
         initTestObjects_findLatestModel();
@@ -195,4 +228,11 @@ public final class DefaultDetectorSourceTest {
         when(legacyDetectorFactory.createDetector(any(UUID.class), any(ModelResource.class)))
                 .thenReturn(detector);
     }
+
+    @Test
+    public void testFindEnabledDetectorMappings() {
+        when(connector.findEnabledDetectorMappings()).thenReturn(Collections.singletonList(detectorMapping));
+        val results = sourceUnderTest.findEnabledDetectorMappings();
+        assertEquals(Collections.singletonList(detectorMapping), results);
+    }
 }
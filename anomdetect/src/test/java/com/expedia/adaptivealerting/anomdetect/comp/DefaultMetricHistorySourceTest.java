@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector;
+import com.expedia.metrics.MetricDefinition;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.when;
+
+public final class DefaultMetricHistorySourceTest {
+    private DefaultMetricHistorySource sourceUnderTest;
+
+    @Mock
+    private ModelServiceConnector connector;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        this.sourceUnderTest = new DefaultMetricHistorySource(connector);
+    }
+
+    @Test
+    public void testFindHistory() {
+        val metricDef = new MetricDefinition("bookings");
+        val history = new MetricHistory(new long[]{60L}, new double[]{1.0});
+        when(connector.findMetricHistory(metricDef, 10)).thenReturn(history);
+        assertSame(history, sourceUnderTest.findHistory(metricDef, 10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindHistory_nullMetricDef() {
+        sourceUnderTest.findHistory(null, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMetricHistory_lengthMismatch() {
+        new MetricHistory(new long[]{60L}, new double[0]);
+    }
+}
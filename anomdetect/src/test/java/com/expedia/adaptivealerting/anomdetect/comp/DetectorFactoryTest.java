@@ -17,8 +17,15 @@ package com.expedia.adaptivealerting.anomdetect.comp;
 
 import com.expedia.adaptivealerting.anomdetect.detector.DetectorConfig;
 import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.AggregatorConfig;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.MOfNAggregator;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.PassThroughAggregator;
 import com.expedia.adaptivealerting.anomdetect.forecast.interval.AdditiveIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.MadIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.QuantileIntervalForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MedianPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MultiSeasonalPointForecaster;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.SneakyThrows;
@@ -77,6 +84,76 @@ public final class DetectorFactoryTest {
         assertEquals(AnomalyType.RIGHT_TAILED, forecastingDetector.getAnomalyType());
     }
 
+    @Test
+    public void testCreateDetector_medianMad() {
+        val config = readConfig("forecasting-median-mad-001");
+        val detector = (ForecastingDetector) factory.createDetector(UUID.randomUUID(), config);
+
+        val pointForecaster = (MedianPointForecaster) detector.getPointForecaster();
+        assertEquals(1440, pointForecaster.getParams().getWindowSize());
+
+        val intervalForecaster = (MadIntervalForecaster) detector.getIntervalForecaster();
+        val madParams = intervalForecaster.getParams();
+        assertEquals(1440, madParams.getWindowSize());
+        assertEquals(3.0, madParams.getWeakSigmas(), TOLERANCE);
+        assertEquals(5.0, madParams.getStrongSigmas(), TOLERANCE);
+        assertEquals(60, madParams.getWarmUpPeriod());
+
+        assertEquals(AnomalyType.TWO_TAILED, detector.getAnomalyType());
+    }
+
+    @Test
+    public void testCreateDetector_multiSeasonal() {
+        val config = readConfig("forecasting-multi-seasonal-mad-001");
+        val detector = (ForecastingDetector) factory.createDetector(UUID.randomUUID(), config);
+
+        val pointForecaster = (MultiSeasonalPointForecaster) detector.getPointForecaster();
+        val params = pointForecaster.getParams();
+        assertEquals(0.1, params.getAlpha(), TOLERANCE);
+        assertEquals(2, params.getSeasons().size());
+        assertEquals(288, params.getSeasons().get(0).getSlots());
+        assertEquals(-20.0, params.getSeasons().get(1).getInitProfile()[6], TOLERANCE);
+        assertTrue(detector.getIntervalForecaster() instanceof MadIntervalForecaster);
+    }
+
+    @Test
+    public void testCreateDetector_ewmaQuantile() {
+        val config = readConfig("forecasting-ewma-quantile-001");
+        val detector = (ForecastingDetector) factory.createDetector(UUID.randomUUID(), config);
+
+        assertTrue(detector.getPointForecaster() instanceof EwmaPointForecaster);
+        val intervalForecaster = (QuantileIntervalForecaster) detector.getIntervalForecaster();
+        val quantileParams = intervalForecaster.getParams();
+        assertEquals(0.9, quantileParams.getWeakQuantile(), TOLERANCE);
+        assertEquals(0.99, quantileParams.getStrongQuantile(), TOLERANCE);
+        assertEquals(0.999, quantileParams.getDecay(), TOLERANCE);
+        assertEquals(50, quantileParams.getWarmUpPeriod());
+    }
+
+    @Test
+    public void testCreateDetector_mOfNAggregator() {
+        val config = readConfig("forecasting-ewma-additive-mofn-001");
+        val detector = (ForecastingDetector) factory.createDetector(UUID.randomUUID(), config);
+
+        val aggregator = (MOfNAggregator) detector.getAggregator();
+        assertEquals(3, aggregator.getConfig().getM());
+        assertEquals(5, aggregator.getConfig().getN());
+    }
+
+    @Test
+    public void testCreateDetector_defaultAggregator() {
+        val detector = factory.createDetector(UUID.randomUUID(), readConfig("forecasting-ewma-additive-001"));
+        assertTrue(((ForecastingDetector) detector).getAggregator() instanceof PassThroughAggregator);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testCreateDetector_unsupportedAggregator() {
+        val config = (ForecastingDetector.Params) readConfig("forecasting-ewma-additive-001");
+        config.setAggregatorConfig(new AggregatorConfig() {
+        });
+        factory.createDetector(UUID.randomUUID(), config);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testCreateDetector_nullUuid() {
         val config = readConfig("forecasting-ewma-additive-001");
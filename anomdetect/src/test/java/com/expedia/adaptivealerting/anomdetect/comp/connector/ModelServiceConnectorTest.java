@@ -37,20 +37,34 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
+import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.API_PATH_DETECTOR_BY_METRIC_HASH;
 import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.API_PATH_DETECTOR_MAPPING_UPDATES;
 import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.API_PATH_DETECTOR_UPDATES;
+import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.API_PATH_ENABLED_DETECTOR_MAPPINGS;
 import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.API_PATH_MATCHING_DETECTOR_BY_TAGS;
+import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.API_PATH_METRIC_HISTORY;
+import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.API_PATH_MODELS_BY_DETECTOR_UUIDS;
 import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.API_PATH_MODEL_BY_DETECTOR_UUID;
+import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.MAX_UUIDS_PER_REQUEST;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -221,6 +235,126 @@ public class ModelServiceConnectorTest {
         connectorUnderTest.findLatestModel(DETECTOR_UUID_NO_MODELS);
     }
 
+    @Test
+    public void testFindLatestModels() throws IOException {
+        val uuids = new ArrayList<UUID>();
+        for (int i = 0; i < MAX_UUIDS_PER_REQUEST + 10; i++) {
+            uuids.add(UUID.randomUUID());
+        }
+        val firstChunk = uuids.subList(0, MAX_UUIDS_PER_REQUEST);
+        val secondChunk = uuids.subList(MAX_UUIDS_PER_REQUEST, uuids.size());
+        when(httpClient.get(latestModelsUri(firstChunk))).thenReturn(latestModelsContent(firstChunk));
+
+        // The second chunk has a detector without models.
+        when(httpClient.get(latestModelsUri(secondChunk)))
+                .thenReturn(latestModelsContent(secondChunk.subList(1, secondChunk.size())));
+
+        val result = bulkConnector().findLatestModels(uuids);
+        assertEquals(uuids.size() - 1, result.size());
+        assertFalse(result.containsKey(secondChunk.get(0)));
+        assertEquals(uuids.get(0).toString(), result.get(uuids.get(0)).getUuid());
+        verify(httpClient, times(2)).get(anyString());
+    }
+
+    @Test
+    public void testFindLatestModels_empty() throws IOException {
+        val result = bulkConnector().findLatestModels(Collections.emptyList());
+        assertTrue(result.isEmpty());
+        verify(httpClient, never()).get(anyString());
+    }
+
+    @Test
+    public void testFindLatestModels_noEmbeddedModels() throws IOException {
+        val uuids = Collections.singletonList(UUID.randomUUID());
+        val bytes = new ObjectMapper().writeValueAsBytes(new ModelResources(null));
+        when(httpClient.get(latestModelsUri(uuids))).thenReturn(new Content(bytes, ContentType.APPLICATION_JSON));
+        assertTrue(bulkConnector().findLatestModels(uuids).isEmpty());
+    }
+
+    @Test(expected = DetectorRetrievalException.class)
+    public void testFindLatestModels_retrievalException() throws IOException {
+        val uuids = Collections.singletonList(UUID.randomUUID());
+        when(httpClient.get(latestModelsUri(uuids))).thenThrow(new IOException());
+        bulkConnector().findLatestModels(uuids);
+    }
+
+    @Test(expected = DetectorDeserializationException.class)
+    public void testFindLatestModels_deserializationException() throws IOException {
+        val uuids = Collections.singletonList(UUID.randomUUID());
+        when(httpClient.get(latestModelsUri(uuids))).thenReturn(modelResourcesContent_cantDeserialize);
+        bulkConnector().findLatestModels(uuids);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindLatestModels_nullUuids() {
+        connectorUnderTest.findLatestModels(null);
+    }
+
+    @Test
+    public void testFindMetricHistory() throws IOException {
+        val json = "[{\"dataPoint\":1.0,\"epochSecond\":60},{\"dataPoint\":null,\"epochSecond\":120}," +
+                "{\"dataPoint\":3.0,\"epochSecond\":180}]";
+        when(httpClient.get(metricHistoryUri(metricDef, 3)))
+                .thenReturn(new Content(json.getBytes(), ContentType.APPLICATION_JSON));
+
+        // Gaps are skipped.
+        val history = bulkConnector().findMetricHistory(metricDef, 3);
+        assertArrayEquals(new long[]{60L, 180L}, history.getEpochSeconds());
+        assertArrayEquals(new double[]{1.0, 3.0}, history.getValues(), 0.0);
+    }
+
+    @Test
+    public void testFindMetricHistory_empty() throws IOException {
+        when(httpClient.get(metricHistoryUri(metricDef, 3)))
+                .thenReturn(new Content("[]".getBytes(), ContentType.APPLICATION_JSON));
+        assertEquals(0, bulkConnector().findMetricHistory(metricDef, 3).size());
+    }
+
+    @Test(expected = DetectorRetrievalException.class)
+    public void testFindMetricHistory_retrievalException() throws IOException {
+        when(httpClient.get(metricHistoryUri(metricDef, 3))).thenThrow(new IOException());
+        bulkConnector().findMetricHistory(metricDef, 3);
+    }
+
+    @Test(expected = DetectorDeserializationException.class)
+    public void testFindMetricHistory_deserializationException() throws IOException {
+        when(httpClient.get(metricHistoryUri(metricDef, 3)))
+                .thenReturn(new Content("{}".getBytes(), ContentType.APPLICATION_JSON));
+        bulkConnector().findMetricHistory(metricDef, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindMetricHistory_invalidLimit() {
+        connectorUnderTest.findMetricHistory(metricDef, 0);
+    }
+
+    private ModelServiceConnector bulkConnector() {
+        // The bulk tests round-trip real JSON, so use a real object mapper.
+        return new ModelServiceConnector(httpClient, URI_TEMPLATE, new ObjectMapper());
+    }
+
+    private static String metricHistoryUri(MetricDefinition metricDef, int limit) throws IOException {
+        val metricTags = new TreeMap<>(metricDef.getTags().getKv()).entrySet().stream()
+                .map(tag -> tag.getKey() + "=" + tag.getValue())
+                .collect(Collectors.joining(","));
+        return String.format(URI_TEMPLATE + API_PATH_METRIC_HISTORY, URLEncoder.encode(metricTags, "UTF-8"), limit);
+    }
+
+    private String latestModelsUri(List<UUID> uuids) {
+        val uuidParam = uuids.stream().map(UUID::toString).collect(Collectors.joining(","));
+        return String.format(URI_TEMPLATE + API_PATH_MODELS_BY_DETECTOR_UUIDS, uuidParam);
+    }
+
+    private Content latestModelsContent(List<UUID> uuids) throws IOException {
+        val models = uuids.stream()
+                .map(uuid -> new ModelResource()
+                        .setUuid(uuid.toString())
+                        .setDetectorType(new ModelTypeResource(EWMA_DETECTOR)))
+                .collect(Collectors.toList());
+        val bytes = new ObjectMapper().writeValueAsBytes(new ModelResources(models));
+        return new Content(bytes, ContentType.APPLICATION_JSON);
+    }
+
     private void initTestObjects() throws IOException {
         initTestObjects_findDetectors();
         initTestObjects_findMatchingDetectorMappings();
@@ -411,4 +545,32 @@ public class ModelServiceConnectorTest {
         when(objectMapper.readValue(modelResourcesContent_noModels.asBytes(), ModelResources.class))
                 .thenReturn(modelResources_noModels);
     }
+
+    @Test
+    public void testFindEnabledDetectorMappings() throws IOException {
+        val json = "[{\"id\":\"1\",\"detector\":{\"id\":\"2c49ba26-1a7d-43f4-b70c-c6644a2c1689\"}," +
+                "\"expression\":{\"operator\":\"AND\",\"operands\":[{\"field\":{\"key\":\"name\"," +
+                "\"value\":\"bookings\"}}]},\"enabled\":true}]";
+        when(httpClient.get(URI_TEMPLATE + API_PATH_ENABLED_DETECTOR_MAPPINGS))
+                .thenReturn(new Content(json.getBytes(), ContentType.APPLICATION_JSON));
+
+        val result = bulkConnector().findEnabledDetectorMappings();
+        assertEquals(1, result.size());
+        assertEquals("1", result.get(0).getId());
+        assertEquals(UUID.fromString("2c49ba26-1a7d-43f4-b70c-c6644a2c1689"), result.get(0).getDetector().getUuid());
+        assertEquals("bookings", result.get(0).getExpression().getOperands().get(0).getField().getValue());
+    }
+
+    @Test(expected = DetectorMappingRetrievalException.class)
+    public void testFindEnabledDetectorMappings_retrievalException() throws IOException {
+        when(httpClient.get(URI_TEMPLATE + API_PATH_ENABLED_DETECTOR_MAPPINGS)).thenThrow(new IOException());
+        bulkConnector().findEnabledDetectorMappings();
+    }
+
+    @Test(expected = DetectorMappingDeserializationException.class)
+    public void testFindEnabledDetectorMappings_deserializationException() throws IOException {
+        when(httpClient.get(URI_TEMPLATE + API_PATH_ENABLED_DETECTOR_MAPPINGS))
+                .thenReturn(new Content("null".getBytes(), ContentType.APPLICATION_JSON));
+        bulkConnector().findEnabledDetectorMappings();
+    }
 }
@@ -22,9 +22,15 @@ import com.expedia.adaptivealerting.anomdetect.detector.CusumDetector;
 import com.expedia.adaptivealerting.anomdetect.detector.Detector;
 import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
 import com.expedia.adaptivealerting.anomdetect.detector.IndividualsDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.MOfNAggregator;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.PassThroughAggregator;
 import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.MadIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.QuantileIntervalForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.HoltWintersForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MedianPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MultiSeasonalPointForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PewmaPointForecaster;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyThresholds;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
@@ -33,6 +39,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.MockitoAnnotations;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -109,6 +117,99 @@ public class LegacyDetectorFactoryTest {
         assertTrue(detector instanceof IndividualsDetector);
     }
 
+    @Test
+    public void testCreateDetector_mOfNAggregator() {
+        val params = new HashMap<String, Object>();
+        params.put("aggregatorConfig", mOfNConfig(2, 4));
+        val detector = (ForecastingDetector) buildDetector(LegacyDetectorFactory.EWMA, params);
+        val aggregator = (MOfNAggregator) detector.getAggregator();
+        assertEquals(2, aggregator.getConfig().getM());
+        assertEquals(4, aggregator.getConfig().getN());
+    }
+
+    @Test
+    public void testCreateDetector_mOfNAggregatorOnConstantThresholdAndCusum() {
+        val constantParams = new HashMap<String, Object>();
+        constantParams.put("type", AnomalyType.TWO_TAILED);
+        constantParams.put("thresholds", new AnomalyThresholds(100.0, 90.0, 20.0, 10.0));
+        constantParams.put("aggregatorConfig", mOfNConfig(2, 4));
+        val constant = (ConstantThresholdDetector) buildDetector(LegacyDetectorFactory.CONSTANT_THRESHOLD, constantParams);
+        assertEquals(new MOfNAggregator.Config(2, 4), ((MOfNAggregator) constant.getAggregator()).getConfig());
+
+        val cusumParams = new HashMap<String, Object>();
+        cusumParams.put("type", AnomalyType.LEFT_TAILED);
+        cusumParams.put("aggregatorConfig", mOfNConfig(3, 6));
+        val cusum = (CusumDetector) buildDetector(LegacyDetectorFactory.CUSUM, cusumParams);
+        assertEquals(new MOfNAggregator.Config(3, 6), ((MOfNAggregator) cusum.getAggregator()).getConfig());
+    }
+
+    @Test
+    public void testCreateDetector_defaultAggregator() {
+        val detector = (ForecastingDetector) buildDetector(LegacyDetectorFactory.PEWMA, new HashMap<>());
+        assertTrue(detector.getAggregator() instanceof PassThroughAggregator);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateDetector_invalidAggregator() {
+        val params = new HashMap<String, Object>();
+        params.put("aggregatorConfig", mOfNConfig(5, 3));
+        buildDetector(LegacyDetectorFactory.MEDIAN, params);
+    }
+
+    @Test
+    public void testCreateDetector_median() {
+        val params = new HashMap<String, Object>();
+        params.put("windowSize", 120);
+        val detector = (ForecastingDetector) buildDetector(LegacyDetectorFactory.MEDIAN, params);
+        val pointForecaster = (MedianPointForecaster) detector.getPointForecaster();
+        val intervalForecaster = (MadIntervalForecaster) detector.getIntervalForecaster();
+        assertEquals(120, pointForecaster.getParams().getWindowSize());
+        assertEquals(120, intervalForecaster.getParams().getWindowSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateDetector_medianInvalidParams() {
+        val params = new HashMap<String, Object>();
+        params.put("windowSize", 10);
+        buildDetector(LegacyDetectorFactory.MEDIAN, params);
+    }
+
+    @Test
+    public void testCreateDetector_multiSeasonal() {
+        val daily = new HashMap<String, Object>();
+        daily.put("periodSeconds", 86400);
+        daily.put("slots", 288);
+        daily.put("gamma", 0.05);
+        val weekly = new HashMap<String, Object>();
+        weekly.put("periodSeconds", 604800);
+        weekly.put("slots", 7);
+        weekly.put("initProfile", Arrays.asList(0.0, 0.0, 0.0, 0.0, 0.0, -20.0, -20.0));
+        val params = new HashMap<String, Object>();
+        params.put("alpha", 0.1);
+        params.put("seasons", Arrays.asList(daily, weekly));
+        params.put("windowSize", 1440);
+
+        val detector = (ForecastingDetector) buildDetector(LegacyDetectorFactory.MULTI_SEASONAL, params);
+        val pointForecaster = (MultiSeasonalPointForecaster) detector.getPointForecaster();
+        val intervalForecaster = (MadIntervalForecaster) detector.getIntervalForecaster();
+        val seasons = pointForecaster.getParams().getSeasons();
+        assertEquals(0.1, pointForecaster.getParams().getAlpha(), 0.001);
+        assertEquals(2, seasons.size());
+        assertEquals(288, seasons.get(0).getSlots());
+        assertEquals(-20.0, seasons.get(1).getInitProfile()[6], 0.001);
+        assertEquals(1440, intervalForecaster.getParams().getWindowSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateDetector_multiSeasonalInvalidParams() {
+        val season = new HashMap<String, Object>();
+        season.put("periodSeconds", 86400);
+        season.put("slots", 7);
+        val params = new HashMap<String, Object>();
+        params.put("seasons", Collections.singletonList(season));
+        buildDetector(LegacyDetectorFactory.MULTI_SEASONAL, params);
+    }
+
     @Test
     public void testCreateDetector_pewma() {
         val params = new HashMap<String, Object>();
@@ -117,6 +218,27 @@ public class LegacyDetectorFactoryTest {
         assertTrue(detector.getIntervalForecaster() instanceof ExponentialWelfordIntervalForecaster);
     }
 
+    @Test
+    public void testCreateDetector_quantile() {
+        val params = new HashMap<String, Object>();
+        params.put("alpha", 0.2);
+        params.put("strongQuantile", 0.995);
+        val detector = (ForecastingDetector) buildDetector(LegacyDetectorFactory.QUANTILE, params);
+        val pointForecaster = (EwmaPointForecaster) detector.getPointForecaster();
+        val intervalForecaster = (QuantileIntervalForecaster) detector.getIntervalForecaster();
+        assertEquals(0.2, pointForecaster.getParams().getAlpha(), 0.001);
+        assertEquals(0.95, intervalForecaster.getParams().getWeakQuantile(), 0.001);
+        assertEquals(0.995, intervalForecaster.getParams().getStrongQuantile(), 0.001);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateDetector_quantileInvalidParams() {
+        val params = new HashMap<String, Object>();
+        params.put("weakQuantile", 0.99);
+        params.put("strongQuantile", 0.95);
+        buildDetector(LegacyDetectorFactory.QUANTILE, params);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testCreateDetector_unknown() {
         buildDetector("some-unknown-detector-type", new HashMap<>());
@@ -127,6 +249,14 @@ public class LegacyDetectorFactoryTest {
         return factoryUnderTest.createDetector(UUID.randomUUID(), legacyDetectorConfig);
     }
 
+    private static Map<String, Object> mOfNConfig(int m, int n) {
+        val config = new HashMap<String, Object>();
+        config.put("@type", "mOfN");
+        config.put("m", m);
+        config.put("n", n);
+        return config;
+    }
+
     private ModelResource buildLegacyDetectorConfig(String type, Map<String, Object> params) {
         return new ModelResource()
                 .setDetectorType(new ModelTypeResource(type))
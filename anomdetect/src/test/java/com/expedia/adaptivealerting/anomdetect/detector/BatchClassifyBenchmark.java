@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detector;
+
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.HoltWintersForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PewmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.SeasonalityType;
+import com.expedia.adaptivealerting.anomdetect.util.BatchTestUtil;
+import com.expedia.adaptivealerting.anomdetect.util.TestObjectMother;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyThresholds;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.expedia.metrics.MetricData;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Compares per-point classification against batch classification for each detector type. Scores are nanoseconds per
+ * observation, so the two paths can be compared directly.
+ * </p>
+ * <p>
+ * Run with {@code main} from the IDE, or from the test classpath. It isn't part of the unit test suite.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchClassifyBenchmark {
+    private static final int BATCH_SIZE = 1024;
+
+    @Param({"ewma", "pewma", "holt-winters", "cusum", "individuals", "constant-threshold"})
+    private String detectorType;
+
+    private Detector detector;
+    private long[] timestamps;
+    private double[] values;
+    private MetricData[] metricData;
+    private AnomalyBatchResult batchResult;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.detector = detector(detectorType);
+        this.values = BatchTestUtil.valuesWithAnomalies(1L, BATCH_SIZE);
+        this.timestamps = new long[BATCH_SIZE];
+        this.metricData = new MetricData[BATCH_SIZE];
+        this.batchResult = new AnomalyBatchResult(BATCH_SIZE);
+
+        val metricDefinition = TestObjectMother.metricDefinition();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            timestamps[i] = 1_500_000_000L + 60L * i;
+            metricData[i] = new MetricData(metricDefinition, values[i], timestamps[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void perPoint(Blackhole blackhole) {
+        for (val point : metricData) {
+            blackhole.consume(detector.classify(point));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public AnomalyBatchResult batch() {
+        detector.classify(timestamps, values, batchResult);
+        return batchResult;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        val options = new OptionsBuilder()
+                .include(BatchClassifyBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    private static Detector detector(String type) {
+        val uuid = UUID.randomUUID();
+        switch (type) {
+            case "ewma":
+                return new ForecastingDetector(
+                        uuid,
+                        new EwmaPointForecaster(new EwmaPointForecaster.Params().setInitMeanEstimate(100.0)),
+                        new ExponentialWelfordIntervalForecaster(),
+                        AnomalyType.TWO_TAILED);
+            case "pewma":
+                return new ForecastingDetector(
+                        uuid,
+                        new PewmaPointForecaster(new PewmaPointForecaster.Params().setInitMeanEstimate(100.0)),
+                        new ExponentialWelfordIntervalForecaster(),
+                        AnomalyType.TWO_TAILED);
+            case "holt-winters":
+                val hwParams = new HoltWintersForecaster.Params()
+                        .setFrequency(24)
+                        .setSeasonalityType(SeasonalityType.ADDITIVE);
+                return new ForecastingDetector(
+                        uuid,
+                        new HoltWintersForecaster(hwParams),
+                        new ExponentialWelfordIntervalForecaster(),
+                        AnomalyType.TWO_TAILED);
+            case "cusum":
+                return new CusumDetector(uuid, new CusumDetector.Params()
+                        .setType(AnomalyType.TWO_TAILED)
+                        .setTargetValue(100.0)
+                        .setInitMeanEstimate(100.0));
+            case "individuals":
+                return new IndividualsDetector(uuid, new IndividualsDetector.Params()
+                        .setInitValue(100.0)
+                        .setInitMeanEstimate(100.0));
+            case "constant-threshold":
+                return new ConstantThresholdDetector(uuid, new ConstantThresholdDetector.Params()
+                        .setType(AnomalyType.TWO_TAILED)
+                        .setThresholds(new AnomalyThresholds(150.0, 120.0, 80.0, 50.0)));
+            default:
+                throw new IllegalArgumentException("Unknown detector type: " + type);
+        }
+    }
+}
@@ -15,6 +15,8 @@
  */
 package com.expedia.adaptivealerting.anomdetect.detector;
 
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.MOfNAggregator;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyThresholds;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
@@ -26,9 +28,13 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.IOException;
 import java.time.Instant;
 import java.util.UUID;
 
+import static com.expedia.adaptivealerting.anomdetect.util.BatchTestUtil.assertBatchMatchesPerPoint;
+import static com.expedia.adaptivealerting.anomdetect.util.BatchTestUtil.valuesWithAnomalies;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.assertRoundTrip;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -101,6 +107,23 @@ public class ConstantThresholdDetectorTest {
         verifyResult(AnomalyLevel.STRONG, detector, epochSecond, 0.0);
     }
 
+    @Test
+    public void testCheckpoint() throws IOException {
+        val uuid = UUID.randomUUID();
+        val thresholds = new AnomalyThresholds(110.0, 105.0, 95.0, 90.0);
+        assertRoundTrip(
+                detector(uuid, thresholds, AnomalyType.TWO_TAILED),
+                detector(uuid, thresholds, AnomalyType.TWO_TAILED),
+                10);
+    }
+
+    private static ConstantThresholdDetector mOfNDetector(UUID uuid, AnomalyThresholds thresholds) {
+        val params = new ConstantThresholdDetector.Params()
+                .setType(AnomalyType.TWO_TAILED)
+                .setThresholds(thresholds);
+        return new ConstantThresholdDetector(uuid, params, new MOfNAggregator(new MOfNAggregator.Config(2, 5, true)));
+    }
+
     private ConstantThresholdDetector detector(UUID uuid, AnomalyThresholds thresholds, AnomalyType type) {
         val params = new ConstantThresholdDetector.Params()
                 .setThresholds(thresholds)
@@ -115,4 +138,47 @@ public class ConstantThresholdDetectorTest {
         assertNotNull(result.getThresholds());
         assertEquals(level, result.getAnomalyLevel());
     }
+
+    @Test
+    public void testClassifyBatch() {
+        val uuid = UUID.randomUUID();
+        val values = valuesWithAnomalies(1L, 200);
+        for (val type : AnomalyType.values()) {
+            val thresholds = new AnomalyThresholds(150.0, 120.0, 80.0, 50.0);
+            assertBatchMatchesPerPoint(detector(uuid, thresholds, type), detector(uuid, thresholds, type), values, 64);
+
+            val upperOnly = new AnomalyThresholds(150.0, null, null, null);
+            assertBatchMatchesPerPoint(detector(uuid, upperOnly, type), detector(uuid, upperOnly, type), values, 64);
+        }
+    }
+
+    @Test
+    public void testClassify_appliesAggregator() {
+        val params = new ConstantThresholdDetector.Params()
+                .setType(AnomalyType.RIGHT_TAILED)
+                .setThresholds(new AnomalyThresholds(300.0, 200.0, null, null));
+        val detector = new ConstantThresholdDetector(
+                detectorUuid, params, new MOfNAggregator(new MOfNAggregator.Config(2, 3, true)));
+        val metricDef = new MetricDefinition("some-key");
+        val now = Instant.now().getEpochSecond();
+        assertEquals(AnomalyLevel.NORMAL, detector.classify(new MetricData(metricDef, 250.0, now)).getAnomalyLevel());
+        assertEquals(AnomalyLevel.STRONG, detector.classify(new MetricData(metricDef, 250.0, now)).getAnomalyLevel());
+    }
+
+    @Test
+    public void testClassifyBatch_appliesAggregator() {
+        val uuid = UUID.randomUUID();
+        val values = valuesWithAnomalies(1L, 200);
+        val thresholds = new AnomalyThresholds(150.0, 120.0, 80.0, 50.0);
+        assertBatchMatchesPerPoint(
+                mOfNDetector(uuid, thresholds),
+                mOfNDetector(uuid, thresholds),
+                values,
+                64);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testClassifyBatch_nullOut() {
+        detector(UUID.randomUUID(), thresholds, AnomalyType.TWO_TAILED).classify(new long[0], new double[0], null);
+    }
 }
@@ -15,6 +15,9 @@
  */
 package com.expedia.adaptivealerting.anomdetect.detector;
 
+import com.expedia.adaptivealerting.anomdetect.DetectorCheckpointException;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.MOfNAggregator;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
 import com.expedia.adaptivealerting.core.util.MathUtil;
@@ -27,11 +30,17 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
+import static com.expedia.adaptivealerting.anomdetect.util.BatchTestUtil.assertBatchMatchesPerPoint;
+import static com.expedia.adaptivealerting.anomdetect.util.BatchTestUtil.valuesWithAnomalies;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.assertRoundTrip;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.readState;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.writeState;
 import static junit.framework.TestCase.assertEquals;
 import static org.junit.Assert.assertSame;
 
@@ -141,6 +150,28 @@ public class CusumDetectorTest {
         testClassify(params, anomalyType, testRows);
     }
 
+    @Test
+    public void testCheckpoint() throws IOException {
+        assertRoundTrip(new CusumDetector(detectorUuid, cusumParams()), new CusumDetector(detectorUuid, cusumParams()), 50);
+    }
+
+    @Test(expected = DetectorCheckpointException.class)
+    public void testCheckpoint_differentDetector() throws IOException {
+        val individualsDetector = new IndividualsDetector(detectorUuid, new IndividualsDetector.Params());
+        readState(new CusumDetector(detectorUuid, cusumParams()), writeState(individualsDetector));
+    }
+
+    private static CusumDetector.Params cusumParams() {
+        return new CusumDetector.Params()
+                .setType(AnomalyType.TWO_TAILED)
+                .setTargetValue(100.0)
+                .setWeakSigmas(WEAK_SIGMAS)
+                .setStrongSigmas(STRONG_SIGMAS)
+                .setSlackParam(0.5)
+                .setInitMeanEstimate(100.0)
+                .setWarmUpPeriod(WARMUP_PERIOD);
+    }
+
     private void testClassify(CusumDetector.Params params, AnomalyType anomalyType, CusumTestRow[] testRows) {
         val detector = new CusumDetector(detectorUuid, params);
         assertEquals(detectorUuid, detector.getUuid());
@@ -178,4 +209,51 @@ public class CusumDetectorTest {
     private static void assertApproxEqual(double d1, double d2) {
         TestCase.assertTrue(MathUtil.isApproximatelyEqual(d1, d2, TOLERANCE));
     }
+
+    @Test
+    public void testClassifyBatch() {
+        for (val type : AnomalyType.values()) {
+            assertBatchMatchesPerPoint(
+                    new CusumDetector(detectorUuid, cusumParams().setType(type)),
+                    new CusumDetector(detectorUuid, cusumParams().setType(type)),
+                    valuesWithAnomalies(1L, 500),
+                    64);
+        }
+    }
+
+    @Test
+    public void testClassify_appliesAggregator() {
+        val values = valuesWithAnomalies(1L, 500);
+        val plain = new CusumDetector(detectorUuid, cusumParams());
+        val suppressing = new CusumDetector(
+                detectorUuid, cusumParams(), new MOfNAggregator(new MOfNAggregator.Config(500, 500, true)));
+
+        int anomalies = 0;
+        for (int i = 0; i < values.length; i++) {
+            val metricData = new MetricData(metricDefinition, values[i], epochSecond + 60L * i);
+            val level = plain.classify(metricData).getAnomalyLevel();
+            val suppressedLevel = suppressing.classify(metricData).getAnomalyLevel();
+            if (level == AnomalyLevel.WEAK || level == AnomalyLevel.STRONG) {
+                anomalies++;
+                assertEquals(AnomalyLevel.NORMAL, suppressedLevel);
+            } else {
+                assertEquals(level, suppressedLevel);
+            }
+        }
+        TestCase.assertTrue(anomalies > 0);
+    }
+
+    @Test
+    public void testClassifyBatch_appliesAggregator() {
+        assertBatchMatchesPerPoint(
+                new CusumDetector(detectorUuid, cusumParams(), new MOfNAggregator(new MOfNAggregator.Config(2, 5))),
+                new CusumDetector(detectorUuid, cusumParams(), new MOfNAggregator(new MOfNAggregator.Config(2, 5))),
+                valuesWithAnomalies(1L, 500),
+                64);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testClassifyBatch_lengthMismatch() {
+        new CusumDetector(detectorUuid, cusumParams()).classify(new long[2], new double[3], new AnomalyBatchResult());
+    }
 }
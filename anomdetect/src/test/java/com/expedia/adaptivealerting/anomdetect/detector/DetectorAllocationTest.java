@@ -0,0 +1,219 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detector;
+
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.MOfNAggregator;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.AdditiveIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.MadIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.MultiplicativeIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.PowerLawIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.QuantileIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.HoltWintersForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MedianPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MultiSeasonalPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PewmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersTrainingMethod;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.SeasonalityType;
+import com.expedia.adaptivealerting.anomdetect.util.BatchTestUtil;
+import com.expedia.adaptivealerting.anomdetect.util.TestObjectMother;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyThresholds;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
+import com.expedia.metrics.MetricData;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Allocation regression test for the hot classification paths: once a detector is warmed up, classifying into a
+ * {@link MutableAnomalyResult} or an {@link AnomalyBatchResult} must not allocate.
+ */
+public final class DetectorAllocationTest {
+    private static final int WARM_UP_COUNT = 20_000;
+    private static final int MEASURED_COUNT = 10_000;
+    private static final int BATCH_SIZE = 256;
+
+    // A deoptimization can materialize scalar-replaced objects once, mid-round. Allocation on the path itself shows up
+    // in every round, so the quietest round is what's checked.
+    private static final int MEASURED_ROUNDS = 3;
+
+    // Slack for the allocation counter itself. Far below one 16-byte object per measured classify or batch, so any
+    // allocation on the measured path fails the test.
+    private static final long ALLOCATION_TOLERANCE_BYTES = 256L;
+
+    private com.sun.management.ThreadMXBean threadMXBean;
+    private double[] values;
+    private long[] timestamps;
+    private MetricData[] metricData;
+
+    @Before
+    public void setUp() {
+        val bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        this.threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        this.values = BatchTestUtil.valuesWithAnomalies(1L, BATCH_SIZE);
+        this.timestamps = new long[BATCH_SIZE];
+        this.metricData = new MetricData[BATCH_SIZE];
+        val metricDefinition = TestObjectMother.metricDefinition();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            timestamps[i] = 1_500_000_000L + 60L * i;
+            metricData[i] = new MetricData(metricDefinition, values[i], timestamps[i]);
+        }
+    }
+
+    @Test
+    public void testClassify_noAllocationInSteadyState() {
+        for (val detector : detectors()) {
+            val out = new MutableAnomalyResult();
+            for (int i = 0; i < WARM_UP_COUNT; i++) {
+                detector.classify(metricData[i % BATCH_SIZE], out);
+            }
+
+            long allocated = Long.MAX_VALUE;
+            for (int round = 0; round < MEASURED_ROUNDS; round++) {
+                val before = allocatedBytes();
+                for (int i = 0; i < MEASURED_COUNT; i++) {
+                    detector.classify(metricData[i % BATCH_SIZE], out);
+                }
+                allocated = Math.min(allocated, allocatedBytes() - before);
+            }
+            assertNoAllocation("classify", detector, allocated);
+        }
+    }
+
+    @Test
+    public void testClassifyBatch_noAllocationInSteadyState() {
+        for (val detector : detectors()) {
+            val out = new AnomalyBatchResult(BATCH_SIZE);
+            for (int i = 0; i < WARM_UP_COUNT / BATCH_SIZE; i++) {
+                detector.classify(timestamps, values, out);
+            }
+
+            long allocated = Long.MAX_VALUE;
+            for (int round = 0; round < MEASURED_ROUNDS; round++) {
+                val before = allocatedBytes();
+                for (int i = 0; i < MEASURED_COUNT / BATCH_SIZE; i++) {
+                    detector.classify(timestamps, values, out);
+                }
+                allocated = Math.min(allocated, allocatedBytes() - before);
+            }
+            assertNoAllocation("batch classify", detector, allocated);
+        }
+    }
+
+    private static void assertNoAllocation(String path, Detector detector, long allocatedBytes) {
+        assertTrue("Allocated " + allocatedBytes + " bytes on the " + path + " path of " + describe(detector),
+                allocatedBytes <= ALLOCATION_TOLERANCE_BYTES);
+    }
+
+    private long allocatedBytes() {
+        return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static String describe(Detector detector) {
+        if (detector instanceof ForecastingDetector) {
+            val forecastingDetector = (ForecastingDetector) detector;
+            return forecastingDetector.getPointForecaster().getClass().getSimpleName()
+                    + "/" + forecastingDetector.getIntervalForecaster().getClass().getSimpleName();
+        }
+        return detector.getClass().getSimpleName();
+    }
+
+    private static List<Detector> detectors() {
+        val uuid = UUID.randomUUID();
+        val hwParams = new HoltWintersForecaster.Params()
+                .setFrequency(24)
+                .setSeasonalityType(SeasonalityType.ADDITIVE)
+                .setInitTrainingMethod(HoltWintersTrainingMethod.SIMPLE);
+        val powerLawParams = new PowerLawIntervalForecaster.Params()
+                .setAlpha(1.0)
+                .setBeta(0.5)
+                .setWeakMultiplier(2.0)
+                .setStrongMultiplier(4.0);
+        val multiSeasonalParams = new MultiSeasonalPointForecaster.Params()
+                .setSeasons(Arrays.asList(
+                        new MultiSeasonalPointForecaster.Season().setPeriodSeconds(86_400L).setSlots(1440),
+                        new MultiSeasonalPointForecaster.Season().setPeriodSeconds(604_800L).setSlots(168)));
+        return Arrays.asList(
+                new ForecastingDetector(
+                        uuid,
+                        new EwmaPointForecaster(new EwmaPointForecaster.Params().setInitMeanEstimate(100.0)),
+                        new ExponentialWelfordIntervalForecaster(),
+                        AnomalyType.TWO_TAILED),
+                new ForecastingDetector(
+                        uuid,
+                        new PewmaPointForecaster(new PewmaPointForecaster.Params().setInitMeanEstimate(100.0)),
+                        new AdditiveIntervalForecaster(
+                                new AdditiveIntervalForecaster.Params().setWeakValue(20.0).setStrongValue(40.0)),
+                        AnomalyType.RIGHT_TAILED),
+                new ForecastingDetector(
+                        uuid,
+                        new HoltWintersForecaster(hwParams),
+                        new MultiplicativeIntervalForecaster(
+                                new MultiplicativeIntervalForecaster.Params().setWeakMultiplier(0.2).setStrongMultiplier(0.4)),
+                        AnomalyType.LEFT_TAILED),
+                new ForecastingDetector(
+                        uuid,
+                        new EwmaPointForecaster(new EwmaPointForecaster.Params().setInitMeanEstimate(100.0)),
+                        new PowerLawIntervalForecaster(powerLawParams),
+                        AnomalyType.TWO_TAILED),
+                new ForecastingDetector(
+                        uuid,
+                        new EwmaPointForecaster(new EwmaPointForecaster.Params().setInitMeanEstimate(100.0)),
+                        new QuantileIntervalForecaster(new QuantileIntervalForecaster.Params().setDecay(0.995)),
+                        AnomalyType.TWO_TAILED),
+                new ForecastingDetector(
+                        uuid,
+                        new MedianPointForecaster(new MedianPointForecaster.Params().setWindowSize(1440)),
+                        new MadIntervalForecaster(new MadIntervalForecaster.Params().setWindowSize(1440)),
+                        AnomalyType.TWO_TAILED),
+                new ForecastingDetector(
+                        uuid,
+                        new MultiSeasonalPointForecaster(multiSeasonalParams),
+                        new ExponentialWelfordIntervalForecaster(),
+                        AnomalyType.TWO_TAILED),
+                new ForecastingDetector(
+                        uuid,
+                        new EwmaPointForecaster(new EwmaPointForecaster.Params().setInitMeanEstimate(100.0)),
+                        new ExponentialWelfordIntervalForecaster(),
+                        AnomalyType.TWO_TAILED,
+                        new MOfNAggregator(new MOfNAggregator.Config(30, 1440))),
+                new CusumDetector(uuid, new CusumDetector.Params()
+                        .setType(AnomalyType.TWO_TAILED)
+                        .setTargetValue(100.0)
+                        .setInitMeanEstimate(100.0)),
+                new IndividualsDetector(uuid, new IndividualsDetector.Params()
+                        .setInitValue(100.0)
+                        .setInitMeanEstimate(100.0)),
+                new ConstantThresholdDetector(uuid, new ConstantThresholdDetector.Params()
+                        .setType(AnomalyType.TWO_TAILED)
+                        .setThresholds(new AnomalyThresholds(150.0, 120.0, 80.0, 50.0))));
+    }
+}
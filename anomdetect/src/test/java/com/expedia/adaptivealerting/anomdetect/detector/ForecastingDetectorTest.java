@@ -15,14 +15,27 @@
  */
 package com.expedia.adaptivealerting.anomdetect.detector;
 
+import com.expedia.adaptivealerting.anomdetect.DetectorCheckpointException;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.MOfNAggregator;
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
 import com.expedia.adaptivealerting.anomdetect.forecast.interval.AdditiveIntervalForecaster;
-import com.expedia.adaptivealerting.anomdetect.forecast.interval.IntervalForecast;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.interval.IntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.MultiplicativeIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.PowerLawIntervalForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
-import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecast;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.HoltWintersForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.MedianPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PewmaPointForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersTrainingMethod;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.SeasonalityType;
 import com.expedia.adaptivealerting.anomdetect.util.TestObjectMother;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
 import com.expedia.metrics.MetricData;
 import lombok.val;
 import org.junit.Before;
@@ -30,14 +43,29 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.IOException;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Supplier;
 
+import static com.expedia.adaptivealerting.anomdetect.util.BatchTestUtil.assertBatchMatchesPerPoint;
+import static com.expedia.adaptivealerting.anomdetect.util.BatchTestUtil.valuesWithAnomalies;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.assertRoundTrip;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.readState;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.writeState;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyDouble;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.mock;
 
 public class ForecastingDetectorTest {
     private ForecastingDetector detectorUnderTest;
@@ -77,6 +105,40 @@ public class ForecastingDetectorTest {
         assertNotNull(result);
     }
 
+    @Test
+    public void testClassify_missingFirstForecast() {
+        // The median forecaster has no forecast until it has seen data.
+        val welford = new ExponentialWelfordIntervalForecaster();
+        val detector = new ForecastingDetector(UUID.randomUUID(), new MedianPointForecaster(), welford,
+                AnomalyType.TWO_TAILED);
+        val metricDef = TestObjectMother.metricDefinition();
+
+        val first = detector.classify(new MetricData(metricDef, 100.0, 0L));
+        assertNull(first.getPredicted());
+        assertEquals(AnomalyLevel.NORMAL, first.getAnomalyLevel());
+
+        val second = detector.classify(new MetricData(metricDef, 110.0, 60L));
+        assertEquals(100.0, second.getPredicted(), 0.0);
+        assertTrue(Double.isFinite(welford.getVariance()));
+    }
+
+    @Test
+    public void testClassify_aggregated() {
+        val detector = new ForecastingDetector(
+                detectorUuid, pointForecaster, intervalForecaster, anomalyType, new MOfNAggregator());
+        val metricDef = TestObjectMother.metricDefinition();
+        val out = new MutableAnomalyResult();
+
+        detector.classify(new MetricData(metricDef, 95.0, Instant.now().getEpochSecond()), out);
+        assertEquals(AnomalyLevel.WEAK, out.getAnomalyLevel());
+        detector.classify(new MetricData(metricDef, 95.0, Instant.now().getEpochSecond()), out);
+        assertEquals(AnomalyLevel.WEAK, out.getAnomalyLevel());
+        detector.classify(new MetricData(metricDef, 50.0, Instant.now().getEpochSecond()), out);
+        assertEquals(AnomalyLevel.NORMAL, out.getAnomalyLevel());
+        detector.classify(new MetricData(metricDef, 95.0, Instant.now().getEpochSecond()), out);
+        assertEquals(AnomalyLevel.STRONG, out.getAnomalyLevel());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testClassify_nullMetricData() {
         detectorUnderTest.classify(null);
@@ -109,10 +171,299 @@ public class ForecastingDetectorTest {
                 .validate();
     }
 
+    @Test
+    public void testCheckpoint_ewma() throws IOException {
+        assertRoundTrip(ewmaDetector(), ewmaDetector(), 50);
+    }
+
+    @Test
+    public void testCheckpoint_pewma() throws IOException {
+        assertRoundTrip(pewmaDetector(), pewmaDetector(), 50);
+    }
+
+    @Test
+    public void testCheckpoint_holtWinters() throws IOException {
+        assertRoundTrip(holtWintersDetector(), holtWintersDetector(), 50);
+    }
+
+    @Test
+    public void testCheckpoint_holtWintersMidTraining() throws IOException {
+        // The SIMPLE training period is 2 * frequency = 8, so restore part way through it.
+        assertRoundTrip(holtWintersDetector(), holtWintersDetector(), 5);
+    }
+
+    @Test
+    public void testCheckpoint_mOfN() throws IOException {
+        assertRoundTrip(mOfNDetector(), mOfNDetector(), 50);
+    }
+
+    @Test(expected = DetectorCheckpointException.class)
+    public void testCheckpoint_differentPointForecaster() throws IOException {
+        readState(pewmaDetector(), writeState(ewmaDetector()));
+    }
+
+    @Test(expected = DetectorCheckpointException.class)
+    public void testCheckpoint_differentIntervalForecaster() throws IOException {
+        val additive = new ForecastingDetector(
+                detectorUuid,
+                new EwmaPointForecaster(),
+                new AdditiveIntervalForecaster(new AdditiveIntervalForecaster.Params().setWeakValue(5.0).setStrongValue(10.0)),
+                anomalyType);
+        readState(additive, writeState(ewmaDetector()));
+    }
+
+    @Test
+    public void testForecastBand() {
+        val detector = ewmaDetector();
+        val metricDef = TestObjectMother.metricDefinition();
+        detector.classify(new MetricData(metricDef, 10.0, Instant.now().getEpochSecond()));
+
+        detector.classify(new MetricData(metricDef, 14.0, Instant.now().getEpochSecond()));
+
+        val band = detector.forecastBand(3);
+        val mean = ((EwmaPointForecaster) detector.getPointForecaster()).getMean();
+        val intervalForecaster = (ExponentialWelfordIntervalForecaster) detector.getIntervalForecaster();
+        val stdev = Math.sqrt(intervalForecaster.getVariance());
+        val strongSigmas = intervalForecaster.getParams().getStrongSigmas();
+        assertEquals(3, band.getHorizon());
+        assertEquals(mean, band.getPredicted(2), 1e-9);
+        assertEquals(mean + strongSigmas * stdev, band.getUpperStrong(0), 1e-9);
+        assertTrue(band.getUpperStrong(2) > band.getUpperStrong(0));
+    }
+
+    @Test
+    public void testForecastBand_cachedUntilNextObservation() throws IOException {
+        val detector = ewmaDetector();
+        val metricDef = TestObjectMother.metricDefinition();
+        detector.classify(new MetricData(metricDef, 10.0, Instant.now().getEpochSecond()));
+
+        val band = detector.forecastBand(3);
+        assertSame(band, detector.forecastBand(3));
+        assertNotSame(band, detector.forecastBand(5));
+
+        val band5 = detector.forecastBand(5);
+        detector.classify(new MetricData(metricDef, 20.0, Instant.now().getEpochSecond()));
+        assertNotSame(band5, detector.forecastBand(5));
+
+        val batchBand = detector.forecastBand(5);
+        detector.classify(new long[]{1L}, new double[]{30.0}, new AnomalyBatchResult());
+        assertNotSame(batchBand, detector.forecastBand(5));
+
+        val restoredBand = detector.forecastBand(5);
+        readState(detector, writeState(ewmaDetector()));
+        assertNotSame(restoredBand, detector.forecastBand(5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testForecastBand_invalidHorizon() {
+        detectorUnderTest.forecastBand(0);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testForecastBand_unsupportedPointForecaster() {
+        doCallRealMethod().when(pointForecaster).forecastHorizon(any(ForecastBand.class));
+        detectorUnderTest.forecastBand(1);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testForecastBand_unsupportedIntervalForecaster() {
+        doCallRealMethod().when(intervalForecaster).forecastHorizon(any(ForecastBand.class));
+        detectorUnderTest.forecastBand(1);
+    }
+
     private void initDependencies() {
-        when(pointForecaster.forecast(any(MetricData.class)))
-                .thenReturn(new PointForecast(50.0, false));
-        when(intervalForecaster.forecast(any(MetricData.class), anyDouble()))
-                .thenReturn(new IntervalForecast(100.0, 90.0, 20.0, 10.0));
+        doAnswer(invocation -> {
+            invocation.<MutableAnomalyResult>getArgument(1).setPredicted(50.0);
+            return null;
+        }).when(pointForecaster).forecast(any(MetricData.class), any(MutableAnomalyResult.class));
+        doAnswer(invocation -> {
+            invocation.<MutableAnomalyResult>getArgument(2).setThresholds(100.0, 90.0, 20.0, 10.0);
+            return null;
+        }).when(intervalForecaster).forecast(any(MetricData.class), anyDouble(), any(MutableAnomalyResult.class));
+    }
+
+    private ForecastingDetector ewmaDetector() {
+        return new ForecastingDetector(
+                detectorUuid,
+                new EwmaPointForecaster(),
+                new ExponentialWelfordIntervalForecaster(),
+                anomalyType);
+    }
+
+    private ForecastingDetector mOfNDetector() {
+        return new ForecastingDetector(
+                detectorUuid,
+                new EwmaPointForecaster(),
+                new ExponentialWelfordIntervalForecaster(),
+                anomalyType,
+                new MOfNAggregator(new MOfNAggregator.Config(2, 10)));
+    }
+
+    private ForecastingDetector pewmaDetector() {
+        val intervalParams = new PowerLawIntervalForecaster.Params()
+                .setAlpha(1.0)
+                .setBeta(0.5)
+                .setWeakMultiplier(3.0)
+                .setStrongMultiplier(4.0);
+        return new ForecastingDetector(
+                detectorUuid,
+                new PewmaPointForecaster(new PewmaPointForecaster.Params().setWarmUpPeriod(10)),
+                new PowerLawIntervalForecaster(intervalParams),
+                anomalyType);
+    }
+
+    private ForecastingDetector holtWintersDetector() {
+        val pointParams = new HoltWintersForecaster.Params()
+                .setFrequency(4)
+                .setSeasonalityType(SeasonalityType.ADDITIVE)
+                .setInitTrainingMethod(HoltWintersTrainingMethod.SIMPLE)
+                .setWarmUpPeriod(8);
+        val intervalParams = new MultiplicativeIntervalForecaster.Params()
+                .setWeakMultiplier(1.1)
+                .setStrongMultiplier(1.2);
+        return new ForecastingDetector(
+                detectorUuid,
+                new HoltWintersForecaster(pointParams),
+                new MultiplicativeIntervalForecaster(intervalParams),
+                anomalyType);
+    }
+
+    @Test
+    public void testClassifyBatch() {
+        val values = valuesWithAnomalies(1L, 300);
+        val hwParams = new HoltWintersForecaster.Params()
+                .setFrequency(24)
+                .setSeasonalityType(SeasonalityType.ADDITIVE)
+                .setInitTrainingMethod(HoltWintersTrainingMethod.SIMPLE)
+                .setWarmUpPeriod(48);
+        List<Supplier<PointForecaster>> pointForecasters = Arrays.asList(
+                () -> new EwmaPointForecaster(new EwmaPointForecaster.Params().setInitMeanEstimate(100.0)),
+                () -> new PewmaPointForecaster(
+                        new PewmaPointForecaster.Params().setInitMeanEstimate(100.0).setWarmUpPeriod(10)),
+                () -> new HoltWintersForecaster(hwParams));
+        List<Supplier<IntervalForecaster>> intervalForecasters = Arrays.asList(
+                () -> new ExponentialWelfordIntervalForecaster(
+                        new ExponentialWelfordIntervalForecaster.Params().setInitVarianceEstimate(100.0)),
+                () -> new AdditiveIntervalForecaster(
+                        new AdditiveIntervalForecaster.Params().setWeakValue(20.0).setStrongValue(40.0)),
+                () -> new MultiplicativeIntervalForecaster(
+                        new MultiplicativeIntervalForecaster.Params().setWeakMultiplier(0.2).setStrongMultiplier(0.4)),
+                () -> new PowerLawIntervalForecaster(new PowerLawIntervalForecaster.Params()
+                        .setAlpha(1.0)
+                        .setBeta(0.5)
+                        .setWeakMultiplier(2.0)
+                        .setStrongMultiplier(4.0)));
+
+        for (val pointForecaster : pointForecasters) {
+            for (val intervalForecaster : intervalForecasters) {
+                for (val type : AnomalyType.values()) {
+                    assertBatchMatchesPerPoint(
+                            new ForecastingDetector(detectorUuid, pointForecaster.get(), intervalForecaster.get(), type),
+                            new ForecastingDetector(detectorUuid, pointForecaster.get(), intervalForecaster.get(), type),
+                            values,
+                            64);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testClassifyBatch_mOfN() {
+        val values = valuesWithAnomalies(2L, 500);
+        for (val type : AnomalyType.values()) {
+            assertBatchMatchesPerPoint(mOfNBatchDetector(type), mOfNBatchDetector(type), values, 64);
+        }
+    }
+
+    private ForecastingDetector mOfNBatchDetector(AnomalyType type) {
+        return new ForecastingDetector(
+                detectorUuid,
+                new EwmaPointForecaster(new EwmaPointForecaster.Params().setInitMeanEstimate(100.0)),
+                new AdditiveIntervalForecaster(
+                        new AdditiveIntervalForecaster.Params().setWeakValue(20.0).setStrongValue(40.0)),
+                type,
+                new MOfNAggregator(new MOfNAggregator.Config(3, 100)));
+    }
+
+    @Test
+    public void testClassifyBatch_defaultForecasterMethods() {
+        doCallRealMethod().when(pointForecaster)
+                .forecast(any(long[].class), any(double[].class), any(double[].class));
+        doCallRealMethod().when(intervalForecaster)
+                .forecast(any(long[].class), any(double[].class), any(double[].class), any(AnomalyBatchResult.class));
+
+        val out = new AnomalyBatchResult();
+        detectorUnderTest.classify(new long[]{1L, 2L, 3L}, new double[]{50.0, 95.0, 5.0}, out);
+
+        assertEquals(3, out.getSize());
+        assertEquals(AnomalyLevel.NORMAL, out.getAnomalyLevels()[0]);
+        assertEquals(AnomalyLevel.WEAK, out.getAnomalyLevels()[1]);
+        assertEquals(AnomalyLevel.STRONG, out.getAnomalyLevels()[2]);
+        assertEquals(detectorUnderTest.classify(metricData(5.0)), out.toAnomalyResult(2));
+    }
+
+    @Test
+    public void testClassify_defaultDetectorMethods() {
+        val detector = mock(Detector.class);
+        doAnswer(invocation -> {
+            invocation.<MutableAnomalyResult>getArgument(1).setAnomalyLevel(AnomalyLevel.WEAK);
+            return null;
+        }).when(detector).classify(any(MetricData.class), any(MutableAnomalyResult.class));
+        doCallRealMethod().when(detector)
+                .classify(any(long[].class), any(double[].class), any(AnomalyBatchResult.class));
+
+        val out = new AnomalyBatchResult();
+        detector.classify(new long[]{1L, 2L}, new double[]{1.0, 2.0}, out);
+
+        assertEquals(2, out.getSize());
+        assertEquals(new AnomalyResult(AnomalyLevel.WEAK), out.toAnomalyResult(1));
+
+        doCallRealMethod().when(detector).classify(any(MetricData.class));
+        assertEquals(new AnomalyResult(AnomalyLevel.WEAK), detector.classify(metricData(1.0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testClassifyBatch_lengthMismatch() {
+        ewmaDetector().classify(new long[1], new double[2], new AnomalyBatchResult());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testClassify_invertedInterval() {
+        doAnswer(invocation -> {
+            invocation.<MutableAnomalyResult>getArgument(2).setThresholds(10.0, 20.0, 5.0, 1.0);
+            return null;
+        }).when(intervalForecaster).forecast(any(MetricData.class), anyDouble(), any(MutableAnomalyResult.class));
+        detectorUnderTest.classify(metricData(15.0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testClassifyBatch_invertedInterval() {
+        // The forecaster's batch method doesn't validate its bounds; the detector does, as on the per-point path.
+        doAnswer(invocation -> {
+            val out = invocation.<AnomalyBatchResult>getArgument(3);
+            out.getUpperStrong()[0] = 10.0;
+            out.getUpperWeak()[0] = 20.0;
+            out.getLowerWeak()[0] = 5.0;
+            out.getLowerStrong()[0] = 1.0;
+            return null;
+        }).when(intervalForecaster)
+                .forecast(any(long[].class), any(double[].class), any(double[].class), any(AnomalyBatchResult.class));
+        detectorUnderTest.classify(new long[]{1L}, new double[]{15.0}, new AnomalyBatchResult());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testClassifyBatch_invalidInterval() {
+        // A negative point forecast inverts a multiplicative interval, which the per-point path rejects too.
+        val detector = new ForecastingDetector(
+                detectorUuid,
+                new EwmaPointForecaster(),
+                new MultiplicativeIntervalForecaster(
+                        new MultiplicativeIntervalForecaster.Params().setWeakMultiplier(0.2).setStrongMultiplier(0.4)),
+                anomalyType);
+        detector.classify(new long[]{1L}, new double[]{-10.0}, new AnomalyBatchResult());
+    }
+
+    private static MetricData metricData(double value) {
+        return new MetricData(TestObjectMother.metricDefinition(), value, Instant.now().getEpochSecond());
     }
 }
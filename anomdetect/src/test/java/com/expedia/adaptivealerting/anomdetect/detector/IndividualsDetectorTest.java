@@ -15,6 +15,7 @@
  */
 package com.expedia.adaptivealerting.anomdetect.detector;
 
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
 import com.expedia.metrics.MetricData;
 import com.expedia.metrics.MetricDefinition;
@@ -24,11 +25,15 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
+import static com.expedia.adaptivealerting.anomdetect.util.BatchTestUtil.assertBatchMatchesPerPoint;
+import static com.expedia.adaptivealerting.anomdetect.util.BatchTestUtil.valuesWithAnomalies;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.assertRoundTrip;
 import static junit.framework.TestCase.assertEquals;
 import static org.junit.Assert.assertSame;
 
@@ -91,6 +96,14 @@ public class IndividualsDetectorTest {
         }
     }
 
+    @Test
+    public void testCheckpoint() throws IOException {
+        val params = new IndividualsDetector.Params()
+                .setInitValue(100.0)
+                .setWarmUpPeriod(WARMUP_PERIOD);
+        assertRoundTrip(new IndividualsDetector(detectorUuid, params), new IndividualsDetector(detectorUuid, params), 50);
+    }
+
     private static void readDataFromCsv() {
         val is = ClassLoader.getSystemResourceAsStream("tests/individual-chart-sample-input.csv");
         data = new CsvToBeanBuilder<IndividualsTestRow>(new InputStreamReader(is))
@@ -98,4 +111,23 @@ public class IndividualsDetectorTest {
                 .build()
                 .parse();
     }
+
+    @Test
+    public void testClassifyBatch() {
+        val params = new IndividualsDetector.Params()
+                .setInitValue(100.0)
+                .setInitMeanEstimate(100.0)
+                .setWarmUpPeriod(WARMUP_PERIOD);
+        assertBatchMatchesPerPoint(
+                new IndividualsDetector(detectorUuid, params),
+                new IndividualsDetector(detectorUuid, params),
+                valuesWithAnomalies(1L, 500),
+                64);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testClassifyBatch_nullValues() {
+        new IndividualsDetector(detectorUuid, new IndividualsDetector.Params())
+                .classify(new long[0], null, new AnomalyBatchResult());
+    }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detector.aggregator;
+
+import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Compares the m-of-n aggregator against rescanning a ring of anomaly levels on every classification, for windows
+ * from a few points to a week of minutely data. Scores are nanoseconds per classification.
+ * </p>
+ * <p>
+ * Run with {@code main} from the IDE, or from the test classpath. It isn't part of the unit test suite.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MOfNAggregatorBenchmark {
+    private static final int BATCH_SIZE = 1024;
+
+    @Param({"5", "1440", "10080"})
+    private int n;
+
+    private AnomalyLevel[] levels;
+    private MOfNAggregator aggregator;
+    private AnomalyLevel[] ring;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        val random = new Random(0L);
+        this.levels = new AnomalyLevel[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            levels[i] = random.nextDouble() < 0.05 ? AnomalyLevel.WEAK : AnomalyLevel.NORMAL;
+        }
+        val m = Math.max(1, n / 10);
+        this.aggregator = new MOfNAggregator(new MOfNAggregator.Config(m, n));
+        this.ring = new AnomalyLevel[n];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void bitRing(Blackhole blackhole) {
+        for (val level : levels) {
+            blackhole.consume(aggregator.aggregate(level));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void rescanEachTime(Blackhole blackhole) {
+        val m = Math.max(1, n / 10);
+        for (val level : levels) {
+            ring[next] = level;
+            next = (next + 1) % n;
+            int count = 0;
+            for (val past : ring) {
+                if (past == AnomalyLevel.WEAK || past == AnomalyLevel.STRONG) {
+                    count++;
+                }
+            }
+            blackhole.consume(count >= m ? AnomalyLevel.STRONG : level);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        val options = new OptionsBuilder()
+                .include(MOfNAggregatorBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -15,14 +15,25 @@
  */
 package com.expedia.adaptivealerting.anomdetect.detector.aggregator;
 
+import com.expedia.adaptivealerting.anomdetect.DetectorCheckpointException;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyThresholds;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.val;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.Random;
+
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.readState;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.writeState;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 public final class MOfNAggregatorTest {
     private AnomalyResult normalResult;
@@ -179,8 +190,155 @@ public final class MOfNAggregatorTest {
         assertEquals(AnomalyLevel.STRONG, outputResult.getAnomalyLevel());
     }
 
+    @Test
+    public void testAggregate_returnsSameResultWhenLevelUnchanged() {
+        val aggregator = new MOfNAggregator();
+        assertSame(weakResult, aggregator.aggregate(weakResult));
+        assertSame(normalResult, aggregator.aggregate(normalResult));
+    }
+
+    @Test
+    public void testAggregate_nullLevelCountsAsNormal() {
+        val aggregator = new MOfNAggregator(new MOfNAggregator.Config(1, 3));
+        assertNull(aggregator.aggregate((AnomalyLevel) null));
+        assertEquals(AnomalyLevel.STRONG, aggregator.aggregate(AnomalyLevel.WEAK));
+    }
+
+    @Test
+    public void testAggregate_suppressIsolatedAnomalies() {
+        val aggregator = new MOfNAggregator(new MOfNAggregator.Config(3, 5, true));
+        assertEquals(AnomalyLevel.NORMAL, aggregator.aggregate(AnomalyLevel.STRONG));
+        assertEquals(AnomalyLevel.NORMAL, aggregator.aggregate(AnomalyLevel.NORMAL));
+        assertEquals(AnomalyLevel.NORMAL, aggregator.aggregate(AnomalyLevel.WEAK));
+        assertEquals(AnomalyLevel.MODEL_WARMUP, aggregator.aggregate(AnomalyLevel.MODEL_WARMUP));
+        assertEquals(AnomalyLevel.STRONG, aggregator.aggregate(AnomalyLevel.WEAK));
+
+        // The window slides past the first two anomalies, so the next one on its own is suppressed again.
+        aggregator.aggregate(AnomalyLevel.NORMAL);
+        aggregator.aggregate(AnomalyLevel.NORMAL);
+        aggregator.aggregate(AnomalyLevel.NORMAL);
+        assertEquals(AnomalyLevel.NORMAL, aggregator.aggregate(AnomalyLevel.WEAK));
+    }
+
+    @Test
+    public void testAggregate_suppressKeepsResultFields() {
+        val aggregator = new MOfNAggregator(new MOfNAggregator.Config(3, 5, true));
+        val aggregatedResult = aggregator.aggregate(weakResult);
+        assertEquals(AnomalyLevel.NORMAL, aggregatedResult.getAnomalyLevel());
+        assertEquals(weakResult.getPredicted(), aggregatedResult.getPredicted());
+        assertEquals(weakResult.getThresholds(), aggregatedResult.getThresholds());
+    }
+
+    @Test
+    public void testConfig_suppressFromJson() throws IOException {
+        val objectMapper = new ObjectMapper();
+        val suppressing = objectMapper.readValue(
+                "{\"@type\": \"mOfN\", \"m\": 3, \"n\": 5, \"suppress\": true}", AggregatorConfig.class);
+        assertEquals(new MOfNAggregator.Config(3, 5, true), suppressing);
+        val escalating = (MOfNAggregator.Config) objectMapper.readValue(
+                "{\"@type\": \"mOfN\", \"m\": 3, \"n\": 5}", AggregatorConfig.class);
+        assertEquals(new MOfNAggregator.Config(3, 5), escalating);
+        assertFalse(escalating.isSuppress());
+    }
+
+    @Test
+    public void testAggregate_largeWindowMatchesRescan() {
+        val m = 700;
+        val n = 5000;
+        val aggregator = new MOfNAggregator(new MOfNAggregator.Config(m, n));
+        val history = new AnomalyLevel[n];
+        val random = new Random(42);
+
+        for (int i = 0; i < 4 * n + 17; i++) {
+            // Bursts keep the count crossing m in both directions.
+            val anomalyRate = (i / 1000) % 2 == 0 ? 0.05 : 0.3;
+            val level = random.nextDouble() < anomalyRate
+                    ? (random.nextBoolean() ? AnomalyLevel.WEAK : AnomalyLevel.STRONG)
+                    : (random.nextInt(4) == 0 ? AnomalyLevel.MODEL_WARMUP : AnomalyLevel.NORMAL);
+            history[i % n] = level;
+
+            int count = 0;
+            for (val past : history) {
+                if (past == AnomalyLevel.WEAK || past == AnomalyLevel.STRONG) {
+                    count++;
+                }
+            }
+            val expected = count >= m ? AnomalyLevel.STRONG : level;
+            assertEquals("point " + i, expected, aggregator.aggregate(level));
+        }
+    }
+
+    @Test
+    public void testAggregate_batchMatchesPerPoint() {
+        val perPoint = new MOfNAggregator(new MOfNAggregator.Config(2, 70));
+        val batch = new MOfNAggregator(new MOfNAggregator.Config(2, 70));
+        val levels = new AnomalyLevel[200];
+        val expected = new AnomalyLevel[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = i % 67 == 0 ? AnomalyLevel.WEAK : AnomalyLevel.NORMAL;
+            expected[i] = perPoint.aggregate(levels[i]);
+        }
+        batch.aggregate(levels, levels.length);
+        assertArrayEquals(expected, levels);
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException {
+        val original = new MOfNAggregator(new MOfNAggregator.Config(3, 5));
+        original.aggregate(weakResult);
+        original.aggregate(normalResult);
+        original.aggregate(strongResult);
+
+        val restored = new MOfNAggregator(new MOfNAggregator.Config(3, 5));
+        readState(restored, writeState(original));
+
+        // Both now hold 2 anomalies in the window, so a third trips the aggregator.
+        val result = restored.aggregate(weakResult);
+        assertEquals(AnomalyLevel.STRONG, result.getAnomalyLevel());
+        assertEquals(original.aggregate(weakResult), result);
+        assertEquals(original.aggregate(normalResult), restored.aggregate(normalResult));
+    }
+
+    @Test(expected = DetectorCheckpointException.class)
+    public void testCheckpoint_differentWindowSize() throws IOException {
+        val original = new MOfNAggregator(new MOfNAggregator.Config(3, 5));
+        readState(new MOfNAggregator(new MOfNAggregator.Config(3, 6)), writeState(original));
+    }
+
+    @Test(expected = DetectorCheckpointException.class)
+    public void testCheckpoint_corruptIndex() throws IOException {
+        val state = writeState(new MOfNAggregator(new MOfNAggregator.Config(3, 5)));
+
+        // Header (4 bytes), then n (4 bytes), then the buffer index.
+        state[Integer.BYTES * 3 - 1] = 5;
+        readState(new MOfNAggregator(new MOfNAggregator.Config(3, 5)), state);
+    }
+
+    @Test
+    public void testCheckpoint_largeWindow() throws IOException {
+        val original = new MOfNAggregator(new MOfNAggregator.Config(50, 1000));
+        val restored = new MOfNAggregator(new MOfNAggregator.Config(50, 1000));
+        for (int i = 0; i < 1234; i++) {
+            original.aggregate(i % 17 == 0 ? AnomalyLevel.WEAK : AnomalyLevel.NORMAL);
+        }
+        readState(restored, writeState(original));
+        for (int i = 0; i < 2000; i++) {
+            val level = i % 13 == 0 ? AnomalyLevel.STRONG : AnomalyLevel.NORMAL;
+            assertEquals(original.aggregate(level), restored.aggregate(level));
+        }
+    }
+
+    @Test(expected = DetectorCheckpointException.class)
+    public void testCheckpoint_bitsBeyondWindow() throws IOException {
+        val state = writeState(new MOfNAggregator(new MOfNAggregator.Config(3, 5)));
+
+        // Header, n and index (12 bytes), then a single word whose low 5 bits are the window.
+        state[state.length - 1] = (byte) 0x20;
+        readState(new MOfNAggregator(new MOfNAggregator.Config(3, 5)), state);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testAggregate_nullAnomalyResult() {
-        new MOfNAggregator().aggregate(null);
+        new MOfNAggregator().aggregate((AnomalyResult) null);
     }
 }
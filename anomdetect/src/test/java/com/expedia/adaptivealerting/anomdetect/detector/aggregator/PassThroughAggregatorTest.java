@@ -15,11 +15,18 @@
  */
 package com.expedia.adaptivealerting.anomdetect.detector.aggregator;
 
+import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
 import lombok.val;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.readState;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.writeState;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 
 public final class PassThroughAggregatorTest {
@@ -38,8 +45,24 @@ public final class PassThroughAggregatorTest {
         assertSame(anomalyResult, aggregatedResult);
     }
 
+    @Test
+    public void testAggregate_levels() {
+        assertSame(AnomalyLevel.WEAK, aggregatorUnderTest.aggregate(AnomalyLevel.WEAK));
+
+        val levels = new AnomalyLevel[] {AnomalyLevel.WEAK, AnomalyLevel.NORMAL};
+        aggregatorUnderTest.aggregate(levels, levels.length);
+        assertArrayEquals(new AnomalyLevel[] {AnomalyLevel.WEAK, AnomalyLevel.NORMAL}, levels);
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException {
+        val state = writeState(aggregatorUnderTest);
+        readState(new PassThroughAggregator(), state);
+        assertEquals(Integer.BYTES, state.length);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testAggregate_nullAnomalyResult() {
-        aggregatorUnderTest.aggregate(null);
+        aggregatorUnderTest.aggregate((AnomalyResult) null);
     }
 }
@@ -4,7 +4,6 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -45,23 +44,9 @@ public class CacheUtilTest {
         Assert.assertEquals(tagKey, CacheUtil.getKey(tags));
     }
 
-    @Test
-    public void getTags() {
-        initMap();
-        Assert.assertEquals(tags, CacheUtil.getTags(tagKey));
-
-    }
-
     @Test
     public void getDetectorIds() {
         initDetectors();
         Assert.assertEquals(bunchOfDetectorIds, CacheUtil.getDetectorIds(detectors));
     }
-
-    @Test
-    public void buildDetectors() {
-        initDetectors();
-        Assert.assertEquals(detectors, CacheUtil.buildDetectors(bunchOfDetectorIds));
-        Assert.assertEquals(Collections.EMPTY_LIST, CacheUtil.buildDetectors(""));
-    }
 }
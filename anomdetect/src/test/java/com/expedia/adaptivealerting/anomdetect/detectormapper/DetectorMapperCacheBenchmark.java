@@ -0,0 +1,137 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detectormapper;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * Compares the {@link DetectorMapperCache} hit path against the previous string-keyed cache, which concatenated the
+ * sorted tags into a key and re-parsed a joined UUID string into detectors on every hit. Metrics have six tags and
+ * two detectors. Scores are nanoseconds per lookup; run with {@code -prof gc} for bytes allocated per lookup, and
+ * see {@link DetectorMapperCacheFootprint} for bytes per entry.
+ * </p>
+ * <p>
+ * Run with {@code main} from the IDE, or from the test classpath. It isn't part of the unit test suite.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DetectorMapperCacheBenchmark {
+    private static final int METRIC_COUNT = 10_000;
+    private static final int BATCH_SIZE = 1024;
+
+    private List<Map<String, String>> metrics;
+    private DetectorMapperCache cache;
+    private Cache<String, String> stringCache;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.metrics = metrics(METRIC_COUNT, new Random(0L));
+        this.cache = new DetectorMapperCache();
+        this.stringCache = CacheBuilder.newBuilder().expireAfterWrite(120, TimeUnit.MINUTES).build();
+        for (val tags : metrics) {
+            val detectors = Arrays.asList(new Detector(UUID.randomUUID()), new Detector(UUID.randomUUID()));
+            cache.put(tags, detectors);
+            stringCache.put(CacheUtil.getKey(tags), CacheUtil.getDetectorIds(detectors));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void fingerprintKey(Blackhole blackhole) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            blackhole.consume(cache.get(nextMetric()));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void stringKey(Blackhole blackhole) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            blackhole.consume(parseDetectors(stringCache.getIfPresent(CacheUtil.getKey(nextMetric()))));
+        }
+    }
+
+    private Map<String, String> nextMetric() {
+        val tags = metrics.get(next);
+        next = (next + 1) % METRIC_COUNT;
+        return tags;
+    }
+
+    static List<Map<String, String>> metrics(int count, Random random) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> {
+                    // A fresh map per metric, as each record's tags are deserialized separately.
+                    val tags = new HashMap<String, String>();
+                    tags.put("org_id", "1");
+                    tags.put("mtype", "gauge");
+                    tags.put("unit", "ms");
+                    tags.put("app", "app-" + random.nextInt(200));
+                    tags.put("region", "us-west-" + random.nextInt(4));
+                    tags.put("what", "latency-" + i);
+                    return tags;
+                })
+                .collect(Collectors.toList());
+    }
+
+    // The previous hit path, kept here for comparison.
+    static List<Detector> parseDetectors(String bunchOfDetectorIds) {
+        return Arrays.stream(bunchOfDetectorIds.split("\\|"))
+                .map(detector -> new Detector(UUID.fromString(detector)))
+                .collect(Collectors.toList());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        val options = new OptionsBuilder()
+                .include(DetectorMapperCacheBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
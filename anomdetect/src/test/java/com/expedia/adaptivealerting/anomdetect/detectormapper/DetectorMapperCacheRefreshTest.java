@@ -12,12 +12,16 @@ import org.mockito.MockitoAnnotations;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 
@@ -47,16 +51,15 @@ public class DetectorMapperCacheRefreshTest {
         mappings.add(new Detector(updateId1));
         mappings.add(new Detector(updateId2));
 
-        CacheUtil.getDetectorIds(mappings);
+        Map<String, String> tags = ImmutableMap.of("lob", "hotels");
+        detectorMapperCache.put(tags, mappings);
 
-        detectorMapperCache.put("metricKey", mappings);
-
-        assertTrue(detectorMapperCache.get("metricKey").contains(new Detector(updateId1)));
+        assertTrue(detectorMapperCache.get(tags).contains(new Detector(updateId1)));
 
         detectorMapperCache.removeDisabledDetectorMappings(detectorIdsOfDisabledMappings);
 
-        assertFalse(detectorMapperCache.get("metricKey").contains(new Detector(updateId1)));
-        assertFalse(detectorMapperCache.get("metricKey").contains(new Detector(updateId2)));
+        assertFalse(detectorMapperCache.get(tags).contains(new Detector(updateId1)));
+        assertFalse(detectorMapperCache.get(tags).contains(new Detector(updateId2)));
 
     }
 
@@ -70,8 +73,8 @@ public class DetectorMapperCacheRefreshTest {
                 });
 
 
-        String notMatchingMetricKey = CacheUtil.getKey(ImmutableMap.of("lob", "flight", "pos", "expedia.com"));
-        String matchingMetricKey = CacheUtil.getKey(ImmutableMap.of("lob", "hotels", "pos", "expedia.com"));
+        Map<String, String> notMatchingMetricKey = ImmutableMap.of("lob", "flight", "pos", "expedia.com");
+        Map<String, String> matchingMetricKey = ImmutableMap.of("lob", "hotels", "pos", "expedia.com");
 
         Detector d = new Detector(UUID.fromString("2c49ba26-1a7d-43f4-b70c-c6644a2c1689"));
         List<Detector> detectors = Collections.singletonList(d);
@@ -89,4 +92,110 @@ public class DetectorMapperCacheRefreshTest {
 
     }
 
+    @Test
+    public void removeTest_onlyAffectedEntries() {
+        UUID disabledId = UUID.randomUUID();
+        Detector kept = new Detector(UUID.randomUUID());
+        Map<String, String> affected = ImmutableMap.of("lob", "hotels");
+        Map<String, String> unaffected = ImmutableMap.of("lob", "flights");
+        detectorMapperCache.put(affected, Arrays.asList(new Detector(disabledId), kept));
+        detectorMapperCache.put(unaffected, Collections.singletonList(kept));
+
+        detectorMapperCache.removeDisabledDetectorMappings(Collections.singletonList(
+                new DetectorMapping().setDetector(new Detector(disabledId)).setEnabled(false)));
+
+        assertEquals(Collections.singletonList(kept), detectorMapperCache.get(affected));
+        assertEquals(Collections.singletonList(kept), detectorMapperCache.get(unaffected));
+    }
+
+    @Test
+    public void removeTest_replacedEntry() {
+        UUID oldId = UUID.randomUUID();
+        Detector newDetector = new Detector(UUID.randomUUID());
+        Map<String, String> tags = ImmutableMap.of("lob", "hotels");
+        detectorMapperCache.put(tags, Collections.singletonList(new Detector(oldId)));
+        detectorMapperCache.put(tags, Collections.singletonList(newDetector));
+
+        detectorMapperCache.removeDisabledDetectorMappings(Collections.singletonList(
+                new DetectorMapping().setDetector(new Detector(oldId)).setEnabled(false)));
+        assertEquals(Collections.singletonList(newDetector), detectorMapperCache.get(tags));
+
+        detectorMapperCache.removeDisabledDetectorMappings(Collections.singletonList(
+                new DetectorMapping().setDetector(newDetector).setEnabled(false)));
+        assertTrue(detectorMapperCache.get(tags).isEmpty());
+    }
+
+    @Test
+    public void removeTest_invalidatedEntry() {
+        Detector detector = new Detector(UUID.randomUUID());
+        Map<String, String> tags = ImmutableMap.of("lob", "hotels");
+        detectorMapperCache.put(tags, Collections.singletonList(detector));
+        detectorMapperCache.invalidateMetricsWithOldDetectorMappings(Collections.singletonList(
+                mapping(detector, Operator.AND, field("lob", "hotels"))));
+
+        detectorMapperCache.removeDisabledDetectorMappings(Collections.singletonList(
+                new DetectorMapping().setDetector(detector).setEnabled(false)));
+
+        assertNull(detectorMapperCache.getIfPresent(tags));
+    }
+
+    @Test
+    public void updateTest_and() {
+        Detector d = new Detector(UUID.randomUUID());
+        Map<String, String> matching = ImmutableMap.of("lob", "hotels", "pos", "expedia.com", "unit", "count");
+        Map<String, String> partlyMatching = ImmutableMap.of("lob", "hotels", "pos", "hotels.com");
+        detectorMapperCache.put(matching, Collections.singletonList(d));
+        detectorMapperCache.put(partlyMatching, Collections.singletonList(d));
+
+        detectorMapperCache.invalidateMetricsWithOldDetectorMappings(Collections.singletonList(
+                mapping(d, Operator.AND, field("lob", "hotels"), field("pos", "expedia.com"))));
+
+        assertNull(detectorMapperCache.getIfPresent(matching));
+        assertEquals(Collections.singletonList(d), detectorMapperCache.get(partlyMatching));
+    }
+
+    @Test
+    public void updateTest_or() {
+        Detector d = new Detector(UUID.randomUUID());
+        Map<String, String> hotels = ImmutableMap.of("lob", "hotels");
+        Map<String, String> flights = ImmutableMap.of("lob", "flights");
+        Map<String, String> cars = ImmutableMap.of("lob", "cars");
+        detectorMapperCache.put(hotels, Collections.emptyList());
+        detectorMapperCache.put(flights, Collections.emptyList());
+        detectorMapperCache.put(cars, Collections.emptyList());
+
+        detectorMapperCache.invalidateMetricsWithOldDetectorMappings(Collections.singletonList(
+                mapping(d, Operator.OR, field("lob", "hotels"), field("lob", "flights"))));
+
+        assertNull(detectorMapperCache.getIfPresent(hotels));
+        assertNull(detectorMapperCache.getIfPresent(flights));
+        assertEquals(Collections.emptyList(), detectorMapperCache.getIfPresent(cars));
+    }
+
+    @Test
+    public void updateTest_unsupportedExpressionInvalidatesAll() {
+        Map<String, String> hotels = ImmutableMap.of("lob", "hotels");
+        Map<String, String> flights = ImmutableMap.of("lob", "flights");
+        detectorMapperCache.put(hotels, Collections.emptyList());
+        detectorMapperCache.put(flights, Collections.emptyList());
+
+        detectorMapperCache.invalidateMetricsWithOldDetectorMappings(Collections.singletonList(
+                mapping(new Detector(UUID.randomUUID()), Operator.AND)));
+
+        assertNull(detectorMapperCache.getIfPresent(hotels));
+        assertNull(detectorMapperCache.getIfPresent(flights));
+    }
+
+    private static DetectorMapping mapping(Detector detector, Operator operator, Operand... operands) {
+        ExpressionTree expression = new ExpressionTree();
+        expression.setOperator(operator);
+        expression.setOperands(Arrays.asList(operands));
+        return new DetectorMapping().setDetector(detector).setExpression(expression).setEnabled(true);
+    }
+
+    private static Operand field(String key, String value) {
+        Operand operand = new Operand();
+        operand.setField(new Field(key, value));
+        return operand;
+    }
 }
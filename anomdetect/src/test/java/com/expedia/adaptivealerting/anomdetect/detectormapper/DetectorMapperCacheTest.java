@@ -1,6 +1,7 @@
 package com.expedia.adaptivealerting.anomdetect.detectormapper;
 
 import com.google.common.cache.Cache;
+import com.google.common.collect.ImmutableMap;
 import lombok.val;
 import org.junit.Assert;
 import org.junit.Before;
@@ -10,8 +11,13 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.mockito.Mockito.verify;
@@ -21,42 +27,78 @@ public class DetectorMapperCacheTest {
 
 
     @Mock
-    private Cache<String, String> cache;
+    private Cache<MetricKey, CachedMapping> cache;
 
     @InjectMocks
     private DetectorMapperCache detectorMapperCache;
-    private String detectorIds;
+    private Map<String, String> tags;
     private List<Detector> detectors;
 
     @Before
     public void initMocks() {
         MockitoAnnotations.initMocks(this);
+        tags = ImmutableMap.of("k1", "v1", "k2", "v2");
+        detectors = Collections.singletonList(new Detector(UUID.randomUUID()));
     }
 
 
     @Test
     public void get() {
-        val key = "metricKeyWithValue";
-        val key2 = "metricKeyWithOutValue";
-        detectors = Collections.singletonList(new Detector(UUID.randomUUID()));
-        detectorIds = CacheUtil.getDetectorIds(detectors);
+        val key = MetricKey.of(tags);
+        val tags2 = ImmutableMap.of("k1", "v1");
 
-        Mockito.when(cache.getIfPresent(key)).thenReturn(detectorIds);
+        Mockito.when(cache.getIfPresent(key)).thenReturn(CachedMapping.of(tags, detectors));
 
-        Assert.assertEquals(detectors, detectorMapperCache.get(key));
+        Assert.assertEquals(detectors, detectorMapperCache.get(tags));
         verify(cache, times(1)).getIfPresent(key);
 
-        Assert.assertEquals(Collections.emptyList(), detectorMapperCache.get(key2));
-        verify(cache, times(1)).getIfPresent(key);
+        Assert.assertEquals(Collections.emptyList(), detectorMapperCache.get(tags2));
+        verify(cache, times(1)).getIfPresent(MetricKey.of(tags2));
 
     }
 
     @Test
     public void put() {
-        detectors = Collections.singletonList(new Detector(UUID.randomUUID()));
+        detectorMapperCache.put(tags, detectors);
+        verify(cache, times(1)).put(Mockito.eq(MetricKey.of(tags)), Mockito.any(CachedMapping.class));
+    }
+
+    @Test
+    public void getReturnsPrebuiltDetectors() {
+        val realCache = new DetectorMapperCache();
+        realCache.put(new HashMap<>(tags), new ArrayList<>(detectors));
+
+        val first = realCache.get(ImmutableMap.of("k2", "v2", "k1", "v1"));
+        Assert.assertEquals(detectors, first);
+        Assert.assertSame(first, realCache.get(tags));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void getReturnsImmutableDetectors() {
+        val realCache = new DetectorMapperCache();
+        realCache.put(tags, Arrays.asList(new Detector(UUID.randomUUID()), new Detector(UUID.randomUUID())));
+        realCache.get(tags).clear();
+    }
+
+    @Test
+    public void putSharesDetectorsBetweenEntries() {
+        val realCache = new DetectorMapperCache();
+        val uuid = UUID.randomUUID();
+        realCache.put(ImmutableMap.of("k1", "v1"), Collections.singletonList(new Detector(uuid)));
+        realCache.put(ImmutableMap.of("k1", "v2"), Collections.singletonList(new Detector(uuid)));
+
+        Assert.assertSame(
+                realCache.get(ImmutableMap.of("k1", "v1")).get(0),
+                realCache.get(ImmutableMap.of("k1", "v2")).get(0));
+    }
+
+    @Test
+    public void getMetricTags() {
+        val realCache = new DetectorMapperCache();
+        val tags2 = ImmutableMap.of("k1", "v1");
+        realCache.put(tags, detectors);
+        realCache.put(tags2, Collections.emptyList());
 
-        detectorMapperCache.put("key", detectors);
-        detectorIds = CacheUtil.getDetectorIds(detectors);
-        verify(cache, times(1)).put("key", detectorIds);
+        Assert.assertEquals(new HashSet<>(Arrays.asList(tags, tags2)), new HashSet<>(realCache.getMetricTags()));
     }
 }
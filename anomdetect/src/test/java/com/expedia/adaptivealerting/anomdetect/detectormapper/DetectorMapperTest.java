@@ -15,6 +15,7 @@
  */
 package com.expedia.adaptivealerting.anomdetect.detectormapper;
 
+import com.expedia.adaptivealerting.anomdetect.DetectorMappingRetrievalException;
 import com.expedia.adaptivealerting.anomdetect.comp.DetectorSource;
 import com.expedia.metrics.MetricData;
 import com.expedia.metrics.MetricDefinition;
@@ -24,6 +25,7 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableMap;
 import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import org.hamcrest.collection.IsMapContaining;
 import org.junit.Before;
 import org.junit.Test;
@@ -49,6 +51,9 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -99,12 +104,12 @@ public final class DetectorMapperTest {
     public void testMap_metricDataWithDetectors() {
         boolean results = detectorMapper.isSuccessfulDetectorMappingLookup(tags);
         int batchSize = detectorMapper.optimalBatchSize();
-        assertEquals(0, batchSize);
+        assertEquals(LookupBatchController.DEFAULT_INITIAL_SIZE, batchSize);
         assertTrue(results);
 
         results = detectorMapper.isSuccessfulDetectorMappingLookup(tag_bigList);
         batchSize = detectorMapper.optimalBatchSize();
-        assertEquals(80, batchSize);
+        assertEquals(LookupBatchController.DEFAULT_INITIAL_SIZE / 2, batchSize);
         assertTrue(results);
 
     }
@@ -113,7 +118,7 @@ public final class DetectorMapperTest {
     public void testMap_metricDataWithoutDetectors() {
         final boolean results = detectorMapper.isSuccessfulDetectorMappingLookup(tags_cantRetrieve);
         final int batchSize = detectorMapper.optimalBatchSize();
-        assertEquals(0, batchSize);
+        assertEquals(LookupBatchController.DEFAULT_INITIAL_SIZE / 2, batchSize);
         assertFalse(results);
 
     }
@@ -213,4 +218,158 @@ public final class DetectorMapperTest {
 
 
     }
+
+    @Test
+    public void testLocalMatching() {
+        when(detectorSource.findEnabledDetectorMappings()).thenReturn(Collections.singletonList(bookingsMapping()));
+        DetectorMapperCache realCache = new DetectorMapperCache();
+        this.detectorMapper = new DetectorMapper(detectorSource, realCache, new DetectorMappingIndex(),
+                detectorMappingCacheUpdatePeriod);
+        detectorMapper.loadDetectorMappingIndex();
+
+        Map<String, String> bookings = ImmutableMap.of("name", "bookings", "region", "us-west-2");
+        Map<String, String> searches = ImmutableMap.of("name", "searches", "region", "us-west-2");
+        List<Detector> detectors = detectorMapper.getDetectorsFromCache(
+                new MetricDefinition(new TagCollection(bookings)));
+
+        assertEquals(Collections.singletonList(bookingsMapping().getDetector()), detectors);
+        assertEquals(detectors, realCache.getIfPresent(bookings));
+        assertTrue(detectorMapper.isSuccessfulDetectorMappingLookup(Collections.singletonList(searches)));
+        assertEquals(Collections.emptyList(), realCache.getIfPresent(searches));
+        verify(detectorSource, never()).findMatchingDetectorMappings(anyList());
+    }
+
+    @Test
+    public void testLocalMatching_fallsBackUntilLoaded() {
+        when(detectorSource.findEnabledDetectorMappings()).thenThrow(new DetectorMappingRetrievalException("failed", new IOException()));
+        DetectorMappingIndex index = new DetectorMappingIndex();
+        this.detectorMapper = new DetectorMapper(detectorSource, cache, index, detectorMappingCacheUpdatePeriod);
+        detectorMapper.loadDetectorMappingIndex();
+
+        // Wait for the load at startup too, so it can't race the updates below
+        verify(detectorSource, timeout(5000).times(2)).findEnabledDetectorMappings();
+        assertFalse(index.isLoaded());
+        assertTrue(detectorMapper.isSuccessfulDetectorMappingLookup(tags));
+        verify(detectorSource).findMatchingDetectorMappings(tags);
+
+        // The next cache update retries the snapshot, then applies updates to it
+        DetectorMapping disabledMapping = bookingsMapping().setEnabled(false);
+        doReturn(Collections.singletonList(bookingsMapping())).when(detectorSource).findEnabledDetectorMappings();
+        when(detectorSource.findUpdatedDetectorMappings(detectorMappingCacheUpdatePeriod * 60))
+                .thenReturn(Collections.emptyList())
+                .thenReturn(Collections.singletonList(disabledMapping));
+
+        detectorMapper.detectorCacheUpdate();
+        assertTrue(index.isReady());
+        assertEquals(1, index.size());
+
+        detectorMapper.detectorCacheUpdate();
+        assertEquals(0, index.size());
+        verify(cache).removeDisabledDetectorMappings(Collections.singletonList(disabledMapping));
+    }
+
+    @Test
+    public void testLocalMatching_enabledByConfig() {
+        when(config.hasPath("detector-mapping-local-matching")).thenReturn(true);
+        when(config.getBoolean("detector-mapping-local-matching")).thenReturn(true);
+        when(detectorSource.findEnabledDetectorMappings()).thenReturn(Collections.singletonList(bookingsMapping()));
+
+        new DetectorMapper(detectorSource, config);
+
+        verify(detectorSource, timeout(5000)).findEnabledDetectorMappings();
+    }
+
+    @Test
+    public void testLocalMatching_disabledByConfig() {
+        when(config.hasPath("detector-mapping-local-matching")).thenReturn(true);
+        when(config.getBoolean("detector-mapping-local-matching")).thenReturn(false);
+        this.detectorMapper = new DetectorMapper(detectorSource, config);
+
+        assertTrue(detectorMapper.isSuccessfulDetectorMappingLookup(tags));
+        verify(detectorSource).findMatchingDetectorMappings(tags);
+        verify(detectorSource, never()).findEnabledDetectorMappings();
+    }
+
+    @Test
+    public void testBatchConfig() {
+        when(config.hasPath("detector-mapping-batch")).thenReturn(true);
+        when(config.getConfig("detector-mapping-batch"))
+                .thenReturn(ConfigFactory.parseString("initial-size = 20\nmax-wait = 50ms"));
+        this.detectorMapper = new DetectorMapper(detectorSource, config);
+
+        assertEquals(20, detectorMapper.optimalBatchSize());
+        assertEquals(50, detectorMapper.maxBatchWaitMillis());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBatchControllerNotNull() {
+        new DetectorMapper(detectorSource, cache, null, null, detectorMappingCacheUpdatePeriod);
+    }
+
+    private static DetectorMapping bookingsMapping() {
+        Operand operand = new Operand();
+        operand.setField(new Field("name", "bookings"));
+        ExpressionTree expression = new ExpressionTree();
+        expression.setOperator(Operator.AND);
+        expression.setOperands(Collections.singletonList(operand));
+        return new DetectorMapping()
+                .setId("bookings")
+                .setDetector(new Detector(UUID.fromString("2c49ba26-1a7d-43f4-b70c-c6644a2c1689")))
+                .setExpression(expression)
+                .setEnabled(true);
+    }
+
+    @Test
+    public void testWarmUp_localMatching() {
+        when(detectorSource.findEnabledDetectorMappings()).thenReturn(Collections.singletonList(bookingsMapping()));
+        DetectorMapperCache realCache = new DetectorMapperCache();
+        this.detectorMapper = new DetectorMapper(detectorSource, realCache, new DetectorMappingIndex(),
+                detectorMappingCacheUpdatePeriod);
+        List<Map<String, String>> metricTags = new ArrayList<>();
+        for (int i = 0; i < detectorMapper.optimalBatchSize() + 1; i++) {
+            metricTags.add(ImmutableMap.of("name", i == 0 ? "bookings" : "searches-" + i));
+        }
+
+        detectorMapper.warmUp(metricTags);
+
+        assertEquals(Collections.singletonList(bookingsMapping().getDetector()),
+                realCache.getIfPresent(metricTags.get(0)));
+        metricTags.subList(1, metricTags.size())
+                .forEach(tags -> assertEquals(Collections.emptyList(), realCache.getIfPresent(tags)));
+        assertEquals(metricTags.size(), detectorMapper.getCachedMetricTags().size());
+        verify(detectorSource, never()).findMatchingDetectorMappings(anyList());
+    }
+
+    @Test
+    public void testWarmUp_elasticsearch() {
+        detectorMapper.warmUp(tags);
+        detectorMapper.warmUp(tags_cantRetrieve);
+
+        verify(detectorSource).findMatchingDetectorMappings(tags);
+        verify(detectorSource).findMatchingDetectorMappings(tags_cantRetrieve);
+    }
+
+    @Test
+    public void testWarmUp_loadFails() {
+        when(detectorSource.findEnabledDetectorMappings())
+                .thenThrow(new DetectorMappingRetrievalException("failed", new IOException()));
+        this.detectorMapper = new DetectorMapper(detectorSource, cache, new DetectorMappingIndex(),
+                detectorMappingCacheUpdatePeriod);
+
+        detectorMapper.warmUp(tags);
+
+        verify(detectorSource).findMatchingDetectorMappings(tags);
+    }
+
+    @Test
+    public void testWarmUp_interrupted() {
+        this.detectorMapper = new DetectorMapper(detectorSource, cache, new DetectorMappingIndex(),
+                detectorMappingCacheUpdatePeriod);
+
+        Thread.currentThread().interrupt();
+        detectorMapper.warmUp(tags);
+
+        assertTrue(Thread.interrupted());
+        verify(detectorSource, never()).findMatchingDetectorMappings(anyList());
+    }
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detectormapper;
+
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Compares {@link DetectorMappingIndex} lookups against evaluating every mapping's expression in turn, for 10,000
+ * mappings over the metrics of {@link DetectorMapperCacheBenchmark}. Most mappings pick out a single metric, and the
+ * rest a whole app in a region. Scores are nanoseconds per lookup.
+ * </p>
+ * <p>
+ * Run with {@code main} from the IDE, or from the test classpath. It isn't part of the unit test suite.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DetectorMappingIndexBenchmark {
+    private static final int METRIC_COUNT = 10_000;
+    private static final int MAPPING_COUNT = 10_000;
+    private static final int BATCH_SIZE = 1024;
+
+    private List<Map<String, String>> metrics;
+    private List<DetectorMapping> mappings;
+    private DetectorMappingIndex index;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        val random = new Random(0L);
+        this.metrics = DetectorMapperCacheBenchmark.metrics(METRIC_COUNT, random);
+        this.mappings = new ArrayList<>();
+        for (int i = 0; i < MAPPING_COUNT; i++) {
+            val expression = i % 10 == 0
+                    ? and(field("app", "app-" + random.nextInt(200)), field("region", "us-west-" + random.nextInt(4)))
+                    : and(field("what", "latency-" + i), field("mtype", "gauge"), field("org_id", "1"));
+            mappings.add(new DetectorMapping()
+                    .setId(String.valueOf(i))
+                    .setDetector(new Detector(UUID.randomUUID()))
+                    .setExpression(expression)
+                    .setEnabled(true));
+        }
+        this.index = new DetectorMappingIndex();
+        index.load(mappings);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void invertedIndex(Blackhole blackhole) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            blackhole.consume(index.findDetectors(nextMetric()));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void scanAll(Blackhole blackhole) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            val tags = nextMetric();
+            val detectors = new ArrayList<Detector>();
+            for (val mapping : mappings) {
+                if (matches(mapping.getExpression(), tags) && !detectors.contains(mapping.getDetector())) {
+                    detectors.add(mapping.getDetector());
+                }
+            }
+            blackhole.consume(detectors);
+        }
+    }
+
+    private Map<String, String> nextMetric() {
+        val tags = metrics.get(next);
+        next = (next + 1) % METRIC_COUNT;
+        return tags;
+    }
+
+    private static boolean matches(ExpressionTree expression, Map<String, String> tags) {
+        val or = expression.getOperator() == Operator.OR;
+        for (val operand : expression.getOperands()) {
+            val field = operand.getField();
+            val matched = field != null
+                    ? field.getValue().equals(tags.get(field.getKey()))
+                    : matches(operand.getExpression(), tags);
+            if (matched == or) {
+                return or;
+            }
+        }
+        return !or;
+    }
+
+    private static ExpressionTree and(Operand... operands) {
+        val expression = new ExpressionTree();
+        expression.setOperator(Operator.AND);
+        expression.setOperands(Arrays.asList(operands));
+        return expression;
+    }
+
+    private static Operand field(String key, String value) {
+        val operand = new Operand();
+        operand.setField(new Field(key, value));
+        return operand;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        val options = new OptionsBuilder()
+                .include(DetectorMappingIndexBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
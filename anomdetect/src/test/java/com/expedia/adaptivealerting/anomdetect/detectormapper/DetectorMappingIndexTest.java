@@ -0,0 +1,292 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detectormapper;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link DetectorMappingIndex} unit test.
+ */
+public final class DetectorMappingIndexTest {
+    private static final Detector DETECTOR_1 = new Detector(UUID.fromString("2c49ba26-1a7d-43f4-b70c-c6644a2c1689"));
+    private static final Detector DETECTOR_2 = new Detector(UUID.fromString("5eaa54e9-7406-4a1d-bd9b-e055eca1a423"));
+    private static final Detector DETECTOR_3 = new Detector(UUID.fromString("d86b798c-cfee-4a2c-a17a-aa2ba79ccf51"));
+
+    private DetectorMappingIndex indexUnderTest;
+
+    @Before
+    public void setUp() {
+        this.indexUnderTest = new DetectorMappingIndex();
+    }
+
+    @Test
+    public void testFindDetectors_and() {
+        indexUnderTest.load(Collections.singletonList(
+                mapping("1", DETECTOR_1, and(field("name", "bookings"), field("region", "us-west-2")))));
+
+        assertTrue(indexUnderTest.isReady());
+        assertEquals(1, indexUnderTest.size());
+        assertEquals(Collections.singletonList(DETECTOR_1),
+                indexUnderTest.findDetectors(tags("name", "bookings", "region", "us-west-2", "unit", "count")));
+        assertEquals(Collections.emptyList(), indexUnderTest.findDetectors(tags("name", "bookings")));
+        assertEquals(Collections.emptyList(),
+                indexUnderTest.findDetectors(tags("name", "bookings", "region", "us-east-1")));
+    }
+
+    @Test
+    public void testFindDetectors_or() {
+        indexUnderTest.load(Collections.singletonList(
+                mapping("1", DETECTOR_1, or(field("name", "bookings"), field("name", "searches")))));
+
+        assertEquals(Collections.singletonList(DETECTOR_1), indexUnderTest.findDetectors(tags("name", "bookings")));
+        assertEquals(Collections.singletonList(DETECTOR_1), indexUnderTest.findDetectors(tags("name", "searches")));
+        assertEquals(Collections.emptyList(), indexUnderTest.findDetectors(tags("name", "logins")));
+    }
+
+    @Test
+    public void testFindDetectors_nested() {
+        // region = us-west-2 AND (name = bookings OR (name = searches AND unit = count))
+        ExpressionTree expression = and(
+                field("region", "us-west-2"),
+                nested(or(field("name", "bookings"), nested(and(field("name", "searches"), field("unit", "count"))))));
+        indexUnderTest.load(Collections.singletonList(mapping("1", DETECTOR_1, expression)));
+
+        assertEquals(Collections.singletonList(DETECTOR_1),
+                indexUnderTest.findDetectors(tags("region", "us-west-2", "name", "bookings")));
+        assertEquals(Collections.singletonList(DETECTOR_1),
+                indexUnderTest.findDetectors(tags("region", "us-west-2", "name", "searches", "unit", "count")));
+        assertEquals(Collections.emptyList(),
+                indexUnderTest.findDetectors(tags("region", "us-west-2", "name", "searches")));
+        assertEquals(Collections.emptyList(),
+                indexUnderTest.findDetectors(tags("region", "us-east-1", "name", "bookings")));
+    }
+
+    @Test
+    public void testFindDetectors_multipleMappings() {
+        indexUnderTest.load(Arrays.asList(
+                mapping("1", DETECTOR_1, and(field("name", "bookings"))),
+                mapping("2", DETECTOR_2, and(field("name", "bookings"), field("region", "us-west-2"))),
+                mapping("3", DETECTOR_3, and(field("name", "searches"))),
+                mapping("4", DETECTOR_1, or(field("name", "bookings"), field("region", "us-west-2")))));
+
+        List<Detector> detectors = indexUnderTest.findDetectors(tags("name", "bookings", "region", "us-west-2"));
+
+        assertEquals(Arrays.asList(DETECTOR_1, DETECTOR_2), detectors);
+    }
+
+    @Test
+    public void testFindDetectors_conflictingTerms() {
+        indexUnderTest.load(Collections.singletonList(
+                mapping("1", DETECTOR_1, and(field("name", "bookings"), field("name", "searches")))));
+
+        assertEquals(Collections.emptyList(), indexUnderTest.findDetectors(tags("name", "bookings")));
+    }
+
+    @Test
+    public void testFindDetectors_duplicateTerms() {
+        indexUnderTest.load(Collections.singletonList(
+                mapping("1", DETECTOR_1, and(field("name", "bookings"), field("name", "bookings")))));
+
+        assertEquals(Collections.singletonList(DETECTOR_1), indexUnderTest.findDetectors(tags("name", "bookings")));
+    }
+
+    @Test
+    public void testLoad_skipsDisabledMappings() {
+        indexUnderTest.load(Collections.singletonList(
+                mapping("1", DETECTOR_1, and(field("name", "bookings"))).setEnabled(false)));
+
+        assertTrue(indexUnderTest.isReady());
+        assertEquals(0, indexUnderTest.size());
+        assertEquals(Collections.emptyList(), indexUnderTest.findDetectors(tags("name", "bookings")));
+    }
+
+    @Test
+    public void testUpdate() {
+        indexUnderTest.load(Arrays.asList(
+                mapping("1", DETECTOR_1, and(field("name", "bookings"))),
+                mapping("2", DETECTOR_2, and(field("name", "searches")))));
+
+        indexUnderTest.update(Arrays.asList(
+                mapping("1", DETECTOR_1, and(field("name", "logins"))),
+                mapping("2", DETECTOR_2, and(field("name", "searches"))).setEnabled(false),
+                mapping("3", DETECTOR_3, and(field("name", "bookings")))));
+
+        assertEquals(2, indexUnderTest.size());
+        assertEquals(Collections.singletonList(DETECTOR_3), indexUnderTest.findDetectors(tags("name", "bookings")));
+        assertEquals(Collections.singletonList(DETECTOR_1), indexUnderTest.findDetectors(tags("name", "logins")));
+        assertEquals(Collections.emptyList(), indexUnderTest.findDetectors(tags("name", "searches")));
+    }
+
+    @Test
+    public void testUpdate_mappingsWithoutId() {
+        DetectorMapping mapping = mapping(null, DETECTOR_1, and(field("name", "bookings")));
+        indexUnderTest.load(Collections.singletonList(mapping));
+
+        indexUnderTest.update(Collections.singletonList(
+                mapping(null, DETECTOR_1, and(field("name", "bookings"))).setEnabled(false)));
+
+        assertEquals(0, indexUnderTest.size());
+    }
+
+    @Test
+    public void testUpdate_beforeLoad() {
+        indexUnderTest.update(Collections.singletonList(mapping("1", DETECTOR_1, and(field("name", "bookings")))));
+
+        assertFalse(indexUnderTest.isLoaded());
+        assertFalse(indexUnderTest.isReady());
+        assertEquals(0, indexUnderTest.size());
+    }
+
+    @Test
+    public void testUpdate_empty() {
+        indexUnderTest.load(Collections.singletonList(mapping("1", DETECTOR_1, and(field("name", "bookings")))));
+
+        indexUnderTest.update(Collections.emptyList());
+
+        assertEquals(1, indexUnderTest.size());
+    }
+
+    @Test
+    public void testUnsupportedMappings() {
+        indexUnderTest.load(Arrays.asList(
+                mapping("1", DETECTOR_1, and(field("name", "bookings"))),
+                mapping("2", DETECTOR_2, and())));
+
+        assertTrue(indexUnderTest.isLoaded());
+        assertFalse(indexUnderTest.isReady());
+        assertEquals(1, indexUnderTest.size());
+
+        indexUnderTest.update(Collections.singletonList(mapping("2", DETECTOR_2, and()).setEnabled(false)));
+
+        assertTrue(indexUnderTest.isReady());
+    }
+
+    @Test
+    public void testUnsupportedMappings_missingDetectorOrExpression() {
+        indexUnderTest.load(Arrays.asList(
+                mapping("1", null, and(field("name", "bookings"))),
+                mapping("2", DETECTOR_2, null),
+                mapping("3", DETECTOR_3, new ExpressionTree())));
+
+        assertFalse(indexUnderTest.isReady());
+        assertEquals(0, indexUnderTest.size());
+    }
+
+    @Test
+    public void testClauses_tooMany() {
+        // (a1 OR ... OR a8) AND (b1 OR ... OR b8) AND (c1 OR c2) flattens into 128 clauses
+        Operand[] a = new Operand[8];
+        Operand[] b = new Operand[8];
+        for (int i = 0; i < 8; i++) {
+            a[i] = field("a", String.valueOf(i));
+            b[i] = field("b", String.valueOf(i));
+        }
+        ExpressionTree eightByEight = and(nested(or(a)), nested(or(b)));
+        ExpressionTree tooMany = and(nested(or(a)), nested(or(b)), nested(or(field("c", "1"), field("c", "2"))));
+
+        assertEquals(DetectorMappingIndex.MAX_CLAUSES_PER_MAPPING, DetectorMappingIndex.clauses(eightByEight).size());
+        assertNull(DetectorMappingIndex.clauses(tooMany));
+        assertNull(DetectorMappingIndex.clauses(and(nested(or(a)), nested(tooMany))));
+        assertNull(DetectorMappingIndex.clauses(or(nested(or(a)), nested(tooMany))));
+    }
+
+    @Test
+    public void testClauses_wideOr() {
+        Operand[] operands = new Operand[DetectorMappingIndex.MAX_CLAUSES_PER_MAPPING + 1];
+        for (int i = 0; i < operands.length; i++) {
+            operands[i] = field("name", String.valueOf(i));
+        }
+
+        assertNull(DetectorMappingIndex.clauses(or(operands)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFindDetectors_notLoaded() {
+        indexUnderTest.findDetectors(tags("name", "bookings"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoad_nullMappings() {
+        indexUnderTest.load(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUpdate_nullMappings() {
+        indexUnderTest.update(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindDetectors_nullTags() {
+        indexUnderTest.findDetectors(null);
+    }
+
+    private static DetectorMapping mapping(String id, Detector detector, ExpressionTree expression) {
+        return new DetectorMapping()
+                .setId(id)
+                .setDetector(detector)
+                .setExpression(expression)
+                .setEnabled(true);
+    }
+
+    private static ExpressionTree and(Operand... operands) {
+        return expression(Operator.AND, operands);
+    }
+
+    private static ExpressionTree or(Operand... operands) {
+        return expression(Operator.OR, operands);
+    }
+
+    private static ExpressionTree expression(Operator operator, Operand... operands) {
+        ExpressionTree expression = new ExpressionTree();
+        expression.setOperator(operator);
+        expression.setOperands(new ArrayList<>(Arrays.asList(operands)));
+        return expression;
+    }
+
+    private static Operand field(String key, String value) {
+        Operand operand = new Operand();
+        operand.setField(new Field(key, value));
+        return operand;
+    }
+
+    private static Operand nested(ExpressionTree expression) {
+        Operand operand = new Operand();
+        operand.setExpression(expression);
+        return operand;
+    }
+
+    private static Map<String, String> tags(String... keyValues) {
+        Map<String, String> tags = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            tags.put(keyValues[i], keyValues[i + 1]);
+        }
+        return tags;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detectormapper;
+
+import com.typesafe.config.ConfigFactory;
+import lombok.val;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+
+public class LookupBatchControllerTest {
+    private static final Duration MAX_WAIT = Duration.ofMillis(200);
+    private static final Duration TARGET_LOOKUP_TIME = Duration.ofMillis(100);
+
+    @Test
+    public void testDefaults() {
+        val controller = new LookupBatchController();
+        assertEquals(LookupBatchController.DEFAULT_MIN_SIZE, controller.getMinSize());
+        assertEquals(LookupBatchController.DEFAULT_MAX_SIZE, controller.getMaxSize());
+        assertEquals(LookupBatchController.DEFAULT_INITIAL_SIZE, controller.getBatchSize());
+        assertEquals(LookupBatchController.DEFAULT_MAX_WAIT, controller.getMaxWait());
+    }
+
+    @Test
+    public void testConfig() {
+        val controller = new LookupBatchController(ConfigFactory.parseString(
+                "min-size = 5\nmax-size = 50\ninitial-size = 20\nmax-wait = 1s\n"
+                        + "target-lookup-time = 10ms\nadditive-increase = 3\nmultiplicative-decrease = 0.25"));
+        assertEquals(5, controller.getMinSize());
+        assertEquals(50, controller.getMaxSize());
+        assertEquals(20, controller.getBatchSize());
+        assertEquals(Duration.ofSeconds(1), controller.getMaxWait());
+
+        controller.onLookup(20, 10);
+        assertEquals(23, controller.getBatchSize());
+        controller.onLookup(23, 11);
+        assertEquals(5, controller.getBatchSize());
+    }
+
+    @Test
+    public void testConfig_defaults() {
+        val controller = new LookupBatchController(ConfigFactory.empty());
+        assertEquals(LookupBatchController.DEFAULT_INITIAL_SIZE, controller.getBatchSize());
+        assertEquals(LookupBatchController.DEFAULT_MAX_WAIT, controller.getMaxWait());
+    }
+
+    @Test
+    public void testAdditiveIncrease() {
+        val controller = new LookupBatchController(10, 100, 80, MAX_WAIT, TARGET_LOOKUP_TIME, 10, 0.5);
+
+        controller.onLookup(80, 100);
+        assertEquals(90, controller.getBatchSize());
+
+        // A fast partial batch doesn't grow the target.
+        controller.onLookup(50, 1);
+        assertEquals(90, controller.getBatchSize());
+
+        controller.onLookup(90, 1);
+        controller.onLookup(100, 1);
+        assertEquals(100, controller.getBatchSize());
+    }
+
+    @Test
+    public void testMultiplicativeDecrease() {
+        val controller = new LookupBatchController(10, 100, 80, MAX_WAIT, TARGET_LOOKUP_TIME, 10, 0.5);
+
+        controller.onLookup(10, 101);
+        assertEquals(40, controller.getBatchSize());
+
+        controller.onLookupFailure();
+        assertEquals(20, controller.getBatchSize());
+
+        controller.onLookupFailure();
+        controller.onLookupFailure();
+        assertEquals(10, controller.getBatchSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMinSizePositive() {
+        new LookupBatchController(0, 100, 80, MAX_WAIT, TARGET_LOOKUP_TIME, 10, 0.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxSizeAtLeastMinSize() {
+        new LookupBatchController(10, 5, 5, MAX_WAIT, TARGET_LOOKUP_TIME, 10, 0.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInitialSizeInRange() {
+        new LookupBatchController(10, 100, 101, MAX_WAIT, TARGET_LOOKUP_TIME, 10, 0.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxWaitNotNull() {
+        new LookupBatchController(10, 100, 80, null, TARGET_LOOKUP_TIME, 10, 0.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxWaitPositive() {
+        new LookupBatchController(10, 100, 80, Duration.ZERO, TARGET_LOOKUP_TIME, 10, 0.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTargetLookupTimeNotNull() {
+        new LookupBatchController(10, 100, 80, MAX_WAIT, null, 10, 0.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTargetLookupTimeNonNegative() {
+        new LookupBatchController(10, 100, 80, MAX_WAIT, Duration.ofMillis(-1), 10, 0.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAdditiveIncreaseNonNegative() {
+        new LookupBatchController(10, 100, 80, MAX_WAIT, TARGET_LOOKUP_TIME, -1, 0.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMultiplicativeDecreaseInRange() {
+        new LookupBatchController(10, 100, 80, MAX_WAIT, TARGET_LOOKUP_TIME, 10, 1.0);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detectormapper;
+
+import lombok.val;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MetricKeySetTest {
+
+    @Test
+    public void testAddContainsRemove() {
+        val set = new MetricKeySet();
+        val key = new MetricKey(1L, 2L);
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(key));
+
+        assertTrue(set.add(key));
+        assertFalse(set.add(new MetricKey(1L, 2L)));
+        assertTrue(set.contains(key));
+        assertEquals(1, set.size());
+
+        assertFalse(set.remove(new MetricKey(2L, 1L)));
+        assertTrue(set.remove(key));
+        assertFalse(set.remove(key));
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void testMatchesHashSet() {
+        // Few distinct keys, so probe chains collide and wrap around.
+        val random = new Random(0L);
+        val set = new MetricKeySet();
+        val expected = new HashSet<MetricKey>();
+        for (int i = 0; i < 100_000; i++) {
+            val key = new MetricKey(random.nextInt(8), random.nextInt(64));
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), set.remove(key));
+            } else {
+                assertEquals(expected.add(key), set.add(key));
+            }
+            assertEquals(expected.size(), set.size());
+            if (i % 1000 == 0) {
+                assertSameKeys(expected, set);
+            }
+        }
+        assertSameKeys(expected, set);
+    }
+
+    private static void assertSameKeys(Set<MetricKey> expected, MetricKeySet set) {
+        val actual = new HashSet<MetricKey>();
+        set.forEach(actual::add);
+        assertEquals(expected, actual);
+        expected.forEach(key -> assertTrue(set.contains(key)));
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detectormapper;
+
+import com.google.common.collect.ImmutableMap;
+import lombok.val;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class MetricKeyTest {
+
+    @Test
+    public void testOf_orderIndependent() {
+        val forward = new LinkedHashMap<String, String>();
+        val backward = new LinkedHashMap<String, String>();
+        for (int i = 0; i < 10; i++) {
+            forward.put("key" + i, "value" + i);
+            backward.put("key" + (9 - i), "value" + (9 - i));
+        }
+        assertEquals(MetricKey.of(forward), MetricKey.of(backward));
+        assertEquals(MetricKey.of(forward).hashCode(), MetricKey.of(backward).hashCode());
+    }
+
+    @Test
+    public void testOf_distinguishesTagBoundaries() {
+        assertNotEquals(MetricKey.of(ImmutableMap.of("ab", "c")), MetricKey.of(ImmutableMap.of("a", "bc")));
+        assertNotEquals(MetricKey.of(ImmutableMap.of("a", "b")), MetricKey.of(ImmutableMap.of("b", "a")));
+        assertNotEquals(
+                MetricKey.of(ImmutableMap.of("a", "b", "c", "d")),
+                MetricKey.of(ImmutableMap.of("a", "d", "c", "b")));
+        assertNotEquals(MetricKey.of(Collections.emptyMap()), MetricKey.of(ImmutableMap.of("", "")));
+    }
+
+    @Test
+    public void testOf_noCollisions() {
+        val random = new Random(0L);
+        val keys = new HashSet<MetricKey>();
+        val count = 200_000;
+        for (int i = 0; i < count; i++) {
+            keys.add(MetricKey.of(ImmutableMap.of(
+                    "app", "app-" + random.nextInt(1000),
+                    "host", "host-" + i,
+                    "what", "latency")));
+        }
+        assertEquals(count, keys.size());
+    }
+
+    @Test
+    public void testToString() {
+        assertEquals(32, MetricKey.of(ImmutableMap.of("k", "v")).toString().length());
+        assertEquals("00000000000000010000000000000002", new MetricKey(1L, 2L).toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOf_nullTags() {
+        MetricKey.of(null);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast;
+
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Compares the sliding window median against re-sorting the window on every value, for windows from an hour to a week
+ * of minutely data. Scores are nanoseconds per value.
+ * </p>
+ * <p>
+ * Run with {@code main} from the IDE, or from the test classpath. It isn't part of the unit test suite.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SlidingWindowMedianBenchmark {
+    private static final int BATCH_SIZE = 1024;
+
+    @Param({"60", "1440", "10080"})
+    private int windowSize;
+
+    private double[] values;
+    private SlidingWindowMedian median;
+    private double[] ring;
+    private double[] scratch;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        val random = new Random(0L);
+        this.values = new double[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            values[i] = 100.0 + 10.0 * random.nextGaussian();
+        }
+
+        // Start both with a full window, so every value evicts one.
+        this.median = new SlidingWindowMedian(windowSize);
+        this.ring = new double[windowSize];
+        this.scratch = new double[windowSize];
+        for (int i = 0; i < windowSize; i++) {
+            median.add(values[i % BATCH_SIZE]);
+            ring[i] = values[i % BATCH_SIZE];
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void slidingWindowMedian(Blackhole blackhole) {
+        for (val value : values) {
+            median.add(value);
+            blackhole.consume(median.median());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void sortEachTime(Blackhole blackhole) {
+        for (val value : values) {
+            ring[next] = value;
+            next = (next + 1) % windowSize;
+            System.arraycopy(ring, 0, scratch, 0, windowSize);
+            Arrays.sort(scratch);
+            blackhole.consume(scratch[windowSize / 2]);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        val options = new OptionsBuilder()
+                .include(SlidingWindowMedianBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
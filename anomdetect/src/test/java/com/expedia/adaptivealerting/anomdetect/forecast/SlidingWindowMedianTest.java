@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast;
+
+import lombok.val;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SlidingWindowMedianTest {
+    private static final double TOLERANCE = 1e-9;
+
+    @Test
+    public void testMedian_empty() {
+        assertTrue(Double.isNaN(new SlidingWindowMedian(5).median()));
+    }
+
+    @Test
+    public void testMedian_oddAndEvenCounts() {
+        val median = new SlidingWindowMedian(5);
+        median.add(3.0);
+        assertEquals(3.0, median.median(), TOLERANCE);
+        median.add(1.0);
+        assertEquals(2.0, median.median(), TOLERANCE);
+        median.add(2.0);
+        assertEquals(2.0, median.median(), TOLERANCE);
+        median.add(10.0);
+        assertEquals(2.5, median.median(), TOLERANCE);
+    }
+
+    @Test
+    public void testMedian_evictsOldest() {
+        val median = new SlidingWindowMedian(3);
+        for (double value : new double[]{1.0, 2.0, 3.0, 100.0, 200.0}) {
+            median.add(value);
+        }
+        assertEquals(3, median.size());
+        assertEquals(100.0, median.median(), TOLERANCE);
+    }
+
+    @Test
+    public void testMedian_ignoresNaN() {
+        val median = new SlidingWindowMedian(3);
+        median.add(1.0);
+        median.add(Double.NaN);
+        assertEquals(1, median.size());
+        assertEquals(1.0, median.median(), TOLERANCE);
+    }
+
+    @Test
+    public void testMedian_matchesSortedWindow() {
+        val random = new Random(0L);
+        for (int capacity : new int[]{1, 2, 3, 10, 61}) {
+            val median = new SlidingWindowMedian(capacity);
+            val history = new double[2_000];
+            for (int i = 0; i < history.length; i++) {
+                // Coarse values so that the window is full of ties
+                history[i] = random.nextInt(20);
+                median.add(history[i]);
+                val from = Math.max(0, i + 1 - capacity);
+                assertEquals(sortedMedian(Arrays.copyOfRange(history, from, i + 1)), median.median(), TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void testClear() {
+        val median = new SlidingWindowMedian(3);
+        median.add(1.0);
+        median.clear();
+        assertEquals(0, median.size());
+        median.add(5.0);
+        assertEquals(5.0, median.median(), TOLERANCE);
+    }
+
+    @Test
+    public void testState() throws IOException {
+        val original = new SlidingWindowMedian(4);
+        for (int i = 0; i < 7; i++) {
+            original.add(i * i);
+        }
+        val bytes = new ByteArrayOutputStream();
+        original.writeState(new DataOutputStream(bytes));
+
+        val restored = new SlidingWindowMedian(4);
+        restored.add(1000.0);
+        restored.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(original.size(), restored.size());
+        assertEquals(original.median(), restored.median(), TOLERANCE);
+
+        // The restored window evicts in the same order as the original
+        original.add(-1.0);
+        restored.add(-1.0);
+        assertEquals(original.median(), restored.median(), TOLERANCE);
+
+        // A smaller window keeps the most recent values
+        val smaller = new SlidingWindowMedian(2);
+        smaller.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals((25.0 + 36.0) / 2.0, smaller.median(), TOLERANCE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new SlidingWindowMedian(0);
+    }
+
+    private static double sortedMedian(double[] window) {
+        Arrays.sort(window);
+        val mid = window.length / 2;
+        return window.length % 2 == 1 ? window[mid] : (window[mid - 1] + window[mid]) / 2.0;
+    }
+}
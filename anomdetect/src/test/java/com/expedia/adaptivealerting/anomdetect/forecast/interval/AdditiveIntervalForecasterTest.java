@@ -15,6 +15,7 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.interval;
 
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
 import com.expedia.metrics.MetricData;
 import lombok.val;
 import org.junit.Before;
@@ -23,6 +24,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class AdditiveIntervalForecasterTest {
     private static final double TOLERANCE = 0.001;
@@ -79,4 +81,18 @@ public class AdditiveIntervalForecasterTest {
                 .setStrongValue(5.0)
                 .validate();
     }
+
+    @Test
+    public void testForecastHorizon() {
+        val params = forecasterUnderTest.getParams();
+        val band = new ForecastBand(2);
+        band.setPredicted(0, 132.4, 1.0);
+        forecasterUnderTest.forecastHorizon(band);
+
+        assertEquals(132.4 + params.getStrongValue(), band.getUpperStrong(0), TOLERANCE);
+        assertEquals(132.4 + params.getWeakValue(), band.getUpperWeak(0), TOLERANCE);
+        assertEquals(132.4 - params.getWeakValue(), band.getLowerWeak(0), TOLERANCE);
+        assertEquals(132.4 - params.getStrongValue(), band.getLowerStrong(0), TOLERANCE);
+        assertTrue(Double.isNaN(band.getUpperStrong(1)));
+    }
 }
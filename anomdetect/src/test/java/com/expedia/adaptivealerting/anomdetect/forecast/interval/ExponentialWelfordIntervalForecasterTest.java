@@ -15,7 +15,10 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.interval;
 
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
 import com.expedia.adaptivealerting.anomdetect.util.TestObjectMother;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
 import com.expedia.metrics.MetricData;
 import com.opencsv.bean.CsvBindByName;
 import com.opencsv.bean.CsvToBeanBuilder;
@@ -31,6 +34,7 @@ import java.time.Instant;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class ExponentialWelfordIntervalForecasterTest {
     private static final String TEST_DATA_FILE = "tests/exp-welford-test-data.csv";
@@ -147,4 +151,46 @@ public class ExponentialWelfordIntervalForecasterTest {
         @CsvBindByName(column = "lo_strong")
         private double lowerStrong;
     }
+
+    @Test
+    public void testForecastHorizon() {
+        val params = new ExponentialWelfordIntervalForecaster.Params()
+                .setInitVarianceEstimate(4.0)
+                .setWeakSigmas(3.0)
+                .setStrongSigmas(4.0);
+        val forecaster = new ExponentialWelfordIntervalForecaster(params);
+        val band = new ForecastBand(3);
+        band.setPredicted(0, 100.0, 1.0);
+        band.setPredicted(1, 100.0, 4.0);
+        forecaster.forecastHorizon(band);
+
+        assertEquals(108.0, band.getUpperStrong(0), TOLERANCE);
+        assertEquals(106.0, band.getUpperWeak(0), TOLERANCE);
+        assertEquals(94.0, band.getLowerWeak(0), TOLERANCE);
+        assertEquals(92.0, band.getLowerStrong(0), TOLERANCE);
+
+        // Four times the variance doubles the width
+        assertEquals(116.0, band.getUpperStrong(1), TOLERANCE);
+        assertEquals(84.0, band.getLowerStrong(1), TOLERANCE);
+
+        assertTrue(Double.isNaN(band.getUpperStrong(2)));
+        assertEquals(4.0, forecaster.getVariance(), TOLERANCE);
+    }
+
+    @Test
+    public void testForecast_missingPointForecast() {
+        val metricData = new MetricData(TestObjectMother.metricDefinition(), 100.0, 0L);
+        val out = new MutableAnomalyResult();
+        forecasterUnderTest.forecast(metricData, Double.NaN, out);
+        assertTrue(Double.isNaN(out.getUpperStrong()));
+        assertTrue(Double.isNaN(out.getLowerStrong()));
+        assertEquals(1.0, forecasterUnderTest.getVariance(), TOLERANCE);
+
+        val batchOut = new AnomalyBatchResult(2);
+        batchOut.reset(2);
+        forecasterUnderTest.forecast(new long[]{0L, 60L}, new double[]{100.0, 100.0}, new double[]{Double.NaN, 100.0},
+                batchOut);
+        assertTrue(Double.isNaN(batchOut.getUpperWeak()[0]));
+        assertEquals(100.0 + 3.0 * Math.sqrt(0.85), batchOut.getUpperWeak()[1], TOLERANCE);
+    }
 }
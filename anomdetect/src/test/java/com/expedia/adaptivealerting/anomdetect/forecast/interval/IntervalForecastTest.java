@@ -43,6 +43,21 @@ public class IntervalForecastTest {
         assertEquals(10.0, intervalForecast.getLowerStrong(), TOLERANCE);
     }
 
+    @Test
+    public void testValidate_allAbsent() {
+        IntervalForecast.validate(Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_someAbsent() {
+        IntervalForecast.validate(100.0, Double.NaN, Double.NaN, Double.NaN);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_someAbsentBelow() {
+        IntervalForecast.validate(Double.NaN, Double.NaN, Double.NaN, 10.0);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testConstructor_upperStrongBelowUpperWeak() {
         new IntervalForecast(90.0, 100.0, 20.0, 10.0);
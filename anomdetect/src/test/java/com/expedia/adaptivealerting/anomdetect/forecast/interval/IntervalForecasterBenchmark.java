@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast.interval;
+
+import com.expedia.adaptivealerting.anomdetect.util.BatchTestUtil;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Compares the cost of the streaming-quantile interval forecaster against the exponential Welford forecaster. Scores
+ * are nanoseconds per observation.
+ * </p>
+ * <p>
+ * Run with {@code main} from the IDE, or from the test classpath. It isn't part of the unit test suite.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IntervalForecasterBenchmark {
+    private static final int BATCH_SIZE = 1024;
+
+    @Param({"exponential-welford", "quantile", "quantile-decay"})
+    private String forecasterType;
+
+    private IntervalForecaster forecaster;
+    private long[] timestamps;
+    private double[] values;
+    private double[] pointForecasts;
+    private AnomalyBatchResult batchResult;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.forecaster = forecaster(forecasterType);
+        this.values = BatchTestUtil.valuesWithAnomalies(1L, BATCH_SIZE);
+        this.timestamps = new long[BATCH_SIZE];
+        this.pointForecasts = new double[BATCH_SIZE];
+        this.batchResult = new AnomalyBatchResult(BATCH_SIZE);
+        Arrays.fill(pointForecasts, 100.0);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            timestamps[i] = 1_500_000_000L + 60L * i;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public AnomalyBatchResult forecast() {
+        forecaster.forecast(timestamps, values, pointForecasts, batchResult);
+        return batchResult;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        val options = new OptionsBuilder()
+                .include(IntervalForecasterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    private static IntervalForecaster forecaster(String type) {
+        switch (type) {
+            case "exponential-welford":
+                return new ExponentialWelfordIntervalForecaster();
+            case "quantile":
+                return new QuantileIntervalForecaster();
+            case "quantile-decay":
+                return new QuantileIntervalForecaster(new QuantileIntervalForecaster.Params().setDecay(0.995));
+            default:
+                throw new IllegalArgumentException("Unknown forecaster type: " + type);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast.interval;
+
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
+import com.expedia.adaptivealerting.anomdetect.util.TestObjectMother;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
+import com.expedia.metrics.MetricData;
+import com.expedia.metrics.MetricDefinition;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MadIntervalForecasterTest {
+    private static final double TOLERANCE = 0.001;
+
+    private MetricDefinition metricDef;
+
+    @Before
+    public void setUp() {
+        this.metricDef = TestObjectMother.metricDefinition();
+    }
+
+    @Test
+    public void testForecast() {
+        val params = new MadIntervalForecaster.Params()
+                .setWindowSize(5)
+                .setWarmUpPeriod(5)
+                .setWeakSigmas(2.0)
+                .setStrongSigmas(3.0);
+        val forecaster = new MadIntervalForecaster(params);
+        val out = new MutableAnomalyResult();
+
+        // Absolute residuals 1, 2, 3, 4, 5, so the MAD is 3
+        for (int i = 1; i <= 5; i++) {
+            forecaster.forecast(new MetricData(metricDef, 100.0 + (i % 2 == 0 ? i : -i), i), 100.0, out);
+            assertTrue(Double.isNaN(out.getUpperWeak()));
+        }
+        forecaster.forecast(new MetricData(metricDef, 100.0, 6), 50.0, out);
+
+        val sigma = MadIntervalForecaster.MAD_TO_SIGMA * 3.0;
+        assertEquals(50.0 + 3.0 * sigma, out.getUpperStrong(), TOLERANCE);
+        assertEquals(50.0 + 2.0 * sigma, out.getUpperWeak(), TOLERANCE);
+        assertEquals(50.0 - 2.0 * sigma, out.getLowerWeak(), TOLERANCE);
+        assertEquals(50.0 - 3.0 * sigma, out.getLowerStrong(), TOLERANCE);
+    }
+
+    @Test
+    public void testForecast_outliersDontInflateBands() {
+        val forecaster = new MadIntervalForecaster();
+        val random = new Random(0L);
+        val out = new MutableAnomalyResult();
+        for (int i = 0; i < 1_000; i++) {
+            // Unit Gaussian residuals with a large spike every tenth observation
+            val residual = i % 10 == 0 ? 1000.0 : random.nextGaussian();
+            forecaster.forecast(new MetricData(metricDef, residual, i), 0.0, out);
+        }
+
+        // A sample standard deviation would be around 300 here; the robust sigma stays near 1.
+        val robustSigma = out.getUpperWeak() / 3.0;
+        assertTrue(robustSigma > 0.7 && robustSigma < 1.5);
+    }
+
+    @Test
+    public void testForecast_missingPointForecast() {
+        val forecaster = new MadIntervalForecaster(new MadIntervalForecaster.Params().setWarmUpPeriod(1));
+        val out = new MutableAnomalyResult();
+        forecaster.forecast(new MetricData(metricDef, 10.0, 0), Double.NaN, out);
+        forecaster.forecast(new MetricData(metricDef, 10.0, 1), 10.0, out);
+        assertTrue(Double.isNaN(out.getUpperStrong()));
+    }
+
+    @Test
+    public void testForecastHorizon() {
+        val params = new MadIntervalForecaster.Params().setWindowSize(3).setWarmUpPeriod(3);
+        val forecaster = new MadIntervalForecaster(params);
+
+        val band = new ForecastBand(3);
+        band.setPredicted(0, 10.0, 1.0);
+        band.setPredicted(1, 10.0, 4.0);
+        forecaster.forecastHorizon(band);
+        assertTrue(Double.isNaN(band.getUpperStrong(0)));
+
+        val out = new MutableAnomalyResult();
+        for (int i = 0; i < 3; i++) {
+            forecaster.forecast(new MetricData(metricDef, 2.0, i), 0.0, out);
+        }
+        forecaster.forecastHorizon(band);
+
+        val sigma = MadIntervalForecaster.MAD_TO_SIGMA * 2.0;
+        assertEquals(10.0 + 4.0 * sigma, band.getUpperStrong(0), TOLERANCE);
+        assertEquals(10.0 - 3.0 * sigma, band.getLowerWeak(0), TOLERANCE);
+        assertEquals(10.0 + 8.0 * sigma, band.getUpperStrong(1), TOLERANCE);
+        assertTrue(Double.isNaN(band.getUpperStrong(2)));
+    }
+
+    @Test
+    public void testValidate() {
+        new MadIntervalForecaster.Params().validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_invalidWindowSize() {
+        new MadIntervalForecaster.Params().setWindowSize(0).validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_negativeWeakSigmas() {
+        new MadIntervalForecaster.Params().setWeakSigmas(-1.0).validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_strongSigmasBelowWeak() {
+        new MadIntervalForecaster.Params().setWeakSigmas(3.0).setStrongSigmas(2.0).validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_warmUpPeriodTooLong() {
+        new MadIntervalForecaster.Params().setWindowSize(10).setWarmUpPeriod(11).validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_warmUpPeriodTooShort() {
+        new MadIntervalForecaster.Params().setWarmUpPeriod(0).validate();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast.interval;
+
+import lombok.val;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class P2QuantileTest {
+
+    @Test
+    public void testQuantile_uniform() {
+        val random = new Random(0L);
+        val median = new P2Quantile(0.5, 1.0);
+        val p90 = new P2Quantile(0.9, 1.0);
+        for (int i = 0; i < 100_000; i++) {
+            val x = random.nextDouble();
+            median.add(x);
+            p90.add(x);
+        }
+        assertEquals(0.5, median.quantile(), 0.01);
+        assertEquals(0.9, p90.quantile(), 0.01);
+    }
+
+    @Test
+    public void testQuantile_warmUp() {
+        val quantile = new P2Quantile(0.5, 1.0);
+        for (int i = 0; i < 4; i++) {
+            quantile.add(i);
+            assertTrue(Double.isNaN(quantile.quantile()));
+        }
+        quantile.add(4.0);
+        assertEquals(2.0, quantile.quantile(), 0.0);
+    }
+
+    @Test
+    public void testQuantile_decayTracksShift() {
+        val random = new Random(0L);
+        val decayed = new P2Quantile(0.5, 0.99);
+        val undecayed = new P2Quantile(0.5, 1.0);
+        for (int i = 0; i < 10_000; i++) {
+            val x = (i < 5_000 ? 0.0 : 10.0) + random.nextGaussian();
+            decayed.add(x);
+            undecayed.add(x);
+        }
+        assertEquals(10.0, decayed.quantile(), 0.5);
+        assertTrue(undecayed.quantile() < 9.0);
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.interval;
 
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
 import com.expedia.metrics.MetricData;
 import lombok.val;
 import org.junit.Before;
@@ -23,6 +24,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class PowerLawIntervalForecasterTest {
     private static final double TOLERANCE = 0.001;
@@ -111,4 +113,21 @@ public class PowerLawIntervalForecasterTest {
                 .setStrongMultiplier(2.0)
                 .validate();
     }
+
+    @Test
+    public void testForecastHorizon() {
+        val params = forecasterUnderTest.getParams();
+        val band = new ForecastBand(2);
+        band.setPredicted(0, 132.4, 1.0);
+        forecasterUnderTest.forecastHorizon(band);
+
+        val width = params.getAlpha() * Math.pow(132.4, params.getBeta());
+        val weakWidth = params.getWeakMultiplier() * width;
+        val strongWidth = params.getStrongMultiplier() * width;
+        assertEquals(132.4 + strongWidth, band.getUpperStrong(0), TOLERANCE);
+        assertEquals(132.4 + weakWidth, band.getUpperWeak(0), TOLERANCE);
+        assertEquals(132.4 - weakWidth, band.getLowerWeak(0), TOLERANCE);
+        assertEquals(132.4 - strongWidth, band.getLowerStrong(0), TOLERANCE);
+        assertTrue(Double.isNaN(band.getUpperStrong(1)));
+    }
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast.interval;
+
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.util.TestObjectMother;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
+import com.expedia.metrics.MetricData;
+import com.expedia.metrics.MetricDefinition;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.anomdetect.util.BatchTestUtil.assertBatchMatchesPerPoint;
+import static com.expedia.adaptivealerting.anomdetect.util.BatchTestUtil.valuesWithAnomalies;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.assertRoundTrip;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QuantileIntervalForecasterTest {
+    private static final double TOLERANCE = 0.001;
+
+    private MetricDefinition metricDef;
+
+    @Before
+    public void setUp() {
+        this.metricDef = TestObjectMother.metricDefinition();
+    }
+
+    @Test
+    public void testForecast_skewedResiduals() {
+        val forecaster = new QuantileIntervalForecaster();
+        val random = new Random(0L);
+        val out = new MutableAnomalyResult();
+        for (int i = 0; i < 50_000; i++) {
+            // Exponentially distributed residuals, as for a latency around its typical value
+            val residual = -Math.log(1.0 - random.nextDouble());
+            forecaster.forecast(new MetricData(metricDef, 100.0 + residual, i), 100.0, out);
+        }
+
+        // Quantiles of Exp(1): -ln(1 - p)
+        assertEquals(100.0 + 4.605, out.getUpperStrong(), 0.25);
+        assertEquals(100.0 + 2.996, out.getUpperWeak(), 0.1);
+        assertEquals(100.0 + 0.0513, out.getLowerWeak(), 0.01);
+        assertEquals(100.0 + 0.0101, out.getLowerStrong(), 0.01);
+    }
+
+    @Test
+    public void testForecast_warmUp() {
+        val forecaster = new QuantileIntervalForecaster();
+        val out = new MutableAnomalyResult();
+        for (int i = 0; i < 30; i++) {
+            forecaster.forecast(new MetricData(metricDef, i - 15.0, i), 0.0, out);
+            assertTrue(Double.isNaN(out.getUpperStrong()));
+            assertTrue(Double.isNaN(out.getLowerStrong()));
+        }
+        forecaster.forecast(new MetricData(metricDef, 0.0, 30), 0.0, out);
+        assertTrue(out.getUpperStrong() > out.getLowerStrong());
+        assertTrue(out.getUpperStrong() <= 14.0);
+        assertTrue(out.getLowerStrong() >= -15.0);
+    }
+
+    @Test
+    public void testForecast_missingPointForecast() {
+        val forecaster = new QuantileIntervalForecaster();
+        val out = new MutableAnomalyResult();
+        for (int i = 0; i < 40; i++) {
+            forecaster.forecast(new MetricData(metricDef, i, i), Double.NaN, out);
+        }
+        forecaster.forecast(new MetricData(metricDef, 0.0, 40), 0.0, out);
+        assertTrue(Double.isNaN(out.getUpperWeak()));
+    }
+
+    @Test
+    public void testForecast_thresholdsStayOrdered() {
+        val forecaster = new QuantileIntervalForecaster();
+        val random = new Random(1L);
+        val out = new MutableAnomalyResult();
+        for (int i = 0; i < 1_000; i++) {
+            forecaster.forecast(new MetricData(metricDef, random.nextGaussian(), i), 0.0, out);
+            if (i >= 30) {
+                assertTrue(out.getUpperStrong() >= out.getUpperWeak());
+                assertTrue(out.getUpperWeak() >= out.getLowerWeak());
+                assertTrue(out.getLowerWeak() >= out.getLowerStrong());
+            }
+        }
+    }
+
+    @Test
+    public void testForecastHorizon() {
+        val forecaster = new QuantileIntervalForecaster();
+        val out = new MutableAnomalyResult();
+        for (int i = 0; i < 40; i++) {
+            forecaster.forecast(new MetricData(metricDef, i % 7 - 3.0, i), 0.0, out);
+        }
+        // Read the current thresholds without adding another residual
+        val current = new ForecastBand(1);
+        current.setPredicted(0, 0.0, 1.0);
+        forecaster.forecastHorizon(current);
+        val band = new ForecastBand(3);
+        band.setPredicted(0, 10.0, 1.0);
+        band.setPredicted(1, 10.0, 4.0);
+        forecaster.forecastHorizon(band);
+
+        assertEquals(10.0 + current.getUpperStrong(0), band.getUpperStrong(0), TOLERANCE);
+        assertEquals(10.0 + current.getLowerWeak(0), band.getLowerWeak(0), TOLERANCE);
+        assertEquals(10.0 + 2.0 * current.getUpperStrong(0), band.getUpperStrong(1), TOLERANCE);
+        assertEquals(10.0 + 2.0 * current.getLowerStrong(0), band.getLowerStrong(1), TOLERANCE);
+        assertTrue(Double.isNaN(band.getUpperStrong(2)));
+    }
+
+    @Test
+    public void testBatchMatchesPerPoint() {
+        val values = valuesWithAnomalies(3L, 500);
+        assertBatchMatchesPerPoint(detector(), detector(), values, 64);
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException {
+        assertRoundTrip(detector(), detector(), 200);
+    }
+
+    @Test
+    public void testValidate() {
+        new QuantileIntervalForecaster.Params().validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_weakQuantileTooLow() {
+        new QuantileIntervalForecaster.Params().setWeakQuantile(0.5).validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_strongQuantileBelowWeak() {
+        new QuantileIntervalForecaster.Params().setWeakQuantile(0.95).setStrongQuantile(0.9).validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_strongQuantileTooHigh() {
+        new QuantileIntervalForecaster.Params().setStrongQuantile(1.0).validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_invalidDecay() {
+        new QuantileIntervalForecaster.Params().setDecay(0.0).validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_warmUpPeriodTooShort() {
+        new QuantileIntervalForecaster.Params().setWarmUpPeriod(4).validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_decayTooHigh() {
+        new QuantileIntervalForecaster.Params().setDecay(1.1).validate();
+    }
+
+    private static ForecastingDetector detector() {
+        return new ForecastingDetector(
+                UUID.randomUUID(),
+                new EwmaPointForecaster(new EwmaPointForecaster.Params().setInitMeanEstimate(100.0)),
+                new QuantileIntervalForecaster(new QuantileIntervalForecaster.Params().setDecay(0.995)),
+                AnomalyType.TWO_TAILED);
+    }
+}
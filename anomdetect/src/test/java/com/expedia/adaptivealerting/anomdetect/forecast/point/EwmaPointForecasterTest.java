@@ -15,6 +15,7 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.point;
 
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
 import com.expedia.metrics.MetricData;
 import com.expedia.metrics.MetricDefinition;
 import com.opencsv.bean.CsvToBeanBuilder;
@@ -83,4 +84,26 @@ public final class EwmaPointForecasterTest {
                 .build()
                 .parse();
     }
+
+    @Test
+    public void testForecastHorizon() {
+        val params = new EwmaPointForecaster.Params()
+                .setAlpha(0.5)
+                .setInitMeanEstimate(10.0);
+        val forecaster = new EwmaPointForecaster(params);
+        forecaster.forecast(new MetricData(metricDef, 20.0, epochSecond));
+
+        val band = new ForecastBand(3);
+        forecaster.forecastHorizon(band);
+
+        for (int h = 0; h < 3; h++) {
+            assertEquals(15.0, band.getPredicted(h), TOLERANCE);
+        }
+        assertEquals(1.0, band.getVarianceFactor(0), TOLERANCE);
+        assertEquals(1.25, band.getVarianceFactor(1), TOLERANCE);
+        assertEquals(1.5, band.getVarianceFactor(2), TOLERANCE);
+
+        // Projecting doesn't change the state
+        assertEquals(15.0, forecaster.getMean(), TOLERANCE);
+    }
 }
@@ -15,6 +15,7 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.point;
 
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersAustouristsTestRow;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersTrainingMethod;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.SeasonalityType;
@@ -29,6 +30,7 @@ import org.junit.rules.ExpectedException;
 import java.time.Instant;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Random;
 
 import static com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersAustouristsTestHelper.AUSTOURISTS_ADD_DATA;
 import static com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersAustouristsTestHelper.AUSTOURISTS_MULT_DATA;
@@ -36,6 +38,8 @@ import static com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters
 import static com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersAustouristsTestHelper.buildAustouristsParams;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests Holt-Winters functionality by comparing with data generated from Hyndman's R "fpp2" library - see GenerateAustouristsTests.R
@@ -54,6 +58,24 @@ public final class HoltWintersForecasterTest {
         this.epochSecond = Instant.now().getEpochSecond();
     }
 
+    /**
+     * Fingerprints of the forecasts and final state produced before the seasonal statistics moved from Commons Math
+     * SummaryStatistics into primitive accumulators and the training cycles into a released buffer. Forecasts and
+     * components must stay bit for bit the same. The standard deviations are computed differently, so they're only
+     * compared to within rounding.
+     */
+    @Test
+    public void testForecast_unchangedByStateLayout() {
+        checkFingerprint(SeasonalityType.ADDITIVE, HoltWintersTrainingMethod.NONE,
+                0x247a0f05c30aef17L, 0x0f0f6dc4fdb6f60dL, 785.021278772214);
+        checkFingerprint(SeasonalityType.ADDITIVE, HoltWintersTrainingMethod.SIMPLE,
+                0x7a56e66b108a5090L, 0x73707a5637f29edaL, 757.461610693666);
+        checkFingerprint(SeasonalityType.MULTIPLICATIVE, HoltWintersTrainingMethod.NONE,
+                0x539530a1e658b737L, 0xa38744367b5d8c5bL, 777.924893191283);
+        checkFingerprint(SeasonalityType.MULTIPLICATIVE, HoltWintersTrainingMethod.SIMPLE,
+                0xfb54442e69f728aeL, 0xfd58b3d3d648e226L, 750.7216138208468);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testInit_frequency0() {
         new HoltWintersForecaster.Params()
@@ -129,6 +151,86 @@ public final class HoltWintersForecasterTest {
         doAustouristsTest(AUSTOURISTS_MULT_DATA, SeasonalityType.MULTIPLICATIVE, true);
     }
 
+    @Test
+    public void testForecastHorizon_additive() {
+        val forecaster = new HoltWintersForecaster(horizonParams(SeasonalityType.ADDITIVE, -1.5, -0.5, 0.5, 1.5));
+        val band = new ForecastBand(5);
+        forecaster.forecastHorizon(band);
+
+        // level + (h + 1) * base + seasonal
+        val expectedPredicted = new double[]{9.5, 11.5, 13.5, 15.5, 13.5};
+        // 1 + sum of c_j^2, c_j = alpha * (1 + j * beta) + gamma when j is a multiple of the frequency
+        val expectedVarianceFactors = new double[]{1.0, 1.3025, 1.6625, 2.085, 2.895};
+        for (int h = 0; h < 5; h++) {
+            assertEquals(expectedPredicted[h], band.getPredicted(h), 1e-9);
+            assertEquals(expectedVarianceFactors[h], band.getVarianceFactor(h), 1e-9);
+        }
+        assertEquals(forecaster.getComponents().getForecast(), band.getPredicted(0), 1e-9);
+        assertEquals(0, forecaster.getComponents().getN());
+    }
+
+    @Test
+    public void testForecastHorizon_multiplicative() {
+        val forecaster = new HoltWintersForecaster(
+                horizonParams(SeasonalityType.MULTIPLICATIVE, 0.8, 0.9, 1.1, 1.2));
+        forecaster.forecast(new MetricData(metricDef, 11.0, epochSecond));
+        val components = forecaster.getComponents();
+        val band = new ForecastBand(4);
+        forecaster.forecastHorizon(band);
+
+        // (level + (h + 1) * base) * seasonal, starting from the season after the observation
+        for (int h = 0; h < 4; h++) {
+            val seasonal = components.getSeasonal((1 + h) % 4);
+            val expected = (components.getLevel() + (h + 1) * components.getBase()) * seasonal;
+            assertEquals(expected, band.getPredicted(h), 1e-9);
+        }
+        assertEquals(components.getForecast(), band.getPredicted(0), 1e-9);
+    }
+
+    @Test
+    public void testForecastHorizon_duringTraining() {
+        val params = new HoltWintersForecaster.Params()
+                .setFrequency(4)
+                .setInitTrainingMethod(HoltWintersTrainingMethod.SIMPLE)
+                .setWarmUpPeriod(8);
+        val forecaster = new HoltWintersForecaster(params);
+        forecaster.forecast(new MetricData(metricDef, 11.0, epochSecond));
+
+        val band = new ForecastBand(2);
+        forecaster.forecastHorizon(band);
+        assertTrue(Double.isNaN(band.getPredicted(0)));
+        assertTrue(Double.isNaN(band.getPredicted(1)));
+    }
+
+    @Test
+    public void testForecast_warmupCoversTrainingAndWarmUpPeriod() {
+        val params = new HoltWintersForecaster.Params()
+                .setFrequency(4)
+                .setInitTrainingMethod(HoltWintersTrainingMethod.SIMPLE)
+                .setWarmUpPeriod(10);
+        val forecaster = new HoltWintersForecaster(params);
+
+        // Two cycles of training. Training replays those 8 observations, which count towards the warm-up period, so
+        // two more observations complete it.
+        for (int i = 0; i < 10; i++) {
+            assertTrue(forecaster.forecast(new MetricData(metricDef, 10.0 + i % 4, epochSecond + i)).isWarmup());
+        }
+        assertFalse(forecaster.isWarmingUp());
+        assertFalse(forecaster.forecast(new MetricData(metricDef, 12.0, epochSecond + 10)).isWarmup());
+    }
+
+    private HoltWintersForecaster.Params horizonParams(SeasonalityType seasonalityType, double... seasonals) {
+        return new HoltWintersForecaster.Params()
+                .setSeasonalityType(seasonalityType)
+                .setFrequency(4)
+                .setAlpha(0.5)
+                .setBeta(0.1)
+                .setGamma(0.2)
+                .setInitLevelEstimate(10.0)
+                .setInitBaseEstimate(1.0)
+                .setInitSeasonalEstimates(seasonals);
+    }
+
     private void doAustouristsTest(List<HoltWintersAustouristsTestRow> testData, SeasonalityType seasonalityType, boolean withTraining) {
         final ListIterator<HoltWintersAustouristsTestRow> testRows = testData.listIterator();
         HoltWintersAustouristsTestRow firstRow = testRows.next();
@@ -162,4 +264,42 @@ public final class HoltWintersForecasterTest {
         // Assert.assertEquals(testRow.getExpectedLevel(), result.getAnomalyLevel());
         assertEquals(testRow.getYHat(), forecastBeforeObservation, TOLERANCE);
     }
+
+    private void checkFingerprint(
+            SeasonalityType seasonalityType,
+            HoltWintersTrainingMethod trainingMethod,
+            long expectedForecasts,
+            long expectedState,
+            double expectedStdDevSum) {
+
+        val frequency = 24;
+        val forecaster = new HoltWintersForecaster(new HoltWintersForecaster.Params()
+                .setFrequency(frequency)
+                .setSeasonalityType(seasonalityType)
+                .setInitTrainingMethod(trainingMethod));
+        val random = new Random(42L);
+        long forecasts = 17L;
+        for (int i = 0; i < frequency * 10; i++) {
+            val value = 100.0 + 20.0 * Math.sin(2 * Math.PI * i / frequency) + 5.0 * random.nextGaussian() + 0.05 * i;
+            val forecast = forecaster.forecast(new MetricData(metricDef, value, epochSecond + 60L * i)).getValue();
+            forecasts = 31 * forecasts + Double.doubleToLongBits(forecast);
+        }
+
+        val components = forecaster.getComponents();
+        long state = 17L;
+        state = 31 * state + Double.doubleToLongBits(components.getLevel());
+        state = 31 * state + Double.doubleToLongBits(components.getBase());
+        state = 31 * state + Double.doubleToLongBits(components.getForecast());
+        state = 31 * state + components.getN();
+        double stdDevSum = 0;
+        for (int i = 0; i < frequency; i++) {
+            state = 31 * state + Double.doubleToLongBits(components.getSeasonal(i));
+            stdDevSum += components.getSeasonalStandardDeviation(i);
+        }
+
+        val description = seasonalityType + "/" + trainingMethod;
+        assertEquals(description, expectedForecasts, forecasts);
+        assertEquals(description, expectedState, state);
+        assertEquals(description, expectedStdDevSum, stdDevSum, 1e-9);
+    }
 }
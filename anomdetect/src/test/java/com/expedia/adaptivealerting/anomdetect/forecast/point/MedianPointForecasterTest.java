@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast.point;
+
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.MadIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.util.TestObjectMother;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
+import com.expedia.metrics.MetricData;
+import com.expedia.metrics.MetricDefinition;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.anomdetect.util.BatchTestUtil.assertBatchMatchesPerPoint;
+import static com.expedia.adaptivealerting.anomdetect.util.BatchTestUtil.valuesWithAnomalies;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.assertRoundTrip;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MedianPointForecasterTest {
+    private static final double TOLERANCE = 0.001;
+
+    private MetricDefinition metricDef;
+
+    @Before
+    public void setUp() {
+        this.metricDef = TestObjectMother.metricDefinition();
+    }
+
+    @Test
+    public void testForecast() {
+        val forecaster = new MedianPointForecaster(new MedianPointForecaster.Params().setWindowSize(5));
+        val out = new MutableAnomalyResult();
+
+        forecaster.forecast(new MetricData(metricDef, 10.0, 0L), out);
+        assertTrue(Double.isNaN(out.getPredicted()));
+
+        val values = new double[]{12.0, 11.0, 500.0, 9.0, 10.0};
+        for (int i = 0; i < values.length; i++) {
+            forecaster.forecast(new MetricData(metricDef, values[i], i + 1), out);
+        }
+
+        // The forecast for the last observation is the median of the five before it: 10, 12, 11, 500, 9.
+        assertEquals(11.0, out.getPredicted(), TOLERANCE);
+    }
+
+    @Test
+    public void testForecast_spikesDontMoveForecast() {
+        val forecaster = new MedianPointForecaster(new MedianPointForecaster.Params().setWindowSize(9));
+        val out = new MutableAnomalyResult();
+        for (int i = 0; i < 50; i++) {
+            val observed = i % 5 == 0 ? 1000.0 : 100.0;
+            forecaster.forecast(new MetricData(metricDef, observed, i), out);
+        }
+        assertEquals(100.0, out.getPredicted(), TOLERANCE);
+    }
+
+    @Test
+    public void testForecast_warmupUntilFirstObservation() {
+        val forecaster = new MedianPointForecaster();
+        val first = forecaster.forecast(new MetricData(metricDef, 10.0, 1L));
+        assertTrue(first.isWarmup());
+        assertTrue(Double.isNaN(first.getValue()));
+        assertFalse(forecaster.forecast(new MetricData(metricDef, 11.0, 2L)).isWarmup());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testForecast_nullMetricData() {
+        new MedianPointForecaster().forecast(null, new MutableAnomalyResult());
+    }
+
+    @Test
+    public void testForecastHorizon() {
+        val forecaster = new MedianPointForecaster();
+        val band = new ForecastBand(2);
+        forecaster.forecastHorizon(band);
+        assertTrue(Double.isNaN(band.getPredicted(0)));
+
+        val out = new MutableAnomalyResult();
+        for (int i = 1; i <= 3; i++) {
+            forecaster.forecast(new MetricData(metricDef, i, i), out);
+        }
+        forecaster.forecastHorizon(band);
+        assertEquals(2.0, band.getPredicted(0), TOLERANCE);
+        assertEquals(2.0, band.getPredicted(1), TOLERANCE);
+        assertEquals(1.0, band.getVarianceFactor(1), TOLERANCE);
+    }
+
+    @Test
+    public void testBatchMatchesPerPoint() {
+        val values = valuesWithAnomalies(5L, 500);
+        assertBatchMatchesPerPoint(detector(), detector(), values, 64);
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException {
+        assertRoundTrip(detector(), detector(), 200);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_invalidWindowSize() {
+        new MedianPointForecaster.Params().setWindowSize(0).validate();
+    }
+
+    private static ForecastingDetector detector() {
+        return new ForecastingDetector(
+                UUID.randomUUID(),
+                new MedianPointForecaster(new MedianPointForecaster.Params().setWindowSize(31)),
+                new MadIntervalForecaster(new MadIntervalForecaster.Params().setWindowSize(31).setWarmUpPeriod(10)),
+                AnomalyType.TWO_TAILED);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast.point;
+
+import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersTrainingMethod;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.SeasonalityType;
+import com.expedia.adaptivealerting.anomdetect.util.TestObjectMother;
+import com.expedia.metrics.MetricData;
+import lombok.val;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * Prints the retained heap of 10,000 minutely detectors with daily and weekly seasonality: Holt-Winters with
+ * frequency=10080, and {@link MultiSeasonalPointForecaster} with a daily profile at minute resolution and a weekly one
+ * at hourly resolution, both with private profiles and with a shared fixed profile. Holt-Winters at 10,000 forecasters
+ * doesn't fit in a default heap, so it's measured over 1,000 and scaled up. Each forecaster sees two observations, so
+ * copy-on-write profiles have been copied. Measured as the used heap delta after GC, so it's approximate.
+ * </p>
+ * <p>
+ * Run with {@code main} from the IDE, or from the test classpath. It isn't part of the unit test suite.
+ * </p>
+ */
+public class MultiSeasonalFootprint {
+    private static final int DETECTOR_COUNT = 10_000;
+    private static final int HOLT_WINTERS_SAMPLE = 1_000;
+
+    public static void main(String[] args) {
+        val holtWintersParams = new HoltWintersForecaster.Params()
+                .setFrequency(7 * 24 * 60)
+                .setSeasonalityType(SeasonalityType.ADDITIVE)
+                .setInitTrainingMethod(HoltWintersTrainingMethod.NONE);
+        print("multi-seasonal, private profiles", DETECTOR_COUNT,
+                () -> new MultiSeasonalPointForecaster(multiSeasonalParams(0.1)));
+        print("multi-seasonal, shared fixed profiles", DETECTOR_COUNT,
+                () -> new MultiSeasonalPointForecaster(multiSeasonalParams(0.0)));
+        print("holt-winters, frequency=10080", HOLT_WINTERS_SAMPLE, () -> new HoltWintersForecaster(holtWintersParams));
+    }
+
+    // Fresh params per forecaster, as when each detector's config is read separately.
+    private static MultiSeasonalPointForecaster.Params multiSeasonalParams(double gamma) {
+        val dailyProfile = new float[24 * 60];
+        for (int i = 0; i < dailyProfile.length; i++) {
+            dailyProfile[i] = (float) (10.0 * Math.sin(2.0 * Math.PI * i / dailyProfile.length));
+        }
+        val weeklyProfile = new float[7 * 24];
+        for (int i = 5 * 24; i < weeklyProfile.length; i++) {
+            weeklyProfile[i] = -20.0f;
+        }
+        val daily = new MultiSeasonalPointForecaster.Season()
+                .setPeriodSeconds(86_400L)
+                .setSlots(dailyProfile.length)
+                .setGamma(gamma)
+                .setInitProfile(dailyProfile);
+        val weekly = new MultiSeasonalPointForecaster.Season()
+                .setPeriodSeconds(604_800L)
+                .setSlots(weeklyProfile.length)
+                .setGamma(gamma)
+                .setInitProfile(weeklyProfile);
+        return new MultiSeasonalPointForecaster.Params().setSeasons(Arrays.asList(daily, weekly));
+    }
+
+    private static void print(String name, int count, Supplier<PointForecaster> factory) {
+        val metricDefinition = TestObjectMother.metricDefinition();
+        val before = usedHeap();
+        val forecasters = new PointForecaster[count];
+        for (int i = 0; i < count; i++) {
+            forecasters[i] = factory.get();
+            forecasters[i].forecast(new MetricData(metricDefinition, 100.0, 1_500_000_000L));
+            forecasters[i].forecast(new MetricData(metricDefinition, 120.0, 1_500_000_060L));
+        }
+        val bytesPerForecaster = (usedHeap() - before) / count;
+        if (forecasters[count - 1] == null) {
+            throw new IllegalStateException();
+        }
+        System.out.printf("%s: %d bytes per forecaster, %.1f MB for %,d detectors%n",
+                name, bytesPerForecaster, bytesPerForecaster * (double) DETECTOR_COUNT / (1 << 20), DETECTOR_COUNT);
+    }
+
+    private static long usedHeap() {
+        val runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast.point;
+
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.util.TestObjectMother;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.expedia.adaptivealerting.core.anomaly.MutableAnomalyResult;
+import com.expedia.metrics.MetricData;
+import com.expedia.metrics.MetricDefinition;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.anomdetect.util.BatchTestUtil.assertBatchMatchesPerPoint;
+import static com.expedia.adaptivealerting.anomdetect.util.BatchTestUtil.valuesWithAnomalies;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.assertRoundTrip;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.readState;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.writeState;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MultiSeasonalPointForecasterTest {
+    private static final double TOLERANCE = 0.001;
+    private static final long HOUR = 3_600L;
+    private static final long DAY = 24 * HOUR;
+    private static final long WEEK = 7 * DAY;
+
+    private MetricDefinition metricDef;
+
+    @Before
+    public void setUp() {
+        this.metricDef = TestObjectMother.metricDefinition();
+    }
+
+    @Test
+    public void testForecast_learnsDailyAndWeeklySeasons() {
+        val forecaster = new MultiSeasonalPointForecaster(dailyAndWeeklyParams(0.05, 0.3));
+        val out = new MutableAnomalyResult();
+        double lastWeekError = 0.0;
+        for (long t = 0; t < 8 * WEEK; t += HOUR) {
+            val observed = dailyAndWeekly(t);
+            forecaster.forecast(new MetricData(metricDef, observed, t), out);
+            if (t >= 7 * WEEK) {
+                lastWeekError = Math.max(lastWeekError, Math.abs(out.getPredicted() - observed));
+            }
+        }
+        assertTrue("Max error in the last week: " + lastWeekError, lastWeekError < 2.0);
+    }
+
+    @Test
+    public void testForecast_firstObservationSetsLevel() {
+        val season = new MultiSeasonalPointForecaster.Season()
+                .setPeriodSeconds(DAY)
+                .setSlots(2)
+                .setInitProfile(new float[]{-5.0f, 5.0f});
+        val forecaster = new MultiSeasonalPointForecaster(paramsOf(season));
+        val out = new MutableAnomalyResult();
+
+        forecaster.forecast(new MetricData(metricDef, 100.0, 0L), out);
+        assertTrue(Double.isNaN(out.getPredicted()));
+
+        // Level is 105 after the first observation. The second half of the day uses the other slot.
+        forecaster.forecast(new MetricData(metricDef, 110.0, DAY / 2), out);
+        assertEquals(110.0, out.getPredicted(), TOLERANCE);
+    }
+
+    @Test
+    public void testForecast_indexesSlotsByTimestamp() {
+        val season = new MultiSeasonalPointForecaster.Season()
+                .setPeriodSeconds(DAY)
+                .setSlots(24)
+                .setGamma(0.0)
+                .setInitProfile(hourlyProfile());
+        val forecaster = new MultiSeasonalPointForecaster(paramsOf(season).setAlpha(0.0));
+        val out = new MutableAnomalyResult();
+        forecaster.forecast(new MetricData(metricDef, 100.0, 0L), out);
+
+        // A gap of several days and a few hours lands on the right slot, and negative timestamps wrap around.
+        forecaster.forecast(new MetricData(metricDef, Double.NaN, 3 * DAY + 5 * HOUR + 59L), out);
+        assertEquals(105.0, out.getPredicted(), TOLERANCE);
+        forecaster.forecast(new MetricData(metricDef, Double.NaN, -HOUR), out);
+        assertEquals(123.0, out.getPredicted(), TOLERANCE);
+    }
+
+    @Test
+    public void testForecast_profilesAreCopiedOnWrite() {
+        val first = new MultiSeasonalPointForecaster(dailyAndWeeklyParams(0.1, 0.5));
+        val second = new MultiSeasonalPointForecaster(dailyAndWeeklyParams(0.1, 0.5));
+        val out = new MutableAnomalyResult();
+        for (long t = 0; t < DAY; t += HOUR) {
+            first.forecast(new MetricData(metricDef, 1000.0 * (t % 3), t), out);
+        }
+
+        // The second forecaster still sees the initial profile.
+        second.forecast(new MetricData(metricDef, 100.0, 0L), out);
+        second.forecast(new MetricData(metricDef, 100.0, DAY / 2), out);
+        assertEquals(100.0, out.getPredicted(), TOLERANCE);
+    }
+
+    @Test
+    public void testGetUnsharedProfileBytes() {
+        val fixed = new MultiSeasonalPointForecaster(dailyAndWeeklyParams(0.1, 0.0));
+        assertEquals(0L, fixed.getUnsharedProfileBytes());
+        fixed.forecast(new MetricData(metricDef, 100.0, 0L), new MutableAnomalyResult());
+        fixed.forecast(new MetricData(metricDef, 200.0, HOUR), new MutableAnomalyResult());
+        assertEquals(0L, fixed.getUnsharedProfileBytes());
+
+        val adaptive = new MultiSeasonalPointForecaster(dailyAndWeeklyParams(0.1, 0.5));
+        assertEquals((24 + 7) * Float.BYTES, adaptive.getUnsharedProfileBytes());
+
+        // Copying the shared profiles on the first update doesn't change the count.
+        adaptive.forecast(new MetricData(metricDef, 100.0, 0L), new MutableAnomalyResult());
+        adaptive.forecast(new MetricData(metricDef, 200.0, HOUR), new MutableAnomalyResult());
+        assertEquals((24 + 7) * Float.BYTES, adaptive.getUnsharedProfileBytes());
+    }
+
+    @Test
+    public void testForecastHorizon() {
+        val season = new MultiSeasonalPointForecaster.Season()
+                .setPeriodSeconds(DAY)
+                .setSlots(24)
+                .setGamma(0.0)
+                .setInitProfile(hourlyProfile());
+        val forecaster = new MultiSeasonalPointForecaster(paramsOf(season).setAlpha(0.5));
+        val band = new ForecastBand(3);
+
+        forecaster.forecastHorizon(band);
+        assertTrue(Double.isNaN(band.getPredicted(0)));
+
+        val out = new MutableAnomalyResult();
+        forecaster.forecast(new MetricData(metricDef, 100.0, 0L), out);
+        forecaster.forecast(new MetricData(metricDef, 101.0, HOUR), out);
+        forecaster.forecastHorizon(band);
+
+        // Level stays 100 (the second observation matches its forecast); hours 2, 3, 4 come next.
+        assertEquals(102.0, band.getPredicted(0), TOLERANCE);
+        assertEquals(104.0, band.getPredicted(2), TOLERANCE);
+        assertEquals(1.0, band.getVarianceFactor(0), TOLERANCE);
+        assertEquals(1.5, band.getVarianceFactor(2), TOLERANCE);
+    }
+
+    @Test
+    public void testParamsShareProfile() {
+        val first = new MultiSeasonalPointForecaster.Season().setPeriodSeconds(DAY).setSlots(24)
+                .setInitProfile(hourlyProfile());
+        val second = new MultiSeasonalPointForecaster.Season().setPeriodSeconds(DAY).setSlots(24)
+                .setInitProfile(hourlyProfile());
+        new MultiSeasonalPointForecaster(paramsOf(first));
+        new MultiSeasonalPointForecaster(paramsOf(second));
+        assertSame(first.getInitProfile(), second.getInitProfile());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testForecast_nullMetricData() {
+        new MultiSeasonalPointForecaster(dailyAndWeeklyParams(0.1, 0.1)).forecast(null, new MutableAnomalyResult());
+    }
+
+    @Test
+    public void testBatchMatchesPerPoint() {
+        val values = valuesWithAnomalies(7L, 500);
+        assertBatchMatchesPerPoint(detector(), detector(), values, 64);
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException {
+        assertRoundTrip(detector(), detector(), 200);
+    }
+
+    @Test
+    public void testCheckpoint_keepsSharing() throws IOException {
+        val original = new MultiSeasonalPointForecaster(dailyAndWeeklyParams(0.1, 0.0));
+        val restored = new MultiSeasonalPointForecaster(dailyAndWeeklyParams(0.1, 0.0));
+        readState(restored, writeState(original));
+        assertEquals(0L, restored.getUnsharedProfileBytes());
+    }
+
+    @Test
+    public void testCheckpoint_fixedProfilesShareRestoredCopies() throws IOException {
+        val adaptive = new MultiSeasonalPointForecaster(dailyAndWeeklyParams(0.1, 0.5));
+        adaptive.forecast(new MetricData(metricDef, 100.0, 0L), new MutableAnomalyResult());
+        adaptive.forecast(new MetricData(metricDef, 200.0, HOUR), new MutableAnomalyResult());
+
+        val fixed = new MultiSeasonalPointForecaster(dailyAndWeeklyParams(0.1, 0.0));
+        readState(fixed, writeState(adaptive));
+        assertEquals(0L, fixed.getUnsharedProfileBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCheckpoint_differentSeasons() throws IOException {
+        val original = new MultiSeasonalPointForecaster(dailyAndWeeklyParams(0.1, 0.1));
+        val daily = new MultiSeasonalPointForecaster(paramsOf(
+                new MultiSeasonalPointForecaster.Season().setPeriodSeconds(DAY).setSlots(24)));
+        readState(daily, writeState(original));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCheckpoint_differentSlots() throws IOException {
+        val original = new MultiSeasonalPointForecaster(paramsOf(
+                new MultiSeasonalPointForecaster.Season().setPeriodSeconds(DAY).setSlots(24)));
+        val restored = new MultiSeasonalPointForecaster(paramsOf(
+                new MultiSeasonalPointForecaster.Season().setPeriodSeconds(DAY).setSlots(48)));
+        readState(restored, writeState(original));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_noSeasons() {
+        new MultiSeasonalPointForecaster.Params().validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_invalidAlpha() {
+        dailyAndWeeklyParams(1.5, 0.1).validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_slotsDontDividePeriod() {
+        paramsOf(new MultiSeasonalPointForecaster.Season().setPeriodSeconds(DAY).setSlots(7)).validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_invalidPeriod() {
+        paramsOf(new MultiSeasonalPointForecaster.Season().setPeriodSeconds(0L).setSlots(1)).validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_invalidSlots() {
+        paramsOf(new MultiSeasonalPointForecaster.Season().setPeriodSeconds(DAY).setSlots(0)).validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_invalidGamma() {
+        dailyAndWeeklyParams(0.1, -0.1).validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidate_profileLengthMismatch() {
+        paramsOf(new MultiSeasonalPointForecaster.Season()
+                .setPeriodSeconds(DAY)
+                .setSlots(24)
+                .setInitProfile(new float[12])).validate();
+    }
+
+    // Hourly data: a daily cycle plus a weekend dip.
+    private static double dailyAndWeekly(long epochSecond) {
+        val hourOfDay = (epochSecond % DAY) / HOUR;
+        val dayOfWeek = (epochSecond % WEEK) / DAY;
+        return 100.0 + 10.0 * Math.sin(2.0 * Math.PI * hourOfDay / 24.0) + (dayOfWeek >= 5 ? -30.0 : 0.0);
+    }
+
+    private static float[] hourlyProfile() {
+        val profile = new float[24];
+        for (int i = 0; i < profile.length; i++) {
+            profile[i] = i;
+        }
+        return profile;
+    }
+
+    private static MultiSeasonalPointForecaster.Params dailyAndWeeklyParams(double alpha, double gamma) {
+        val daily = new MultiSeasonalPointForecaster.Season()
+                .setPeriodSeconds(DAY)
+                .setSlots(24)
+                .setGamma(gamma);
+        val weekly = new MultiSeasonalPointForecaster.Season()
+                .setPeriodSeconds(WEEK)
+                .setSlots(7)
+                .setGamma(gamma);
+        return new MultiSeasonalPointForecaster.Params()
+                .setAlpha(alpha)
+                .setSeasons(Arrays.asList(daily, weekly));
+    }
+
+    private static MultiSeasonalPointForecaster.Params paramsOf(MultiSeasonalPointForecaster.Season season) {
+        return new MultiSeasonalPointForecaster.Params().setSeasons(Collections.singletonList(season));
+    }
+
+    private static ForecastingDetector detector() {
+        return new ForecastingDetector(
+                UUID.randomUUID(),
+                new MultiSeasonalPointForecaster(dailyAndWeeklyParams(0.15, 0.1)),
+                new ExponentialWelfordIntervalForecaster(),
+                AnomalyType.TWO_TAILED);
+    }
+}
@@ -17,6 +17,7 @@ package com.expedia.adaptivealerting.anomdetect.forecast.point;
 
 import com.expedia.adaptivealerting.anomdetect.comp.legacy.EwmaParams;
 import com.expedia.adaptivealerting.anomdetect.comp.legacy.PewmaParams;
+import com.expedia.adaptivealerting.anomdetect.forecast.ForecastBand;
 import com.expedia.adaptivealerting.anomdetect.util.TestObjectMother;
 import com.expedia.metrics.MetricData;
 import com.expedia.metrics.MetricDefinition;
@@ -33,6 +34,8 @@ import java.time.Instant;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 @Slf4j
 public final class PewmaPointForecasterTest {
@@ -105,6 +108,17 @@ public final class PewmaPointForecasterTest {
         }
     }
 
+    @Test
+    public void testForecast_reportsWarmup() {
+        val forecaster = new PewmaPointForecaster(new PewmaPointForecaster.Params().setWarmUpPeriod(3));
+
+        // The initial mean estimate counts as the first training value.
+        assertTrue(forecaster.forecast(new MetricData(metricDef, 10.0, epochSecond)).isWarmup());
+        assertTrue(forecaster.forecast(new MetricData(metricDef, 11.0, epochSecond + 1)).isWarmup());
+        assertFalse(forecaster.isWarmingUp());
+        assertFalse(forecaster.forecast(new MetricData(metricDef, 12.0, epochSecond + 2)).isWarmup());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testForecast_nullMetricData() {
         val forecaster = new PewmaPointForecaster();
@@ -160,4 +174,23 @@ public final class PewmaPointForecasterTest {
                 .build()
                 .parse();
     }
+
+    @Test
+    public void testForecastHorizon() {
+        val params = new PewmaPointForecaster.Params()
+                .setAlpha(0.2)
+                .setInitMeanEstimate(10.0);
+        val forecaster = new PewmaPointForecaster(params);
+        forecaster.forecast(new MetricData(metricDef, 12.0, epochSecond));
+        val mean = forecaster.getMean();
+
+        val band = new ForecastBand(2);
+        forecaster.forecastHorizon(band);
+
+        assertEquals(mean, band.getPredicted(0), TOLERANCE);
+        assertEquals(mean, band.getPredicted(1), TOLERANCE);
+        assertEquals(1.0, band.getVarianceFactor(0), TOLERANCE);
+        assertEquals(1.04, band.getVarianceFactor(1), TOLERANCE);
+        assertEquals(mean, forecaster.getMean(), TOLERANCE);
+    }
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast.point;
+
+import lombok.val;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class SeasonalProfileTest {
+
+    @Test
+    public void testOf_sharesEqualProfiles() {
+        val profile = SeasonalProfile.of(new float[]{1.0f, 2.0f, 3.0f});
+        val same = SeasonalProfile.of(new float[]{1.0f, 2.0f, 3.0f});
+        assertSame(profile, same);
+        assertSame(profile.values(), same.values());
+    }
+
+    @Test
+    public void testOf_keepsDifferentProfilesApart() {
+        val profile = SeasonalProfile.of(new float[]{1.0f, 2.0f, 3.0f});
+        val other = SeasonalProfile.of(new float[]{1.0f, 2.0f, 4.0f});
+        assertNotSame(profile, other);
+        assertNotEquals(profile, other);
+    }
+
+    @Test
+    public void testEquals() {
+        val profile = SeasonalProfile.of(new float[]{5.0f});
+        assertEquals(profile, profile);
+        assertEquals(profile.hashCode(), SeasonalProfile.of(new float[]{5.0f}).hashCode());
+        assertNotEquals(profile, "profile");
+    }
+}
@@ -15,14 +15,22 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters;
 
+import com.expedia.adaptivealerting.anomdetect.DetectorCheckpointException;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.HoltWintersForecaster;
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.Random;
+
 import static com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersAustouristsTestHelper.ADDITIVE_IDENTITY_SEASONALS;
 import static com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersAustouristsTestHelper.MULTIPLICATIVE_IDENTITY_SEASONALS;
 import static com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersAustouristsTestHelper.buildAustouristsParams;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.readState;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.writeState;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class HoltWintersOnlineComponentsTest {
     private static final double TOLERANCE = 0;
@@ -71,4 +79,74 @@ public class HoltWintersOnlineComponentsTest {
         final HoltWintersForecaster.Params params = buildAustouristsParams(SeasonalityType.MULTIPLICATIVE, initLevelEstimate, initBaseEstimate, initSeasonalEstimates);
         new HoltWintersOnlineComponents(params);
     }
+
+    @Test
+    public void testGetSeasonal_returnsBackingArray() {
+        final HoltWintersForecaster.Params params = buildAustouristsParams(SeasonalityType.ADDITIVE);
+        HoltWintersOnlineComponents subject = new HoltWintersOnlineComponents(params);
+        final double[] seasonal = subject.getSeasonal();
+        assertSame(seasonal, subject.getSeasonal());
+
+        subject.setSeasonal(2, 42.0, 1.0);
+        assertEquals(42.0, seasonal[2], TOLERANCE);
+    }
+
+    @Test
+    public void testSeasonalStandardDeviation_matchesSummaryStatistics() {
+        final HoltWintersForecaster.Params params = buildAustouristsParams(SeasonalityType.MULTIPLICATIVE);
+        final int frequency = params.getFrequency();
+        HoltWintersOnlineComponents subject = new HoltWintersOnlineComponents(params);
+
+        // The replaced implementation kept one SummaryStatistics per season, seeded with the initial seasonal.
+        final SummaryStatistics[] expected = new SummaryStatistics[frequency];
+        for (int i = 0; i < frequency; i++) {
+            expected[i] = new SummaryStatistics();
+            expected[i].addValue(subject.getSeasonal(i));
+        }
+
+        final Random random = new Random(42L);
+        for (int i = 0; i < 1000; i++) {
+            final int seasonalIdx = i % frequency;
+            final double observed = 1000.0 + 100.0 * random.nextGaussian();
+            subject.addValue(observed);
+            subject.setSeasonal(seasonalIdx, random.nextDouble(), observed);
+            expected[seasonalIdx].addValue(observed);
+        }
+
+        assertEquals(1000, subject.getN());
+        for (int i = 0; i < frequency; i++) {
+            final double expectedStdDev = expected[i].getStandardDeviation();
+            assertEquals(expectedStdDev, subject.getSeasonalStandardDeviation(i), expectedStdDev * 1e-12);
+        }
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException {
+        final HoltWintersForecaster.Params params = buildAustouristsParams(SeasonalityType.MULTIPLICATIVE);
+        HoltWintersOnlineComponents original = new HoltWintersOnlineComponents(params);
+        for (int i = 0; i < 10; i++) {
+            original.addValue(i);
+            original.setLevel(original.getLevel() + i);
+            original.setSeasonal(i % params.getFrequency(), 1.0 + i / 10.0, i);
+        }
+
+        HoltWintersOnlineComponents restored = new HoltWintersOnlineComponents(params);
+        readState(restored, writeState(original));
+
+        assertEquals(original.getN(), restored.getN());
+        assertEquals(original.getLevel(), restored.getLevel(), TOLERANCE);
+        assertEquals(original.getBase(), restored.getBase(), TOLERANCE);
+        assertArrayEquals(original.getSeasonal(), restored.getSeasonal(), TOLERANCE);
+        assertEquals(original.getCurrentSeasonalIndex(), restored.getCurrentSeasonalIndex());
+        for (int i = 0; i < params.getFrequency(); i++) {
+            assertEquals(original.getSeasonalStandardDeviation(i), restored.getSeasonalStandardDeviation(i), TOLERANCE);
+        }
+    }
+
+    @Test(expected = DetectorCheckpointException.class)
+    public void testCheckpoint_differentFrequency() throws IOException {
+        final HoltWintersForecaster.Params params = buildAustouristsParams(SeasonalityType.MULTIPLICATIVE);
+        HoltWintersOnlineComponents original = new HoltWintersOnlineComponents(params);
+        readState(new HoltWintersOnlineComponents(params.setFrequency(5)), writeState(original));
+    }
 }
@@ -15,12 +15,18 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters;
 
+import com.expedia.adaptivealerting.anomdetect.DetectorCheckpointException;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.HoltWintersForecaster;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.io.IOException;
+
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.readState;
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.writeState;
+
 public class HoltWintersSimpleTrainingModelTest {
     @Rule
     public ExpectedException expectedEx = ExpectedException.none();
@@ -31,6 +37,24 @@ public class HoltWintersSimpleTrainingModelTest {
         checkObserveAndTrain(SeasonalityType.ADDITIVE, HoltWintersAustouristsTestHelper.ADD_LEVEL, HoltWintersAustouristsTestHelper.ADD_BASE, HoltWintersAustouristsTestHelper.ADD_SEASONAL);
     }
 
+    @Test
+    public void testObserveAndTrain_releasesObservations() {
+        HoltWintersForecaster.Params params = HoltWintersAustouristsTestHelper.buildAustouristsParams(SeasonalityType.MULTIPLICATIVE)
+                .setInitTrainingMethod(HoltWintersTrainingMethod.SIMPLE);
+        HoltWintersOnlineComponents components = new HoltWintersOnlineComponents(params);
+        HoltWintersSimpleTrainingModel subject = new HoltWintersSimpleTrainingModel(params);
+        Assert.assertFalse(subject.isHoldingObservations());
+
+        double[] values = HoltWintersAustouristsTestHelper.AUSTOURISTS_FIRST_TWO_SEASONS;
+        for (int i = 0; i < values.length - 1; i++) {
+            subject.observeAndTrain(values[i], params, components);
+            Assert.assertTrue(subject.isHoldingObservations());
+        }
+        subject.observeAndTrain(values[values.length - 1], params, components);
+        Assert.assertTrue(subject.isTrainingComplete(params));
+        Assert.assertFalse(subject.isHoldingObservations());
+    }
+
     @Test
     public void testNullParamFails() {
         expectedEx.expect(IllegalArgumentException.class);
@@ -73,6 +97,59 @@ public class HoltWintersSimpleTrainingModelTest {
         }
     }
 
+    @Test
+    public void testCheckpointMidTraining() throws IOException {
+        HoltWintersForecaster.Params params = HoltWintersAustouristsTestHelper.buildAustouristsParams(SeasonalityType.MULTIPLICATIVE)
+                .setInitTrainingMethod(HoltWintersTrainingMethod.SIMPLE);
+        double[] values = HoltWintersAustouristsTestHelper.AUSTOURISTS_FIRST_TWO_SEASONS;
+        HoltWintersOnlineComponents components = new HoltWintersOnlineComponents(params);
+        HoltWintersSimpleTrainingModel original = new HoltWintersSimpleTrainingModel(params);
+        for (int i = 0; i < 5; i++) {
+            original.observeAndTrain(values[i], params, components);
+        }
+
+        HoltWintersSimpleTrainingModel restored = new HoltWintersSimpleTrainingModel(params);
+        readState(restored, writeState(original));
+        for (int i = 5; i < values.length; i++) {
+            restored.observeAndTrain(values[i], params, components);
+        }
+
+        Assert.assertEquals(HoltWintersAustouristsTestHelper.MULT_LEVEL, components.getLevel(), HoltWintersAustouristsTestHelper.TOLERANCE);
+        Assert.assertEquals(HoltWintersAustouristsTestHelper.MULT_BASE, components.getBase(), HoltWintersAustouristsTestHelper.TOLERANCE);
+        Assert.assertArrayEquals(HoltWintersAustouristsTestHelper.MULT_SEASONAL, components.getSeasonal(), HoltWintersAustouristsTestHelper.TOLERANCE);
+    }
+
+    @Test
+    public void testCheckpointAfterTraining() throws IOException {
+        HoltWintersForecaster.Params params = HoltWintersAustouristsTestHelper.buildAustouristsParams(SeasonalityType.MULTIPLICATIVE)
+                .setInitTrainingMethod(HoltWintersTrainingMethod.SIMPLE);
+        HoltWintersOnlineComponents components = new HoltWintersOnlineComponents(params);
+        HoltWintersSimpleTrainingModel original = new HoltWintersSimpleTrainingModel(params);
+        for (double v : HoltWintersAustouristsTestHelper.AUSTOURISTS_FIRST_TWO_SEASONS) {
+            original.observeAndTrain(v, params, components);
+        }
+
+        // The captured training values aren't needed once training is complete, so only the header, frequency and
+        // count are written.
+        byte[] state = writeState(original);
+        Assert.assertEquals(3 * Integer.BYTES, state.length);
+
+        HoltWintersSimpleTrainingModel restored = new HoltWintersSimpleTrainingModel(params);
+        readState(restored, state);
+        Assert.assertTrue(restored.isTrainingComplete(params));
+    }
+
+    @Test
+    public void testCheckpointInvalidCount() throws IOException {
+        expectedEx.expect(DetectorCheckpointException.class);
+        HoltWintersForecaster.Params params = HoltWintersAustouristsTestHelper.buildAustouristsParams(SeasonalityType.MULTIPLICATIVE);
+        byte[] state = writeState(new HoltWintersSimpleTrainingModel(params));
+
+        // Header and frequency (4 bytes each), then the count.
+        state[2 * Integer.BYTES] = -1;
+        readState(new HoltWintersSimpleTrainingModel(params), state);
+    }
+
     private void checkObserveAndTrain(SeasonalityType seasonalityType, double expectedLevel, double expectedBase, double[] expectedSeasonal) {
         HoltWintersForecaster.Params params = HoltWintersAustouristsTestHelper.buildAustouristsParams(seasonalityType)
                 .setInitTrainingMethod(HoltWintersTrainingMethod.SIMPLE);
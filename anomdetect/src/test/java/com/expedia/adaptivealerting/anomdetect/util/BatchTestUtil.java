@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.util;
+
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import com.expedia.metrics.MetricData;
+import lombok.val;
+
+import java.util.Arrays;
+
+import static com.expedia.adaptivealerting.anomdetect.util.CheckpointTestUtil.writeState;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Helpers for checking batch classification against per-point classification.
+ */
+public final class BatchTestUtil {
+
+    /**
+     * Returns reproducible metric values, noisy around 100, with a spike every 37 points and a dip every 53.
+     */
+    public static double[] valuesWithAnomalies(long seed, int count) {
+        val values = CheckpointTestUtil.values(seed, count);
+        for (int i = 36; i < count; i += 37) {
+            values[i] += 80.0;
+        }
+        for (int i = 52; i < count; i += 53) {
+            values[i] -= 80.0;
+        }
+        return values;
+    }
+
+    /**
+     * Classifies the values per point with one detector and in batches with another, identically configured, detector,
+     * and checks that both give exactly the same results and end up in the same state.
+     */
+    public static void assertBatchMatchesPerPoint(Detector perPoint, Detector batch, double[] values, int batchSize) {
+        val batchResult = new AnomalyBatchResult();
+        for (int from = 0; from < values.length; from += batchSize) {
+            val to = Math.min(values.length, from + batchSize);
+            val batchValues = Arrays.copyOfRange(values, from, to);
+            val timestamps = new long[batchValues.length];
+            for (int i = 0; i < timestamps.length; i++) {
+                timestamps[i] = 1_500_000_000L + 60L * (from + i);
+            }
+
+            batch.classify(timestamps, batchValues, batchResult);
+            assertEquals(batchValues.length, batchResult.getSize());
+
+            for (int i = 0; i < batchValues.length; i++) {
+                val metricData = new MetricData(TestObjectMother.metricDefinition(), batchValues[i], timestamps[i]);
+                val expected = perPoint.classify(metricData);
+                assertEquals("Classification " + (from + i), expected, batchResult.toAnomalyResult(i));
+            }
+        }
+        assertArrayEquals("Detector state", writeState(perPoint), writeState(batch));
+    }
+}
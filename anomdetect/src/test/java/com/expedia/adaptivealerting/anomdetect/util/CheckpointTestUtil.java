@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.util;
+
+import com.expedia.adaptivealerting.anomdetect.checkpoint.Checkpointable;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.metrics.MetricData;
+import lombok.val;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Helpers for {@link Checkpointable} round-trip tests.
+ */
+public final class CheckpointTestUtil {
+
+    public static byte[] writeState(Checkpointable checkpointable) {
+        try {
+            val bytes = new ByteArrayOutputStream();
+            checkpointable.writeState(new DataOutputStream(bytes));
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Restores the state and checks that all of it was consumed.
+     */
+    public static void readState(Checkpointable checkpointable, byte[] state) throws IOException {
+        val in = new DataInputStream(new ByteArrayInputStream(state));
+        checkpointable.readState(in);
+        assertEquals("Unread state bytes", 0, in.available());
+    }
+
+    /**
+     * Returns reproducible metric values, noisy around 100.
+     */
+    public static double[] values(long seed, int count) {
+        val random = new Random(seed);
+        val values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = 100.0 + 10.0 * random.nextGaussian();
+        }
+        return values;
+    }
+
+    public static void classify(Detector detector, double[] values) {
+        for (int i = 0; i < values.length; i++) {
+            detector.classify(metricData(values[i], i));
+        }
+    }
+
+    /**
+     * Checks that the restored detector classifies the given values exactly as the original does.
+     */
+    public static void assertSameClassifications(Detector original, Detector restored, double[] values) {
+        for (int i = 0; i < values.length; i++) {
+            val metricData = metricData(values[i], i);
+            assertEquals("Classification " + i, original.classify(metricData), restored.classify(metricData));
+        }
+    }
+
+    /**
+     * Checkpoints a warmed-up detector into a fresh one, then checks both behave identically afterwards.
+     */
+    public static void assertRoundTrip(Detector original, Detector fresh, int warmUpCount) throws IOException {
+        classify(original, values(1L, warmUpCount));
+        readState(fresh, writeState(original));
+        assertSameClassifications(original, fresh, values(2L, 100));
+    }
+
+    private static MetricData metricData(double value, int i) {
+        return new MetricData(TestObjectMother.metricDefinition(), value, 1_500_000_000L + 60L * i);
+    }
+}
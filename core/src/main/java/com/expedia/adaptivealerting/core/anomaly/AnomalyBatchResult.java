@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.core.anomaly;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+
+/**
+ * <p>
+ * Anomaly results for a batch of observations, stored column-wise in primitive arrays so that detectors can classify a
+ * whole batch without allocating an {@link AnomalyResult} per observation. Element {@code i} holds the result for the
+ * {@code i}th observation of the batch.
+ * </p>
+ * <p>
+ * Absent values (e.g. a detector that doesn't produce a point forecast) are stored as {@link Double#NaN}, and map to
+ * {@code null} in {@link #toAnomalyResult(int)}. The arrays are reused across batches and grow as needed, so they may be
+ * longer than the batch size. Elements at or beyond the size are meaningless.
+ * </p>
+ */
+public final class AnomalyBatchResult {
+    private static final double[] EMPTY = new double[0];
+
+    @Getter
+    private int size;
+
+    @Getter
+    private AnomalyLevel[] anomalyLevels = new AnomalyLevel[0];
+
+    @Getter
+    private double[] predicted = EMPTY;
+
+    @Getter
+    private double[] upperStrong = EMPTY;
+
+    @Getter
+    private double[] upperWeak = EMPTY;
+
+    @Getter
+    private double[] lowerWeak = EMPTY;
+
+    @Getter
+    private double[] lowerStrong = EMPTY;
+
+    public AnomalyBatchResult() {
+        this(0);
+    }
+
+    /**
+     * Creates a batch result with room for the given number of observations.
+     *
+     * @param capacity Initial capacity.
+     */
+    public AnomalyBatchResult(int capacity) {
+        ensureCapacity(capacity);
+    }
+
+    /**
+     * Prepares this result for a batch of the given size, growing the arrays if needed. Detectors call this before
+     * writing the batch, and then set every column for every element.
+     *
+     * @param size Batch size.
+     */
+    public void reset(int size) {
+        ensureCapacity(size);
+        this.size = size;
+    }
+
+    /**
+     * Sets the result for the {@code i}th observation.
+     *
+     * @param i            Index into the batch.
+     * @param anomalyLevel Anomaly level.
+     * @param predicted    Point forecast, or NaN if absent.
+     * @param upperStrong  Upper strong threshold, or NaN if absent.
+     * @param upperWeak    Upper weak threshold, or NaN if absent.
+     * @param lowerWeak    Lower weak threshold, or NaN if absent.
+     * @param lowerStrong  Lower strong threshold, or NaN if absent.
+     */
+    public void set(
+            int i,
+            AnomalyLevel anomalyLevel,
+            double predicted,
+            double upperStrong,
+            double upperWeak,
+            double lowerWeak,
+            double lowerStrong) {
+
+        this.anomalyLevels[i] = anomalyLevel;
+        this.predicted[i] = predicted;
+        this.upperStrong[i] = upperStrong;
+        this.upperWeak[i] = upperWeak;
+        this.lowerWeak[i] = lowerWeak;
+        this.lowerStrong[i] = lowerStrong;
+    }
+
+    /**
+     * Copies a single result into the {@code i}th element.
+     *
+     * @param i      Index into the batch.
+     * @param result Anomaly result.
+     */
+    public void set(int i, MutableAnomalyResult result) {
+        set(i, result.getAnomalyLevel(),
+                result.getPredicted(),
+                result.getUpperStrong(),
+                result.getUpperWeak(),
+                result.getLowerWeak(),
+                result.getLowerStrong());
+    }
+
+    /**
+     * Returns the {@code i}th result as an {@link AnomalyResult}. Allocates, so it's meant for callers that need the
+     * object form of a few results rather than for the hot path.
+     *
+     * @param i Index into the batch.
+     * @return Anomaly result.
+     */
+    public AnomalyResult toAnomalyResult(int i) {
+        isTrue(i >= 0 && i < size, "Required: 0 <= i < size");
+        return MutableAnomalyResult.toAnomalyResult(
+                anomalyLevels[i], predicted[i], upperStrong[i], upperWeak[i], lowerWeak[i], lowerStrong[i]);
+    }
+
+    private void ensureCapacity(int capacity) {
+        isTrue(capacity >= 0, "Required: capacity >= 0");
+        if (capacity <= anomalyLevels.length) {
+            return;
+        }
+        this.anomalyLevels = Arrays.copyOf(anomalyLevels, capacity);
+        this.predicted = Arrays.copyOf(predicted, capacity);
+        this.upperStrong = Arrays.copyOf(upperStrong, capacity);
+        this.upperWeak = Arrays.copyOf(upperWeak, capacity);
+        this.lowerWeak = Arrays.copyOf(lowerWeak, capacity);
+        this.lowerStrong = Arrays.copyOf(lowerStrong, capacity);
+    }
+}
@@ -22,7 +22,6 @@ import lombok.Data;
 import lombok.Setter;
 
 import static com.expedia.adaptivealerting.core.util.AssertUtil.isFalse;
-import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
 
 // TODO Rename this to IntervalForecast, but preserve "thresholds" JSON name. [WLW]
 
@@ -47,22 +46,24 @@ public class AnomalyThresholds {
         isFalse(upperStrong == null && upperWeak == null && lowerWeak == null && lowerStrong == null,
                 "At least one of the thresholds must be not null");
 
-        if (upperStrong != null) {
-            isTrue(upperWeak == null || upperStrong >= upperWeak, String.format("Required: upperStrong (%f) >= upperWeak (%f)", upperStrong, upperWeak));
-            isTrue(lowerWeak == null || upperStrong >= lowerWeak, String.format("Required: upperStrong (%f) >= lowerWeak (%f)", upperStrong, lowerWeak));
-            isTrue(lowerStrong == null || upperStrong >= lowerStrong, String.format("Required: upperStrong (%f) >= lowerStrong (%f)", upperStrong, lowerStrong));
-        }
-        if (upperWeak != null) {
-            isTrue(lowerWeak == null || upperWeak >= lowerWeak, String.format("Required: upperWeak (%f) >= lowerWeak (%f)", upperWeak, lowerWeak));
-            isTrue(lowerStrong == null || upperWeak >= lowerStrong, String.format("Required: upperWeak (%f) >= lowerStrong (%f)", upperWeak, lowerStrong));
-        }
-        if (lowerWeak != null) {
-            isTrue(lowerStrong == null || lowerWeak >= lowerStrong, String.format("Required: lowerWeak (%f) >= lowerStrong (%f)", lowerWeak, lowerStrong));
-        }
+        // Only format the messages on failure. Thresholds are created for every classification.
+        checkOrder(upperStrong, upperWeak, "upperStrong", "upperWeak");
+        checkOrder(upperStrong, lowerWeak, "upperStrong", "lowerWeak");
+        checkOrder(upperStrong, lowerStrong, "upperStrong", "lowerStrong");
+        checkOrder(upperWeak, lowerWeak, "upperWeak", "lowerWeak");
+        checkOrder(upperWeak, lowerStrong, "upperWeak", "lowerStrong");
+        checkOrder(lowerWeak, lowerStrong, "lowerWeak", "lowerStrong");
 
         this.upperStrong = upperStrong;
         this.upperWeak = upperWeak;
         this.lowerStrong = lowerStrong;
         this.lowerWeak = lowerWeak;
     }
+
+    private static void checkOrder(Double higher, Double lower, String higherName, String lowerName) {
+        if (higher != null && lower != null && !(higher >= lower)) {
+            throw new IllegalArgumentException(
+                    String.format("Required: %s (%f) >= %s (%f)", higherName, higher, lowerName, lower));
+        }
+    }
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.core.anomaly;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.val;
+
+/**
+ * <p>
+ * Caller-owned, reusable anomaly result with primitive fields. Detectors classify into one of these so the hot path
+ * doesn't allocate an {@link AnomalyResult}, an {@link AnomalyThresholds} and their boxed doubles per observation.
+ * </p>
+ * <p>
+ * Absent values (e.g. a detector that doesn't produce a point forecast) are stored as {@link Double#NaN}, and map to
+ * {@code null} in {@link #toAnomalyResult()}. A classification overwrites every field, so a single instance can be
+ * reused for any number of classifications, but not shared between threads.
+ * </p>
+ */
+@Getter
+public final class MutableAnomalyResult {
+
+    @Setter
+    private AnomalyLevel anomalyLevel;
+
+    /**
+     * Point forecast, or NaN if absent.
+     */
+    @Setter
+    private double predicted = Double.NaN;
+
+    private double upperStrong = Double.NaN;
+    private double upperWeak = Double.NaN;
+    private double lowerWeak = Double.NaN;
+    private double lowerStrong = Double.NaN;
+
+    /**
+     * Sets all fields.
+     *
+     * @param anomalyLevel Anomaly level.
+     * @param predicted    Point forecast, or NaN if absent.
+     * @param upperStrong  Upper strong threshold, or NaN if absent.
+     * @param upperWeak    Upper weak threshold, or NaN if absent.
+     * @param lowerWeak    Lower weak threshold, or NaN if absent.
+     * @param lowerStrong  Lower strong threshold, or NaN if absent.
+     */
+    public void set(
+            AnomalyLevel anomalyLevel,
+            double predicted,
+            double upperStrong,
+            double upperWeak,
+            double lowerWeak,
+            double lowerStrong) {
+
+        this.anomalyLevel = anomalyLevel;
+        this.predicted = predicted;
+        setThresholds(upperStrong, upperWeak, lowerWeak, lowerStrong);
+    }
+
+    /**
+     * Sets all fields from an {@link AnomalyResult}. Null values are stored as NaN.
+     *
+     * @param result Anomaly result.
+     */
+    public void set(AnomalyResult result) {
+        val thresholds = result.getThresholds();
+        val none = thresholds == null;
+        set(result.getAnomalyLevel(),
+                toDouble(result.getPredicted()),
+                none ? Double.NaN : toDouble(thresholds.getUpperStrong()),
+                none ? Double.NaN : toDouble(thresholds.getUpperWeak()),
+                none ? Double.NaN : toDouble(thresholds.getLowerWeak()),
+                none ? Double.NaN : toDouble(thresholds.getLowerStrong()));
+    }
+
+    public void setThresholds(double upperStrong, double upperWeak, double lowerWeak, double lowerStrong) {
+        this.upperStrong = upperStrong;
+        this.upperWeak = upperWeak;
+        this.lowerWeak = lowerWeak;
+        this.lowerStrong = lowerStrong;
+    }
+
+    /**
+     * Returns this result as a new {@link AnomalyResult}.
+     *
+     * @return Anomaly result.
+     */
+    public AnomalyResult toAnomalyResult() {
+        return toAnomalyResult(anomalyLevel, predicted, upperStrong, upperWeak, lowerWeak, lowerStrong);
+    }
+
+    static AnomalyResult toAnomalyResult(
+            AnomalyLevel anomalyLevel,
+            double predicted,
+            double upperStrong,
+            double upperWeak,
+            double lowerWeak,
+            double lowerStrong) {
+
+        val result = new AnomalyResult(anomalyLevel).setPredicted(toBoxed(predicted));
+        val us = toBoxed(upperStrong);
+        val uw = toBoxed(upperWeak);
+        val lw = toBoxed(lowerWeak);
+        val ls = toBoxed(lowerStrong);
+        if (us != null || uw != null || lw != null || ls != null) {
+            result.setThresholds(new AnomalyThresholds(us, uw, lw, ls));
+        }
+        return result;
+    }
+
+    private static double toDouble(Double value) {
+        return value == null ? Double.NaN : value;
+    }
+
+    private static Double toBoxed(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+}
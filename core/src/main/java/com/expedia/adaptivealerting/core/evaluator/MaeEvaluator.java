@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.core.evaluator;
+
+/**
+ * Calculates mean absolute error. https://en.wikipedia.org/wiki/Mean_absolute_error.
+ */
+public class MaeEvaluator implements Evaluator {
+
+    private int n;
+    private double absErrorSum;
+
+    /**
+     * Creates a new MaeEvaluator. Initial n and absolute error sum values are set to 0.
+     */
+    public MaeEvaluator() {
+        reset();
+    }
+
+    @Override
+    public void update(double observed, double predicted) {
+        this.absErrorSum += Math.abs(observed - predicted);
+        this.n++;
+    }
+
+    @Override
+    public ModelEvaluation evaluate() {
+        double mae = absErrorSum / n;
+        return new ModelEvaluation("mae", mae);
+    }
+
+    @Override
+    public void reset() {
+        this.n = 0;
+        this.absErrorSum = 0;
+    }
+}
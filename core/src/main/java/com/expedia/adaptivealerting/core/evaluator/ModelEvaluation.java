@@ -17,11 +17,13 @@ package com.expedia.adaptivealerting.core.evaluator;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.ToString;
 
 /**
  * Model Evaluation
  */
 @AllArgsConstructor
+@ToString
 public class ModelEvaluation {
 
     @Getter
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.core.evaluator;
+
+/**
+ * Calculates symmetric mean absolute percentage error, as a percentage in the range [0, 200].
+ * https://en.wikipedia.org/wiki/Symmetric_mean_absolute_percentage_error. Unlike RMSE and MAE this is scale-free, so
+ * scores are comparable across metrics. Observations where both the observed and predicted values are 0 count as a
+ * perfect prediction.
+ */
+public class SmapeEvaluator implements Evaluator {
+
+    private int n;
+    private double ratioSum;
+
+    /**
+     * Creates a new SmapeEvaluator. Initial n and ratio sum values are set to 0.
+     */
+    public SmapeEvaluator() {
+        reset();
+    }
+
+    @Override
+    public void update(double observed, double predicted) {
+        double denominator = Math.abs(observed) + Math.abs(predicted);
+        if (denominator != 0.0) {
+            this.ratioSum += Math.abs(observed - predicted) / denominator;
+        }
+        this.n++;
+    }
+
+    @Override
+    public ModelEvaluation evaluate() {
+        double smape = 200.0 * ratioSum / n;
+        return new ModelEvaluation("smape", smape);
+    }
+
+    @Override
+    public void reset() {
+        this.n = 0;
+        this.ratioSum = 0;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.core.anomaly;
+
+import lombok.val;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public final class AnomalyBatchResultTest {
+    private static final double TOLERANCE = 0.001;
+
+    @Test
+    public void testReset_growsAndKeepsArrays() {
+        val batch = new AnomalyBatchResult(4);
+        val predicted = batch.getPredicted();
+
+        batch.reset(3);
+        assertEquals(3, batch.getSize());
+        assertSame(predicted, batch.getPredicted());
+
+        batch.reset(10);
+        assertEquals(10, batch.getSize());
+        assertTrue(batch.getPredicted().length >= 10);
+        assertTrue(batch.getAnomalyLevels().length >= 10);
+        assertTrue(batch.getLowerStrong().length >= 10);
+    }
+
+    @Test
+    public void testSetAndToAnomalyResult() {
+        val batch = new AnomalyBatchResult();
+        batch.reset(2);
+        batch.set(0, AnomalyLevel.WEAK, 10.0, 14.0, 12.0, 8.0, 6.0);
+        batch.set(1, AnomalyLevel.MODEL_WARMUP, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+
+        val first = batch.toAnomalyResult(0);
+        assertEquals(AnomalyLevel.WEAK, first.getAnomalyLevel());
+        assertEquals(10.0, first.getPredicted(), TOLERANCE);
+        assertEquals(new AnomalyThresholds(14.0, 12.0, 8.0, 6.0), first.getThresholds());
+
+        val second = batch.toAnomalyResult(1);
+        assertEquals(AnomalyLevel.MODEL_WARMUP, second.getAnomalyLevel());
+        assertNull(second.getPredicted());
+        assertNull(second.getThresholds());
+    }
+
+    @Test
+    public void testSetFromMutableAnomalyResult() {
+        val batch = new AnomalyBatchResult(2);
+        batch.reset(2);
+
+        val result = new MutableAnomalyResult();
+        result.set(AnomalyLevel.STRONG, 5.0, 9.0, Double.NaN, Double.NaN, 1.0);
+        batch.set(0, result);
+        result.set(AnomalyLevel.NORMAL, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+        batch.set(1, result);
+
+        val expected = new AnomalyResult(AnomalyLevel.STRONG)
+                .setPredicted(5.0)
+                .setThresholds(new AnomalyThresholds(9.0, null, null, 1.0));
+        assertEquals(expected, batch.toAnomalyResult(0));
+        assertTrue(Double.isNaN(batch.getUpperWeak()[0]));
+        assertEquals(new AnomalyResult(AnomalyLevel.NORMAL), batch.toAnomalyResult(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testToAnomalyResult_outOfRange() {
+        val batch = new AnomalyBatchResult(4);
+        batch.reset(1);
+        batch.toAnomalyResult(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReset_negativeSize() {
+        new AnomalyBatchResult().reset(-1);
+    }
+}
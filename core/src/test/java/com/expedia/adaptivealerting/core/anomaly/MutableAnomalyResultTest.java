@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.core.anomaly;
+
+import lombok.val;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class MutableAnomalyResultTest {
+    private static final double TOLERANCE = 0.001;
+
+    @Test
+    public void testDefaults() {
+        val result = new MutableAnomalyResult();
+        assertNull(result.getAnomalyLevel());
+        assertTrue(Double.isNaN(result.getPredicted()));
+        assertTrue(Double.isNaN(result.getUpperStrong()));
+        assertTrue(Double.isNaN(result.getLowerStrong()));
+    }
+
+    @Test
+    public void testToAnomalyResult() {
+        val result = new MutableAnomalyResult();
+        result.setAnomalyLevel(AnomalyLevel.WEAK);
+        result.setPredicted(10.0);
+        result.setThresholds(14.0, 12.0, 8.0, 6.0);
+
+        val anomalyResult = result.toAnomalyResult();
+        assertEquals(AnomalyLevel.WEAK, anomalyResult.getAnomalyLevel());
+        assertEquals(10.0, anomalyResult.getPredicted(), TOLERANCE);
+        assertEquals(new AnomalyThresholds(14.0, 12.0, 8.0, 6.0), anomalyResult.getThresholds());
+    }
+
+    @Test
+    public void testToAnomalyResult_absentValues() {
+        val result = new MutableAnomalyResult();
+        result.set(AnomalyLevel.MODEL_WARMUP, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+        assertEquals(new AnomalyResult(AnomalyLevel.MODEL_WARMUP), result.toAnomalyResult());
+    }
+
+    @Test
+    public void testSetFromAnomalyResult_roundTrip() {
+        val result = new MutableAnomalyResult();
+
+        val withThresholds = new AnomalyResult(AnomalyLevel.STRONG)
+                .setPredicted(5.0)
+                .setThresholds(new AnomalyThresholds(null, null, 2.0, 1.0));
+        result.set(withThresholds);
+        assertTrue(Double.isNaN(result.getUpperStrong()));
+        assertEquals(withThresholds, result.toAnomalyResult());
+
+        // Overwrites everything, including the thresholds of the previous result.
+        val withoutThresholds = new AnomalyResult(AnomalyLevel.NORMAL);
+        result.set(withoutThresholds);
+        assertEquals(withoutThresholds, result.toAnomalyResult());
+    }
+}
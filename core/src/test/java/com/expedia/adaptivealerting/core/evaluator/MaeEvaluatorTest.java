@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.core.evaluator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MaeEvaluatorTest {
+    private static final double TOLERANCE = 1e-9;
+
+    // Class under test
+    private MaeEvaluator evaluator;
+
+    @Before
+    public void setUp() {
+        this.evaluator = new MaeEvaluator();
+    }
+
+    @Test
+    public void testScore() {
+        evaluator.update(10.0, 12.0);
+        assertEquals(2.0, evaluator.evaluate().getEvaluatorScore(), TOLERANCE);
+        evaluator.update(10.0, 6.0);
+        assertEquals(3.0, evaluator.evaluate().getEvaluatorScore(), TOLERANCE);
+        evaluator.update(-1.0, -1.0);
+        assertEquals(2.0, evaluator.evaluate().getEvaluatorScore(), TOLERANCE);
+        assertEquals("mae", evaluator.evaluate().getEvaluatorMethod());
+    }
+
+    @Test
+    public void testReset() {
+        evaluator.update(10.0, 12.0);
+        evaluator.reset();
+        evaluator.update(5.0, 4.0);
+        assertEquals(1.0, evaluator.evaluate().getEvaluatorScore(), TOLERANCE);
+    }
+}
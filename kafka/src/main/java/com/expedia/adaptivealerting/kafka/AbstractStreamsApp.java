@@ -15,8 +15,10 @@
  */
 package com.expedia.adaptivealerting.kafka;
 
-import com.codahale.metrics.JmxReporter;
-import com.codahale.metrics.MetricRegistry;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.jmx.JmxConfig;
+import io.micrometer.jmx.JmxMeterRegistry;
 import lombok.Getter;
 import lombok.val;
 import org.apache.kafka.streams.KafkaStreams;
@@ -30,27 +32,39 @@ import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
  * https://kafka.apache.org/10/documentation/streams/developer-guide/write-streams
  * <p>
  * for more information on writing streams apps.
+ * <p>
+ * Meters on the global Micrometer registry (e.g. detector and cache metrics) are exported over JMX by a single
+ * {@link JmxMeterRegistry}, added to the global registry once however many apps are created.
  */
 public abstract class AbstractStreamsApp {
 
     @Getter
     private final StreamsAppConfig config;
 
-    @Getter
-    private final JmxReporter jmxReporter;
-
     public AbstractStreamsApp(StreamsAppConfig config) {
         notNull(config, "config can't be null");
         this.config = config;
-        this.jmxReporter = JmxReporter.forRegistry(new MetricRegistry()).build();
+        JmxRegistryHolder.init();
     }
 
     public void start() {
         val streams = new KafkaStreams(buildTopology(), config.getStreamsConfig());
         Runtime.getRuntime().addShutdownHook(new Thread(streams::close));
-        jmxReporter.start();
         streams.start();
     }
 
     protected abstract Topology buildTopology();
+
+    // Initialized on first use, i.e. when the first app is created.
+    private static final class JmxRegistryHolder {
+        private static final JmxMeterRegistry REGISTRY = new JmxMeterRegistry(JmxConfig.DEFAULT, Clock.SYSTEM);
+
+        static {
+            Metrics.addRegistry(REGISTRY);
+        }
+
+        static void init() {
+            // Loading the class is enough.
+        }
+    }
 }
@@ -16,17 +16,20 @@
 package com.expedia.adaptivealerting.kafka;
 
 import com.expedia.adaptivealerting.anomdetect.DetectorManager;
-import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
 import com.expedia.adaptivealerting.core.data.MappedMetricData;
-import com.expedia.adaptivealerting.core.util.AssertUtil;
-import com.expedia.adaptivealerting.core.util.ErrorUtil;
+import com.expedia.adaptivealerting.kafka.processor.MappedMetricDataTransformerSupplier;
+import com.expedia.adaptivealerting.kafka.serde.MappedMetricDataJsonSerde;
 import com.expedia.adaptivealerting.kafka.util.DetectorUtil;
 import lombok.Generated;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
+import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.Topology;
 import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
 
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
@@ -39,10 +42,30 @@ import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
  * volume, downstream consumers user those to reliably detect recovery from an anomalous situation. Anyway this wrapper
  * isn't responsible for domain logic; its responsibility is to adapt the {@link DetectorManager} to Kafka.
  * </p>
+ * <p>
+ * Detector loads never block the stream thread. Records whose detector isn't cached yet are parked until the detector
+ * has loaded (see {@link MappedMetricDataTransformerSupplier}), so a slow model service doesn't stall the partition or trigger
+ * a rebalance.
+ * </p>
+ * <p>
+ * Detector state is kept in a persistent, changelogged state store keyed by detector UUID. The input topic is keyed by
+ * detector UUID, so each detector's state moves with its partition, including to standby replicas when
+ * {@code num.standby.replicas} is set. The in-memory detector cache then only needs to hold the hot working set.
+ * </p>
+ * <p>
+ * With {@code classification-batch-size} above 1, records are classified in batches, which the
+ * {@link DetectorManager} spreads over its {@code classification-shards} worker threads.
+ * </p>
  */
 @Slf4j
 public final class KafkaAnomalyDetectorManager extends AbstractStreamsApp {
     private static final String CK_AD_MANAGER = "ad-manager";
+    private static final String CK_MAX_PENDING_PER_DETECTOR = "max-pending-per-detector";
+    private static final int DEFAULT_MAX_PENDING_PER_DETECTOR = 1000;
+    private static final String CK_CLASSIFICATION_BATCH_SIZE = "classification-batch-size";
+    private static final int DEFAULT_CLASSIFICATION_BATCH_SIZE = 1;
+    private static final String PENDING_STORE_NAME = "detector-pending-buffer";
+    private static final String DETECTOR_STATE_STORE_NAME = "detector-state";
 
     private final DetectorManager manager;
 
@@ -53,7 +76,9 @@ public final class KafkaAnomalyDetectorManager extends AbstractStreamsApp {
         val config = new TypesafeConfigLoader(CK_AD_MANAGER).loadMergedConfig();
         val saConfig = new StreamsAppConfig(config);
         val detectorSource = DetectorUtil.buildDetectorSource(config);
-        val manager = new DetectorManager(detectorSource, config);
+        val metricHistorySource = DetectorUtil.buildMetricHistorySource(config);
+        val manager = new DetectorManager(detectorSource, metricHistorySource, config);
+        Runtime.getRuntime().addShutdownHook(new Thread(manager::close));
         new KafkaAnomalyDetectorManager(saConfig, manager).start();
     }
 
@@ -68,37 +93,47 @@ public final class KafkaAnomalyDetectorManager extends AbstractStreamsApp {
         val config = getConfig();
         val inputTopic = config.getInputTopic();
         val outputTopic = config.getOutputTopic();
+        val tsConfig = config.getTypesafeConfig();
+        val maxPendingPerDetector = tsConfig.hasPath(CK_MAX_PENDING_PER_DETECTOR)
+                ? tsConfig.getInt(CK_MAX_PENDING_PER_DETECTOR)
+                : DEFAULT_MAX_PENDING_PER_DETECTOR;
+        val classificationBatchSize = tsConfig.hasPath(CK_CLASSIFICATION_BATCH_SIZE)
+                ? tsConfig.getInt(CK_CLASSIFICATION_BATCH_SIZE)
+                : DEFAULT_CLASSIFICATION_BATCH_SIZE;
         log.info("Initializing: inputTopic={}, outputTopic={}", inputTopic, outputTopic);
 
         val builder = new StreamsBuilder();
+
+        // Changelogged, so records parked while their detector loads survive a task migration.
+        StoreBuilder<KeyValueStore<String, MappedMetricData>> pendingStoreBuilder =
+                Stores.keyValueStoreBuilder(
+                        Stores.inMemoryKeyValueStore(PENDING_STORE_NAME),
+                        Serdes.String(),
+                        new MappedMetricDataJsonSerde());
+        builder.addStateStore(pendingStoreBuilder);
+
+        // Caching collapses the per-record state updates into one changelog write per detector per commit.
+        StoreBuilder<KeyValueStore<String, byte[]>> detectorStateStoreBuilder =
+                Stores.keyValueStoreBuilder(
+                        Stores.persistentKeyValueStore(DETECTOR_STATE_STORE_NAME),
+                        Serdes.String(),
+                        Serdes.ByteArray())
+                        .withCachingEnabled();
+        builder.addStateStore(detectorStateStoreBuilder);
+
         final KStream<String, MappedMetricData> stream = builder.stream(inputTopic);
         stream
                 .filter((key, mmd) -> mmd != null)
-                .mapValues(this::toAnomalyMmd)
-                .filter((key, mmd) -> mmd != null)
+                .transform(
+                        new MappedMetricDataTransformerSupplier(
+                                manager,
+                                PENDING_STORE_NAME,
+                                DETECTOR_STATE_STORE_NAME,
+                                maxPendingPerDetector,
+                                classificationBatchSize),
+                        PENDING_STORE_NAME,
+                        DETECTOR_STATE_STORE_NAME)
                 .to(outputTopic);
         return builder.build();
     }
-
-    private MappedMetricData toAnomalyMmd(MappedMetricData mmd) {
-        AssertUtil.notNull(mmd, "mappedMetricData can't be null");
-
-        AnomalyResult anomalyResult = null;
-        try {
-            anomalyResult = manager.classify(mmd);
-        } catch (Exception e) {
-            log.error("Classification error: mappedMetricData={}, error={}",
-                    mmd,
-                    ErrorUtil.singleLineExceptionTrace(e));
-        }
-
-        if (anomalyResult == null) {
-            log.info("anomalyResult=null");
-            return null;
-        }
-
-        val newMmd = new MappedMetricData(mmd, anomalyResult);
-        log.info("produced={}", newMmd);
-        return newMmd;
-    }
 }
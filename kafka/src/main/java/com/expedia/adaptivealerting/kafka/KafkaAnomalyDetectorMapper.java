@@ -23,6 +23,7 @@ import com.expedia.adaptivealerting.kafka.processor.MetricDataTransformerSupplie
 import com.expedia.adaptivealerting.kafka.serde.MappedMetricDataJsonSerde;
 import com.expedia.adaptivealerting.kafka.serde.MetricDataJsonSerde;
 import com.expedia.adaptivealerting.kafka.util.DetectorUtil;
+import com.expedia.adaptivealerting.kafka.util.MetricTagsSnapshot;
 import com.expedia.metrics.MetricData;
 import lombok.Generated;
 import lombok.extern.slf4j.Slf4j;
@@ -38,6 +39,12 @@ import org.apache.kafka.streams.state.KeyValueStore;
 import org.apache.kafka.streams.state.StoreBuilder;
 import org.apache.kafka.streams.state.Stores;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
@@ -50,9 +57,15 @@ import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 public final class KafkaAnomalyDetectorMapper extends AbstractStreamsApp {
     private static final String CK_AD_MAPPER = "ad-mapper";
     private static final String stateStoreName = "es-request-buffer";
+    private static final String CK_CACHE_SNAPSHOT_PATH = "detector-mapping-cache-snapshot-path";
 
     private final DetectorMapper mapper;
 
+    /**
+     * Where to save the tags of the cached metrics at shutdown, to warm up the cache with at startup. Optional.
+     */
+    private final Path cacheSnapshotPath;
+
     // TODO Make these configurable. [WLW]
     private Serde<String> outputKeySerde = new Serdes.StringSerde();
     private Serde<MappedMetricData> outputValueSerde = new MappedMetricDataJsonSerde();
@@ -78,6 +91,45 @@ public final class KafkaAnomalyDetectorMapper extends AbstractStreamsApp {
         super(config);
         notNull(mapper, "mapper can't be null");
         this.mapper = mapper;
+        val tsConfig = config.getTypesafeConfig();
+        this.cacheSnapshotPath = tsConfig.hasPath(CK_CACHE_SNAPSHOT_PATH)
+                ? Paths.get(tsConfig.getString(CK_CACHE_SNAPSHOT_PATH))
+                : null;
+    }
+
+    /**
+     * Warms up the mapper before consuming any metrics, so they don't all miss the detector mapping cache after a
+     * restart.
+     */
+    @Override
+    public void start() {
+        warmUp();
+        if (cacheSnapshotPath != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::saveCacheSnapshot));
+        }
+        super.start();
+    }
+
+    void warmUp() {
+        List<Map<String, String>> metricTags = Collections.emptyList();
+        if (cacheSnapshotPath != null) {
+            try {
+                metricTags = MetricTagsSnapshot.read(cacheSnapshotPath);
+            } catch (IOException e) {
+                log.warn("Can't read detector mapping cache snapshot {}, warming up without it", cacheSnapshotPath, e);
+            }
+        }
+        mapper.warmUp(metricTags);
+    }
+
+    void saveCacheSnapshot() {
+        val metricTags = mapper.getCachedMetricTags();
+        try {
+            MetricTagsSnapshot.write(cacheSnapshotPath, metricTags);
+            log.info("Saved tags of {} cached metrics to {}", metricTags.size(), cacheSnapshotPath);
+        } catch (IOException e) {
+            log.error("Can't save detector mapping cache snapshot {}", cacheSnapshotPath, e);
+        }
     }
 
     @Override
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.processor;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorException;
+import com.expedia.adaptivealerting.anomdetect.DetectorStateStore;
+import com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * {@link DetectorStateStore} backed by a Kafka Streams key-value store, keyed by detector UUID. Values are the
+ * detectors' {@link com.expedia.adaptivealerting.anomdetect.checkpoint.Checkpointable} state.
+ * </p>
+ * <p>
+ * One instance wraps one task's store. When the task moves to another instance, the new owner creates a new wrapper,
+ * so every cached detector gets reattached and picks up the state restored from the changelog.
+ * </p>
+ */
+@Slf4j
+final class KeyValueDetectorStateStore implements DetectorStateStore {
+    private static final int INITIAL_BUFFER_BYTES = 256;
+
+    private final KeyValueStore<String, byte[]> store;
+
+    // Attached detector instance per UUID. Weak, so detectors evicted from the DetectorManager cache aren't kept
+    // reachable from here; a reloaded detector is a different instance and gets reattached. Entries whose detector
+    // has been collected are dropped via the reference queue.
+    private final Map<UUID, AttachedRef> attached = new HashMap<>();
+    private final ReferenceQueue<Detector> collected = new ReferenceQueue<>();
+
+    // Reused across saves, so serializing a detector allocates only the stored value itself. The store is only used
+    // from its task's stream thread.
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(INITIAL_BUFFER_BYTES);
+    private final DataOutputStream bufferOut = new DataOutputStream(buffer);
+
+    KeyValueDetectorStateStore(KeyValueStore<String, byte[]> store) {
+        notNull(store, "store can't be null");
+        this.store = store;
+    }
+
+    @Override
+    public boolean hasState(UUID detectorUuid) {
+        notNull(detectorUuid, "detectorUuid can't be null");
+        return store.get(detectorUuid.toString()) != null;
+    }
+
+    @Override
+    public boolean attach(Detector detector) {
+        notNull(detector, "detector can't be null");
+
+        val uuid = detector.getUuid();
+        val attachedRef = attached.get(uuid);
+        if (attachedRef != null && attachedRef.get() == detector) {
+            return true;
+        }
+        val key = uuid.toString();
+        val state = store.get(key);
+        if (state != null) {
+            try {
+                CheckpointUtil.readStateBytes(detector, state);
+            } catch (DetectorException e) {
+                log.warn("Discarding stored state for detector {}: {}", key, e.getMessage());
+                store.delete(key);
+                return false;
+            }
+        }
+        track(detector);
+        return true;
+    }
+
+    @Override
+    public void adopt(Detector detector) {
+        notNull(detector, "detector can't be null");
+        track(detector);
+    }
+
+    @Override
+    public void save(Detector detector) {
+        notNull(detector, "detector can't be null");
+        buffer.reset();
+        try {
+            detector.writeState(bufferOut);
+        } catch (IOException e) {
+            // Only the detector itself can fail here; the byte array stream doesn't.
+            throw new UncheckedIOException(e);
+        }
+        store.put(detector.getUuid().toString(), buffer.toByteArray());
+    }
+
+    int attachedCount() {
+        expungeCollected();
+        return attached.size();
+    }
+
+    private void track(Detector detector) {
+        expungeCollected();
+        attached.put(detector.getUuid(), new AttachedRef(detector, collected));
+    }
+
+    private void expungeCollected() {
+        AttachedRef ref;
+        while ((ref = (AttachedRef) collected.poll()) != null) {
+            // The UUID may have been reattached to a newer instance since.
+            attached.remove(ref.uuid, ref);
+        }
+    }
+
+    private static final class AttachedRef extends WeakReference<Detector> {
+        private final UUID uuid;
+
+        AttachedRef(Detector detector, ReferenceQueue<Detector> queue) {
+            super(detector, queue);
+            this.uuid = detector.getUuid();
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.processor;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorManager;
+import com.expedia.adaptivealerting.anomdetect.DetectorStateStore;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
+import com.expedia.adaptivealerting.core.data.MappedMetricData;
+import com.expedia.adaptivealerting.core.util.ErrorUtil;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import lombok.var;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Stateful KStream transformer that classifies {@link MappedMetricData} without blocking the stream thread on the
+ * model service.
+ * </p>
+ * <p>
+ * If the record's detector is cached, the record is classified right away. Otherwise the record is parked in the
+ * pending state store and the detector is loaded on the {@link DetectorManager}'s loader pool. Later records for the
+ * same detector are parked behind it, so per-detector order is preserved. A wall-clock punctuator drains the parked
+ * records of each detector whose load has completed, in arrival order.
+ * </p>
+ * <p>
+ * Pending store keys are {@code detectorUuid:sequence:originalKey}, with a zero-padded sequence number, so a range scan
+ * over a detector's prefix returns its records in arrival order. The store is changelogged, so parked records survive
+ * a task migration; {@link #init(ProcessorContext)} restarts the loads for any restored records.
+ * </p>
+ * <p>
+ * Detector state lives in the detector state store (see {@link KeyValueDetectorStateStore}) rather than only in the
+ * {@link DetectorManager}'s cache, so it moves together with partition ownership, and detectors evicted from the cache
+ * pick up where they left off when reloaded.
+ * </p>
+ * <p>
+ * If {@code classificationBatchSize} is greater than 1, records for cached detectors are collected into batches and
+ * classified with {@link DetectorManager#classifyCached(java.util.List, DetectorStateStore, java.util.Set)}, which
+ * spreads a batch over the manager's classification shards, if any. A batch is flushed when it's full, on each drain punctuation (before any
+ * parked records, so per-detector order holds) and when the transformer is closed. Batched records are written to the
+ * pending store under the same keys as parked records, and deleted once classified. So if the instance dies after a
+ * commit but before the next flush, the new owner restores them as parked records and classifies them in order.
+ * A detector evicted after its records were batched isn't loaded on the stream thread: its records stay in the
+ * pending store and are parked behind an asynchronous load, like records for any other uncached detector.
+ * </p>
+ */
+@Slf4j
+class MappedMetricDataTransformer implements Transformer<String, MappedMetricData, KeyValue<String, MappedMetricData>> {
+    static final long DRAIN_INTERVAL_MS = 100L;
+
+    private static final char KEY_SEPARATOR = ':';
+    private static final char KEY_RANGE_END = KEY_SEPARATOR + 1;
+
+    private final DetectorManager manager;
+    private final String pendingStoreName;
+    private final String detectorStateStoreName;
+    private final int maxPendingPerDetector;
+    private final int classificationBatchSize;
+
+    // Detectors with parked records, in order of first parked record
+    private final Map<UUID, Pending> pending = new LinkedHashMap<>();
+
+    // Records for cached detectors waiting to be classified as a batch, by pending store key, in arrival order
+    private final List<KeyValue<String, MappedMetricData>> batch = new ArrayList<>();
+
+    private ProcessorContext context;
+    private KeyValueStore<String, MappedMetricData> pendingStore;
+    private DetectorStateStore detectorStateStore;
+    private long sequence;
+
+    MappedMetricDataTransformer(
+            DetectorManager manager,
+            String pendingStoreName,
+            String detectorStateStoreName,
+            int maxPendingPerDetector) {
+
+        this(manager, pendingStoreName, detectorStateStoreName, maxPendingPerDetector, 1);
+    }
+
+    MappedMetricDataTransformer(
+            DetectorManager manager,
+            String pendingStoreName,
+            String detectorStateStoreName,
+            int maxPendingPerDetector,
+            int classificationBatchSize) {
+
+        notNull(manager, "manager can't be null");
+        notNull(pendingStoreName, "pendingStoreName can't be null");
+        notNull(detectorStateStoreName, "detectorStateStoreName can't be null");
+        isTrue(maxPendingPerDetector > 0, "maxPendingPerDetector must be strictly positive");
+        isTrue(classificationBatchSize > 0, "classificationBatchSize must be strictly positive");
+
+        this.manager = manager;
+        this.pendingStoreName = pendingStoreName;
+        this.detectorStateStoreName = detectorStateStoreName;
+        this.maxPendingPerDetector = maxPendingPerDetector;
+        this.classificationBatchSize = classificationBatchSize;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void init(ProcessorContext context) {
+        this.context = context;
+        this.pendingStore = (KeyValueStore<String, MappedMetricData>) context.getStateStore(pendingStoreName);
+        this.detectorStateStore = new KeyValueDetectorStateStore(
+                (KeyValueStore<String, byte[]>) context.getStateStore(detectorStateStoreName));
+        restorePending();
+        context.schedule(DRAIN_INTERVAL_MS, PunctuationType.WALL_CLOCK_TIME, this::drainPending);
+    }
+
+    @Override
+    public KeyValue<String, MappedMetricData> transform(String key, MappedMetricData mappedMetricData) {
+        notNull(mappedMetricData, "mappedMetricData can't be null");
+
+        val detectorUuid = mappedMetricData.getDetectorUuid();
+        var parked = pending.get(detectorUuid);
+        if (parked == null) {
+            if (manager.hasCachedDetector(detectorUuid)) {
+                if (classificationBatchSize == 1) {
+                    return classify(key, mappedMetricData);
+                }
+                val batchKey = pendingKey(detectorUuid, sequence++, key);
+                pendingStore.put(batchKey, mappedMetricData);
+                batch.add(KeyValue.pair(batchKey, mappedMetricData));
+                if (batch.size() >= classificationBatchSize) {
+                    flushBatch();
+                }
+                return null;
+            }
+            parked = new Pending(loadDetectorAsync(mappedMetricData));
+            pending.put(detectorUuid, parked);
+        }
+
+        if (parked.count >= maxPendingPerDetector) {
+            log.warn("Dropping mappedMetricData={}: {} records already pending for detector",
+                    mappedMetricData, parked.count);
+            return null;
+        }
+        pendingStore.put(pendingKey(detectorUuid, sequence++, key), mappedMetricData);
+        parked.count++;
+        return null;
+    }
+
+    @Override
+    public KeyValue<String, MappedMetricData> punctuate(long timestamp) {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        // Kafka Streams still lets us forward while closing, and commits afterwards.
+        flushBatch();
+    }
+
+    private CompletableFuture<Boolean> loadDetectorAsync(MappedMetricData mappedMetricData) {
+        // Stored state replaces whatever a warm start would have learned.
+        val detectorUuid = mappedMetricData.getDetectorUuid();
+        return detectorStateStore.hasState(detectorUuid)
+                ? manager.loadDetectorAsync(detectorUuid)
+                : manager.loadDetectorAsync(mappedMetricData);
+    }
+
+    private void restorePending() {
+        try (val iter = pendingStore.all()) {
+            while (iter.hasNext()) {
+                val key = iter.next().key;
+                val detectorUuid = UUID.fromString(key.substring(0, key.indexOf(KEY_SEPARATOR)));
+                val parked = pending.computeIfAbsent(
+                        detectorUuid,
+                        uuid -> new Pending(manager.loadDetectorAsync(uuid)));
+                parked.count++;
+                sequence = Math.max(sequence, parseSequence(key) + 1);
+            }
+        }
+        if (!pending.isEmpty()) {
+            log.info("Restored pending records for {} detectors", pending.size());
+        }
+    }
+
+    private void drainPending(long timestamp) {
+        flushBatch();
+        val iter = pending.entrySet().iterator();
+        while (iter.hasNext()) {
+            val entry = iter.next();
+            val load = entry.getValue().load;
+            if (load.isDone()) {
+                drain(entry.getKey(), isLoaded(entry.getKey(), load));
+                iter.remove();
+            }
+        }
+    }
+
+    private void drain(UUID detectorUuid, boolean classify) {
+        val prefix = detectorUuid.toString();
+        val parked = new ArrayList<KeyValue<String, MappedMetricData>>();
+        try (val iter = pendingStore.range(prefix + KEY_SEPARATOR, prefix + KEY_RANGE_END)) {
+            while (iter.hasNext()) {
+                parked.add(iter.next());
+            }
+        }
+
+        for (val entry : parked) {
+            pendingStore.delete(entry.key);
+            if (classify) {
+                val result = classify(originalKey(entry.key), entry.value);
+                if (result != null) {
+                    context.forward(result.key, result.value);
+                }
+            }
+        }
+    }
+
+    private static boolean isLoaded(UUID detectorUuid, CompletableFuture<Boolean> load) {
+        try {
+            if (load.join()) {
+                return true;
+            }
+            log.warn("No detector for detectorUuid={}", detectorUuid);
+        } catch (Exception e) {
+            log.error("Error loading detector: detectorUuid={}, error={}",
+                    detectorUuid,
+                    ErrorUtil.singleLineExceptionTrace(e));
+        }
+        return false;
+    }
+
+    private void flushBatch() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        val mappedMetricDataList = new ArrayList<MappedMetricData>(batch.size());
+        for (val entry : batch) {
+            mappedMetricDataList.add(entry.value);
+        }
+
+        val uncached = new HashSet<UUID>();
+        try {
+            val anomalyResults = manager.classifyCached(mappedMetricDataList, detectorStateStore, uncached);
+            for (int i = 0; i < batch.size(); i++) {
+                val entry = batch.get(i);
+                if (uncached.contains(entry.value.getDetectorUuid())) {
+                    continue;
+                }
+                val result = toResult(originalKey(entry.key), entry.value, anomalyResults.get(i));
+                if (result != null) {
+                    context.forward(result.key, result.value);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Classification error: batchSize={}, error={}",
+                    batch.size(),
+                    ErrorUtil.singleLineExceptionTrace(e));
+        } finally {
+            for (val entry : batch) {
+                val detectorUuid = entry.value.getDetectorUuid();
+                if (uncached.contains(detectorUuid)) {
+                    // Evicted since it was batched: park the record (it's already in the pending store) behind a load.
+                    pending.computeIfAbsent(detectorUuid, uuid -> new Pending(loadDetectorAsync(entry.value))).count++;
+                } else {
+                    pendingStore.delete(entry.key);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private KeyValue<String, MappedMetricData> classify(String key, MappedMetricData mappedMetricData) {
+        AnomalyResult anomalyResult = null;
+        try {
+            anomalyResult = manager.classify(mappedMetricData, detectorStateStore);
+        } catch (Exception e) {
+            log.error("Classification error: mappedMetricData={}, error={}",
+                    mappedMetricData,
+                    ErrorUtil.singleLineExceptionTrace(e));
+        }
+        return toResult(key, mappedMetricData, anomalyResult);
+    }
+
+    private static KeyValue<String, MappedMetricData> toResult(
+            String key,
+            MappedMetricData mappedMetricData,
+            AnomalyResult anomalyResult) {
+
+        if (anomalyResult == null) {
+            log.info("anomalyResult=null");
+            return null;
+        }
+
+        val newMmd = new MappedMetricData(mappedMetricData, anomalyResult);
+        log.info("produced={}", newMmd);
+        return KeyValue.pair(key, newMmd);
+    }
+
+    static String pendingKey(UUID detectorUuid, long sequence, String key) {
+        return String.format("%s%c%019d%c%s",
+                detectorUuid, KEY_SEPARATOR, sequence, KEY_SEPARATOR, key == null ? "" : key);
+    }
+
+    static String originalKey(String pendingKey) {
+        val key = pendingKey.substring(pendingKey.indexOf(KEY_SEPARATOR, pendingKey.indexOf(KEY_SEPARATOR) + 1) + 1);
+        return key.isEmpty() ? null : key;
+    }
+
+    private static long parseSequence(String pendingKey) {
+        val start = pendingKey.indexOf(KEY_SEPARATOR) + 1;
+        return Long.parseLong(pendingKey.substring(start, pendingKey.indexOf(KEY_SEPARATOR, start)));
+    }
+
+    private static final class Pending {
+        private final CompletableFuture<Boolean> load;
+        private int count;
+
+        private Pending(CompletableFuture<Boolean> load) {
+            this.load = load;
+        }
+    }
+}
@@ -41,8 +41,9 @@ import java.util.stream.Collectors;
  * For each incoming record, {@link #transform(String key, MetricData metricData) , matching detectors are fetched from cache
  * in case of cache miss, record in pushed into a in-memory state store, for batching.
  * <p>
- * {@link #init(ProcessorContext context), registers a scheduled a periodic operation that determines if the batch size is appropriate
- * and issues a down stream call to fetch matching detectors.
+ * {@link #init(ProcessorContext context), registers a scheduled a periodic operation that flushes the buffered records once
+ * they reach {@link DetectorMapper#optimalBatchSize()} or the oldest of them has waited {@link DetectorMapper#maxBatchWaitMillis()},
+ * and issues down stream calls, in chunks of at most the optimal batch size, to fetch matching detectors.
  * <p>
  * <p>
  * While pushing records into state store, using {@code key} can cause overriding metric of same {@code  metricDefinition} as state store is a Map.
@@ -60,6 +61,10 @@ class MetricDataTransformer implements Transformer<String, MetricData, KeyValue<
     private ProcessorContext context;
     private KeyValueStore<String, MetricData> metricDataKeyValueStore;
 
+    // Buffered metrics awaiting lookup, and when the oldest of them was buffered.
+    private int bufferedCount;
+    private long oldestBufferedMillis;
+
     @NonNull
     private DetectorMapper detectorMapper;
     @NonNull
@@ -82,31 +87,15 @@ class MetricDataTransformer implements Transformer<String, MetricData, KeyValue<
     public void init(ProcessorContext context) {
         this.context = context;
         this.metricDataKeyValueStore = (KeyValueStore<String, MetricData>) context.getStateStore(stateStoreName);
-
-        //TODO decide PUNCTUATION time
-        this.context.schedule(200, PunctuationType.WALL_CLOCK_TIME, (timestamp) -> {
-
-            if (metricDataKeyValueStore.approximateNumEntries() >= detectorMapper.optimalBatchSize()) {
-                KeyValueIterator<String, MetricData> iter = this.metricDataKeyValueStore.all();
-                Map<String, MetricData> cacheMissedMetrics = new HashMap<>();
-
-                while (iter.hasNext()) {
-                    KeyValue<String, MetricData> entry = iter.next();
-                    cacheMissedMetrics.put(entry.key, entry.value);
-                    metricDataKeyValueStore.delete(entry.key);
-                }
-                iter.close();
-
-                List<Map<String, String>> cacheMissedMetricTags = cacheMissedMetrics.values().stream().map(value -> value.getMetricDefinition().getTags().getKv()).collect(Collectors.toList());
-                if (!cacheMissedMetricTags.isEmpty() && detectorMapper.isSuccessfulDetectorMappingLookup(cacheMissedMetricTags)) {
-                    cacheMissedMetrics.forEach((originalKey, metricData) -> {
-                        List<Detector> detectors = detectorMapper.getDetectorsFromCache(metricData.getMetricDefinition());
-                        if (!detectors.isEmpty()) {
-                            context.forward(removeSalt(originalKey), new MapperResult(metricData, detectors));
-                        }
-                    });
-                }
-
+        this.bufferedCount = (int) metricDataKeyValueStore.approximateNumEntries();
+        this.oldestBufferedMillis = System.currentTimeMillis();
+
+        // Check a few times per max wait, so a metric waits at most a quarter longer than that.
+        long interval = Math.max(1L, detectorMapper.maxBatchWaitMillis() / 4);
+        this.context.schedule(interval, PunctuationType.WALL_CLOCK_TIME, (timestamp) -> {
+            if (bufferedCount > 0 && (bufferedCount >= detectorMapper.optimalBatchSize()
+                    || timestamp - oldestBufferedMillis >= detectorMapper.maxBatchWaitMillis())) {
+                flush();
             } else {
                 log.trace("ES lookup skipped, as batch size is not optimum");
             }
@@ -117,6 +106,40 @@ class MetricDataTransformer implements Transformer<String, MetricData, KeyValue<
 
     }
 
+    /**
+     * Looks up all buffered metrics, in chunks of at most the optimal batch size.
+     */
+    private void flush() {
+        Map<String, MetricData> cacheMissedMetrics = new HashMap<>();
+        try (KeyValueIterator<String, MetricData> iter = this.metricDataKeyValueStore.all()) {
+            while (iter.hasNext()) {
+                KeyValue<String, MetricData> entry = iter.next();
+                cacheMissedMetrics.put(entry.key, entry.value);
+                if (cacheMissedMetrics.size() >= Math.max(1, detectorMapper.optimalBatchSize())) {
+                    lookUp(cacheMissedMetrics);
+                    cacheMissedMetrics = new HashMap<>();
+                }
+            }
+        }
+        if (!cacheMissedMetrics.isEmpty()) {
+            lookUp(cacheMissedMetrics);
+        }
+        this.bufferedCount = 0;
+    }
+
+    private void lookUp(Map<String, MetricData> cacheMissedMetrics) {
+        cacheMissedMetrics.keySet().forEach(metricDataKeyValueStore::delete);
+        List<Map<String, String>> cacheMissedMetricTags = cacheMissedMetrics.values().stream().map(value -> value.getMetricDefinition().getTags().getKv()).collect(Collectors.toList());
+        if (detectorMapper.isSuccessfulDetectorMappingLookup(cacheMissedMetricTags)) {
+            cacheMissedMetrics.forEach((originalKey, metricData) -> {
+                List<Detector> detectors = detectorMapper.getDetectorsFromCache(metricData.getMetricDefinition());
+                if (!detectors.isEmpty()) {
+                    context.forward(removeSalt(originalKey), new MapperResult(metricData, detectors));
+                }
+            });
+        }
+    }
+
     @Override
     public KeyValue<String, MapperResult> transform(String key, MetricData metricData) {
 
@@ -125,6 +148,9 @@ class MetricDataTransformer implements Transformer<String, MetricData, KeyValue<
         if (detectors.isEmpty()) {
             //adding salt to key to prevent incoming records with same key being over-ridden
             this.metricDataKeyValueStore.put(addSalt(key), metricData);
+            if (bufferedCount++ == 0) {
+                this.oldestBufferedMillis = System.currentTimeMillis();
+            }
         } else {
             return new KeyValue<>(key, new MapperResult(metricData, detectors));
         }
@@ -16,7 +16,9 @@
 package com.expedia.adaptivealerting.kafka.util;
 
 import com.expedia.adaptivealerting.anomdetect.comp.DefaultDetectorSource;
+import com.expedia.adaptivealerting.anomdetect.comp.DefaultMetricHistorySource;
 import com.expedia.adaptivealerting.anomdetect.comp.DetectorSource;
+import com.expedia.adaptivealerting.anomdetect.comp.MetricHistorySource;
 import com.expedia.adaptivealerting.anomdetect.comp.connector.HttpClientWrapper;
 import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector;
 import com.expedia.adaptivealerting.anomdetect.comp.legacy.LegacyDetectorFactory;
@@ -33,8 +35,15 @@ public final class DetectorUtil {
     private static final String CK_MODEL_SERVICE_URI_TEMPLATE = "model-service-base-uri";
 
     public static DetectorSource buildDetectorSource(Config config) {
+        return new DefaultDetectorSource(buildConnector(config), new LegacyDetectorFactory());
+    }
+
+    public static MetricHistorySource buildMetricHistorySource(Config config) {
+        return new DefaultMetricHistorySource(buildConnector(config));
+    }
+
+    private static ModelServiceConnector buildConnector(Config config) {
         val uriTemplate = config.getString(CK_MODEL_SERVICE_URI_TEMPLATE);
-        val connector = new ModelServiceConnector(new HttpClientWrapper(), uriTemplate, new ObjectMapper());
-        return new DefaultDetectorSource(connector, new LegacyDetectorFactory());
+        return new ModelServiceConnector(new HttpClientWrapper(), uriTemplate, new ObjectMapper());
     }
 }
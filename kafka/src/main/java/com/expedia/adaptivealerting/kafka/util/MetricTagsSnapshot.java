@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.val;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the tags of the metrics in the ad-mapper's detector mapping cache, one JSON object per line, so a
+ * restarted mapper can warm up its cache with the metrics it was seeing.
+ */
+public final class MetricTagsSnapshot {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, String>> TAGS_TYPE = new TypeReference<Map<String, String>>() {
+    };
+
+    /**
+     * Writes the snapshot. It's written to a temporary file first and then moved into place, so an interrupted write
+     * doesn't leave a truncated snapshot behind.
+     *
+     * @param path       snapshot path
+     * @param metricTags tags of the metrics
+     * @throws IOException if the snapshot can't be written
+     */
+    public static void write(Path path, Collection<Map<String, String>> metricTags) throws IOException {
+        val parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        val tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (val writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+            for (val tags : metricTags) {
+                writer.write(OBJECT_MAPPER.writeValueAsString(tags));
+                writer.newLine();
+            }
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the snapshot.
+     *
+     * @param path snapshot path
+     * @return tags of the metrics, or an empty list if there's no snapshot
+     * @throws IOException if the snapshot can't be read
+     */
+    public static List<Map<String, String>> read(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return Collections.emptyList();
+        }
+        val metricTags = new ArrayList<Map<String, String>>();
+        try (val reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    metricTags.add(OBJECT_MAPPER.readValue(line, TAGS_TYPE));
+                }
+            }
+        }
+        return metricTags;
+    }
+}
@@ -15,8 +15,12 @@
  */
 package com.expedia.adaptivealerting.kafka;
 
+import com.expedia.adaptivealerting.anomdetect.detector.ConstantThresholdDetector;
+import com.expedia.adaptivealerting.anomdetect.detector.aggregator.MOfNAggregator;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyThresholds;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
 import com.expedia.adaptivealerting.core.data.MappedMetricData;
 import com.expedia.adaptivealerting.core.util.ObjectMapperUtil;
 import com.expedia.adaptivealerting.kafka.serde.AlertJsonSerde;
@@ -25,6 +29,8 @@ import com.expedia.adaptivealerting.kafka.util.TestObjectMother;
 import com.expedia.alertmanager.model.Alert;
 import com.expedia.metrics.MetricData;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.jmx.JmxMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.apache.kafka.common.serialization.Deserializer;
@@ -38,6 +44,10 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.when;
 
 /**
@@ -89,6 +99,39 @@ public class KafkaAnomalyToAlertMapperTest {
         OutputVerifier.compareKeyValue(outputRecord, expectedKey, alert);
     }
 
+    @Test
+    public void testTransform_isolatedAnomaliesSuppressedByMOfN() {
+        val detector = new ConstantThresholdDetector(
+                UUID.randomUUID(),
+                new ConstantThresholdDetector.Params()
+                        .setType(AnomalyType.RIGHT_TAILED)
+                        .setThresholds(new AnomalyThresholds(100.0, 50.0, null, null)),
+                new MOfNAggregator(new MOfNAggregator.Config(3, 5, true)));
+
+        // WEAK, NORMAL, WEAK, NORMAL, WEAK: only the third anomaly in the window should alert.
+        for (val value : new double[]{60.0, 10.0, 60.0, 10.0, 60.0}) {
+            val mmd = TestObjectMother.mappedMetricData(TestObjectMother.metricData(value), detector.getUuid());
+            mmd.setAnomalyResult(detector.classify(mmd.getMetricData()));
+            logAndFailDriver.pipeInput(mappedMetricDataFactory.create(INBOUND_TOPIC, KAFKA_KEY, mmd));
+        }
+
+        val outputRecord = logAndFailDriver.readOutput(OUTBOUND_TOPIC, stringDeserializer, alertDeserializer);
+        assertEquals(detector.getUuid().toString(), outputRecord.key());
+        assertEquals(AnomalyLevel.STRONG.toString(), outputRecord.value().getLabels().get("anomalyLevel"));
+        assertNull(logAndFailDriver.readOutput(OUTBOUND_TOPIC, stringDeserializer, alertDeserializer));
+    }
+
+    @Test
+    public void testJmxRegistryAddedOnce() {
+        new KafkaAnomalyToAlertMapper(streamsAppConfig);
+        new KafkaAnomalyToAlertMapper(streamsAppConfig);
+
+        val jmxRegistries = Metrics.globalRegistry.getRegistries().stream()
+                .filter(registry -> registry instanceof JmxMeterRegistry)
+                .count();
+        assertEquals(1L, jmxRegistries);
+    }
+
     private void initConfig() {
         when(streamsAppConfig.getInputTopic()).thenReturn(INBOUND_TOPIC);
         when(streamsAppConfig.getOutputTopic()).thenReturn(OUTBOUND_TOPIC);
@@ -16,6 +16,7 @@
 package com.expedia.adaptivealerting.kafka;
 
 import com.expedia.adaptivealerting.anomdetect.DetectorManager;
+import com.expedia.adaptivealerting.anomdetect.DetectorStateStore;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
 import com.expedia.adaptivealerting.core.data.MappedMetricData;
@@ -35,9 +36,17 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -50,6 +59,7 @@ public final class KafkaDetectorManagerTest {
     private static final String INPUT_TOPIC = "mapped-metrics";
     private static final String OUTPUT_TOPIC = "anomalies";
     private static final String INVALID_INPUT_VALUE = "invalid-input-value";
+    private static final long DRAIN_INTERVAL_MS = 100L;
 
     @Mock
     private DetectorManager manager;
@@ -139,6 +149,73 @@ public final class KafkaDetectorManagerTest {
         nullOnDeserException(logAndContinueDriver);
     }
 
+    @Test
+    public void testParksRecordsUntilDetectorLoads() {
+        val detectorUuid = UUID.randomUUID();
+        val load = new CompletableFuture<Boolean>();
+        val first = uncachedMetric(detectorUuid, load, AnomalyLevel.WEAK);
+        val second = uncachedMetric(detectorUuid, load, AnomalyLevel.STRONG);
+
+        pipe(first);
+        pipe(second);
+        assertNull(readAnomalyRecord());
+
+        // Other detectors aren't held up by the pending load.
+        publishesAnomaly(metric_normalAnomaly, AnomalyLevel.NORMAL);
+
+        logAndFailDriver.advanceWallClockTime(DRAIN_INTERVAL_MS);
+        assertNull(readAnomalyRecord());
+
+        load.complete(true);
+        logAndFailDriver.advanceWallClockTime(DRAIN_INTERVAL_MS);
+        assertEquals(AnomalyLevel.WEAK, readAnomalyRecord().value().getAnomalyResult().getAnomalyLevel());
+        assertEquals(AnomalyLevel.STRONG, readAnomalyRecord().value().getAnomalyResult().getAnomalyLevel());
+        assertNull(readAnomalyRecord());
+        verify(manager, times(1)).loadDetectorAsync(first);
+    }
+
+    @Test
+    public void testDropsParkedRecordsIfNoDetector() {
+        val detectorUuid = UUID.randomUUID();
+        val load = new CompletableFuture<Boolean>();
+        pipe(uncachedMetric(detectorUuid, load, AnomalyLevel.WEAK));
+
+        load.complete(false);
+        logAndFailDriver.advanceWallClockTime(DRAIN_INTERVAL_MS);
+        assertNull(readAnomalyRecord());
+        verify(manager, never()).classify(any(MappedMetricData.class), any(DetectorStateStore.class));
+    }
+
+    @Test
+    public void testDropsParkedRecordsIfLoadFails() {
+        val detectorUuid = UUID.randomUUID();
+        val load = new CompletableFuture<Boolean>();
+        pipe(uncachedMetric(detectorUuid, load, AnomalyLevel.WEAK));
+
+        load.completeExceptionally(new RuntimeException("Model service unavailable"));
+        logAndFailDriver.advanceWallClockTime(DRAIN_INTERVAL_MS);
+        assertNull(readAnomalyRecord());
+    }
+
+    @Test
+    public void testLimitsParkedRecordsPerDetector() {
+        when(tsConfig.hasPath("max-pending-per-detector")).thenReturn(true);
+        when(tsConfig.getInt("max-pending-per-detector")).thenReturn(1);
+        logAndFailDriver.close();
+        val topology = new KafkaAnomalyDetectorManager(saConfig, manager).buildTopology();
+        this.logAndFailDriver = TestObjectMother.topologyTestDriver(topology, MappedMetricDataJsonSerde.class, false);
+
+        val detectorUuid = UUID.randomUUID();
+        val load = new CompletableFuture<Boolean>();
+        pipe(uncachedMetric(detectorUuid, load, AnomalyLevel.WEAK));
+        pipe(uncachedMetric(detectorUuid, load, AnomalyLevel.STRONG));
+
+        load.complete(true);
+        logAndFailDriver.advanceWallClockTime(DRAIN_INTERVAL_MS);
+        assertEquals(AnomalyLevel.WEAK, readAnomalyRecord().value().getAnomalyResult().getAnomalyLevel());
+        assertNull(readAnomalyRecord());
+    }
+
     private void initConfig() {
         when(saConfig.getTypesafeConfig()).thenReturn(tsConfig);
         when(saConfig.getInputTopic()).thenReturn(INPUT_TOPIC);
@@ -155,12 +232,13 @@ public final class KafkaDetectorManagerTest {
     }
 
     private void initDependencies() {
-        when(manager.classify(metric_normalAnomaly)).thenReturn(new AnomalyResult(AnomalyLevel.NORMAL));
-        when(manager.classify(metric_weakAnomaly)).thenReturn(new AnomalyResult(AnomalyLevel.WEAK));
-        when(manager.classify(metric_strongAnomaly)).thenReturn(new AnomalyResult(AnomalyLevel.STRONG));
-        when(manager.classify(metric_modelWarmup)).thenReturn(new AnomalyResult(AnomalyLevel.MODEL_WARMUP));
-        when(manager.classify(metric_unknownAnomaly)).thenReturn(new AnomalyResult(AnomalyLevel.UNKNOWN));
-        when(manager.classify(metric_invalid)).thenThrow(new RuntimeException("Classification error"));
+        when(manager.hasCachedDetector(any(UUID.class))).thenReturn(true);
+        when(manager.classify(eq(metric_normalAnomaly), any(DetectorStateStore.class))).thenReturn(new AnomalyResult(AnomalyLevel.NORMAL));
+        when(manager.classify(eq(metric_weakAnomaly), any(DetectorStateStore.class))).thenReturn(new AnomalyResult(AnomalyLevel.WEAK));
+        when(manager.classify(eq(metric_strongAnomaly), any(DetectorStateStore.class))).thenReturn(new AnomalyResult(AnomalyLevel.STRONG));
+        when(manager.classify(eq(metric_modelWarmup), any(DetectorStateStore.class))).thenReturn(new AnomalyResult(AnomalyLevel.MODEL_WARMUP));
+        when(manager.classify(eq(metric_unknownAnomaly), any(DetectorStateStore.class))).thenReturn(new AnomalyResult(AnomalyLevel.UNKNOWN));
+        when(manager.classify(eq(metric_invalid), any(DetectorStateStore.class))).thenThrow(new RuntimeException("Classification error"));
     }
 
     private void initTestMachinery() {
@@ -192,11 +270,27 @@ public final class KafkaDetectorManagerTest {
     }
 
     private ProducerRecord<String, MappedMetricData> getAnomalyRecord(MappedMetricData metric) {
-        val metricRecord = metricFactory.create(INPUT_TOPIC, KAFKA_KEY, metric);
-        logAndFailDriver.pipeInput(metricRecord);
+        pipe(metric);
+        return readAnomalyRecord();
+    }
+
+    private void pipe(MappedMetricData metric) {
+        logAndFailDriver.pipeInput(metricFactory.create(INPUT_TOPIC, KAFKA_KEY, metric));
+    }
+
+    private ProducerRecord<String, MappedMetricData> readAnomalyRecord() {
         return logAndFailDriver.readOutput(OUTPUT_TOPIC, stringDeser, anomalyDeser);
     }
 
+    private MappedMetricData uncachedMetric(UUID detectorUuid, CompletableFuture<Boolean> load, AnomalyLevel level) {
+        val metric = TestObjectMother.mappedMetricData(TestObjectMother.metricData(Math.random()), detectorUuid);
+        when(manager.hasCachedDetector(detectorUuid)).thenReturn(false);
+        when(manager.loadDetectorAsync(detectorUuid)).thenReturn(load);
+        when(manager.loadDetectorAsync(metric)).thenReturn(load);
+        when(manager.classify(eq(metric), any(DetectorStateStore.class))).thenReturn(new AnomalyResult(level));
+        return metric;
+    }
+
     private void nullOnDeserException(TopologyTestDriver driver) {
         driver.pipeInput(stringFactory.create(INPUT_TOPIC, KAFKA_KEY, INVALID_INPUT_VALUE));
         val record = driver.readOutput(OUTPUT_TOPIC, stringDeser, anomalyDeser);
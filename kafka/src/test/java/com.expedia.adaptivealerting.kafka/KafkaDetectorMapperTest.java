@@ -20,9 +20,11 @@ import com.expedia.adaptivealerting.anomdetect.detectormapper.DetectorMapper;
 import com.expedia.adaptivealerting.core.data.MappedMetricData;
 import com.expedia.adaptivealerting.kafka.serde.MappedMetricDataJsonSerde;
 import com.expedia.adaptivealerting.kafka.serde.MetricDataJsonSerde;
+import com.expedia.adaptivealerting.kafka.util.MetricTagsSnapshot;
 import com.expedia.adaptivealerting.kafka.util.TestObjectMother;
 import com.expedia.metrics.MetricData;
 import com.expedia.metrics.MetricDefinition;
+import com.google.common.collect.ImmutableMap;
 import com.typesafe.config.Config;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
@@ -34,14 +36,27 @@ import org.apache.kafka.streams.test.ConsumerRecordFactory;
 import org.apache.kafka.streams.test.OutputVerifier;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Map;
 import java.util.UUID;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -57,6 +72,9 @@ public final class KafkaDetectorMapperTest {
     private static final String stateStoreName = "es-request-buffer";
 
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     @Mock
     private DetectorMapper mapper;
 
@@ -171,6 +189,50 @@ public final class KafkaDetectorMapperTest {
         logAndContinueDriver.close();
     }
 
+    @Test
+    public void shouldLookUpPartialBatchAfterMaxWait() {
+        when(mapper.getDetectorsFromCache(any(MetricDefinition.class))).thenReturn(Collections.emptyList());
+        when(mapper.optimalBatchSize()).thenReturn(10);
+        when(mapper.maxBatchWaitMillis()).thenReturn(100L);
+        when(mapper.isSuccessfulDetectorMappingLookup(anyList())).thenReturn(true);
+        initLogAndContinue();
+
+        logAndContinueDriver.pipeInput(metricDataFactory.create(INPUT_TOPIC, "key-1", TestObjectMother.metricData()));
+        kvStore = logAndContinueDriver.getKeyValueStore(stateStoreName);
+        logAndContinueDriver.advanceWallClockTime(10);
+        Assert.assertEquals(1, kvStore.approximateNumEntries());
+        verify(mapper, never()).isSuccessfulDetectorMappingLookup(anyList());
+
+        logAndContinueDriver.advanceWallClockTime(1000);
+        Assert.assertEquals(0, kvStore.approximateNumEntries());
+        verify(mapper).isSuccessfulDetectorMappingLookup(anyList());
+
+        logAndContinueDriver.close();
+    }
+
+    @Test
+    public void shouldLookUpLargeBatchInChunks() {
+        when(mapper.getDetectorsFromCache(any(MetricDefinition.class))).thenReturn(
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), Collections.singletonList(detector));
+        when(mapper.optimalBatchSize()).thenReturn(2);
+        when(mapper.maxBatchWaitMillis()).thenReturn(100_000L);
+        when(mapper.isSuccessfulDetectorMappingLookup(anyList())).thenReturn(true);
+        initLogAndContinue();
+
+        for (int i = 0; i < 5; i++) {
+            logAndContinueDriver.pipeInput(metricDataFactory.create(INPUT_TOPIC, "key-1", TestObjectMother.metricData()));
+        }
+        logAndContinueDriver.advanceWallClockTime(100_000 / 4);
+
+        verify(mapper, times(3)).isSuccessfulDetectorMappingLookup(argThat(tags -> tags.size() <= 2));
+        for (int i = 0; i < 5; i++) {
+            Assert.assertNotNull(logAndContinueDriver.readOutput(OUTPUT_TOPIC, stringDeser, mmdDeser));
+        }
+        Assert.assertNull(logAndContinueDriver.readOutput(OUTPUT_TOPIC, stringDeser, mmdDeser));
+
+        logAndContinueDriver.close();
+    }
 
     private void initConfig() {
         when(saConfig.getTypesafeConfig()).thenReturn(tsConfig);
@@ -216,4 +278,49 @@ public final class KafkaDetectorMapperTest {
         val record = driver.readOutput(OUTPUT_TOPIC, stringDeser, mmdDeser);
         Assert.assertNull(record);
     }
+
+    @Test
+    public void testWarmUp_withoutSnapshot() {
+        new KafkaAnomalyDetectorMapper(saConfig, mapper).warmUp();
+        verify(mapper).warmUp(Collections.emptyList());
+    }
+
+    @Test
+    public void testWarmUpAndSaveSnapshot() throws IOException {
+        val path = tempFolder.getRoot().toPath().resolve("metric-tags.json");
+        when(tsConfig.hasPath("detector-mapping-cache-snapshot-path")).thenReturn(true);
+        when(tsConfig.getString("detector-mapping-cache-snapshot-path")).thenReturn(path.toString());
+        val metricTags = Arrays.<Map<String, String>>asList(
+                ImmutableMap.of("name", "bookings"),
+                ImmutableMap.of("name", "searches"));
+        when(mapper.getCachedMetricTags()).thenReturn(metricTags);
+        val mapperApp = new KafkaAnomalyDetectorMapper(saConfig, mapper);
+
+        // No snapshot yet
+        mapperApp.warmUp();
+        verify(mapper).warmUp(Collections.emptyList());
+
+        mapperApp.saveCacheSnapshot();
+        assertEquals(metricTags, MetricTagsSnapshot.read(path));
+
+        mapperApp.warmUp();
+        verify(mapper).warmUp(metricTags);
+    }
+
+    @Test
+    public void testWarmUpAndSaveSnapshot_ioErrors() throws IOException {
+        // A directory where the snapshot should be, so it can be neither read nor replaced
+        val path = tempFolder.newFolder("metric-tags.json").toPath();
+        Files.createFile(path.resolve("child"));
+        when(tsConfig.hasPath("detector-mapping-cache-snapshot-path")).thenReturn(true);
+        when(tsConfig.getString("detector-mapping-cache-snapshot-path")).thenReturn(path.toString());
+        when(mapper.getCachedMetricTags()).thenReturn(Collections.singletonList(ImmutableMap.of("name", "bookings")));
+        val mapperApp = new KafkaAnomalyDetectorMapper(saConfig, mapper);
+
+        mapperApp.warmUp();
+        mapperApp.saveCacheSnapshot();
+
+        verify(mapper).warmUp(Collections.emptyList());
+        assertTrue(Files.isDirectory(path));
+    }
 }
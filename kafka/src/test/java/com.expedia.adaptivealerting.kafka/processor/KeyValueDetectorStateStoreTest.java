@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.processor;
+
+import com.expedia.adaptivealerting.anomdetect.checkpoint.CheckpointUtil;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaPointForecaster;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.expedia.adaptivealerting.kafka.util.TestObjectMother;
+import lombok.val;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.internals.InMemoryKeyValueStore;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public final class KeyValueDetectorStateStoreTest {
+    private KeyValueStore<String, byte[]> store;
+    private UUID detectorUuid;
+
+    @Before
+    public void setUp() {
+        this.store = new InMemoryKeyValueStore<>("detector-state", Serdes.String(), Serdes.ByteArray());
+        store.init(mock(ProcessorContext.class), store);
+        this.detectorUuid = UUID.randomUUID();
+    }
+
+    @Test
+    public void testSaveAndAttach() {
+        val detector = trainedDetector();
+        val stateStoreUnderTest = new KeyValueDetectorStateStore(store);
+        assertTrue(stateStoreUnderTest.attach(detector));
+        stateStoreUnderTest.save(detector);
+        assertArrayEquals(CheckpointUtil.stateBytes(detector), store.get(detectorUuid.toString()));
+
+        // A fresh detector, e.g. after a cache eviction or a task migration, picks up the stored state.
+        val reloaded = ewmaDetector();
+        assertTrue(new KeyValueDetectorStateStore(store).attach(reloaded));
+        assertArrayEquals(CheckpointUtil.stateBytes(detector), CheckpointUtil.stateBytes(reloaded));
+    }
+
+    @Test
+    public void testSave_reusesBufferAcrossDetectors() {
+        val stateStoreUnderTest = new KeyValueDetectorStateStore(store);
+        val trained = trainedDetector();
+        stateStoreUnderTest.save(trained);
+        val trainedState = store.get(detectorUuid.toString());
+
+        // A smaller state saved afterwards doesn't carry over bytes from the previous one.
+        val other = new ForecastingDetector(
+                UUID.randomUUID(),
+                new EwmaPointForecaster(),
+                new ExponentialWelfordIntervalForecaster(),
+                AnomalyType.TWO_TAILED);
+        stateStoreUnderTest.save(other);
+        assertArrayEquals(CheckpointUtil.stateBytes(other), store.get(other.getUuid().toString()));
+        assertArrayEquals(CheckpointUtil.stateBytes(trained), trainedState);
+    }
+
+    @Test
+    public void testAttach_dropsCollectedDetectors() throws InterruptedException {
+        val stateStoreUnderTest = new KeyValueDetectorStateStore(store);
+        assertTrue(stateStoreUnderTest.attach(ewmaDetector()));
+        assertEquals(1, stateStoreUnderTest.attachedCount());
+
+        for (int i = 0; i < 50 && stateStoreUnderTest.attachedCount() > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(0, stateStoreUnderTest.attachedCount());
+    }
+
+    @Test
+    public void testHasState() {
+        val stateStoreUnderTest = new KeyValueDetectorStateStore(store);
+        assertFalse(stateStoreUnderTest.hasState(detectorUuid));
+        stateStoreUnderTest.save(trainedDetector());
+        assertTrue(stateStoreUnderTest.hasState(detectorUuid));
+    }
+
+    @Test
+    public void testAttach_restoresOncePerDetector() {
+        val detector = ewmaDetector();
+        val stateStoreUnderTest = new KeyValueDetectorStateStore(store);
+        assertTrue(stateStoreUnderTest.attach(detector));
+        val state = CheckpointUtil.stateBytes(detector);
+
+        // Stored state changed behind the attached detector's back isn't read again.
+        store.put(detectorUuid.toString(), CheckpointUtil.stateBytes(trainedDetector()));
+        assertTrue(stateStoreUnderTest.attach(detector));
+        assertArrayEquals(state, CheckpointUtil.stateBytes(detector));
+    }
+
+    @Test
+    public void testAdopt_keepsDetectorState() {
+        store.put(detectorUuid.toString(), CheckpointUtil.stateBytes(trainedDetector()));
+        val detector = ewmaDetector();
+        val state = CheckpointUtil.stateBytes(detector);
+
+        val stateStoreUnderTest = new KeyValueDetectorStateStore(store);
+        stateStoreUnderTest.adopt(detector);
+        assertTrue(stateStoreUnderTest.attach(detector));
+        assertArrayEquals(state, CheckpointUtil.stateBytes(detector));
+    }
+
+    @Test
+    public void testAttach_discardsIncompatibleState() {
+        store.put(detectorUuid.toString(), new byte[]{1, 2, 3});
+        assertFalse(new KeyValueDetectorStateStore(store).attach(ewmaDetector()));
+        assertNull(store.get(detectorUuid.toString()));
+    }
+
+    private Detector trainedDetector() {
+        val detector = ewmaDetector();
+        for (int i = 0; i < 10; i++) {
+            detector.classify(TestObjectMother.metricData(i));
+        }
+        return detector;
+    }
+
+    private Detector ewmaDetector() {
+        return new ForecastingDetector(
+                detectorUuid,
+                new EwmaPointForecaster(),
+                new ExponentialWelfordIntervalForecaster(),
+                AnomalyType.TWO_TAILED);
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.processor;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorManager;
+import com.expedia.adaptivealerting.anomdetect.DetectorStateStore;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
+import com.expedia.adaptivealerting.core.data.MappedMetricData;
+import com.expedia.adaptivealerting.kafka.serde.MappedMetricDataJsonSerde;
+import com.expedia.adaptivealerting.kafka.util.TestObjectMother;
+import lombok.val;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.Punctuator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.internals.InMemoryKeyValueStore;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public final class MappedMetricDataTransformerTest {
+    private static final String STORE_NAME = "pending";
+    private static final String DETECTOR_STATE_STORE_NAME = "detector-state";
+
+    @Mock
+    private DetectorManager manager;
+
+    @Mock
+    private ProcessorContext context;
+
+    private KeyValueStore<String, MappedMetricData> store;
+
+    private KeyValueStore<String, byte[]> detectorStateStore;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        this.store = new InMemoryKeyValueStore<>(STORE_NAME, Serdes.String(), new MappedMetricDataJsonSerde());
+        store.init(context, store);
+        when(context.getStateStore(STORE_NAME)).thenReturn(store);
+        this.detectorStateStore =
+                new InMemoryKeyValueStore<>(DETECTOR_STATE_STORE_NAME, Serdes.String(), Serdes.ByteArray());
+        when(context.getStateStore(DETECTOR_STATE_STORE_NAME)).thenReturn(detectorStateStore);
+    }
+
+    @Test
+    public void testPendingKey() {
+        val uuid = UUID.randomUUID();
+        assertEquals("some:key", MappedMetricDataTransformer.originalKey(
+                MappedMetricDataTransformer.pendingKey(uuid, 42L, "some:key")));
+        assertNull(MappedMetricDataTransformer.originalKey(
+                MappedMetricDataTransformer.pendingKey(uuid, 42L, null)));
+
+        // Zero padding keeps lexicographic and arrival order the same.
+        assertTrue(MappedMetricDataTransformer.pendingKey(uuid, 9L, "z")
+                .compareTo(MappedMetricDataTransformer.pendingKey(uuid, 10L, "a")) < 0);
+    }
+
+    @Test
+    public void testInit_restoresPendingRecords() {
+        val uuid = UUID.randomUUID();
+        val first = mappedMetricData(uuid, AnomalyLevel.WEAK);
+        val second = mappedMetricData(uuid, AnomalyLevel.STRONG);
+        store.put(MappedMetricDataTransformer.pendingKey(uuid, 7L, "first"), first);
+        store.put(MappedMetricDataTransformer.pendingKey(uuid, 8L, null), second);
+
+        val load = new CompletableFuture<Boolean>();
+        when(manager.loadDetectorAsync(uuid)).thenReturn(load);
+
+        val transformerUnderTest = new MappedMetricDataTransformer(manager, STORE_NAME, DETECTOR_STATE_STORE_NAME, 10);
+        val punctuator = init(transformerUnderTest);
+        verify(manager, times(1)).loadDetectorAsync(uuid);
+
+        // New records for the detector queue up behind the restored ones.
+        val third = mappedMetricData(uuid, AnomalyLevel.NORMAL);
+        assertNull(transformerUnderTest.transform("third", third));
+
+        load.complete(true);
+        punctuator.punctuate(0L);
+
+        val inOrder = inOrder(context);
+        inOrder.verify(context).forward(eq("first"), any(MappedMetricData.class));
+        inOrder.verify(context).forward(eq((String) null), any(MappedMetricData.class));
+        inOrder.verify(context).forward(eq("third"), any(MappedMetricData.class));
+        try (val iter = store.all()) {
+            assertFalse(iter.hasNext());
+        }
+    }
+
+    @Test
+    public void testTransform_warmStartsNewDetectors() {
+        val uuid = UUID.randomUUID();
+        val mappedMetricData = mappedMetricData(uuid, AnomalyLevel.WEAK);
+        when(manager.loadDetectorAsync(mappedMetricData)).thenReturn(new CompletableFuture<>());
+
+        val transformerUnderTest = new MappedMetricDataTransformer(manager, STORE_NAME, DETECTOR_STATE_STORE_NAME, 10);
+        init(transformerUnderTest);
+        assertNull(transformerUnderTest.transform("key", mappedMetricData));
+        verify(manager).loadDetectorAsync(mappedMetricData);
+    }
+
+    @Test
+    public void testTransform_doesntWarmStartDetectorsWithStoredState() {
+        val uuid = UUID.randomUUID();
+        val mappedMetricData = mappedMetricData(uuid, AnomalyLevel.WEAK);
+        detectorStateStore.put(uuid.toString(), new byte[]{1});
+        when(manager.loadDetectorAsync(uuid)).thenReturn(new CompletableFuture<>());
+
+        val transformerUnderTest = new MappedMetricDataTransformer(manager, STORE_NAME, DETECTOR_STATE_STORE_NAME, 10);
+        init(transformerUnderTest);
+        assertNull(transformerUnderTest.transform("key", mappedMetricData));
+        verify(manager).loadDetectorAsync(uuid);
+        verify(manager, never()).loadDetectorAsync(any(MappedMetricData.class));
+    }
+
+    @Test
+    public void testTransform_classifiesBatches() {
+        val uuid = UUID.randomUUID();
+        val first = TestObjectMother.mappedMetricData(TestObjectMother.metricData(1.0), uuid);
+        val second = TestObjectMother.mappedMetricData(TestObjectMother.metricData(2.0), uuid);
+        val third = TestObjectMother.mappedMetricData(TestObjectMother.metricData(3.0), uuid);
+        when(manager.hasCachedDetector(uuid)).thenReturn(true);
+        when(manager.classifyCached(eq(Arrays.asList(first, second)), any(DetectorStateStore.class), anySet()))
+                .thenReturn(Arrays.asList(new AnomalyResult(AnomalyLevel.WEAK), null));
+        when(manager.classifyCached(eq(Collections.singletonList(third)), any(DetectorStateStore.class), anySet()))
+                .thenReturn(Collections.singletonList(new AnomalyResult(AnomalyLevel.STRONG)));
+
+        val transformerUnderTest =
+                new MappedMetricDataTransformer(manager, STORE_NAME, DETECTOR_STATE_STORE_NAME, 10, 2);
+        val punctuator = init(transformerUnderTest);
+
+        // A full batch is classified right away; records without a result are dropped.
+        assertNull(transformerUnderTest.transform("first", first));
+        verify(context, never()).forward(any(), any());
+        assertNull(transformerUnderTest.transform("second", second));
+        verify(context).forward(eq("first"), any(MappedMetricData.class));
+
+        // A partial batch is classified on the next punctuation.
+        assertNull(transformerUnderTest.transform("third", third));
+        punctuator.punctuate(0L);
+        verify(context).forward(eq("third"), any(MappedMetricData.class));
+        verify(context, times(2)).forward(any(), any());
+        verify(manager, never()).classify(any(MappedMetricData.class), any(DetectorStateStore.class));
+    }
+
+    @Test
+    public void testTransform_batchedRecordsSurviveRestart() {
+        val uuid = UUID.randomUUID();
+        val first = mappedMetricData(uuid, AnomalyLevel.WEAK);
+        val second = mappedMetricData(uuid, AnomalyLevel.STRONG);
+        when(manager.hasCachedDetector(uuid)).thenReturn(true);
+
+        val transformerUnderTest =
+                new MappedMetricDataTransformer(manager, STORE_NAME, DETECTOR_STATE_STORE_NAME, 10, 100);
+        init(transformerUnderTest);
+        assertNull(transformerUnderTest.transform("first", first));
+        assertNull(transformerUnderTest.transform("second", second));
+        assertEquals(2L, store.approximateNumEntries());
+
+        // The instance dies before flushing; the new owner restores the batch from the store and classifies it in order.
+        val load = new CompletableFuture<Boolean>();
+        when(manager.loadDetectorAsync(uuid)).thenReturn(load);
+        val restoredContext = mock(ProcessorContext.class);
+        when(restoredContext.getStateStore(STORE_NAME)).thenReturn(store);
+        when(restoredContext.getStateStore(DETECTOR_STATE_STORE_NAME)).thenReturn(detectorStateStore);
+        val restored = new MappedMetricDataTransformer(manager, STORE_NAME, DETECTOR_STATE_STORE_NAME, 10, 100);
+        restored.init(restoredContext);
+        val captor = ArgumentCaptor.forClass(Punctuator.class);
+        verify(restoredContext).schedule(anyLong(), eq(PunctuationType.WALL_CLOCK_TIME), captor.capture());
+
+        load.complete(true);
+        captor.getValue().punctuate(0L);
+        val inOrder = inOrder(restoredContext);
+        inOrder.verify(restoredContext).forward(eq("first"), any(MappedMetricData.class));
+        inOrder.verify(restoredContext).forward(eq("second"), any(MappedMetricData.class));
+        assertEquals(0L, store.approximateNumEntries());
+    }
+
+    @Test
+    public void testFlushBatch_deletesBatchedRecords() {
+        val uuid = UUID.randomUUID();
+        val mmd = TestObjectMother.mappedMetricData(TestObjectMother.metricData(1.0), uuid);
+        when(manager.hasCachedDetector(uuid)).thenReturn(true);
+        when(manager.classifyCached(eq(Collections.singletonList(mmd)), any(DetectorStateStore.class), anySet()))
+                .thenReturn(Collections.singletonList(new AnomalyResult(AnomalyLevel.NORMAL)));
+
+        val transformerUnderTest =
+                new MappedMetricDataTransformer(manager, STORE_NAME, DETECTOR_STATE_STORE_NAME, 10, 100);
+        val punctuator = init(transformerUnderTest);
+        assertNull(transformerUnderTest.transform("key", mmd));
+        assertEquals(1L, store.approximateNumEntries());
+
+        punctuator.punctuate(0L);
+        verify(context).forward(eq("key"), any(MappedMetricData.class));
+        assertEquals(0L, store.approximateNumEntries());
+    }
+
+    @Test
+    public void testFlushBatch_parksRecordsOfEvictedDetectors() {
+        val evictedUuid = UUID.randomUUID();
+        val cachedUuid = UUID.randomUUID();
+        val evicted = TestObjectMother.mappedMetricData(TestObjectMother.metricData(1.0), evictedUuid);
+        val cached = TestObjectMother.mappedMetricData(TestObjectMother.metricData(2.0), cachedUuid);
+        when(manager.hasCachedDetector(evictedUuid)).thenReturn(true);
+        when(manager.hasCachedDetector(cachedUuid)).thenReturn(true);
+        when(manager.classifyCached(eq(Arrays.asList(evicted, cached)), any(DetectorStateStore.class), anySet()))
+                .thenAnswer(invocation -> {
+                    Set<UUID> uncached = invocation.getArgument(2);
+                    uncached.add(evictedUuid);
+                    return Arrays.asList(null, new AnomalyResult(AnomalyLevel.NORMAL));
+                });
+        val load = new CompletableFuture<Boolean>();
+        when(manager.loadDetectorAsync(evicted)).thenReturn(load);
+
+        val transformerUnderTest =
+                new MappedMetricDataTransformer(manager, STORE_NAME, DETECTOR_STATE_STORE_NAME, 10, 100);
+        val punctuator = init(transformerUnderTest);
+        assertNull(transformerUnderTest.transform("evicted", evicted));
+        assertNull(transformerUnderTest.transform("cached", cached));
+
+        // The evicted detector is loaded off the stream thread, and its record stays in the store until then.
+        punctuator.punctuate(0L);
+        verify(context).forward(eq("cached"), any(MappedMetricData.class));
+        verify(context, never()).forward(eq("evicted"), any(MappedMetricData.class));
+        verify(manager).loadDetectorAsync(evicted);
+        assertEquals(1L, store.approximateNumEntries());
+
+        // Later records for it queue up behind the parked one.
+        val later = TestObjectMother.mappedMetricData(TestObjectMother.metricData(3.0), evictedUuid);
+        assertNull(transformerUnderTest.transform("later", later));
+
+        when(manager.classify(any(MappedMetricData.class), any(DetectorStateStore.class)))
+                .thenReturn(new AnomalyResult(AnomalyLevel.NORMAL));
+        load.complete(true);
+        punctuator.punctuate(0L);
+        val inOrder = inOrder(context);
+        inOrder.verify(context).forward(eq("evicted"), any(MappedMetricData.class));
+        inOrder.verify(context).forward(eq("later"), any(MappedMetricData.class));
+        assertEquals(0L, store.approximateNumEntries());
+        verify(manager, never()).classify(anyList(), any(DetectorStateStore.class));
+    }
+
+    @Test
+    public void testClose_classifiesBatch() {
+        val uuid = UUID.randomUUID();
+        val mmd = TestObjectMother.mappedMetricData(TestObjectMother.metricData(1.0), uuid);
+        when(manager.hasCachedDetector(uuid)).thenReturn(true);
+        when(manager.classifyCached(eq(Collections.singletonList(mmd)), any(DetectorStateStore.class), anySet()))
+                .thenReturn(Collections.singletonList(new AnomalyResult(AnomalyLevel.NORMAL)));
+
+        val transformerUnderTest =
+                new MappedMetricDataTransformer(manager, STORE_NAME, DETECTOR_STATE_STORE_NAME, 10, 100);
+        init(transformerUnderTest);
+        assertNull(transformerUnderTest.transform("key", mmd));
+        transformerUnderTest.close();
+        verify(context).forward(eq("key"), any(MappedMetricData.class));
+    }
+
+    @Test
+    public void testTransform_batchClassificationError() {
+        val uuid = UUID.randomUUID();
+        val mmd = TestObjectMother.mappedMetricData(TestObjectMother.metricData(1.0), uuid);
+        when(manager.hasCachedDetector(uuid)).thenReturn(true);
+        when(manager.classifyCached(anyList(), any(DetectorStateStore.class), anySet()))
+                .thenThrow(new RuntimeException("Classification error"));
+
+        val transformerUnderTest =
+                new MappedMetricDataTransformer(manager, STORE_NAME, DETECTOR_STATE_STORE_NAME, 10, 1_000);
+        val punctuator = init(transformerUnderTest);
+        assertNull(transformerUnderTest.transform("key", mmd));
+        punctuator.punctuate(0L);
+        transformerUnderTest.close();
+        verify(manager, times(1)).classifyCached(anyList(), any(DetectorStateStore.class), anySet());
+        verify(context, never()).forward(any(), any());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidClassificationBatchSize() {
+        new MappedMetricDataTransformer(manager, STORE_NAME, DETECTOR_STATE_STORE_NAME, 10, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxPending() {
+        new MappedMetricDataTransformer(manager, STORE_NAME, DETECTOR_STATE_STORE_NAME, 0);
+    }
+
+    private Punctuator init(MappedMetricDataTransformer transformer) {
+        transformer.init(context);
+        val captor = ArgumentCaptor.forClass(Punctuator.class);
+        verify(context).schedule(anyLong(), eq(PunctuationType.WALL_CLOCK_TIME), captor.capture());
+        return captor.getValue();
+    }
+
+    private MappedMetricData mappedMetricData(UUID uuid, AnomalyLevel level) {
+        val mmd = TestObjectMother.mappedMetricData(TestObjectMother.metricData(Math.random()), uuid);
+        when(manager.classify(eq(mmd), any(DetectorStateStore.class))).thenReturn(new AnomalyResult(level));
+        return mmd;
+    }
+}
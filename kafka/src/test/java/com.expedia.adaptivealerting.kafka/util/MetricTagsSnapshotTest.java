@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.util;
+
+import com.google.common.collect.ImmutableMap;
+import lombok.val;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class MetricTagsSnapshotTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        val path = tempFolder.getRoot().toPath().resolve("snapshot/metric-tags.json");
+        val metricTags = Arrays.<Map<String, String>>asList(
+                ImmutableMap.of("name", "bookings", "region", "us-west-2"),
+                ImmutableMap.of("name", "searches, \"all\"\n"));
+
+        MetricTagsSnapshot.write(path, metricTags);
+
+        assertTrue(Files.exists(path));
+        assertFalse(Files.exists(path.resolveSibling("metric-tags.json.tmp")));
+        assertEquals(metricTags, MetricTagsSnapshot.read(path));
+    }
+
+    @Test
+    public void testWrite_replacesSnapshot() throws IOException {
+        val path = tempFolder.getRoot().toPath().resolve("metric-tags.json");
+        MetricTagsSnapshot.write(path, Collections.singletonList(ImmutableMap.of("name", "bookings")));
+
+        MetricTagsSnapshot.write(path, Collections.emptyList());
+
+        assertEquals(Collections.emptyList(), MetricTagsSnapshot.read(path));
+    }
+
+    @Test
+    public void testRead_missingSnapshot() throws IOException {
+        val path = tempFolder.getRoot().toPath().resolve("missing.json");
+        assertEquals(Collections.emptyList(), MetricTagsSnapshot.read(path));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRead_invalidSnapshot() throws IOException {
+        val path = tempFolder.newFile("invalid.json").toPath();
+        Files.write(path, "not json\n".getBytes(StandardCharsets.UTF_8));
+        MetricTagsSnapshot.read(path);
+    }
+}
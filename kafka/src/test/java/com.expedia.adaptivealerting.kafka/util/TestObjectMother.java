@@ -207,7 +207,8 @@ public final class TestObjectMother {
             boolean continueOnDeserException) {
 
         val props = new Properties();
-        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "test");
+        // Stateful topologies lock their state directory, so each driver needs its own application ID.
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "test-" + UUID.randomUUID());
         props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:1234");
         props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass().getName());
         props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, valueSerdeClass.getName());
@@ -37,5 +37,12 @@ public interface DetectorMappingService {
 
     List<DetectorMapping> findLastUpdated(int timeInSeconds);
 
+    /**
+     * Finds every enabled detector mapping, e.g. so that clients can match metrics against them locally.
+     *
+     * @return The enabled detector mappings.
+     */
+    List<DetectorMapping> findAllEnabled();
+
     void disableDetectorMapping(String id);
 }
@@ -50,6 +50,25 @@ public interface ModelRepository extends PagingAndSortingRepository<Model, Long>
     @Query(nativeQuery = true, value = "SELECT m1.* FROM  model m1, detector d1  where d1.id=m1.detector_id and d1.uuid=:uuid ORDER BY m1.date_created DESC LIMIT 1;")
     Model findByDetectorUuid(@Param("uuid") String uuid);
 
+    /**
+     * Finds the latest model for each of the given detectors in a single query. Detectors without models are absent from
+     * the result. Callers should keep the UUID list short enough to fit in a request URI (a few hundred at most).
+     *
+     * @param uuids Detector UUIDs.
+     * @return Latest model for each detector that has one.
+     */
+    @Query(nativeQuery = true, value = "SELECT m1.*\n" +
+            "FROM model m1\n" +
+            "       join (SELECT model.detector_id, MAX(model.date_created) max_date_created\n" +
+            "             FROM model\n" +
+            "                    join detector d on d.id = model.detector_id\n" +
+            "             where d.uuid in (:uuids)\n" +
+            "             GROUP BY model.detector_id) filtered_table\n" +
+            "where m1.detector_id = filtered_table.detector_id\n" +
+            "  and m1.date_created = filtered_table.max_date_created")
+    @RestResource(rel = "findLatestByDetectorUuids", path = "findLatestByDetectorUuids")
+    List<Model> findLatestByDetectorUuids(@Param("uuids") List<String> uuids);
+
     // FIXME Shouldn't this return a single model? [WLW]
     @RestResource(rel = "findLatestByDetectorUuid", path = "findLatestByDetectorUuid")
     List<Model> findTopByDetectorUuidOrderByDateCreatedDesc(@Param("uuid") String uuid);
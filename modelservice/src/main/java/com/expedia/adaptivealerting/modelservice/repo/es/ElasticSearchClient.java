@@ -22,8 +22,11 @@ import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.ClearScrollResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
 import org.elasticsearch.client.IndicesClient;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
@@ -63,4 +66,13 @@ public class ElasticSearchClient {
     public SearchResponse search(SearchRequest searchRequest, RequestOptions options) throws IOException {
         return client.search(searchRequest, options);
     }
+
+    public SearchResponse scroll(SearchScrollRequest searchScrollRequest, RequestOptions options) throws IOException {
+        return client.scroll(searchScrollRequest, options);
+    }
+
+    public ClearScrollResponse clearScroll(ClearScrollRequest clearScrollRequest, RequestOptions options)
+            throws IOException {
+        return client.clearScroll(clearScrollRequest, options);
+    }
 }
@@ -37,8 +37,10 @@ import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.ClearScrollRequest;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.document.DocumentField;
@@ -75,6 +77,9 @@ import static com.expedia.adaptivealerting.modelservice.repo.es.DetectorMappingE
 @Slf4j
 @SuppressWarnings({"PMD.ExcessiveImports", "PMD.AvoidThrowingRawExceptionTypes"})
 public class ElasticSearchDetectorMappingService implements DetectorMappingService {
+    private static final int SNAPSHOT_PAGE_SIZE = 500;
+    private static final TimeValue SNAPSHOT_SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(1L);
+
     private ObjectMapper objectMapper = new ObjectMapper();
 
     @Autowired
@@ -279,6 +284,52 @@ public class ElasticSearchDetectorMappingService implements DetectorMappingServi
         return getDetectorMappings(searchRequest);
     }
 
+    @Override
+    public List<DetectorMapping> findAllEnabled() {
+        final SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+                .query(QueryBuilders.matchAllQuery())
+                .size(SNAPSHOT_PAGE_SIZE);
+        final SearchRequest searchRequest =
+                new SearchRequest()
+                        .source(sourceBuilder)
+                        .indices(elasticSearchProperties.getIndexName())
+                        .types(elasticSearchProperties.getDocType())
+                        .scroll(SNAPSHOT_SCROLL_KEEP_ALIVE);
+        final List<DetectorMapping> result = new ArrayList<>();
+        try {
+            SearchResponse searchResponse = elasticSearchClient.search(searchRequest, RequestOptions.DEFAULT);
+            String scrollId = searchResponse.getScrollId();
+            SearchHit[] hits = searchResponse.getHits().getHits();
+            while (hits != null && hits.length > 0) {
+                for (SearchHit hit : hits) {
+                    DetectorMapping detectorMapping = getDetectorMapping(hit.getSourceAsString(), hit.getId(),
+                            Optional.empty());
+                    if (detectorMapping.isEnabled()) {
+                        result.add(detectorMapping);
+                    }
+                }
+                if (scrollId == null) {
+                    break;
+                }
+                final SearchScrollRequest scrollRequest = new SearchScrollRequest(scrollId)
+                        .scroll(SNAPSHOT_SCROLL_KEEP_ALIVE);
+                searchResponse = elasticSearchClient.scroll(scrollRequest, RequestOptions.DEFAULT);
+                scrollId = searchResponse.getScrollId();
+                hits = searchResponse.getHits().getHits();
+            }
+            if (scrollId != null) {
+                final ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+                clearScrollRequest.addScrollId(scrollId);
+                elasticSearchClient.clearScroll(clearScrollRequest, RequestOptions.DEFAULT);
+            }
+        } catch (IOException e) {
+            log.error("Search failed", e);
+            throw new RuntimeException("Search failed", e);
+        }
+        log.info("Found {} enabled detector mappings", result.size());
+        return result;
+    }
+
     private List<DetectorMapping> getDetectorMappings(SearchRequest searchRequest) {
         try {
             SearchResponse searchResponse = elasticSearchClient.search(searchRequest, RequestOptions.DEFAULT);
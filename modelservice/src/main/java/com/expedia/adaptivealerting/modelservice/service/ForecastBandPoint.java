@@ -0,0 +1,35 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Expected value and thresholds for one future observation. Values the detector can't forecast yet are null.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ForecastBandPoint {
+    private long epochSecond;
+    private Double predicted;
+    private Double upperStrong;
+    private Double upperWeak;
+    private Double lowerWeak;
+    private Double lowerStrong;
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.service;
+
+import java.util.List;
+
+/**
+ * Service to project a detector's expected band over the next few observations of a metric.
+ */
+public interface ForecastBandService {
+
+    /**
+     * Returns the band for the next {@code request.getHorizon()} observations, nearest first.
+     *
+     * @param request Forecast band request.
+     * @return Band points, nearest first.
+     */
+    List<ForecastBandPoint> getForecastBand(ForecastBandRequest request);
+}
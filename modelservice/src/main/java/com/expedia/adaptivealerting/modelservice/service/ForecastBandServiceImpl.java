@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.service;
+
+import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelResource;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelTypeResource;
+import com.expedia.adaptivealerting.anomdetect.comp.legacy.LegacyDetectorFactory;
+import com.expedia.adaptivealerting.anomdetect.detector.ForecastingDetector;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * Builds the requested detector, trains it on the metric's history as a single batch, and then projects its band
+ * from the trained state. The projection doesn't change the detector, so the band is exactly what the detector would
+ * use for the next observations if they arrived now.
+ */
+@Service
+@Slf4j
+public class ForecastBandServiceImpl implements ForecastBandService {
+
+    @Autowired
+    private MetricHistoryService metricHistoryService;
+
+    @Override
+    public List<ForecastBandPoint> getForecastBand(ForecastBandRequest request) {
+        notNull(request, "request can't be null");
+        notNull(request.getMetricTags(), "metricTags can't be null");
+        isTrue(request.getHorizon() > 0, "horizon must be strictly positive");
+
+        val detector = getDetector(request);
+        val history = metricHistoryService.getMetricHistory(request.getMetricTags(), Integer.MAX_VALUE);
+
+        // Sources report gaps as null data points, which the detector skips.
+        int size = 0;
+        long[] timestamps = new long[history.size()];
+        double[] values = new double[history.size()];
+        for (val result : history) {
+            if (result.getDataPoint() != null) {
+                timestamps[size] = result.getEpochSecond();
+                values[size] = result.getDataPoint();
+                size++;
+            }
+        }
+        if (size < history.size()) {
+            timestamps = Arrays.copyOf(timestamps, size);
+            values = Arrays.copyOf(values, size);
+        }
+        detector.classify(timestamps, values, new AnomalyBatchResult(size));
+
+        val band = detector.forecastBand(request.getHorizon());
+        // Assume the metric keeps its most recent reporting interval.
+        val n = history.size();
+        val last = n > 0 ? history.get(n - 1).getEpochSecond() : 0L;
+        val step = n > 1 ? last - history.get(n - 2).getEpochSecond() : 0L;
+        val points = new ArrayList<ForecastBandPoint>(band.getHorizon());
+        for (int h = 0; h < band.getHorizon(); h++) {
+            points.add(new ForecastBandPoint(
+                    last + (h + 1) * step,
+                    toDouble(band.getPredicted(h)),
+                    toDouble(band.getUpperStrong(h)),
+                    toDouble(band.getUpperWeak(h)),
+                    toDouble(band.getLowerWeak(h)),
+                    toDouble(band.getLowerStrong(h))));
+        }
+        return points;
+    }
+
+    private ForecastingDetector getDetector(ForecastBandRequest request) {
+        val model = new ModelResource()
+                .setDetectorType(new ModelTypeResource(request.getDetectorType()))
+                .setParams(request.getDetectorParams())
+                .setDateCreated(new Date());
+        val detector = new LegacyDetectorFactory().createDetector(UUID.randomUUID(), model);
+        if (!(detector instanceof ForecastingDetector)) {
+            throw new IllegalArgumentException("Detector type doesn't forecast: " + request.getDetectorType());
+        }
+        return (ForecastingDetector) detector;
+    }
+
+    private static Double toDouble(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.service;
+
+import com.expedia.adaptivealerting.modelservice.spi.MetricSourceResult;
+
+import java.util.List;
+
+/**
+ * Service to fetch recent history for a given metric, e.g. to warm start new detectors.
+ */
+public interface MetricHistoryService {
+
+    /**
+     * Returns the most recent data points for the given metric, oldest first.
+     *
+     * @param metricTags Metric tags.
+     * @param limit      Maximum number of data points.
+     * @return Data points, oldest first.
+     */
+    List<MetricSourceResult> getMetricHistory(String metricTags, int limit);
+}
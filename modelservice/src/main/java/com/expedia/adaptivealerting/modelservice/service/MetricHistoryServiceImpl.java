@@ -0,0 +1,55 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.service;
+
+import com.expedia.adaptivealerting.modelservice.spi.MetricSource;
+import com.expedia.adaptivealerting.modelservice.spi.MetricSourceResult;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * Fetches metric history from the first metric source that has any.
+ */
+@Service
+@Slf4j
+public class MetricHistoryServiceImpl implements MetricHistoryService {
+
+    @Autowired
+    private List<? extends MetricSource> metricSources;
+
+    @Override
+    public List<MetricSourceResult> getMetricHistory(String metricTags, int limit) {
+        notNull(metricTags, "metricTags can't be null");
+        isTrue(limit > 0, "limit must be strictly positive");
+
+        for (val metricSource : metricSources) {
+            val results = metricSource.getMetricData(metricTags);
+            if (!results.isEmpty()) {
+                return new ArrayList<>(results.subList(Math.max(0, results.size() - limit), results.size()));
+            }
+        }
+        return Collections.emptyList();
+    }
+}
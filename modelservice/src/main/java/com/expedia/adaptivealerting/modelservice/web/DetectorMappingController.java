@@ -77,6 +77,11 @@ public class DetectorMappingController {
         return detectorMappingService.findLastUpdated(timeInSecs);
     }
 
+    @RequestMapping(value = "/enabled", method = RequestMethod.GET)
+    public List<DetectorMapping> findEnabledDetectorMappings() {
+        return detectorMappingService.findAllEnabled();
+    }
+
     @RequestMapping(value = "/findMatchingByTags", method = RequestMethod.POST)
     public MatchingDetectorsResponse searchDetectorMapping(@RequestBody List<Map<String, String>> tagsList) {
         return detectorMappingService.findMatchingDetectorMappings(tagsList);
@@ -13,6 +13,7 @@ INSERT INTO `model_type` (`ukey`) VALUES
   ('cusum-detector'),
   ('ewma-detector'),
   ('individuals-detector'),
+  ('median-detector'),
   ('pewma-detector'),
   ('rcf-detector')
 ;
@@ -32,8 +32,10 @@ import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.search.ClearScrollRequest;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
@@ -65,6 +67,8 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -187,6 +191,43 @@ public class ElasticSearchDetectorMappingServiceTest {
         detectorMappingService.findLastUpdated(TimeinSeconds);
     }
 
+    @Test
+    public void findAllEnabled_scrollsThroughAllPages() throws IOException {
+        val detectorUuid = "aeb4d849-847a-45c0-8312-dc0fcf22b639";
+        SearchResponse firstPage = mockSearchResponse("2", 100, detectorUuid);
+        when(firstPage.getScrollId()).thenReturn("scroll-1");
+        SearchResponse secondPage = mockSearchResponse("2", 100, detectorUuid);
+        when(secondPage.getScrollId()).thenReturn("scroll-2");
+        SearchResponse lastPage = mock(SearchResponse.class);
+        when(lastPage.getScrollId()).thenReturn("scroll-3");
+        when(lastPage.getHits()).thenReturn(new SearchHits(new SearchHit[0], 2, 1));
+        when(elasticSearchClient.search(any(SearchRequest.class), eq(RequestOptions.DEFAULT))).thenReturn(firstPage);
+        when(elasticSearchClient.scroll(any(SearchScrollRequest.class), eq(RequestOptions.DEFAULT)))
+                .thenReturn(secondPage, lastPage);
+
+        List<DetectorMapping> mappings = detectorMappingService.findAllEnabled();
+
+        assertEquals(2, mappings.size());
+        assertEquals(UUID.fromString(detectorUuid), mappings.get(1).getDetector().getId());
+        verify(elasticSearchClient, times(2)).scroll(any(SearchScrollRequest.class), eq(RequestOptions.DEFAULT));
+        verify(elasticSearchClient).clearScroll(any(ClearScrollRequest.class), eq(RequestOptions.DEFAULT));
+    }
+
+    @Test
+    public void findAllEnabled_withoutScrollId() throws IOException {
+        SearchResponse page = mockSearchResponse("2", 100, "aeb4d849-847a-45c0-8312-dc0fcf22b639");
+        when(elasticSearchClient.search(any(SearchRequest.class), eq(RequestOptions.DEFAULT))).thenReturn(page);
+
+        assertEquals(1, detectorMappingService.findAllEnabled().size());
+        verify(elasticSearchClient, never()).clearScroll(any(ClearScrollRequest.class), eq(RequestOptions.DEFAULT));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void findAllEnabled_fail() throws IOException {
+        when(elasticSearchClient.search(any(SearchRequest.class), eq(RequestOptions.DEFAULT))).thenThrow(new IOException());
+        detectorMappingService.findAllEnabled();
+    }
+
     @Test
     public void search_successful() throws IOException {
         List<DetectorMapping> tagsList = new ArrayList<>();
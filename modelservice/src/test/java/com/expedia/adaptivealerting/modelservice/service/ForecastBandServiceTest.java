@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.service;
+
+import com.expedia.adaptivealerting.modelservice.spi.MetricSourceResult;
+import lombok.val;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ForecastBandServiceTest {
+    private static final String METRIC_TAGS = "what=bookings";
+    private static final double TOLERANCE = 1e-9;
+
+    @InjectMocks
+    private ForecastBandService serviceUnderTest = new ForecastBandServiceImpl();
+
+    @Mock
+    private MetricHistoryService metricHistoryService;
+
+    @Test
+    public void testGetForecastBand() {
+        when(metricHistoryService.getMetricHistory(METRIC_TAGS, Integer.MAX_VALUE)).thenReturn(Arrays.asList(
+                new MetricSourceResult(10.0, 60L),
+                new MetricSourceResult(20.0, 120L),
+                new MetricSourceResult(null, 180L),
+                new MetricSourceResult(30.0, 240L)));
+
+        val params = new HashMap<String, Object>();
+        params.put("alpha", 0.5);
+        params.put("initMeanEstimate", 0.0);
+        val band = serviceUnderTest.getForecastBand(request("ewma-detector", params, 3));
+
+        assertEquals(3, band.size());
+        for (int h = 0; h < 3; h++) {
+            val point = band.get(h);
+            assertEquals(240L + 60L * (h + 1), point.getEpochSecond());
+            assertEquals(21.25, point.getPredicted(), TOLERANCE);
+            assertTrue(point.getUpperStrong() > point.getUpperWeak());
+            assertTrue(point.getLowerWeak() > point.getLowerStrong());
+        }
+        assertTrue(band.get(2).getUpperStrong() > band.get(0).getUpperStrong());
+    }
+
+    @Test
+    public void testGetForecastBand_stillTraining() {
+        when(metricHistoryService.getMetricHistory(METRIC_TAGS, Integer.MAX_VALUE)).thenReturn(Arrays.asList(
+                new MetricSourceResult(10.0, 60L),
+                new MetricSourceResult(11.0, 120L)));
+
+        val params = new HashMap<String, Object>();
+        params.put("frequency", 24);
+        params.put("initTrainingMethod", "SIMPLE");
+        params.put("warmUpPeriod", 48);
+        val band = serviceUnderTest.getForecastBand(request("holtwinters-detector", params, 2));
+
+        assertEquals(2, band.size());
+        assertEquals(180L, band.get(0).getEpochSecond());
+        assertNull(band.get(0).getPredicted());
+        assertNull(band.get(0).getUpperStrong());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetForecastBand_notForecasting() {
+        val params = new HashMap<String, Object>();
+        val thresholds = new HashMap<String, Object>();
+        thresholds.put("upperStrong", 100.0);
+        params.put("thresholds", thresholds);
+        params.put("type", "RIGHT_TAILED");
+        serviceUnderTest.getForecastBand(request("constant-detector", params, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetForecastBand_invalidHorizon() {
+        serviceUnderTest.getForecastBand(request("ewma-detector", new HashMap<>(), 0));
+    }
+
+    private static ForecastBandRequest request(String detectorType, Map<String, Object> params, int horizon) {
+        return new ForecastBandRequest()
+                .setMetricTags(METRIC_TAGS)
+                .setDetectorType(detectorType)
+                .setDetectorParams(params)
+                .setHorizon(horizon);
+    }
+}
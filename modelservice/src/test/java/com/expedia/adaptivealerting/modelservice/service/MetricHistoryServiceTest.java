@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.service;
+
+import com.expedia.adaptivealerting.modelservice.spi.MetricSource;
+import com.expedia.adaptivealerting.modelservice.spi.MetricSourceResult;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MetricHistoryServiceTest {
+    private static final String METRIC_TAGS = "what=bookings";
+
+    @InjectMocks
+    private MetricHistoryService serviceUnderTest = new MetricHistoryServiceImpl();
+
+    @Spy
+    private List<MetricSource> metricSources = new ArrayList<>();
+
+    @Mock
+    private MetricSource emptySource;
+
+    @Mock
+    private MetricSource metricSource;
+
+    @Before
+    public void setUp() {
+        metricSources.add(emptySource);
+        metricSources.add(metricSource);
+        when(emptySource.getMetricData(METRIC_TAGS)).thenReturn(Collections.emptyList());
+    }
+
+    @Test
+    public void testGetMetricHistory() {
+        when(metricSource.getMetricData(METRIC_TAGS)).thenReturn(Arrays.asList(
+                new MetricSourceResult(1.0, 60L),
+                new MetricSourceResult(2.0, 120L),
+                new MetricSourceResult(3.0, 180L)));
+
+        val history = serviceUnderTest.getMetricHistory(METRIC_TAGS, 2);
+        assertEquals(2, history.size());
+        assertEquals(new MetricSourceResult(2.0, 120L), history.get(0));
+        assertEquals(new MetricSourceResult(3.0, 180L), history.get(1));
+    }
+
+    @Test
+    public void testGetMetricHistory_noHistory() {
+        when(metricSource.getMetricData(METRIC_TAGS)).thenReturn(Collections.emptyList());
+        assertTrue(serviceUnderTest.getMetricHistory(METRIC_TAGS, 2).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetMetricHistory_invalidLimit() {
+        serviceUnderTest.getMetricHistory(METRIC_TAGS, 0);
+    }
+}
@@ -128,6 +128,13 @@ public class DetectorMappingControllerTest {
         assertEquals(0, listofdetectorMappingsreturned.size());
     }
 
+    @Test
+    public void testFindEnabledDetectorMappings() {
+        List<DetectorMapping> detectorMappings = mockDetectorMappingsList();
+        when(detectorMappingService.findAllEnabled()).thenReturn(detectorMappings);
+        assertEquals(detectorMappings, controllerUnderTest.findEnabledDetectorMappings());
+    }
+
     @Test
     public void testdetectorMappingsearch() throws Exception {
         List<DetectorMapping> detectorMappingslist = mockDetectorMappingsList();
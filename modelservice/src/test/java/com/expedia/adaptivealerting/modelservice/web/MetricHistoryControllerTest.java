@@ -0,0 +1,56 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web;
+
+import com.expedia.adaptivealerting.modelservice.service.MetricHistoryService;
+import com.expedia.adaptivealerting.modelservice.spi.MetricSourceResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.when;
+
+public class MetricHistoryControllerTest {
+
+    // Class under test
+    @InjectMocks
+    private MetricHistoryController controller;
+
+    // Dependencies
+    @Mock
+    private MetricHistoryService metricHistoryService;
+
+    // Test objects
+    @Mock
+    private List<MetricSourceResult> results;
+
+    @Before
+    public void setUp() {
+        this.controller = new MetricHistoryController();
+        MockitoAnnotations.initMocks(this);
+        when(metricHistoryService.getMetricHistory("what=bookings", 10)).thenReturn(results);
+    }
+
+    @Test
+    public void testGetMetricHistory() {
+        assertSame(results, controller.getMetricHistory("what=bookings", 10));
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.tools.tuning;
+
+import com.expedia.adaptivealerting.anomdetect.comp.legacy.LegacyDetectorFactory;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyBatchResult;
+import com.expedia.adaptivealerting.core.data.MetricFrame;
+import com.expedia.adaptivealerting.core.evaluator.Evaluator;
+import com.expedia.adaptivealerting.core.evaluator.RmseEvaluator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Searches a detector's hyperparameters for the configurations whose point forecasts best fit a metric's history.
+ * Each candidate gets a fresh detector that classifies the whole series as a single batch, and an {@link Evaluator}
+ * scores its forecasts against the observed values. Detectors still forecast while warming up, so a burn-in period
+ * can exclude the leading observations from the score, which also compares every candidate over the same window.
+ * Observations without a forecast aren't scored.
+ * </p>
+ * <p>
+ * Candidates run in parallel on the given {@link ForkJoinPool}. The series is copied once into primitive arrays that
+ * every candidate reads but none writes, and each worker thread reuses a single batch result, so the per-candidate cost
+ * is little more than the detector itself.
+ * </p>
+ * <p>
+ * Note that only the params that drive the point forecast affect the score. Threshold params such as
+ * {@code weakSigmas} and {@code strongSigmas} are passed through to the detector but don't change the ranking.
+ * </p>
+ */
+@Slf4j
+public final class HyperparameterTuner {
+    private final ForkJoinPool pool;
+    private final Supplier<Evaluator> evaluatorSupplier;
+    private final int burnIn;
+    private final LegacyDetectorFactory detectorFactory = new LegacyDetectorFactory();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ThreadLocal<AnomalyBatchResult> batchResults = ThreadLocal.withInitial(AnomalyBatchResult::new);
+
+    /**
+     * Creates a tuner that scores candidates by RMSE on the common pool.
+     */
+    public HyperparameterTuner() {
+        this(ForkJoinPool.commonPool(), RmseEvaluator::new);
+    }
+
+    /**
+     * Creates a tuner.
+     *
+     * @param pool              Pool to run candidates on.
+     * @param evaluatorSupplier Supplies a new evaluator for each candidate. Lower scores are better.
+     */
+    public HyperparameterTuner(ForkJoinPool pool, Supplier<Evaluator> evaluatorSupplier) {
+        this(pool, evaluatorSupplier, 0);
+    }
+
+    /**
+     * Creates a tuner.
+     *
+     * @param pool              Pool to run candidates on.
+     * @param evaluatorSupplier Supplies a new evaluator for each candidate. Lower scores are better.
+     * @param burnIn            Number of leading observations that the detectors learn from but that aren't scored.
+     */
+    public HyperparameterTuner(ForkJoinPool pool, Supplier<Evaluator> evaluatorSupplier, int burnIn) {
+        notNull(pool, "pool can't be null");
+        notNull(evaluatorSupplier, "evaluatorSupplier can't be null");
+        isTrue(burnIn >= 0, "Required: burnIn >= 0");
+        this.pool = pool;
+        this.evaluatorSupplier = evaluatorSupplier;
+        this.burnIn = burnIn;
+    }
+
+    /**
+     * Returns the best candidates for the given metric frame, best first.
+     *
+     * @param frame        Metric frame.
+     * @param detectorType Legacy detector type key.
+     * @param space        Search space.
+     * @param topN         Maximum number of results to return.
+     * @return Best candidates and their scores, best first.
+     */
+    public List<TuningResult> tune(MetricFrame frame, String detectorType, SearchSpace space, int topN) {
+        notNull(frame, "frame can't be null");
+
+        val numRows = frame.getNumRows();
+        val timestamps = new long[numRows];
+        val values = new double[numRows];
+        for (int i = 0; i < numRows; i++) {
+            val metricData = frame.getMetricDataPoint(i);
+            timestamps[i] = metricData.getTimestamp();
+            values[i] = metricData.getValue();
+        }
+        return tune(timestamps, values, detectorType, space, topN);
+    }
+
+    /**
+     * Returns the best candidates for the given series, best first. The arrays are shared by all the candidates and
+     * must not be modified during the search.
+     *
+     * @param timestamps   Observation epoch seconds.
+     * @param values       Observed values. Must have the same length as timestamps.
+     * @param detectorType Legacy detector type key.
+     * @param space        Search space.
+     * @param topN         Maximum number of results to return.
+     * @return Best candidates and their scores, best first.
+     */
+    public List<TuningResult> tune(
+            long[] timestamps,
+            double[] values,
+            String detectorType,
+            SearchSpace space,
+            int topN) {
+
+        notNull(timestamps, "timestamps can't be null");
+        notNull(values, "values can't be null");
+        notNull(space, "space can't be null");
+        isTrue(timestamps.length == values.length, "timestamps and values must have the same length");
+        isTrue(topN > 0, "Required: topN > 0");
+
+        val type = TunableDetectorType.fromKey(detectorType);
+        val candidates = space.candidates();
+        val start = System.nanoTime();
+
+        List<TuningResult> results;
+        try {
+            results = pool.submit(() -> IntStream.range(0, candidates.size())
+                    .parallel()
+                    .mapToObj(i -> evaluate(type, i, candidates.get(i), timestamps, values))
+                    .filter(Objects::nonNull)
+                    .sorted(Comparator.comparingDouble(result -> result.getEvaluation().getEvaluatorScore()))
+                    .limit(topN)
+                    .collect(Collectors.toList()))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while tuning " + detectorType, e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to tune " + detectorType, e.getCause());
+        }
+
+        log.info("Tuned {}: candidates={}, points={}, millis={}",
+                detectorType, candidates.size(), values.length, (System.nanoTime() - start) / 1_000_000);
+        return results;
+    }
+
+    private TuningResult evaluate(
+            TunableDetectorType type,
+            int index,
+            Map<String, Object> params,
+            long[] timestamps,
+            double[] values) {
+
+        val detector = createDetector(type, index, params);
+        if (detector == null) {
+            return null;
+        }
+
+        val batchResult = batchResults.get();
+        detector.classify(timestamps, values, batchResult);
+
+        // Score one-step-ahead forecasts only. Scoring a forecast that has already seen the observation would favor
+        // the candidates that smooth the least.
+        val predicted = batchResult.getPredicted();
+        val lag = type.getForecastLag();
+        val evaluator = evaluatorSupplier.get();
+        int numScored = 0;
+        for (int i = Math.max(burnIn, lag); i < values.length; i++) {
+            val forecast = predicted[i - lag];
+            if (!Double.isNaN(forecast)) {
+                evaluator.update(values[i], forecast);
+                numScored++;
+            }
+        }
+        if (numScored == 0) {
+            log.debug("Skipping candidate without forecasts: {}", params);
+            return null;
+        }
+        return new TuningResult(params, evaluator.evaluate());
+    }
+
+    private Detector createDetector(
+            TunableDetectorType type,
+            int index,
+            Map<String, Object> params) {
+
+        try {
+            return type.create(detectorFactory, objectMapper, new UUID(0L, index), params);
+        } catch (IllegalArgumentException e) {
+            // Random search spaces in particular can produce invalid combinations, e.g. strongSigmas < weakSigmas.
+            log.debug("Skipping invalid candidate {}: {}", params, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.tools.tuning;
+
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * Exhaustive grid search space: the candidates are the cartesian product of the values given for each param. Params
+ * with a single value are simply fixed.
+ */
+public final class ParamGrid implements SearchSpace {
+    private final Map<String, List<Object>> values = new LinkedHashMap<>();
+
+    /**
+     * Adds a param to the grid, replacing any values already given for it.
+     *
+     * @param name   Param name.
+     * @param values Param values.
+     * @return This grid.
+     */
+    public ParamGrid param(String name, Object... values) {
+        notNull(name, "name can't be null");
+        notNull(values, "values can't be null");
+        isTrue(values.length > 0, "values can't be empty");
+        this.values.put(name, Arrays.asList(values));
+        return this;
+    }
+
+    /**
+     * Returns the number of candidates in the grid.
+     *
+     * @return Number of candidates.
+     */
+    public int size() {
+        int size = 1;
+        for (val paramValues : values.values()) {
+            size = Math.multiplyExact(size, paramValues.size());
+        }
+        return size;
+    }
+
+    @Override
+    public List<Map<String, Object>> candidates() {
+        List<Map<String, Object>> candidates = Collections.singletonList(Collections.emptyMap());
+        for (val entry : values.entrySet()) {
+            val expanded = new ArrayList<Map<String, Object>>(candidates.size() * entry.getValue().size());
+            for (val candidate : candidates) {
+                for (val value : entry.getValue()) {
+                    val params = new LinkedHashMap<String, Object>(candidate);
+                    params.put(entry.getKey(), value);
+                    expanded.add(params);
+                }
+            }
+            candidates = expanded;
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.tools.tuning;
+
+import com.expedia.adaptivealerting.anomdetect.comp.legacy.EwmaParams;
+import com.expedia.adaptivealerting.anomdetect.comp.legacy.HoltWintersParams;
+import com.expedia.adaptivealerting.anomdetect.comp.legacy.LegacyDetectorFactory;
+import com.expedia.adaptivealerting.anomdetect.comp.legacy.PewmaParams;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Legacy detector types that {@link HyperparameterTuner} can tune. These are the forecasting detectors, whose params
+ * drive a point forecast that can be scored against the observed values.
+ */
+@RequiredArgsConstructor
+public enum TunableDetectorType {
+    EWMA("ewma-detector", 1) {
+        @Override
+        Detector create(LegacyDetectorFactory factory, ObjectMapper mapper, UUID uuid, Map<String, Object> params) {
+            return factory.createEwmaDetector(uuid, mapper.convertValue(params, EwmaParams.class));
+        }
+    },
+    HOLT_WINTERS("holtwinters-detector", 0) {
+        @Override
+        Detector create(LegacyDetectorFactory factory, ObjectMapper mapper, UUID uuid, Map<String, Object> params) {
+            return factory.createHoltWintersDetector(uuid, mapper.convertValue(params, HoltWintersParams.class));
+        }
+    },
+    PEWMA("pewma-detector", 1) {
+        @Override
+        Detector create(LegacyDetectorFactory factory, ObjectMapper mapper, UUID uuid, Map<String, Object> params) {
+            return factory.createPewmaDetector(uuid, mapper.convertValue(params, PewmaParams.class));
+        }
+    };
+
+    /**
+     * Legacy detector type key, as used by the model service.
+     */
+    @Getter
+    private final String key;
+
+    /**
+     * How many observations the detector's point forecasts lag behind. EWMA and PEWMA report the smoothed mean after
+     * taking the observation into account, so the one-step-ahead forecast for observation {@code i} is the value they
+     * report for observation {@code i - 1}. Holt-Winters reports its forecast before taking the observation into
+     * account.
+     */
+    @Getter
+    private final int forecastLag;
+
+    /**
+     * Returns the tunable type with the given legacy detector type key.
+     *
+     * @param key Legacy detector type key.
+     * @return Tunable detector type.
+     * @throws IllegalArgumentException if the type isn't tunable
+     */
+    public static TunableDetectorType fromKey(String key) {
+        for (TunableDetectorType type : values()) {
+            if (type.key.equals(key)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported detector type: " + key);
+    }
+
+    // Uses the typed factory methods rather than createDetector() so candidates don't log and record build metrics
+    // as if they were live detectors.
+    abstract Detector create(
+            LegacyDetectorFactory factory,
+            ObjectMapper mapper,
+            UUID uuid,
+            Map<String, Object> params);
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.tools.tuning;
+
+import com.expedia.adaptivealerting.core.evaluator.ModelEvaluation;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.Map;
+
+/**
+ * A candidate configuration and its score.
+ */
+@RequiredArgsConstructor
+@Getter
+@ToString
+public final class TuningResult {
+
+    /**
+     * Candidate params map.
+     */
+    private final Map<String, Object> params;
+
+    /**
+     * Score for the candidate. Lower is better.
+     */
+    private final ModelEvaluation evaluation;
+}
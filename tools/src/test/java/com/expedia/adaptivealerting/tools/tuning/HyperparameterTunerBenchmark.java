@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.tools.tuning;
+
+import com.expedia.adaptivealerting.core.evaluator.RmseEvaluator;
+import lombok.val;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Times a random search over Holt-Winters, EWMA and PEWMA params on a synthetic hourly series with daily seasonality.
+ * Run with {@code main} from the IDE, or from the test classpath. It isn't part of the unit test suite.
+ */
+public final class HyperparameterTunerBenchmark {
+    private static final int FREQUENCY = 24;
+    private static final int NUM_POINTS = 60 * FREQUENCY;
+    private static final int NUM_CANDIDATES = 5_000;
+
+    public static void main(String[] args) {
+        val random = new Random(0L);
+        val timestamps = new long[NUM_POINTS];
+        val values = new double[NUM_POINTS];
+        for (int i = 0; i < NUM_POINTS; i++) {
+            timestamps[i] = 1_500_000_000L + 3600L * i;
+            values[i] = 100.0 + 20.0 * Math.sin(2.0 * Math.PI * i / FREQUENCY) + 5.0 * random.nextGaussian();
+        }
+
+        val tuner = new HyperparameterTuner(ForkJoinPool.commonPool(), RmseEvaluator::new, 2 * FREQUENCY);
+        val holtWinters = new RandomSearchSpace(NUM_CANDIDATES, 42L)
+                .fixed("frequency", FREQUENCY)
+                .fixed("seasonalityType", "ADDITIVE")
+                .fixed("initTrainingMethod", "SIMPLE")
+                .fixed("warmUpPeriod", 2 * FREQUENCY)
+                .uniform("alpha", 0.0, 1.0)
+                .uniform("beta", 0.0, 0.2)
+                .uniform("gamma", 0.0, 1.0);
+        val ewma = new RandomSearchSpace(NUM_CANDIDATES, 42L)
+                .fixed("initMeanEstimate", 100.0)
+                .uniform("alpha", 0.0, 1.0);
+        val pewma = new RandomSearchSpace(NUM_CANDIDATES, 42L)
+                .fixed("initMeanEstimate", 100.0)
+                .uniform("alpha", 0.0, 1.0)
+                .uniform("beta", 0.0, 1.0);
+
+        // Warm up the JIT before timing.
+        tuner.tune(timestamps, values, "holtwinters-detector", holtWinters, 5);
+
+        run(tuner, timestamps, values, "holtwinters-detector", holtWinters);
+        run(tuner, timestamps, values, "ewma-detector", ewma);
+        run(tuner, timestamps, values, "pewma-detector", pewma);
+    }
+
+    private static void run(
+            HyperparameterTuner tuner,
+            long[] timestamps,
+            double[] values,
+            String detectorType,
+            SearchSpace space) {
+
+        val start = System.nanoTime();
+        val results = tuner.tune(timestamps, values, detectorType, space, 3);
+        val millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("%s: %d candidates x %d points in %d ms%n",
+                detectorType, NUM_CANDIDATES, values.length, millis);
+        results.forEach(result -> System.out.printf("  %s%n", result));
+    }
+}
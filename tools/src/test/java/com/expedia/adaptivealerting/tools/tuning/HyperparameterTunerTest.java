@@ -0,0 +1,202 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.tools.tuning;
+
+import com.expedia.adaptivealerting.core.data.MetricFrame;
+import com.expedia.adaptivealerting.core.evaluator.MaeEvaluator;
+import com.expedia.adaptivealerting.core.evaluator.RmseEvaluator;
+import com.expedia.adaptivealerting.tools.util.TestObjectMother;
+import com.expedia.metrics.MetricData;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class HyperparameterTunerTest {
+    private static final int FREQUENCY = 24;
+    private static final int NUM_POINTS = 20 * FREQUENCY;
+
+    private ForkJoinPool pool;
+    private long[] timestamps;
+    private double[] values;
+
+    // Class under test
+    private HyperparameterTuner tunerUnderTest;
+
+    @Before
+    public void setUp() {
+        this.pool = new ForkJoinPool(4);
+        this.tunerUnderTest = new HyperparameterTuner(pool, RmseEvaluator::new);
+        initSeries();
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testTune_ewma() {
+        val grid = new ParamGrid()
+                .param("alpha", 0.05, 0.15, 0.25, 0.35, 0.45, 0.55, 0.65, 0.75, 0.85, 0.95)
+                .param("initMeanEstimate", 100.0);
+        val results = tunerUnderTest.tune(timestamps, values, "ewma-detector", grid, 3);
+
+        assertEquals(3, results.size());
+        assertSortedByScore(results);
+        assertEquals("rmse", results.get(0).getEvaluation().getEvaluatorMethod());
+    }
+
+    @Test
+    public void testTune_pewma() {
+        val space = new RandomSearchSpace(50, 42L)
+                .uniform("alpha", 0.05, 0.95)
+                .uniform("beta", 0.0, 1.0)
+                .fixed("initMeanEstimate", 100.0);
+        val results = tunerUnderTest.tune(timestamps, values, "pewma-detector", space, 10);
+
+        assertEquals(10, results.size());
+        assertSortedByScore(results);
+    }
+
+    @Test
+    public void testTune_holtWintersPrefersSeasonality() {
+        val grid = new ParamGrid()
+                .param("frequency", FREQUENCY)
+                .param("seasonalityType", "ADDITIVE")
+                .param("initTrainingMethod", "SIMPLE")
+                .param("warmUpPeriod", 2 * FREQUENCY)
+                .param("alpha", 0.1, 0.5)
+                .param("beta", 0.01, 0.1)
+                .param("gamma", 0.0, 0.3);
+        val tuner = new HyperparameterTuner(pool, RmseEvaluator::new, 2 * FREQUENCY);
+        val results = tuner.tune(timestamps, values, "holtwinters-detector", grid, 8);
+
+        assertEquals(8, results.size());
+        assertSortedByScore(results);
+
+        // The series is strongly seasonal, so any seasonal model should beat a flat EWMA forecast.
+        val ewma = tuner.tune(timestamps, values, "ewma-detector",
+                new ParamGrid().param("alpha", 0.5).param("initMeanEstimate", 100.0), 1);
+        assertTrue(results.get(0).getEvaluation().getEvaluatorScore()
+                < ewma.get(0).getEvaluation().getEvaluatorScore());
+    }
+
+    @Test
+    public void testTune_parallelMatchesSequential() {
+        val space = new RandomSearchSpace(200, 7L)
+                .uniform("alpha", 0.0, 1.0)
+                .fixed("initMeanEstimate", 100.0);
+        val parallel = tunerUnderTest.tune(timestamps, values, "ewma-detector", space, 20);
+
+        val sequentialPool = new ForkJoinPool(1);
+        try {
+            val sequential = new HyperparameterTuner(sequentialPool, RmseEvaluator::new)
+                    .tune(timestamps, values, "ewma-detector", space, 20);
+            assertEquals(sequential.size(), parallel.size());
+            for (int i = 0; i < sequential.size(); i++) {
+                assertEquals(sequential.get(i).getParams(), parallel.get(i).getParams());
+                assertEquals(
+                        sequential.get(i).getEvaluation().getEvaluatorScore(),
+                        parallel.get(i).getEvaluation().getEvaluatorScore(),
+                        0.0);
+            }
+        } finally {
+            sequentialPool.shutdown();
+        }
+    }
+
+    @Test
+    public void testTune_skipsInvalidCandidates() {
+        val grid = new ParamGrid().param("alpha", 0.5, 2.0, -1.0);
+        val results = tunerUnderTest.tune(timestamps, values, "ewma-detector", grid, 10);
+        assertEquals(1, results.size());
+        assertEquals(0.5, results.get(0).getParams().get("alpha"));
+    }
+
+    @Test
+    public void testTune_metricFrame() {
+        val metricDef = TestObjectMother.metricDefinition();
+        val metricData = new MetricData[NUM_POINTS];
+        for (int i = 0; i < NUM_POINTS; i++) {
+            metricData[i] = new MetricData(metricDef, values[i], timestamps[i]);
+        }
+        val frame = new MetricFrame(metricData);
+        val grid = new ParamGrid().param("alpha", 0.25, 0.75);
+
+        val tuner = new HyperparameterTuner(pool, MaeEvaluator::new);
+        val fromFrame = tuner.tune(frame, "ewma-detector", grid, 2);
+        val fromArrays = tuner.tune(timestamps, values, "ewma-detector", grid, 2);
+
+        assertEquals("mae", fromFrame.get(0).getEvaluation().getEvaluatorMethod());
+        assertEquals(fromArrays.get(0).getParams(), fromFrame.get(0).getParams());
+        assertEquals(
+                fromArrays.get(0).getEvaluation().getEvaluatorScore(),
+                fromFrame.get(0).getEvaluation().getEvaluatorScore(),
+                0.0);
+    }
+
+    @Test
+    public void testTune_burnInLongerThanSeries() {
+        val tuner = new HyperparameterTuner(pool, RmseEvaluator::new, NUM_POINTS);
+        val results = tuner.tune(timestamps, values, "ewma-detector", new ParamGrid().param("alpha", 0.5), 1);
+        assertTrue(results.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_negativeBurnIn() {
+        new HyperparameterTuner(pool, RmseEvaluator::new, -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTune_unsupportedDetectorType() {
+        tunerUnderTest.tune(timestamps, values, "constant-detector", new ParamGrid(), 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTune_invalidTopN() {
+        tunerUnderTest.tune(timestamps, values, "ewma-detector", new ParamGrid(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTune_lengthMismatch() {
+        tunerUnderTest.tune(new long[1], new double[2], "ewma-detector", new ParamGrid(), 1);
+    }
+
+    private void initSeries() {
+        val random = new Random(0L);
+        this.timestamps = new long[NUM_POINTS];
+        this.values = new double[NUM_POINTS];
+        for (int i = 0; i < NUM_POINTS; i++) {
+            timestamps[i] = 1_500_000_000L + 3600L * i;
+            values[i] = 100.0 + 20.0 * Math.sin(2.0 * Math.PI * i / FREQUENCY) + random.nextGaussian();
+        }
+    }
+
+    private static void assertSortedByScore(List<TuningResult> results) {
+        for (int i = 1; i < results.size(); i++) {
+            assertTrue(results.get(i - 1).getEvaluation().getEvaluatorScore()
+                    <= results.get(i).getEvaluation().getEvaluatorScore());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.tools.tuning;
+
+import lombok.val;
+import org.junit.Test;
+
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class ParamGridTest {
+
+    @Test
+    public void testCandidates() {
+        val grid = new ParamGrid()
+                .param("frequency", 24)
+                .param("alpha", 0.1, 0.2, 0.3)
+                .param("beta", 0.1, 0.2);
+        val candidates = grid.candidates();
+
+        assertEquals(6, grid.size());
+        assertEquals(6, candidates.size());
+        assertEquals(6, new HashSet<>(candidates).size());
+        for (val candidate : candidates) {
+            assertEquals(3, candidate.size());
+            assertEquals(24, candidate.get("frequency"));
+        }
+    }
+
+    @Test
+    public void testCandidates_replacesValues() {
+        val grid = new ParamGrid()
+                .param("alpha", 0.1, 0.2)
+                .param("alpha", 0.3);
+        val candidates = grid.candidates();
+        assertEquals(1, candidates.size());
+        assertEquals(0.3, candidates.get(0).get("alpha"));
+    }
+
+    @Test
+    public void testCandidates_empty() {
+        val candidates = new ParamGrid().candidates();
+        assertEquals(1, candidates.size());
+        assertTrue(candidates.get(0).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParam_noValues() {
+        new ParamGrid().param("alpha");
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.tools.tuning;
+
+import lombok.val;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class RandomSearchSpaceTest {
+
+    @Test
+    public void testCandidates() {
+        val space = new RandomSearchSpace(100, 42L)
+                .fixed("frequency", 24)
+                .uniform("alpha", 0.1, 0.5);
+        val candidates = space.candidates();
+
+        assertEquals(100, candidates.size());
+        for (val candidate : candidates) {
+            assertEquals(24, candidate.get("frequency"));
+            val alpha = (double) candidate.get("alpha");
+            assertTrue(alpha >= 0.1 && alpha < 0.5);
+        }
+    }
+
+    @Test
+    public void testCandidates_reproducible() {
+        val space1 = new RandomSearchSpace(10, 42L).uniform("alpha", 0.0, 1.0);
+        val space2 = new RandomSearchSpace(10, 42L).uniform("alpha", 0.0, 1.0);
+        val space3 = new RandomSearchSpace(10, 43L).uniform("alpha", 0.0, 1.0);
+        assertEquals(space1.candidates(), space2.candidates());
+        assertFalse(space1.candidates().equals(space3.candidates()));
+    }
+
+    @Test
+    public void testFixed_replacesRange() {
+        val candidates = new RandomSearchSpace(3, 42L)
+                .uniform("alpha", 0.0, 1.0)
+                .fixed("alpha", 0.5)
+                .candidates();
+        for (val candidate : candidates) {
+            assertEquals(0.5, candidate.get("alpha"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_noCandidates() {
+        new RandomSearchSpace(0, 42L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUniform_invalidRange() {
+        new RandomSearchSpace(1, 42L).uniform("alpha", 1.0, 0.0);
+    }
+}